@@ -27,6 +27,13 @@
  */
 public class FileTypeUtils
 {
+    /**
+     * Directory of a managed repository where the uploads of the web application are staged. It is excluded from the
+     * consumers and never served.
+     *
+     * @since 2.2.2
+     */
+    public static final String UPLOAD_STAGING_DIRECTORY = ".upload";
 
     /**
      * Default exclusions from artifact consumers that are using the file types. Note that this is simplistic in the
@@ -35,5 +42,5 @@
      */
     public static final List<String> DEFAULT_EXCLUSIONS =
         Arrays.asList( "**/maven-metadata.xml", "**/maven-metadata-*.xml", "**/*.sha1", "**/*.asc", "**/*.md5",
-                       "**/*.pgp", "**/.index/**", "**/.indexer/**" );
+                       "**/*.pgp", "**/.index/**", "**/.indexer/**", "**/" + UPLOAD_STAGING_DIRECTORY + "/**" );
 }
@@ -20,6 +20,7 @@
  */
 
 import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.common.utils.VersionComparator;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.maven2.MavenArtifactFacet;
@@ -28,6 +29,7 @@
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.model.ArtifactReference;
+import org.apache.archiva.model.VersionedReference;
 import org.apache.archiva.repository.ContentNotFoundException;
 import org.apache.archiva.repository.ManagedRepositoryContent;
 import org.apache.archiva.repository.events.RepositoryListener;
@@ -37,8 +39,15 @@
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -59,6 +68,11 @@
 
     private static final char DELIM = ' ';
 
+    /**
+     * version directories already processed during the scan
+     */
+    private final Set<String> processedVersions = new HashSet<>();
+
     public AbstractRepositoryPurge( ManagedRepositoryContent repository, RepositorySession repositorySession,
                                     List<RepositoryListener> listeners )
     {
@@ -68,7 +82,53 @@ public AbstractRepositoryPurge( ManagedRepositoryContent repository, RepositoryS
     }
 
     /**
-     * Purge the repo. Update db and index of removed artifacts.
+     * Marks the directory of a version as processed, so that a scan looks at it once rather than once per file.
+     *
+     * @param reference the versioned reference of a scanned artifact
+     * @return <code>false</code> if the directory was already processed
+     */
+    protected boolean markProcessed( VersionedReference reference )
+    {
+        return processedVersions.add( reference.getGroupId() + ":" + reference.getArtifactId() + ":"
+                                          + VersionUtil.getBaseVersion( reference.getVersion() ) );
+    }
+
+    /**
+     * Lists the directory of a version once and groups its artifacts by version, from the oldest to the newest.
+     *
+     * @param reference the versioned reference to work off of
+     * @return the artifacts of each version found in the directory
+     * @throws ContentNotFoundException if the version directory does not exist
+     */
+    protected Map<String, Set<ArtifactReference>> getArtifactsByVersion( VersionedReference reference )
+        throws ContentNotFoundException
+    {
+        Map<String, Set<ArtifactReference>> artifacts = new HashMap<>();
+        for ( ArtifactReference artifact : repository.getRelatedArtifacts( reference ) )
+        {
+            Set<ArtifactReference> versionArtifacts = artifacts.get( artifact.getVersion() );
+            if ( versionArtifacts == null )
+            {
+                versionArtifacts = new HashSet<>();
+                artifacts.put( artifact.getVersion(), versionArtifacts );
+            }
+            versionArtifacts.add( artifact );
+        }
+
+        List<String> versions = new ArrayList<>( artifacts.keySet() );
+        Collections.sort( versions, VersionComparator.getInstance() );
+
+        Map<String, Set<ArtifactReference>> sorted = new LinkedHashMap<>();
+        for ( String version : versions )
+        {
+            sorted.put( version, artifacts.get( version ) );
+        }
+        return sorted;
+    }
+
+    /**
+     * Purge the repo. Update db and index of removed artifacts. The metadata of a version is removed once and the
+     * session is saved once for all the references.
      *
      * @param references
      */
@@ -77,6 +137,8 @@ protected void purge( Set<ArtifactReference> references )
         if ( references != null && !references.isEmpty() )
         {
             MetadataRepository metadataRepository = repositorySession.getRepository();
+            Set<String> removedVersions = new HashSet<>();
+            Map<String, Collection<ArtifactMetadata>> projectVersionArtifacts = new HashMap<>();
             for ( ArtifactReference reference : references )
             {
                 File artifactFile = repository.toFile( reference );
@@ -99,14 +161,19 @@ protected void purge( Set<ArtifactReference> references )
                     log.warn( "skip error deleting artifact {}: {}", reference, e.getMessage() );
                 }
 
-                try
-                {
-                    metadataRepository.removeProjectVersion( repository.getId(), reference.getGroupId(),
-                                                             reference.getArtifactId(), reference.getVersion() );
-                }
-                catch ( MetadataRepositoryException e )
+                String versionKey =
+                    reference.getGroupId() + ":" + reference.getArtifactId() + ":" + reference.getVersion();
+                if ( removedVersions.add( versionKey ) )
                 {
-                    log.warn( "skip error removeProjectVersion artifact {}: {}", reference, e.getMessage() );
+                    try
+                    {
+                        metadataRepository.removeProjectVersion( repository.getId(), reference.getGroupId(),
+                                                                 reference.getArtifactId(), reference.getVersion() );
+                    }
+                    catch ( MetadataRepositoryException e )
+                    {
+                        log.warn( "skip error removeProjectVersion artifact {}: {}", reference, e.getMessage() );
+                    }
                 }
 
                 boolean snapshotVersion = VersionUtil.isSnapshot( reference.getVersion() );
@@ -116,48 +183,57 @@ protected void purge( Set<ArtifactReference> references )
                     if ( snapshotVersion )
                     {
                         String baseVersion = VersionUtil.getBaseVersion( reference.getVersion() );
-                        Collection<ArtifactMetadata> artifacts =
-                            metadataRepository.getArtifacts( repository.getId(), reference.getGroupId(),
-                                                             reference.getArtifactId(), baseVersion );
-                        if ( artifacts != null )
+                        String baseVersionKey =
+                            reference.getGroupId() + ":" + reference.getArtifactId() + ":" + baseVersion;
+                        // read once for all the references of the project version, and kept up to date below
+                        Collection<ArtifactMetadata> artifacts = projectVersionArtifacts.get( baseVersionKey );
+                        if ( artifacts == null )
                         {
-                            // cleanup snapshots metadata
-                            for ( ArtifactMetadata artifactMetadata : artifacts )
-                            {
+                            artifacts = metadataRepository.getArtifacts( repository.getId(), reference.getGroupId(),
+                                                                         reference.getArtifactId(), baseVersion );
+                            artifacts = artifacts == null
+                                ? new ArrayList<ArtifactMetadata>()
+                                : new ArrayList<>( artifacts );
+                            projectVersionArtifacts.put( baseVersionKey, artifacts );
+                        }
+                        // cleanup snapshots metadata
+                        for ( Iterator<ArtifactMetadata> i = artifacts.iterator(); i.hasNext(); )
+                        {
+                            ArtifactMetadata artifactMetadata = i.next();
 
-                                // TODO: mismatch between artifact (snapshot) version and project (base) version here
-                                if ( artifactMetadata.getVersion().equals( reference.getVersion() ) )
+                            // TODO: mismatch between artifact (snapshot) version and project (base) version here
+                            if ( artifactMetadata.getVersion().equals( reference.getVersion() ) )
+                            {
+                                if ( StringUtils.isNotBlank( reference.getClassifier() ) )
                                 {
-                                    if ( StringUtils.isNotBlank( reference.getClassifier() ) )
-                                    {
 
-                                        // cleanup facet which contains classifier information
-                                        MavenArtifactFacet mavenArtifactFacet =
-                                            (MavenArtifactFacet) artifactMetadata.getFacet(
-                                                MavenArtifactFacet.FACET_ID );
-
-                                        if ( StringUtils.equals( reference.getClassifier(),
-                                                                 mavenArtifactFacet.getClassifier() ) )
-                                        {
-                                            artifactMetadata.removeFacet( MavenArtifactFacet.FACET_ID );
-                                            String groupId = reference.getGroupId(), artifactId =
-                                                reference.getArtifactId(),
-                                                version = reference.getVersion();
-                                            MavenArtifactFacet mavenArtifactFacetToCompare = new MavenArtifactFacet();
-                                            mavenArtifactFacetToCompare.setClassifier( reference.getClassifier() );
-                                            metadataRepository.removeArtifact( repository.getId(), groupId, artifactId,
-                                                                               version, mavenArtifactFacetToCompare );
-                                            metadataRepository.save();
-                                        }
+                                    // cleanup facet which contains classifier information
+                                    MavenArtifactFacet mavenArtifactFacet =
+                                        (MavenArtifactFacet) artifactMetadata.getFacet(
+                                            MavenArtifactFacet.FACET_ID );
 
-                                    }
-                                    else
+                                    if ( mavenArtifactFacet != null && StringUtils.equals(
+                                        reference.getClassifier(), mavenArtifactFacet.getClassifier() ) )
                                     {
-                                        metadataRepository.removeArtifact( artifactMetadata, VersionUtil.getBaseVersion(
-                                            reference.getVersion() ) );
+                                        artifactMetadata.removeFacet( MavenArtifactFacet.FACET_ID );
+                                        String groupId = reference.getGroupId(), artifactId =
+                                            reference.getArtifactId(),
+                                            version = reference.getVersion();
+                                        MavenArtifactFacet mavenArtifactFacetToCompare = new MavenArtifactFacet();
+                                        mavenArtifactFacetToCompare.setClassifier( reference.getClassifier() );
+                                        metadataRepository.removeArtifact( repository.getId(), groupId, artifactId,
+                                                                           version, mavenArtifactFacetToCompare );
+                                        metadataRepository.save();
                                     }
 
                                 }
+                                else
+                                {
+                                    metadataRepository.removeArtifact( artifactMetadata, VersionUtil.getBaseVersion(
+                                        reference.getVersion() ) );
+                                    i.remove();
+                                }
+
                             }
                         }
                     }
@@ -171,12 +247,12 @@ protected void purge( Set<ArtifactReference> references )
                     log.warn( "skip error deleting metadata {}: {}", reference, e.getMessage() );
                 }
 
-                repositorySession.save();
-
                 triggerAuditEvent( repository.getRepository().getId(), ArtifactReference.toKey( reference ),
                                    AuditEvent.PURGE_ARTIFACT );
                 purgeSupportFiles( artifactFile );
             }
+
+            repositorySession.save();
         }
     }
 
@@ -22,7 +22,6 @@
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.repository.events.RepositoryListener;
 import org.apache.commons.lang.time.DateUtils;
-import org.apache.archiva.common.utils.VersionComparator;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.model.ArtifactReference;
 import org.apache.archiva.model.VersionedReference;
@@ -33,11 +32,11 @@
 import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 
@@ -78,68 +77,97 @@ public void process( String path )
 
             ArtifactReference artifact = repository.toArtifactReference( path );
 
-            Calendar olderThanThisDate = Calendar.getInstance( DateUtils.UTC_TIME_ZONE );
-            olderThanThisDate.add( Calendar.DATE, -daysOlder );
+            // only snapshots are purged
+            if ( !VersionUtil.isSnapshot( artifact.getVersion() ) )
+            {
+                return;
+            }
 
-            // respect retention count
             VersionedReference reference = new VersionedReference();
             reference.setGroupId( artifact.getGroupId() );
             reference.setArtifactId( artifact.getArtifactId() );
             reference.setVersion( artifact.getVersion() );
 
-            List<String> versions = new ArrayList<>( repository.getVersions( reference ) );
-
-            Collections.sort( versions, VersionComparator.getInstance() );
-
-            if ( retentionCount > versions.size() )
+            // the whole version directory is handled by the first of its files
+            if ( markProcessed( reference ) )
             {
-                // Done. nothing to do here. skip it.
-                return;
+                processVersion( reference );
             }
+        }
+        catch ( LayoutException e )
+        {
+            log.debug( "Not processing file that is not an artifact: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * Purge the snapshots of a version directory older than the configured days, still keeping the retention count
+     * most recent ones. This lists the directory once and does not need a scan.
+     *
+     * @param reference the snapshot version to purge
+     * @throws RepositoryPurgeException if the version directory does not exist
+     * @since 2.2.2
+     */
+    public void processVersion( VersionedReference reference )
+        throws RepositoryPurgeException
+    {
+        try
+        {
+            Calendar olderThanThisDate = Calendar.getInstance( DateUtils.UTC_TIME_ZONE );
+            olderThanThisDate.add( Calendar.DATE, -daysOlder );
 
-            int countToPurge = versions.size() - retentionCount;
+            Map<String, Set<ArtifactReference>> artifactsByVersion = getArtifactsByVersion( reference );
 
-            for ( String version : versions )
+            // respect retention count
+            int countToPurge = artifactsByVersion.size() - retentionCount;
+
+            Set<ArtifactReference> toPurge = new LinkedHashSet<>();
+            for ( Map.Entry<String, Set<ArtifactReference>> entry : artifactsByVersion.entrySet() )
             {
                 if ( countToPurge-- <= 0 )
                 {
                     break;
                 }
 
-                ArtifactReference newArtifactReference = repository.toArtifactReference(
-                    artifactFile.getAbsolutePath() );
-                newArtifactReference.setVersion( version );
-
-                File newArtifactFile = repository.toFile( newArtifactReference );
+                String version = entry.getKey();
 
                 // Is this a generic snapshot "1.0-SNAPSHOT" ?
-                if ( VersionUtil.isGenericSnapshot( newArtifactReference.getVersion() ) )
+                if ( VersionUtil.isGenericSnapshot( version ) )
                 {
-                    if ( newArtifactFile.lastModified() < olderThanThisDate.getTimeInMillis() )
+                    if ( getLastModified( entry.getValue() ) < olderThanThisDate.getTimeInMillis() )
                     {
-                        doPurgeAllRelated( newArtifactReference );
+                        toPurge.addAll( entry.getValue() );
                     }
                 }
                 // Is this a timestamp snapshot "1.0-20070822.123456-42" ?
-                else if ( VersionUtil.isUniqueSnapshot( newArtifactReference.getVersion() ) )
+                else if ( VersionUtil.isUniqueSnapshot( version ) )
                 {
-                    Calendar timestampCal = uniqueSnapshotToCalendar( newArtifactReference.getVersion() );
+                    Calendar timestampCal = uniqueSnapshotToCalendar( version );
 
-                    if ( timestampCal.getTimeInMillis() < olderThanThisDate.getTimeInMillis() )
+                    if ( timestampCal != null
+                        && timestampCal.getTimeInMillis() < olderThanThisDate.getTimeInMillis() )
                     {
-                        doPurgeAllRelated( newArtifactReference );
+                        toPurge.addAll( entry.getValue() );
                     }
                 }
             }
+
+            purge( toPurge );
         }
         catch ( ContentNotFoundException e )
         {
             throw new RepositoryPurgeException( e.getMessage(), e );
         }
-        catch ( LayoutException e )
+    }
+
+    private long getLastModified( Set<ArtifactReference> artifacts )
+    {
+        long lastModified = 0;
+        for ( ArtifactReference artifact : artifacts )
         {
-            log.debug( "Not processing file that is not an artifact: {}", e.getMessage() );
+            lastModified = Math.max( lastModified, repository.toFile( artifact ).lastModified() );
         }
+        return lastModified;
     }
 
     private Calendar uniqueSnapshotToCalendar( String version )
@@ -174,18 +202,4 @@ private Calendar uniqueSnapshotToCalendar( String version )
         }
         return null;
     }
-
-    private void doPurgeAllRelated( ArtifactReference reference )
-    {
-        try
-        {
-            Set<ArtifactReference> related = repository.getRelatedArtifacts( reference );
-            purge( related );
-        }
-        catch ( ContentNotFoundException e )
-        {
-            // Nothing to do here - it means the repository would have been constructed incorrectly
-            log.debug( e.getMessage(), e );
-        }
-    }
 }
@@ -21,7 +21,6 @@
 
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.repository.events.RepositoryListener;
-import org.apache.archiva.common.utils.VersionComparator;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.model.ArtifactReference;
 import org.apache.archiva.model.VersionedReference;
@@ -30,9 +29,9 @@
 import org.apache.archiva.repository.layout.LayoutException;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -72,26 +71,10 @@ public void process( String path )
                 reference.setArtifactId( artifact.getArtifactId() );
                 reference.setVersion( artifact.getVersion() );
 
-                List<String> versions = new ArrayList<>( repository.getVersions( reference ) );
-
-                Collections.sort( versions, VersionComparator.getInstance() );
-
-                if ( retentionCount > versions.size() )
-                {
-                    // Done. nothing to do here. skip it.
-                    return;
-                }
-
-                int countToPurge = versions.size() - retentionCount;
-
-                for ( String version : versions )
+                // the whole version directory is handled by the first of its files
+                if ( markProcessed( reference ) )
                 {
-                    if ( countToPurge-- <= 0 )
-                    {
-                        break;
-                    }
-
-                    doPurgeAllRelated( artifact, version );
+                    processVersion( reference );
                 }
             }
         }
@@ -99,27 +82,35 @@ public void process( String path )
         {
             throw new RepositoryPurgeException( le.getMessage(), le );
         }
-        catch ( ContentNotFoundException e )
-        {
-            // Nothing to do here.
-            // TODO: Log this condition?
-        }
     }
 
-    private void doPurgeAllRelated( ArtifactReference reference, String version )
-        throws LayoutException
+    /**
+     * Purge the snapshots of a version directory, keeping the most recent ones. This lists the directory once and
+     * does not need a scan.
+     *
+     * @param reference the snapshot version to purge
+     * @since 2.2.2
+     */
+    public void processVersion( VersionedReference reference )
     {
-        ArtifactReference artifact = new ArtifactReference();
-        artifact.setGroupId( reference.getGroupId() );
-        artifact.setArtifactId( reference.getArtifactId() );
-        artifact.setVersion( version );
-        artifact.setClassifier( reference.getClassifier() );
-        artifact.setType( reference.getType() );
-
         try
         {
-            Set<ArtifactReference> related = repository.getRelatedArtifacts( artifact );
-            purge( related );
+            Map<String, Set<ArtifactReference>> artifactsByVersion = getArtifactsByVersion( reference );
+
+            int countToPurge = artifactsByVersion.size() - retentionCount;
+
+            Set<ArtifactReference> toPurge = new LinkedHashSet<>();
+            for ( Set<ArtifactReference> artifacts : artifactsByVersion.values() )
+            {
+                if ( countToPurge-- <= 0 )
+                {
+                    break;
+                }
+
+                toPurge.addAll( artifacts );
+            }
+
+            purge( toPurge );
         }
         catch ( ContentNotFoundException e )
         {
@@ -27,6 +27,9 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
 /**
  * Test RetentionsCountRepositoryPurgeTest
  */
@@ -176,6 +179,40 @@ public void testIfAPomWasFound()
         assertExists( versionRoot + "/castor-anttasks-1.1.2-20070506.163513-2-sources.jar.sha1" );
     }
 
+    /**
+     * Test that the files of a version directory processed after the first one are skipped.
+     */
+    @Test
+    public void testVersionDirectoryProcessedOnce()
+        throws Exception
+    {
+        String repoRoot = prepareTestRepos();
+
+        listener.deleteArtifact( metadataRepository, getRepository().getId(), "org.codehaus.castor", "castor-anttasks",
+                                 "1.1.2-20070427.065136-1", "castor-anttasks-1.1.2-20070427.065136-1.jar" );
+        listener.deleteArtifact( metadataRepository, getRepository().getId(), "org.codehaus.castor", "castor-anttasks",
+                                 "1.1.2-20070427.065136-1", "castor-anttasks-1.1.2-20070427.065136-1.pom" );
+        listenerControl.replay();
+
+        String versionPath = "org/codehaus/castor/castor-anttasks/1.1.2-SNAPSHOT";
+        repoPurge.process( PATH_TO_BY_RETENTION_COUNT_POM );
+        repoPurge.process( versionPath + "/castor-anttasks-1.1.2-20070615.105019-3.jar" );
+        repoPurge.process( versionPath + "/castor-anttasks-1.1.2-20070506.163513-2.jar" );
+
+        listenerControl.verify();
+
+        // metadata of the purged version removed and saved once
+        verify( metadataRepository, times( 1 ) ).removeProjectVersion( getRepository().getId(), "org.codehaus.castor",
+                                                                       "castor-anttasks", "1.1.2-20070427.065136-1" );
+        verify( repositorySession, times( 1 ) ).save();
+
+        String versionRoot = repoRoot + "/" + versionPath;
+        assertDeleted( versionRoot + "/castor-anttasks-1.1.2-20070427.065136-1.jar" );
+        assertDeleted( versionRoot + "/castor-anttasks-1.1.2-20070427.065136-1.pom" );
+        assertExists( versionRoot + "/castor-anttasks-1.1.2-20070506.163513-2.jar" );
+        assertExists( versionRoot + "/castor-anttasks-1.1.2-20070615.105019-3.jar" );
+    }
+
     @Test
     public void testOrderOfDeletion()
         throws Exception
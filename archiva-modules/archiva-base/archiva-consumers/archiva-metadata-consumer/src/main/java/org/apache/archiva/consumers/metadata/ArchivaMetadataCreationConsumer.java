@@ -41,8 +41,10 @@
 import org.apache.archiva.metadata.repository.storage.RepositoryStorageRuntimeException;
 import org.apache.archiva.redback.components.registry.Registry;
 import org.apache.archiva.redback.components.registry.RegistryListener;
+import org.apache.archiva.repository.events.RepositoryListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
@@ -90,6 +92,10 @@
     @Named (value = "repositoryStorage#maven2")
     private RepositoryStorage repositoryStorage;
 
+    @Inject
+    @Autowired( required = false )
+    private List<RepositoryListener> listeners = new ArrayList<>();
+
     private static final Logger log = LoggerFactory.getLogger( ArchivaMetadataCreationConsumer.class );
 
     private String repoId;
@@ -185,6 +191,11 @@ public void processFile( String path )
 
             // read the metadata and update it if it is newer or doesn't exist
             artifact.setWhenGathered( whenGathered );
+            for ( RepositoryListener listener : listeners )
+            {
+                listener.updateArtifact( repositorySession, repoId, project.getNamespace(), project.getId(),
+                                         projectVersion, artifact );
+            }
             metadataRepository.updateArtifact( repoId, project.getNamespace(), project.getId(), projectVersion,
                                                artifact );
             if ( createVersionMetadata )
@@ -225,7 +236,18 @@ public void processFile( String path, boolean executeOnEntireRepo )
     @Override
     public void completeScan()
     {
-        /* do nothing */
+        RepositorySession repositorySession = repositorySessionFactory.createSession();
+        try
+        {
+            for ( RepositoryListener listener : listeners )
+            {
+                listener.completeScan( repositorySession, repoId );
+            }
+        }
+        finally
+        {
+            repositorySession.close();
+        }
     }
 
     @Override
@@ -23,6 +23,8 @@
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.time.StopWatch;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.maven.index.NexusIndexer;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.context.UnsupportedExistingLuceneIndexException;
@@ -36,8 +38,15 @@
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -61,6 +70,19 @@
 
     private List<String> runningGroups = new CopyOnWriteArrayList<String>();
 
+    /**
+     * state of the last build per group id of the requests keeping their merged index: the merged index is not
+     * updated in place, a build either reuses it as is or rebuilds it from all the members
+     */
+    private Map<String, MergedIndexState> mergedIndexStates = new ConcurrentHashMap<>();
+
+    /**
+     * the merged index is only optimized when it has at least this number of segments
+     *
+     * @since 2.2.2
+     */
+    private int optimizeSegmentThreshold = Integer.getInteger( "archiva.indexMerger.optimizeSegmentThreshold", 10 );
+
     @Inject
     public DefaultIndexMerger( PlexusSisuBridge plexusSisuBridge, MavenIndexerUtils mavenIndexerUtils )
         throws PlexusSisuBridgeException
@@ -95,25 +117,70 @@ public IndexingContext buildMergedIndex( IndexMergerRequest indexMergerRequest )
         try
         {
             File indexLocation = new File( mergedIndexDirectory, indexMergerRequest.getMergedIndexPath() );
-            IndexingContext indexingContext =
-                indexer.addIndexingContext( tempRepoId, tempRepoId, mergedIndexDirectory, indexLocation, null, null,
-                                            mavenIndexerUtils.getAllIndexCreators() );
 
-            for ( String repoId : indexMergerRequest.getRepositoriesIds() )
+            MergedIndexState state = indexMergerRequest.isIncremental() ? mergedIndexStates.get( groupId ) : null;
+
+            IndexingContext indexingContext;
+            Collection<String> repositoriesToMerge;
+            if ( state != null && state.isReusable( indexMergerRequest, indexer.getIndexingContexts() ) )
+            {
+                indexingContext = state.indexingContext;
+                Collection<String> changedRepositories =
+                    state.getChangedRepositories( indexer.getIndexingContexts() );
+                if ( changedRepositories.isEmpty() )
+                {
+                    log.info( "merged index for group {} is up to date", groupId );
+                    return indexingContext;
+                }
+                // merging only adds documents the merged index does not have yet: artifacts removed from or updated
+                // in a changed member would stay stale, so the merged index is rebuilt from all the members
+                log.debug( "repositories {} of group {} changed, merging all members again", changedRepositories,
+                           groupId );
+                indexingContext.purge();
+                repositoriesToMerge = indexMergerRequest.getRepositoriesIds();
+            }
+            else
+            {
+                if ( state != null && state.indexingContext != null && indexer.getIndexingContexts().containsValue(
+                    state.indexingContext ) )
+                {
+                    // members changed: start again from an empty index
+                    indexingContext = state.indexingContext;
+                    indexingContext.purge();
+                }
+                else
+                {
+                    indexingContext =
+                        indexer.addIndexingContext( tempRepoId, tempRepoId, mergedIndexDirectory, indexLocation, null,
+                                                    null, mavenIndexerUtils.getAllIndexCreators() );
+                }
+                repositoriesToMerge = indexMergerRequest.getRepositoriesIds();
+                state = new MergedIndexState( indexingContext, indexMergerRequest );
+            }
+
+            for ( String repoId : repositoriesToMerge )
             {
                 IndexingContext idxToMerge = indexer.getIndexingContexts().get( repoId );
                 if ( idxToMerge != null )
                 {
+                    // read the timestamp before merging so changes made during the merge are picked up next time
+                    Date timestamp = idxToMerge.getTimestamp();
                     indexingContext.merge( idxToMerge.getIndexDirectory() );
+                    state.memberTimestamps.put( repoId, timestamp == null ? null : timestamp.getTime() );
                 }
             }
 
-            indexingContext.optimize();
+            optimizeIfNeeded( indexingContext );
 
             if ( indexMergerRequest.isPackIndex() )
             {
-                IndexPackingRequest request = new IndexPackingRequest( indexingContext, indexLocation );
-                indexPacker.packIndex( request );
+                // no incremental chunks: the merged index is rebuilt from scratch, a chunk would hold all of it
+                indexPacker.packIndex( new IndexPackingRequest( indexingContext, indexLocation ) );
+            }
+
+            if ( indexMergerRequest.isIncremental() )
+            {
+                mergedIndexStates.put( groupId, state );
             }
 
             if ( indexMergerRequest.isTemporary() )
@@ -122,8 +189,7 @@ public IndexingContext buildMergedIndex( IndexMergerRequest indexMergerRequest )
                                                                     indexMergerRequest.getMergedIndexTtl() ) );
             }
             stopWatch.stop();
-            log.info( "merged index for repos {} in {} s", indexMergerRequest.getRepositoriesIds(),
-                      stopWatch.getTime() );
+            log.info( "merged index for repos {} in {} s", repositoriesToMerge, stopWatch.getTime() );
             return indexingContext;
         }
         catch ( IOException e )
@@ -140,6 +206,34 @@ public IndexingContext buildMergedIndex( IndexMergerRequest indexMergerRequest )
         }
     }
 
+    /**
+     * optimize the merged index only if it has enough segments for it to be worth the I/O
+     */
+    private void optimizeIfNeeded( IndexingContext indexingContext )
+        throws IOException
+    {
+        int segmentCount;
+        IndexSearcher searcher = indexingContext.acquireIndexSearcher();
+        try
+        {
+            IndexReader[] subReaders = searcher.getIndexReader().getSequentialSubReaders();
+            segmentCount = subReaders == null ? 1 : subReaders.length;
+        }
+        finally
+        {
+            indexingContext.releaseIndexSearcher( searcher );
+        }
+
+        if ( segmentCount >= optimizeSegmentThreshold )
+        {
+            indexingContext.optimize();
+        }
+        else
+        {
+            log.debug( "skip optimize of merged index {} with {} segments", indexingContext.getId(), segmentCount );
+        }
+    }
+
     @Async
     @Override
     public void cleanTemporaryGroupIndex( TemporaryGroupIndex temporaryGroupIndex )
@@ -162,6 +256,11 @@ public void cleanTemporaryGroupIndex( TemporaryGroupIndex temporaryGroupIndex )
                 FileUtils.deleteDirectory( directory );
             }
             temporaryGroupIndexes.remove( temporaryGroupIndex );
+            MergedIndexState state = mergedIndexStates.get( temporaryGroupIndex.getGroupId() );
+            if ( state != null && state.indexingContext == indexingContext )
+            {
+                mergedIndexStates.remove( temporaryGroupIndex.getGroupId() );
+            }
         }
         catch ( IOException e )
         {
@@ -174,4 +273,66 @@ public Collection<TemporaryGroupIndex> getTemporaryGroupIndexes()
     {
         return this.temporaryGroupIndexes;
     }
+
+    public int getOptimizeSegmentThreshold()
+    {
+        return optimizeSegmentThreshold;
+    }
+
+    public void setOptimizeSegmentThreshold( int optimizeSegmentThreshold )
+    {
+        this.optimizeSegmentThreshold = optimizeSegmentThreshold;
+    }
+
+    /**
+     * merged index of a group with the timestamp of each member index when it was last merged in, used to skip the
+     * build when no member changed; any change of a member rebuilds the whole merged index
+     */
+    private static class MergedIndexState
+    {
+        private final IndexingContext indexingContext;
+
+        private final File mergedIndexDirectory;
+
+        private final Set<String> repositoriesIds;
+
+        private final Map<String, Long> memberTimestamps = new HashMap<>();
+
+        MergedIndexState( IndexingContext indexingContext, IndexMergerRequest indexMergerRequest )
+        {
+            this.indexingContext = indexingContext;
+            this.mergedIndexDirectory = indexMergerRequest.getMergedIndexDirectory();
+            this.repositoriesIds = new HashSet<>( indexMergerRequest.getRepositoriesIds() );
+        }
+
+        /**
+         * the merged index can only be kept if it targets the same directory with the same members
+         */
+        boolean isReusable( IndexMergerRequest indexMergerRequest, Map<String, IndexingContext> contexts )
+        {
+            return contexts.containsValue( indexingContext ) //
+                && mergedIndexDirectory.equals( indexMergerRequest.getMergedIndexDirectory() ) //
+                && repositoriesIds.equals( new HashSet<>( indexMergerRequest.getRepositoriesIds() ) );
+        }
+
+        Collection<String> getChangedRepositories( Map<String, IndexingContext> contexts )
+        {
+            List<String> changed = new ArrayList<>();
+            for ( String repoId : repositoriesIds )
+            {
+                IndexingContext context = contexts.get( repoId );
+                if ( context == null )
+                {
+                    continue;
+                }
+                Date timestamp = context.getTimestamp();
+                Long merged = memberTimestamps.get( repoId );
+                if ( timestamp == null || merged == null || timestamp.getTime() > merged )
+                {
+                    changed.add( repoId );
+                }
+            }
+            return changed;
+        }
+    }
 }
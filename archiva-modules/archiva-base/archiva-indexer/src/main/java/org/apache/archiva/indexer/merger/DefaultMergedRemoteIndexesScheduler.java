@@ -69,7 +69,8 @@ public void schedule( RepositoryGroup repositoryGroup, File directory )
 
         IndexMergerRequest indexMergerRequest =
             new IndexMergerRequest( repositories, true, repositoryGroup.getId(), repositoryGroup.getMergedIndexPath(),
-                                    repositoryGroup.getMergedIndexTtl() ).mergedIndexDirectory( directory );
+                                    repositoryGroup.getMergedIndexTtl() ).mergedIndexDirectory(
+                directory ).incremental( true );
 
         MergedRemoteIndexesTaskRequest taskRequest =
             new MergedRemoteIndexesTaskRequest( indexMergerRequest, indexMerger );
@@ -49,6 +49,15 @@
 
     private boolean temporary;
 
+    /**
+     * keep the merged index of the previous build of the same group: the build is skipped while no member index
+     * changed, otherwise the merged index is purged and all the members are merged again. Despite the name, members
+     * are never merged incrementally.
+     *
+     * @since 2.2.2
+     */
+    private boolean incremental;
+
     public IndexMergerRequest( Collection<String> repositoriesIds, boolean packIndex, String groupId )
     {
         this.repositoriesIds = repositoriesIds;
@@ -152,6 +161,22 @@ public IndexMergerRequest temporary( boolean temporary )
         return this;
     }
 
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+    }
+
+    public IndexMergerRequest incremental( boolean incremental )
+    {
+        this.incremental = incremental;
+        return this;
+    }
+
     @Override
     public String toString()
     {
@@ -163,6 +188,7 @@ public String toString()
         sb.append( ", mergedIndexTtl=" ).append( mergedIndexTtl );
         sb.append( ", mergedIndexDirectory=" ).append( mergedIndexDirectory );
         sb.append( ", temporary=" ).append( temporary );
+        sb.append( ", incremental=" ).append( incremental );
         sb.append( '}' );
         return sb.toString();
     }
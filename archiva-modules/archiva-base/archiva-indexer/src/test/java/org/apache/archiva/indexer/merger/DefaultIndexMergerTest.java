@@ -0,0 +1,171 @@
+package org.apache.archiva.indexer.merger;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.common.plexusbridge.MavenIndexerUtils;
+import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
+import org.apache.archiva.common.utils.FileUtil;
+import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactContextProducer;
+import org.apache.maven.index.MAVEN;
+import org.apache.maven.index.NexusIndexer;
+import org.apache.maven.index.context.IndexingContext;
+import org.apache.maven.index.expr.SourcedSearchExpression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.util.Arrays;
+
+@RunWith( ArchivaSpringJUnit4ClassRunner.class )
+@ContextConfiguration( locations = { "classpath*:/META-INF/spring-context.xml", "classpath:/spring-context.xml" } )
+public class DefaultIndexMergerTest
+    extends TestCase
+{
+    private static final String TEST_REPO_1 = "maven-search-test-repo";
+
+    private static final String TEST_REPO_2 = "maven-search-test-repo-2";
+
+    @Inject
+    PlexusSisuBridge plexusSisuBridge;
+
+    @Inject
+    MavenIndexerUtils mavenIndexerUtils;
+
+    @Inject
+    @Named( value = "indexMerger#default" )
+    IndexMerger indexMerger;
+
+    NexusIndexer nexusIndexer;
+
+    ArtifactContextProducer artifactContextProducer;
+
+    File mergedIndexDirectory;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        nexusIndexer = plexusSisuBridge.lookup( NexusIndexer.class );
+        artifactContextProducer = plexusSisuBridge.lookup( ArtifactContextProducer.class );
+
+        mergedIndexDirectory = new File( FileUtil.getBasedir(), "target/merged-index/test-group" );
+        FileUtils.deleteDirectory( mergedIndexDirectory );
+    }
+
+    @After
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        for ( IndexingContext indexingContext : nexusIndexer.getIndexingContexts().values() )
+        {
+            nexusIndexer.removeIndexingContext( indexingContext, true );
+        }
+        FileUtils.deleteDirectory( mergedIndexDirectory );
+
+        super.tearDown();
+    }
+
+    private IndexingContext createIndex( String repository, String... paths )
+        throws Exception
+    {
+        File repo = new File( FileUtil.getBasedir(), "src/test/" + repository );
+        File indexDirectory = new File( FileUtil.getBasedir(), "target/index/merger-" + repository );
+        FileUtils.deleteDirectory( indexDirectory );
+
+        IndexingContext context =
+            nexusIndexer.addIndexingContext( repository, repository, repo, indexDirectory, null, null,
+                                             mavenIndexerUtils.getAllIndexCreators() );
+        for ( String path : paths )
+        {
+            nexusIndexer.addArtifactToIndex( getArtifactContext( context, path ), context );
+        }
+        context.updateTimestamp( true );
+        context.commit();
+        context.setSearchable( true );
+        return context;
+    }
+
+    private ArtifactContext getArtifactContext( IndexingContext context, String path )
+    {
+        File artifactFile = new File( context.getRepository(), path );
+        assertTrue( "file not exists " + artifactFile.getPath(), artifactFile.exists() );
+        return artifactContextProducer.getArtifactContext( context, artifactFile );
+    }
+
+    private int countHits( IndexingContext context, String artifactId )
+        throws Exception
+    {
+        IndexSearcher searcher = context.acquireIndexSearcher();
+        try
+        {
+            return searcher.search(
+                nexusIndexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression( artifactId ) ), null,
+                10 ).totalHits;
+        }
+        finally
+        {
+            context.releaseIndexSearcher( searcher );
+        }
+    }
+
+    @Test
+    public void testArtifactRemovedFromMemberIsRemovedFromMergedIndex()
+        throws Exception
+    {
+        IndexingContext member = createIndex( TEST_REPO_1, "org/apache/archiva/archiva-test/1.0/archiva-test-1.0.jar",
+                                              "org/apache/archiva/archiva-test/2.0/archiva-test-2.0.jar" );
+        createIndex( TEST_REPO_2, "org/apache/archiva/archiva-search/1.0/archiva-search-1.0.jar" );
+
+        IndexMergerRequest request =
+            new IndexMergerRequest( Arrays.asList( TEST_REPO_1, TEST_REPO_2 ), false, "test-group" );
+        request.mergedIndexDirectory( mergedIndexDirectory ).incremental( true );
+
+        IndexingContext merged = indexMerger.buildMergedIndex( request );
+        assertEquals( 2, countHits( merged, "archiva-test" ) );
+        assertEquals( 1, countHits( merged, "archiva-search" ) );
+
+        // member timestamps have a millisecond resolution
+        Thread.sleep( 10 );
+        nexusIndexer.deleteArtifactFromIndex(
+            getArtifactContext( member, "org/apache/archiva/archiva-test/2.0/archiva-test-2.0.jar" ), member );
+        member.updateTimestamp( true );
+        member.commit();
+        assertEquals( 1, countHits( member, "archiva-test" ) );
+
+        IndexingContext rebuilt = indexMerger.buildMergedIndex( request );
+        assertSame( merged, rebuilt );
+        assertEquals( 1, countHits( rebuilt, "archiva-test" ) );
+        assertEquals( 1, countHits( rebuilt, "archiva-search" ) );
+    }
+}
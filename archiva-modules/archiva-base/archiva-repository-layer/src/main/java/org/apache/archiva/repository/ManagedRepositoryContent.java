@@ -100,6 +100,23 @@ void deleteProject( String namespace, String projectId )
     Set<ArtifactReference> getRelatedArtifacts( ArtifactReference reference )
         throws ContentNotFoundException;
 
+    /**
+     * <p>
+     * Gather up all the artifacts of the project found in the directory of the versioned reference, whatever their
+     * version. For a SNAPSHOT, this returns the artifacts of every timestamped version with a single listing.
+     * </p>
+     * <p>
+     * <strong>NOTE:</strong> Some layouts (such as maven 1 "legacy") are not compatible with this query.
+     * </p>
+     *
+     * @param reference the versioned reference to work off of.
+     * @return the set of ArtifactReferences found in the version directory.
+     * @throws ContentNotFoundException if the versioned reference does not exist within the repository.
+     * @since 2.2.2
+     */
+    Set<ArtifactReference> getRelatedArtifacts( VersionedReference reference )
+        throws ContentNotFoundException;
+
     /**
      * <p>
      * Convenience method to get the repository (on disk) root directory.
@@ -0,0 +1,58 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per repository locks serializing the consumers run by a repository scan and the ones run on resource files, e.g.
+ * by the repository tasks of deployed files: both read and rewrite the same metadata files. A scan holds the lock
+ * for one file at a time and the locks are fair, so a resource file task waiting for it runs between two files of
+ * the scan instead of after the whole scan.
+ *
+ * @since 2.2.2
+ */
+public final class RepositoryConsumerLocks
+{
+    private static final ConcurrentMap<String, Lock> LOCKS = new ConcurrentHashMap<>();
+
+    private RepositoryConsumerLocks()
+    {
+        // no instances
+    }
+
+    public static Lock getLock( String repositoryId )
+    {
+        Lock lock = LOCKS.get( repositoryId );
+        if ( lock == null )
+        {
+            Lock newLock = new ReentrantLock( true );
+            lock = LOCKS.putIfAbsent( repositoryId, newLock );
+            if ( lock == null )
+            {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+}
@@ -42,10 +42,13 @@
 import javax.inject.Inject;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * RepositoryContentConsumerUtil
@@ -258,9 +261,8 @@ public List<InvalidRepositoryContentConsumer> getAvailableInvalidConsumers()
     /**
      * A convienence method to execute all of the active selected consumers for a
      * particular arbitrary file.
-     * NOTE: Make sure that there is no repository scanning task executing before invoking this so as to prevent
-     * the index writer/reader of the current index-content consumer executing from getting closed. For an example,
-     * see ArchivaDavResource#executeConsumers( File ).
+     * A scan of the same repository in progress is paused between two files while the consumers run, see
+     * {@link RepositoryConsumerLocks}.
      *
      * @param repository             the repository configuration to use.
      * @param localFile              the local file to execute the consumers against.
@@ -268,8 +270,26 @@ public List<InvalidRepositoryContentConsumer> getAvailableInvalidConsumers()
      */
     public void executeConsumers( ManagedRepository repository, File localFile, boolean updateRelatedArtifacts )
         throws RepositoryAdminException
+    {
+        executeConsumers( repository, Collections.singletonList( localFile ), updateRelatedArtifacts );
+    }
+
+    /**
+     * Executes the active selected consumers on several files within a single begin/complete scan lifecycle, so
+     * consumers can share work between the files, e.g. the metadata of a project is updated once.
+     *
+     * @param repository             the repository configuration to use.
+     * @param localFiles             the local files to execute the consumers against.
+     * @param updateRelatedArtifacts TODO
+     * @since 2.2.2
+     */
+    public void executeConsumers( ManagedRepository repository, Collection<File> localFiles,
+                                  boolean updateRelatedArtifacts )
+        throws RepositoryAdminException
     {
         List<KnownRepositoryContentConsumer> selectedKnownConsumers = null;
+        Lock consumerLock = RepositoryConsumerLocks.getLock( repository.getId() );
+        consumerLock.lock();
         // Run the repository consumers
         try
         {
@@ -300,23 +320,28 @@ public void executeConsumers( ManagedRepository repository, File localFile, bool
 
             // yuck. In case you can't read this, it says
             // "process the file if the consumer has it in the includes list, and not in the excludes list"
-            BaseFile baseFile = new BaseFile( repository.getLocation(), localFile );
             ConsumerWantsFilePredicate predicate = new ConsumerWantsFilePredicate( repository );
-            predicate.setBasefile( baseFile );
             predicate.setCaseSensitive( false );
 
             ConsumerProcessFileClosure closure = new ConsumerProcessFileClosure();
-            closure.setBasefile( baseFile );
             closure.setExecuteOnEntireRepo( false );
 
             Closure processIfWanted = IfClosure.getInstance( predicate, closure );
 
-            CollectionUtils.forAllDo( selectedKnownConsumers, processIfWanted );
-
-            if ( predicate.getWantedFileCount() <= 0 )
+            for ( File localFile : localFiles )
             {
-                // Nothing known processed this file.  It is invalid!
-                CollectionUtils.forAllDo( selectedInvalidConsumers, closure );
+                BaseFile baseFile = new BaseFile( repository.getLocation(), localFile );
+                // also resets the wanted file count
+                predicate.setBasefile( baseFile );
+                closure.setBasefile( baseFile );
+
+                CollectionUtils.forAllDo( selectedKnownConsumers, processIfWanted );
+
+                if ( predicate.getWantedFileCount() <= 0 )
+                {
+                    // Nothing known processed this file.  It is invalid!
+                    CollectionUtils.forAllDo( selectedInvalidConsumers, closure );
+                }
             }
 
             TriggerScanCompletedClosure scanCompletedClosure = new TriggerScanCompletedClosure( repository, false );
@@ -330,6 +355,7 @@ public void executeConsumers( ManagedRepository repository, File localFile, bool
                         CollectionUtils.forAllDo( availableInvalidConsumers, triggerCompleteScan );
             */
             releaseSelectedKnownConsumers( selectedKnownConsumers );
+            consumerLock.unlock();
         }
     }
 
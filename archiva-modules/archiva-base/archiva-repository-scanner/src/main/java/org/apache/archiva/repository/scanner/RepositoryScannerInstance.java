@@ -40,6 +40,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * RepositoryScannerInstance
@@ -73,6 +74,11 @@
 
     private Map<String, Long> consumerCounts;
 
+    /**
+     * held for each file only, so that the resource file tasks of the repository run between two files
+     */
+    private Lock consumerLock;
+
     public RepositoryScannerInstance( ManagedRepository repository,
                                       List<KnownRepositoryContentConsumer> knownConsumerList,
                                       List<InvalidRepositoryContentConsumer> invalidConsumerList )
@@ -97,8 +103,17 @@ public RepositoryScannerInstance( ManagedRepository repository,
         Closure triggerBeginScan =
             new TriggerBeginScanClosure( repository, new Date( System.currentTimeMillis() ), true );
 
-        CollectionUtils.forAllDo( knownConsumerList, triggerBeginScan );
-        CollectionUtils.forAllDo( invalidConsumerList, triggerBeginScan );
+        consumerLock = RepositoryConsumerLocks.getLock( repository.getId() );
+        consumerLock.lock();
+        try
+        {
+            CollectionUtils.forAllDo( knownConsumerList, triggerBeginScan );
+            CollectionUtils.forAllDo( invalidConsumerList, triggerBeginScan );
+        }
+        finally
+        {
+            consumerLock.unlock();
+        }
 
         if ( SystemUtils.IS_OS_WINDOWS )
         {
@@ -160,12 +175,20 @@ public void directoryWalkStep( int percentage, File file )
         consumerWantsFile.setBasefile( basefile );
 
         Closure processIfWanted = IfClosure.getInstance( consumerWantsFile, consumerProcessFile );
-        CollectionUtils.forAllDo( this.knownConsumers, processIfWanted );
+        consumerLock.lock();
+        try
+        {
+            CollectionUtils.forAllDo( this.knownConsumers, processIfWanted );
 
-        if ( consumerWantsFile.getWantedFileCount() <= 0 )
+            if ( consumerWantsFile.getWantedFileCount() <= 0 )
+            {
+                // Nothing known processed this file.  It is invalid!
+                CollectionUtils.forAllDo( this.invalidConsumers, consumerProcessFile );
+            }
+        }
+        finally
         {
-            // Nothing known processed this file.  It is invalid!
-            CollectionUtils.forAllDo( this.invalidConsumers, consumerProcessFile );
+            consumerLock.unlock();
         }
     }
 
@@ -173,8 +196,16 @@ public void directoryWalkStep( int percentage, File file )
     public void directoryWalkFinished()
     {
         TriggerScanCompletedClosure scanCompletedClosure = new TriggerScanCompletedClosure( repository, true );
-        CollectionUtils.forAllDo( knownConsumers, scanCompletedClosure );
-        CollectionUtils.forAllDo( invalidConsumers, scanCompletedClosure );
+        consumerLock.lock();
+        try
+        {
+            CollectionUtils.forAllDo( knownConsumers, scanCompletedClosure );
+            CollectionUtils.forAllDo( invalidConsumers, scanCompletedClosure );
+        }
+        finally
+        {
+            consumerLock.unlock();
+        }
 
         stats.setConsumerTimings( consumerTimings );
         stats.setConsumerCounts( consumerCounts );
@@ -333,6 +333,40 @@ public void testExecution()
         invalidControl.verify();
     }
 
+    @Test
+    public void testExecutionOnSeveralFilesInOneScan()
+        throws Exception
+    {
+        IMocksControl knownControl = createNiceControl();
+
+        RepositoryContentConsumers consumers = lookupRepositoryConsumers();
+        KnownRepositoryContentConsumer knownConsumer = knownControl.createMock( KnownRepositoryContentConsumer.class );
+
+        consumers.setApplicationContext(
+            new MockApplicationContext( Collections.singletonList( knownConsumer ), null ) );
+        consumers.setSelectedKnownConsumers( Collections.singletonList( knownConsumer ) );
+        consumers.setSelectedInvalidConsumers( Collections.<InvalidRepositoryContentConsumer>emptyList() );
+
+        ManagedRepository repo = createRepository( "id", "name", new File( "target/test-repo" ) );
+
+        Date startTime = new Date( System.currentTimeMillis() );
+        startTime.setTime( 12345678 );
+
+        // one lifecycle for both files
+        knownConsumer.beginScan( repo, startTime, false );
+        expect( knownConsumer.getIncludes() ).andReturn( Collections.singletonList( "**/*.txt" ) ).anyTimes();
+        knownConsumer.processFile( _OS( "path/to/first-file.txt" ), false );
+        knownConsumer.processFile( _OS( "path/to/second-file.txt" ), false );
+        knownConsumer.completeScan( false );
+        knownControl.replay();
+
+        consumers.executeConsumers( repo, Arrays.asList( new File( "target/test-repo/path/to/first-file.txt" ),
+                                                         new File( "target/test-repo/path/to/second-file.txt" ) ),
+                                    true );
+
+        knownControl.verify();
+    }
+
     /**
      * Create an OS specific version of the filepath.
      * Provide path in unix "/" format.
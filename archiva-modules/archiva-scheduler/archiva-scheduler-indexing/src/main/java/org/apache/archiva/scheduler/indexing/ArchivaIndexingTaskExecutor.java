@@ -26,14 +26,22 @@
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
 import org.apache.archiva.redback.components.taskqueue.Task;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutionException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutor;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.maven.index.ArtifactContext;
-import org.apache.maven.index.ArtifactContextProducer;
+import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.FlatSearchRequest;
 import org.apache.maven.index.FlatSearchResponse;
+import org.apache.maven.index.IndexerEngine;
 import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.NexusIndexer;
 import org.apache.maven.index.context.IndexingContext;
@@ -46,8 +54,16 @@
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * ArchivaIndexingTaskExecutor Executes all indexing tasks. Adding, updating and removing artifacts from the index are
@@ -62,7 +78,11 @@
 
     private IndexPacker indexPacker;
 
-    private ArtifactContextProducer artifactContextProducer;
+    @Inject
+    private ArtifactContextExtractor artifactContextExtractor;
+
+    @Inject
+    private CoordinatesIndexManager coordinatesIndexManager;
 
     @Inject
     private PlexusSisuBridge plexusSisuBridge;
@@ -70,20 +90,43 @@
     @Inject
     private ManagedRepositoryAdmin managedRepositoryAdmin;
 
+    @Inject
+    @Named( value = "taskQueue#indexing" )
+    private TaskQueue indexingQueue;
+
     private NexusIndexer nexusIndexer;
 
+    private IndexerEngine indexerEngine;
+
+    /**
+     * maximum number of queued {@link ArtifactIndexingTask.Action#ADD} tasks of the same repository indexed together
+     * (a value lower than 2 disables bulk indexing)
+     *
+     * @since 2.2.2
+     */
+    private int bulkBatchSize = Integer.getInteger( "archiva.indexing.bulk.batchSize", 100 );
+
+    /**
+     * time in ms a batch stays open waiting for more tasks before being flushed in the index
+     *
+     * @since 2.2.2
+     */
+    private long bulkFlushInterval = Long.getLong( "archiva.indexing.bulk.flushInterval", 100 );
+
     @PostConstruct
     public void initialize()
         throws PlexusSisuBridgeException
     {
         log.info( "Initialized {}", this.getClass().getName() );
 
-        artifactContextProducer = plexusSisuBridge.lookup( ArtifactContextProducer.class );
-
         indexPacker = plexusSisuBridge.lookup( IndexPacker.class, "default" );
 
         nexusIndexer = plexusSisuBridge.lookup( NexusIndexer.class );
 
+        indexerEngine = plexusSisuBridge.lookup( IndexerEngine.class );
+
+        // the existence lookup is a single BooleanQuery so a batch cannot exceed its clause limit
+        bulkBatchSize = Math.min( bulkBatchSize, BooleanQuery.getMaxClauseCount() );
     }
 
     /**
@@ -120,6 +163,11 @@ public void executeTask( Task task )
             }
             log.debug( "Finishing indexing task on repo: {}", repository.getId() );
             finishIndexingTask( indexingTask, repository, context );
+            coordinatesIndexManager.buildCoordinatesIndex( context );
+        }
+        else if ( isBulkIndexable( indexingTask ) && bulkBatchSize > 1 )
+        {
+            executeBulkTask( indexingTask );
         }
         else
         {
@@ -154,18 +202,10 @@ public void executeTask( Task task )
                 }
                 else
                 {
-                    ArtifactContext ac = artifactContextProducer.getArtifactContext( context, artifactFile );
+                    ArtifactContext ac = artifactContextExtractor.getArtifactContext( context, artifactFile );
 
                     if ( ac != null )
                     {
-                        // MRM-1779 pom must be indexed too
-                        // TODO make that configurable?
-                        if ( artifactFile.getPath().endsWith( ".pom" ) )
-                        {
-                            ac.getArtifactInfo().fextension = "pom";
-                            ac.getArtifactInfo().packaging = "pom";
-                            ac.getArtifactInfo().classifier = "pom";
-                        }
                         if ( indexingTask.getAction().equals( ArtifactIndexingTask.Action.ADD ) )
                         {
                             //IndexSearcher s = context.getIndexSearcher();
@@ -223,6 +263,7 @@ public void executeTask( Task task )
                         ? indexingTask.getResourceFile().getPath()
                         : " none " );
                     finishIndexingTask( indexingTask, repository, context );
+                    coordinatesIndexManager.scheduleCoordinatesIndex( context );
                 }
             }
             catch ( IOException e )
@@ -236,6 +277,246 @@ public void executeTask( Task task )
 
     }
 
+    /**
+     * a task can be indexed in bulk if it adds a single file to the index, either queued by a repository scan or for
+     * a single resource
+     */
+    private boolean isBulkIndexable( ArtifactIndexingTask indexingTask )
+    {
+        return ArtifactIndexingTask.Action.ADD.equals( indexingTask.getAction() )
+            && indexingTask.getResourceFile() != null;
+    }
+
+    /**
+     * Index the given task together with the {@link ArtifactIndexingTask.Action#ADD} tasks queued for the same
+     * repository: artifact contexts are extracted in parallel by the {@link ArtifactContextExtractor}, existing
+     * documents are found with one query, documents are written in one IndexWriter batch by this thread and the
+     * context is committed once for the whole batch. If the batch is not part of a repository scan the index is
+     * optimized and packed once too.
+     *
+     * @param indexingTask the task taken from the queue
+     * @throws TaskExecutionException
+     */
+    private void executeBulkTask( ArtifactIndexingTask indexingTask )
+        throws TaskExecutionException
+    {
+        ManagedRepository repository = indexingTask.getRepository();
+
+        Set<ArtifactIndexingTask> batch = drainBatch( indexingTask );
+
+        log.debug( "Bulk indexing {} artifacts in repository: {}", batch.size(), repository.getId() );
+
+        IndexingContext context = indexingTask.getContext();
+        // create context if not a repo scan request
+        if ( !indexingTask.isExecuteOnEntireRepo() )
+        {
+            try
+            {
+                context = managedRepositoryAdmin.createIndexContext( repository );
+            }
+            catch ( RepositoryAdminException e )
+            {
+                log.error( "Error occurred while creating context: " + e.getMessage() );
+                throw new TaskExecutionException( "Error occurred while creating context: " + e.getMessage(), e );
+            }
+        }
+
+        if ( context == null || context.getIndexDirectory() == null )
+        {
+            throw new TaskExecutionException( "Trying to index an artifact but the context is already closed" );
+        }
+
+        try
+        {
+            long start = System.currentTimeMillis();
+
+            List<File> artifactFiles = new ArrayList<>( batch.size() );
+            for ( ArtifactIndexingTask task : batch )
+            {
+                artifactFiles.add( task.getResourceFile() );
+            }
+
+            List<ArtifactContext> artifactContexts = new ArrayList<>( batch.size() );
+            for ( Future<ArtifactContext> future : artifactContextExtractor.submit( context, artifactFiles ) )
+            {
+                ArtifactContext ac = getExtracted( future );
+                if ( ac != null )
+                {
+                    artifactContexts.add( ac );
+                }
+            }
+
+            if ( !artifactContexts.isEmpty() )
+            {
+                Set<String> indexed = getIndexedUinfos( context, artifactContexts );
+
+                for ( ArtifactContext ac : artifactContexts )
+                {
+                    if ( indexed.contains( ac.getArtifactInfo().getUinfo() ) )
+                    {
+                        log.debug( "Updating artifact '{}' in index..", ac.getArtifactInfo() );
+                        indexerEngine.remove( context, ac );
+                    }
+                    else
+                    {
+                        log.debug( "Adding artifact '{}' to index..", ac.getArtifactInfo() );
+                    }
+                    indexerEngine.update( context, ac );
+                }
+
+                context.updateTimestamp();
+                context.commit();
+            }
+
+            log.info( "bulk indexed {} artifacts in repository: {}, time {} ms", artifactContexts.size(),
+                      repository.getId(), ( System.currentTimeMillis() - start ) );
+        }
+        catch ( IOException e )
+        {
+            log.error( "Error occurred while executing bulk indexing task '" + indexingTask + "': " + e.getMessage(),
+                       e );
+            throw new TaskExecutionException(
+                "Error occurred while executing bulk indexing task '" + indexingTask + "'", e );
+        }
+
+        // close the context if not a repo scan request
+        if ( !indexingTask.isExecuteOnEntireRepo() )
+        {
+            finishIndexingTask( indexingTask, repository, context );
+            coordinatesIndexManager.scheduleCoordinatesIndex( context );
+        }
+    }
+
+    private ArtifactContext getExtracted( Future<ArtifactContext> future )
+        throws TaskExecutionException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new TaskExecutionException( "Interrupted while extracting artifact context", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new TaskExecutionException( "Error occurred while extracting artifact context: "
+                                                  + e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+    /**
+     * Collect the tasks queued behind the given one which can be indexed with it. Draining stops at the first task of
+     * the same repository which cannot be part of the batch (other action or scan mode) so that ADD/DELETE/FINISH
+     * ordering is kept. The batch only waits for more tasks, at most {@link #bulkFlushInterval} ms, while tasks keep
+     * arriving: it is flushed as soon as a look at the queue brings nothing new, so a lone task is not delayed.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Set<ArtifactIndexingTask> drainBatch( ArtifactIndexingTask first )
+    {
+        Set<ArtifactIndexingTask> batch = new LinkedHashSet<>();
+        batch.add( first );
+
+        if ( indexingQueue == null )
+        {
+            return batch;
+        }
+
+        String repositoryId = first.getRepository().getId();
+        long flushTime = System.currentTimeMillis() + bulkFlushInterval;
+
+        while ( batch.size() < bulkBatchSize )
+        {
+            List<Task> drained = new ArrayList<>();
+            boolean blocked = false;
+            try
+            {
+                List<Task> queued = indexingQueue.getQueueSnapshot();
+                for ( Task queuedTask : queued )
+                {
+                    if ( !( queuedTask instanceof ArtifactIndexingTask ) )
+                    {
+                        continue;
+                    }
+                    ArtifactIndexingTask task = (ArtifactIndexingTask) queuedTask;
+                    if ( !repositoryId.equals( task.getRepository().getId() ) )
+                    {
+                        continue;
+                    }
+                    if ( !isBulkIndexable( task ) || task.isExecuteOnEntireRepo() != first.isExecuteOnEntireRepo() )
+                    {
+                        blocked = true;
+                        break;
+                    }
+                    drained.add( task );
+                    batch.add( task );
+                    if ( batch.size() >= bulkBatchSize )
+                    {
+                        break;
+                    }
+                }
+            }
+            catch ( TaskQueueException e )
+            {
+                // not possible with plexus-taskqueue implementation, ignore
+            }
+
+            if ( !drained.isEmpty() )
+            {
+                indexingQueue.removeAll( drained );
+            }
+
+            long remaining = flushTime - System.currentTimeMillis();
+            if ( blocked || drained.isEmpty() || remaining <= 0 )
+            {
+                break;
+            }
+            try
+            {
+                Thread.sleep( Math.min( remaining, 20 ) );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * search in one query which of the given artifacts are already present in the index
+     *
+     * @return the uinfo of the artifacts found in the index
+     */
+    private Set<String> getIndexedUinfos( IndexingContext context, List<ArtifactContext> artifactContexts )
+        throws IOException
+    {
+        BooleanQuery q = new BooleanQuery();
+        for ( ArtifactContext ac : artifactContexts )
+        {
+            q.add( new TermQuery( new Term( ArtifactInfo.UINFO, ac.getArtifactInfo().getUinfo() ) ),
+                   BooleanClause.Occur.SHOULD );
+        }
+
+        Set<String> uinfos = new HashSet<>();
+        IndexSearcher searcher = context.acquireIndexSearcher();
+        try
+        {
+            TopDocs topDocs = searcher.search( q, null, artifactContexts.size() );
+            for ( ScoreDoc scoreDoc : topDocs.scoreDocs )
+            {
+                uinfos.add( searcher.doc( scoreDoc.doc ).get( ArtifactInfo.UINFO ) );
+            }
+        }
+        finally
+        {
+            context.releaseIndexSearcher( searcher );
+        }
+        return uinfos;
+    }
+
     private void finishIndexingTask( ArtifactIndexingTask indexingTask, ManagedRepository repository,
                                      IndexingContext context )
         throws TaskExecutionException
@@ -272,6 +553,36 @@ public void setIndexPacker( IndexPacker indexPacker )
         this.indexPacker = indexPacker;
     }
 
+    public int getBulkBatchSize()
+    {
+        return bulkBatchSize;
+    }
+
+    public void setBulkBatchSize( int bulkBatchSize )
+    {
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
+    public long getBulkFlushInterval()
+    {
+        return bulkFlushInterval;
+    }
+
+    public void setBulkFlushInterval( long bulkFlushInterval )
+    {
+        this.bulkFlushInterval = bulkFlushInterval;
+    }
+
+    public TaskQueue getIndexingQueue()
+    {
+        return indexingQueue;
+    }
+
+    public void setIndexingQueue( TaskQueue indexingQueue )
+    {
+        this.indexingQueue = indexingQueue;
+    }
+
     public PlexusSisuBridge getPlexusSisuBridge()
     {
         return plexusSisuBridge;
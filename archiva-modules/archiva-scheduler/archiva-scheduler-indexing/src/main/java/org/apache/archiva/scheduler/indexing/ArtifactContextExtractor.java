@@ -0,0 +1,116 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
+import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactContextProducer;
+import org.apache.maven.index.context.IndexingContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Extraction stage of the indexing pipeline: opening artifacts to read class names, OSGi headers and pom data is
+ * CPU bound so {@link ArtifactContext} are produced on a bounded worker pool while the index itself is only written
+ * by the indexing task executor thread.
+ *
+ * @since 2.2.2
+ */
+@Service ( "artifactContextExtractor#indexing" )
+public class ArtifactContextExtractor
+{
+    @Inject
+    private PlexusSisuBridge plexusSisuBridge;
+
+    @Inject
+    @Named ( value = "threadPoolTaskExecutor#indexingExtraction" )
+    private AsyncTaskExecutor extractionExecutor;
+
+    private ArtifactContextProducer artifactContextProducer;
+
+    @PostConstruct
+    public void initialize()
+        throws PlexusSisuBridgeException
+    {
+        artifactContextProducer = plexusSisuBridge.lookup( ArtifactContextProducer.class );
+    }
+
+    /**
+     * Produce the {@link ArtifactContext} of an artifact file in the calling thread.
+     *
+     * @return the context or <code>null</code> if the file is not an artifact
+     */
+    public ArtifactContext getArtifactContext( IndexingContext context, File artifactFile )
+    {
+        ArtifactContext ac = artifactContextProducer.getArtifactContext( context, artifactFile );
+        // MRM-1779 pom must be indexed too
+        // TODO make that configurable?
+        if ( ac != null && artifactFile.getPath().endsWith( ".pom" ) )
+        {
+            ac.getArtifactInfo().fextension = "pom";
+            ac.getArtifactInfo().packaging = "pom";
+            ac.getArtifactInfo().classifier = "pom";
+        }
+        return ac;
+    }
+
+    /**
+     * Submit the extraction of the given files to the worker pool. The returned futures are in the same order as the
+     * files so the consumer can write documents in the order the tasks were queued. When the pool queue is full the
+     * extraction runs in the calling thread.
+     */
+    public List<Future<ArtifactContext>> submit( final IndexingContext context, Collection<File> artifactFiles )
+    {
+        List<Future<ArtifactContext>> futures = new ArrayList<>( artifactFiles.size() );
+        for ( final File artifactFile : artifactFiles )
+        {
+            futures.add( extractionExecutor.submit( new Callable<ArtifactContext>()
+            {
+                @Override
+                public ArtifactContext call()
+                {
+                    return getArtifactContext( context, artifactFile );
+                }
+            } ) );
+        }
+        return futures;
+    }
+
+    public AsyncTaskExecutor getExtractionExecutor()
+    {
+        return extractionExecutor;
+    }
+
+    public void setExtractionExecutor( AsyncTaskExecutor extractionExecutor )
+    {
+        this.extractionExecutor = extractionExecutor;
+    }
+}
@@ -0,0 +1,493 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Download of a remote file over HTTP with byte ranges: the file is split in chunks fetched in parallel and written
+ * at their offset in a <code>.part</code> file. The bytes received per chunk are recorded periodically in a
+ * <code>.part.state</code> file so an interrupted download is resumed where it stopped, as long as the remote file did
+ * not change (same ETag or Last-Modified and length). Range requests carry the validator in <code>If-Range</code>: a
+ * full response means the remote file changed during the download, which then restarts from scratch. Servers without
+ * range support get a plain single request download.
+ *
+ * @since 2.2.2
+ */
+public class ChunkedHttpDownloader
+{
+    private Logger log = LoggerFactory.getLogger( getClass() );
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * time in ms between two saves of the state of a download in progress
+     */
+    private static final long STATE_SAVE_INTERVAL = 10000;
+
+    private final Map<String, String> headers;
+
+    private final Proxy proxy;
+
+    private final int timeout;
+
+    private final int readTimeout;
+
+    private final int parallelChunks;
+
+    private final long chunkSize;
+
+    private final RemoteIndexDownloadProgress progress;
+
+    /**
+     * @param headers        headers added to every request (authentication, repository extra headers)
+     * @param proxy          proxy to use or {@link Proxy#NO_PROXY}
+     * @param timeout        connection timeout in ms
+     * @param readTimeout    read timeout in ms
+     * @param parallelChunks maximum number of chunks fetched at the same time
+     * @param chunkSize      size of a chunk in bytes
+     * @param progress       progress updated with the received bytes
+     */
+    public ChunkedHttpDownloader( Map<String, String> headers, Proxy proxy, int timeout, int readTimeout,
+                                  int parallelChunks, long chunkSize, RemoteIndexDownloadProgress progress )
+    {
+        this.headers = headers;
+        this.proxy = proxy;
+        this.timeout = timeout;
+        this.readTimeout = readTimeout;
+        this.parallelChunks = Math.max( 1, parallelChunks );
+        this.chunkSize = Math.max( BUFFER_SIZE, chunkSize );
+        this.progress = progress;
+    }
+
+    public void download( URL url, File target )
+        throws IOException
+    {
+        try
+        {
+            download( url, target, true );
+        }
+        catch ( RemoteFileChangedException e )
+        {
+            log.info( "{} changed during the download, restart it", url );
+            download( url, target, false );
+        }
+    }
+
+    private void download( URL url, File target, boolean resume )
+        throws IOException
+    {
+        HttpURLConnection head = openConnection( url, "HEAD" );
+        long length;
+        boolean acceptRanges;
+        String validator;
+        String ifRange;
+        try
+        {
+            checkResponse( url, head.getResponseCode() );
+            length = head.getContentLengthLong();
+            acceptRanges = "bytes".equalsIgnoreCase( head.getHeaderField( "Accept-Ranges" ) );
+            String etag = head.getHeaderField( "ETag" );
+            String lastModified = head.getHeaderField( "Last-Modified" );
+            validator = etag != null ? etag : lastModified;
+            // If-Range only accepts strong entity tags
+            ifRange = etag != null && !etag.startsWith( "W/" ) ? etag : lastModified;
+        }
+        finally
+        {
+            head.disconnect();
+        }
+
+        if ( length <= 0 || !acceptRanges )
+        {
+            log.debug( "no range support for {}, download it in one request", url );
+            downloadAtOnce( url, target, length );
+            return;
+        }
+
+        File partFile = new File( target.getPath() + ".part" );
+        File stateFile = new File( target.getPath() + ".part.state" );
+
+        int chunks = (int) ( ( length + chunkSize - 1 ) / chunkSize );
+        if ( !resume )
+        {
+            Files.deleteIfExists( stateFile.toPath() );
+        }
+        AtomicLongArray received = loadState( stateFile, partFile, validator, length, chunks );
+
+        progress.addExpectedBytes( length );
+        long resumed = 0;
+        for ( int i = 0; i < chunks; i++ )
+        {
+            resumed += received.get( i );
+        }
+        if ( resumed > 0 )
+        {
+            log.info( "resume download of {} at {}/{} bytes", url, resumed, length );
+            progress.addResumedBytes( resumed );
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool( Math.min( parallelChunks, chunks ) );
+        try (RandomAccessFile file = new RandomAccessFile( partFile, "rw" ))
+        {
+            file.setLength( length );
+            FileChannel channel = file.getChannel();
+
+            List<Future<Void>> futures = new ArrayList<>( chunks );
+            for ( int i = 0; i < chunks; i++ )
+            {
+                futures.add(
+                    executorService.submit( new ChunkDownload( url, channel, received, i, length, ifRange ) ) );
+            }
+
+            IOException failure = null;
+            for ( Future<Void> future : futures )
+            {
+                if ( failure instanceof RemoteFileChangedException )
+                {
+                    // the received bytes are useless
+                    future.cancel( true );
+                    continue;
+                }
+                try
+                {
+                    waitFor( future, channel, stateFile, validator, length, received );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    failure = new IOException( "download of " + url + " interrupted", e );
+                }
+                catch ( ExecutionException e )
+                {
+                    failure = e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException( e.getCause().getMessage(), e.getCause() );
+                }
+            }
+
+            channel.force( false );
+            if ( failure instanceof RemoteFileChangedException )
+            {
+                Files.deleteIfExists( stateFile.toPath() );
+                throw failure;
+            }
+            if ( failure != null )
+            {
+                saveState( stateFile, validator, length, received );
+                throw failure;
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+
+        Files.move( partFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        Files.deleteIfExists( stateFile.toPath() );
+    }
+
+    /**
+     * wait for a chunk, saving the state of the download meanwhile so that a killed download resumes from the last
+     * save
+     */
+    private void waitFor( Future<Void> future, FileChannel channel, File stateFile, String validator, long length,
+                          AtomicLongArray received )
+        throws InterruptedException, ExecutionException, IOException
+    {
+        while ( true )
+        {
+            try
+            {
+                future.get( STATE_SAVE_INTERVAL, TimeUnit.MILLISECONDS );
+                return;
+            }
+            catch ( TimeoutException e )
+            {
+                // the recorded bytes must be on disk
+                channel.force( false );
+                saveState( stateFile, validator, length, received );
+            }
+        }
+    }
+
+    private void downloadAtOnce( URL url, File target, long length )
+        throws IOException
+    {
+        if ( length > 0 )
+        {
+            progress.addExpectedBytes( length );
+        }
+        HttpURLConnection connection = openConnection( url, "GET" );
+        try
+        {
+            checkResponse( url, connection.getResponseCode() );
+            try (InputStream is = connection.getInputStream();
+                 OutputStream os = Files.newOutputStream( target.toPath() ))
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ( ( read = is.read( buffer ) ) != -1 )
+                {
+                    os.write( buffer, 0, read );
+                    progress.addDownloadedBytes( read );
+                }
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private class ChunkDownload
+        implements Callable<Void>
+    {
+        private final URL url;
+
+        private final FileChannel channel;
+
+        private final AtomicLongArray received;
+
+        private final int index;
+
+        private final long length;
+
+        private final String ifRange;
+
+        private ChunkDownload( URL url, FileChannel channel, AtomicLongArray received, int index, long length,
+                               String ifRange )
+        {
+            this.url = url;
+            this.channel = channel;
+            this.received = received;
+            this.index = index;
+            this.length = length;
+            this.ifRange = ifRange;
+        }
+
+        @Override
+        public Void call()
+            throws IOException
+        {
+            long chunkStart = index * chunkSize;
+            long end = Math.min( chunkStart + chunkSize, length ) - 1;
+            IOException failure = null;
+            for ( int attempt = 0; attempt < MAX_ATTEMPTS; attempt++ )
+            {
+                long start = chunkStart + received.get( index );
+                if ( start > end )
+                {
+                    return null;
+                }
+                try
+                {
+                    fetch( start, end );
+                    return null;
+                }
+                catch ( FileNotFoundException | RemoteFileChangedException e )
+                {
+                    throw e;
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "attempt {} of chunk {} of {} failed: {}", attempt + 1, index, url, e.getMessage() );
+                    failure = e;
+                }
+            }
+            throw failure;
+        }
+
+        private void fetch( long start, long end )
+            throws IOException
+        {
+            HttpURLConnection connection = openConnection( url, "GET" );
+            connection.setRequestProperty( "Range", "bytes=" + start + "-" + end );
+            if ( ifRange != null )
+            {
+                connection.setRequestProperty( "If-Range", ifRange );
+            }
+            try
+            {
+                int status = connection.getResponseCode();
+                checkResponse( url, status );
+                if ( status == HttpURLConnection.HTTP_OK && ifRange != null )
+                {
+                    throw new RemoteFileChangedException( url );
+                }
+                if ( status != HttpURLConnection.HTTP_PARTIAL )
+                {
+                    throw new IOException( "range request on " + url + " returned " + status );
+                }
+                try (InputStream is = connection.getInputStream())
+                {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    long position = start;
+                    int read;
+                    while ( position <= end && ( read = is.read( buffer ) ) != -1 )
+                    {
+                        read = (int) Math.min( read, end - position + 1 );
+                        ByteBuffer byteBuffer = ByteBuffer.wrap( buffer, 0, read );
+                        while ( byteBuffer.hasRemaining() )
+                        {
+                            position += channel.write( byteBuffer, position );
+                        }
+                        received.addAndGet( index, read );
+                        progress.addDownloadedBytes( read );
+                    }
+                    if ( position <= end )
+                    {
+                        throw new IOException( "connection closed at " + position + " reading " + url );
+                    }
+                }
+            }
+            finally
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection( URL url, String method )
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection( proxy );
+        connection.setRequestMethod( method );
+        connection.setConnectTimeout( timeout );
+        connection.setReadTimeout( readTimeout );
+        connection.setInstanceFollowRedirects( true );
+        for ( Map.Entry<String, String> header : headers.entrySet() )
+        {
+            connection.setRequestProperty( header.getKey(), header.getValue() );
+        }
+        return connection;
+    }
+
+    private void checkResponse( URL url, int status )
+        throws IOException
+    {
+        if ( status == HttpURLConnection.HTTP_NOT_FOUND )
+        {
+            throw new FileNotFoundException( "resource " + url + " does not exist" );
+        }
+        if ( status >= HttpURLConnection.HTTP_BAD_REQUEST )
+        {
+            throw new IOException( "request on " + url + " returned " + status );
+        }
+    }
+
+    /**
+     * @return bytes already received per chunk, all 0 if there is nothing to resume
+     */
+    private AtomicLongArray loadState( File stateFile, File partFile, String validator, long length, int chunks )
+        throws IOException
+    {
+        AtomicLongArray received = new AtomicLongArray( chunks );
+        if ( validator == null || !stateFile.exists() || !partFile.exists() )
+        {
+            Files.deleteIfExists( partFile.toPath() );
+            return received;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream( stateFile.toPath() ))
+        {
+            properties.load( is );
+        }
+        if ( !validator.equals( properties.getProperty( "validator" ) ) //
+            || !Long.toString( length ).equals( properties.getProperty( "length" ) ) //
+            || !Long.toString( chunkSize ).equals( properties.getProperty( "chunkSize" ) ) )
+        {
+            log.debug( "remote file changed since {} was written, restart the download", partFile );
+            Files.deleteIfExists( partFile.toPath() );
+            return received;
+        }
+        for ( int i = 0; i < chunks; i++ )
+        {
+            received.set( i, Long.parseLong( properties.getProperty( "chunk." + i, "0" ) ) );
+        }
+        return received;
+    }
+
+    private void saveState( File stateFile, String validator, long length, AtomicLongArray received )
+        throws IOException
+    {
+        if ( validator == null )
+        {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty( "validator", validator );
+        properties.setProperty( "length", Long.toString( length ) );
+        properties.setProperty( "chunkSize", Long.toString( chunkSize ) );
+        for ( int i = 0; i < received.length(); i++ )
+        {
+            properties.setProperty( "chunk." + i, Long.toString( received.get( i ) ) );
+        }
+        File tmp = new File( stateFile.getPath() + ".tmp" );
+        try (OutputStream os = Files.newOutputStream( tmp.toPath() ))
+        {
+            properties.store( os, "archiva remote index download state" );
+        }
+        Files.move( tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * a range request got the whole file: the remote file no longer matches the If-Range validator
+     */
+    private static class RemoteFileChangedException
+        extends IOException
+    {
+        private RemoteFileChangedException( URL url )
+        {
+            super( url + " changed since the download started" );
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact index of the <code>groupId:artifactId:version</code> coordinates of an indexing context, used for prefix
+ * autocompletion without going through the full Lucene documents.
+ * <p>
+ * The coordinates are stored as <code>groupId|artifactId|version|</code> keys, a prefix of the Lucene
+ * {@link ArtifactInfo#UINFO} terms, so that they are written in the order of the term dictionary while it is
+ * streamed and never have to be sorted on the heap. The file holds the keys as UTF-8 strings followed by their
+ * positions and is memory mapped: lookups are binary searches in the mapped file and do not load the keys on the
+ * heap.
+ * <pre>
+ * int magic, int count, long offsetsPosition, byte[] utf-8 keys, long[count + 1] positions
+ * </pre>
+ *
+ * @since 2.2.2
+ */
+public class CoordinatesIndex
+    implements Closeable
+{
+    public static final String FILE_NAME = "archiva-coordinates.idx";
+
+    private static final int MAGIC = 0x47415632;
+
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * a single mapping can not exceed 2 GB so bigger files are mapped in several segments
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * character following {@link #SEPARATOR}
+     */
+    private static final char AFTER_SEPARATOR = '}';
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int count;
+
+    private final long offsetsPosition;
+
+    /**
+     * reads hold the read lock so the segments are never unmapped under them
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private boolean closed;
+
+    private CoordinatesIndex( File file, long lastModified, MappedByteBuffer[] segments )
+        throws IOException
+    {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.segments = segments;
+        if ( segments.length == 0 || segments[0].capacity() < HEADER_SIZE || segments[0].getInt( 0 ) != MAGIC )
+        {
+            throw new IOException( "not a coordinates index file: " + file );
+        }
+        this.count = segments[0].getInt( 4 );
+        this.offsetsPosition = segments[0].getLong( 8 );
+    }
+
+    public static CoordinatesIndex open( File file )
+        throws IOException
+    {
+        long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+        {
+            long size = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ( ( size + SEGMENT_SIZE - 1 ) / SEGMENT_SIZE )];
+            for ( int i = 0; i < segments.length; i++ )
+            {
+                long position = i * SEGMENT_SIZE;
+                // the mapping stays valid once the channel is closed
+                segments[i] =
+                    channel.map( FileChannel.MapMode.READ_ONLY, position, Math.min( SEGMENT_SIZE, size - position ) );
+            }
+            return new CoordinatesIndex( file, lastModified, segments );
+        }
+    }
+
+    /**
+     * Stream the {@link ArtifactInfo#UINFO} terms of the live artifacts of the context and write their coordinates
+     * in the index file of the context index directory.
+     *
+     * @return the written file
+     */
+    public static File build( IndexingContext context )
+        throws IOException
+    {
+        File file = new File( context.getIndexDirectoryFile(), FILE_NAME );
+        IndexSearcher searcher = context.acquireIndexSearcher();
+        try (Writer writer = new Writer( file ))
+        {
+            IndexReader reader = searcher.getIndexReader();
+            TermEnum terms = reader.terms( new Term( ArtifactInfo.UINFO, "" ) );
+            TermDocs termDocs = reader.termDocs();
+            try
+            {
+                String previous = null;
+                do
+                {
+                    Term term = terms.term();
+                    if ( term == null || !ArtifactInfo.UINFO.equals( term.field() ) )
+                    {
+                        break;
+                    }
+                    // groupId|artifactId|version|classifier|extension, keep up to the third separator included:
+                    // the keys then follow the order of the terms and the classifiers of a version are contiguous
+                    String key = toKey( term.text() );
+                    if ( key == null || key.equals( previous ) )
+                    {
+                        continue;
+                    }
+                    // terms of deleted documents stay in the dictionary until the segments are merged
+                    termDocs.seek( terms );
+                    if ( termDocs.next() )
+                    {
+                        writer.add( key );
+                        previous = key;
+                    }
+                }
+                while ( terms.next() );
+            }
+            finally
+            {
+                termDocs.close();
+                terms.close();
+            }
+            writer.commit();
+        }
+        finally
+        {
+            context.releaseIndexSearcher( searcher );
+        }
+        return file;
+    }
+
+    /**
+     * Write the given <code>groupId:artifactId:version</code> coordinates, sorting them in memory: meant for small
+     * sets, {@link #build(IndexingContext)} streams the coordinates of a context.
+     */
+    public static void write( File file, Collection<String> coordinates )
+        throws IOException
+    {
+        SortedSet<String> keys = new TreeSet<>();
+        for ( String coordinate : coordinates )
+        {
+            keys.add( coordinate.replace( ':', SEPARATOR ) + SEPARATOR );
+        }
+        try (Writer writer = new Writer( file ))
+        {
+            for ( String key : keys )
+            {
+                writer.add( key );
+            }
+            writer.commit();
+        }
+    }
+
+    private static String toKey( String uinfo )
+    {
+        int separator = -1;
+        for ( int i = 0; i < 3; i++ )
+        {
+            separator = uinfo.indexOf( SEPARATOR, separator + 1 );
+            if ( separator < 0 )
+            {
+                return null;
+            }
+        }
+        return uinfo.substring( 0, separator + 1 );
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Complete the given prefix up to the next coordinate level: a prefix without ':' returns groupIds,
+     * <code>groupId:</code> returns <code>groupId:artifactId</code> and <code>groupId:artifactId:</code> returns the
+     * full coordinates.
+     *
+     * @param prefix the beginning of the coordinates
+     * @param limit  maximum number of completions
+     * @return sorted distinct completions, empty once the index is closed
+     */
+    public Collection<String> complete( String prefix, int limit )
+    {
+        if ( limit <= 0 || count == 0 )
+        {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try
+        {
+            if ( closed )
+            {
+                return Collections.emptyList();
+            }
+            String keyPrefix = prefix.replace( ':', SEPARATOR );
+            SortedSet<String> completions = new TreeSet<>();
+            int index = lowerBound( keyPrefix );
+            while ( index < count && completions.size() < limit )
+            {
+                String key = get( index );
+                if ( !key.startsWith( keyPrefix ) )
+                {
+                    break;
+                }
+                // keys end with a separator
+                int separator = key.indexOf( SEPARATOR, keyPrefix.length() );
+                if ( separator == key.length() - 1 )
+                {
+                    completions.add( key.substring( 0, separator ).replace( SEPARATOR, ':' ) );
+                    index++;
+                }
+                else
+                {
+                    String completion = key.substring( 0, separator );
+                    completions.add( completion.replace( SEPARATOR, ':' ) );
+                    // skips every key starting with the same completion
+                    index = lowerBound( completion + AFTER_SEPARATOR );
+                }
+            }
+            return completions;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unmap the file: the index must not be used anymore, typically once it has been replaced by a rebuilt one.
+     */
+    @Override
+    public void close()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            for ( MappedByteBuffer segment : segments )
+            {
+                unmap( segment );
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * a mapping is otherwise only released when the buffer is garbage collected, which keeps the replaced files
+     * mapped and undeletable on some platforms
+     */
+    private static void unmap( MappedByteBuffer buffer )
+    {
+        try
+        {
+            Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+            cleanerMethod.setAccessible( true );
+            Object cleaner = cleanerMethod.invoke( buffer );
+            if ( cleaner != null )
+            {
+                cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+            }
+        }
+        catch ( Exception e )
+        {
+            // not supported by this jvm, the mapping is released with the buffer
+        }
+    }
+
+    /**
+     * @return index of the first key greater or equal to the given one
+     */
+    private int lowerBound( String key )
+    {
+        int low = 0;
+        int high = count;
+        while ( low < high )
+        {
+            int middle = ( low + high ) >>> 1;
+            if ( get( middle ).compareTo( key ) < 0 )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String get( int index )
+    {
+        long start = readLong( offsetsPosition + index * 8L );
+        long end = readLong( offsetsPosition + ( index + 1 ) * 8L );
+        byte[] bytes = new byte[(int) ( end - start )];
+        read( start, bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private long readLong( long position )
+    {
+        byte[] bytes = new byte[8];
+        read( position, bytes );
+        return ByteBuffer.wrap( bytes ).getLong();
+    }
+
+    private void read( long position, byte[] bytes )
+    {
+        int done = 0;
+        while ( done < bytes.length )
+        {
+            long current = position + done;
+            ByteBuffer segment = segments[(int) ( current / SEGMENT_SIZE )].duplicate();
+            segment.position( (int) ( current % SEGMENT_SIZE ) );
+            int length = Math.min( bytes.length - done, segment.remaining() );
+            segment.get( bytes, done, length );
+            done += length;
+        }
+    }
+
+    /**
+     * Writes sorted keys in a temporary file then moves it in place so readers never see a partial file. The
+     * positions are spooled in a second temporary file and appended once all the keys are written.
+     */
+    private static class Writer
+        implements Closeable
+    {
+        private final File file;
+
+        private final File tmp;
+
+        private final File positionsTmp;
+
+        private final DataOutputStream out;
+
+        private final DataOutputStream positions;
+
+        private long position = HEADER_SIZE;
+
+        private int count;
+
+        private boolean committed;
+
+        Writer( File file )
+            throws IOException
+        {
+            this.file = file;
+            this.tmp = new File( file.getPath() + ".tmp" );
+            this.positionsTmp = new File( file.getPath() + ".positions.tmp" );
+            this.out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( tmp.toPath() ) ) );
+            this.positions =
+                new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( positionsTmp.toPath() ) ) );
+            // header completed on commit
+            out.writeInt( MAGIC );
+            out.writeInt( 0 );
+            out.writeLong( 0 );
+            positions.writeLong( position );
+        }
+
+        void add( String key )
+            throws IOException
+        {
+            byte[] bytes = key.getBytes( StandardCharsets.UTF_8 );
+            out.write( bytes );
+            position += bytes.length;
+            positions.writeLong( position );
+            count++;
+        }
+
+        void commit()
+            throws IOException
+        {
+            positions.close();
+            Files.copy( positionsTmp.toPath(), out );
+            out.close();
+            try (FileChannel channel = FileChannel.open( tmp.toPath(), StandardOpenOption.WRITE ))
+            {
+                ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+                header.putInt( MAGIC ).putInt( count ).putLong( position ).flip();
+                channel.write( header, 0 );
+            }
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            committed = true;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            positions.close();
+            out.close();
+            Files.deleteIfExists( positionsTmp.toPath() );
+            if ( !committed )
+            {
+                Files.deleteIfExists( tmp.toPath() );
+            }
+        }
+    }
+}
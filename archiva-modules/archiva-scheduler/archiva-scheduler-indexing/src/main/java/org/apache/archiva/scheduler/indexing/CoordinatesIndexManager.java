@@ -0,0 +1,52 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.index.context.IndexingContext;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains the {@link CoordinatesIndex} of the indexing contexts.
+ *
+ * @since 2.2.2
+ */
+public interface CoordinatesIndexManager
+{
+    /**
+     * (re)build the coordinates index of the context from its Lucene index
+     */
+    void buildCoordinatesIndex( IndexingContext context );
+
+    /**
+     * Rebuild the coordinates index of the context a while later, requests made in the meantime for the same context
+     * are served by the same build. Used after changes of a few artifacts so they do not each walk the whole index.
+     */
+    void scheduleCoordinatesIndex( IndexingContext context );
+
+    /**
+     * @param contextIds ids of the indexing contexts to search in
+     * @param prefix     beginning of <code>groupId:artifactId:version</code>
+     * @param limit      maximum number of completions
+     * @return sorted distinct completions of the prefix in the given contexts
+     */
+    List<String> complete( Collection<String> contextIds, String prefix, int limit );
+}
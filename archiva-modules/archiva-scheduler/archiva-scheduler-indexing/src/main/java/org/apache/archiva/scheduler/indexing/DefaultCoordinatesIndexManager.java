@@ -0,0 +1,235 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
+import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
+import org.apache.maven.index.NexusIndexer;
+import org.apache.maven.index.context.IndexingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the mapped {@link CoordinatesIndex} per indexing context id, reopening the file when it has been rewritten.
+ *
+ * @since 2.2.2
+ */
+@Service ( "coordinatesIndexManager#default" )
+public class DefaultCoordinatesIndexManager
+    implements CoordinatesIndexManager
+{
+    private Logger log = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private PlexusSisuBridge plexusSisuBridge;
+
+    private NexusIndexer nexusIndexer;
+
+    private Map<String, CoordinatesIndex> coordinatesIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * time in ms a scheduled rebuild waits for more changes, 0 to rebuild at once
+     */
+    private long rebuildDelay = Long.getLong( "archiva.indexing.coordinates.rebuildDelay", 30000 );
+
+    /**
+     * ids of the contexts with a rebuild scheduled and not started yet
+     */
+    private final Set<String> scheduledContextIds =
+        Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private ScheduledExecutorService rebuildExecutor;
+
+    @PostConstruct
+    public void initialize()
+        throws PlexusSisuBridgeException
+    {
+        nexusIndexer = plexusSisuBridge.lookup( NexusIndexer.class );
+
+        rebuildExecutor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "coordinates-index-rebuild" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        rebuildExecutor.shutdownNow();
+        for ( CoordinatesIndex coordinatesIndex : coordinatesIndexes.values() )
+        {
+            coordinatesIndex.close();
+        }
+        coordinatesIndexes.clear();
+    }
+
+    @Override
+    public void scheduleCoordinatesIndex( IndexingContext context )
+    {
+        final String contextId = context.getId();
+        if ( rebuildDelay <= 0 )
+        {
+            buildCoordinatesIndex( context );
+            return;
+        }
+        if ( !scheduledContextIds.add( contextId ) )
+        {
+            // the scheduled rebuild will see this change too
+            return;
+        }
+        rebuildExecutor.schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // changes made from now on schedule a new rebuild
+                scheduledContextIds.remove( contextId );
+                IndexingContext current = nexusIndexer.getIndexingContexts().get( contextId );
+                if ( current != null )
+                {
+                    buildCoordinatesIndex( current );
+                }
+            }
+        }, rebuildDelay, TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public synchronized void buildCoordinatesIndex( IndexingContext context )
+    {
+        try
+        {
+            long start = System.currentTimeMillis();
+            File file = CoordinatesIndex.build( context );
+            CoordinatesIndex coordinatesIndex = CoordinatesIndex.open( file );
+            replace( context.getId(), coordinatesIndex );
+            log.debug( "coordinates index of {} built with {} entries in {} ms", context.getId(),
+                       coordinatesIndex.size(), System.currentTimeMillis() - start );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "fail to build coordinates index of {}: {}", context.getId(), e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public List<String> complete( Collection<String> contextIds, String prefix, int limit )
+    {
+        SortedSet<String> completions = new TreeSet<>();
+        for ( String contextId : contextIds )
+        {
+            CoordinatesIndex coordinatesIndex = getCoordinatesIndex( contextId );
+            if ( coordinatesIndex != null )
+            {
+                completions.addAll( coordinatesIndex.complete( prefix, limit ) );
+            }
+        }
+        List<String> result = new ArrayList<>( Math.min( limit, completions.size() ) );
+        for ( String completion : completions )
+        {
+            if ( result.size() >= limit )
+            {
+                break;
+            }
+            result.add( completion );
+        }
+        return result;
+    }
+
+    public long getRebuildDelay()
+    {
+        return rebuildDelay;
+    }
+
+    public void setRebuildDelay( long rebuildDelay )
+    {
+        this.rebuildDelay = rebuildDelay;
+    }
+
+    private CoordinatesIndex getCoordinatesIndex( String contextId )
+    {
+        IndexingContext context = nexusIndexer.getIndexingContexts().get( contextId );
+        if ( context == null )
+        {
+            replace( contextId, null );
+            return null;
+        }
+        File file = new File( context.getIndexDirectoryFile(), CoordinatesIndex.FILE_NAME );
+        CoordinatesIndex coordinatesIndex = coordinatesIndexes.get( contextId );
+        if ( coordinatesIndex != null && coordinatesIndex.getLastModified() == file.lastModified() )
+        {
+            return coordinatesIndex;
+        }
+        if ( !file.exists() )
+        {
+            return null;
+        }
+        try
+        {
+            coordinatesIndex = CoordinatesIndex.open( file );
+            replace( contextId, coordinatesIndex );
+            return coordinatesIndex;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "fail to open coordinates index {}: {}", file, e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * unmap the replaced index once the completions running on it are done
+     */
+    private void replace( String contextId, CoordinatesIndex coordinatesIndex )
+    {
+        CoordinatesIndex previous = coordinatesIndex == null
+            ? coordinatesIndexes.remove( contextId )
+            : coordinatesIndexes.put( contextId, coordinatesIndex );
+        if ( previous != null && previous != coordinatesIndex )
+        {
+            previous.close();
+        }
+    }
+}
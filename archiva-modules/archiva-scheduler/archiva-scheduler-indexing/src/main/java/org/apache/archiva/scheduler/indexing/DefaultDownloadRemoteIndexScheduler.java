@@ -49,8 +49,11 @@
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -89,6 +92,9 @@
     @Inject
     private MavenIndexerUtils mavenIndexerUtils;
 
+    @Inject
+    private CoordinatesIndexManager coordinatesIndexManager;
+
     private NexusIndexer nexusIndexer;
 
     private IndexUpdater indexUpdater;
@@ -98,6 +104,21 @@
     // store ids about currently running remote download : updated in DownloadRemoteIndexTask
     private List<String> runningRemoteDownloadIds = new CopyOnWriteArrayList<String>();
 
+    // progress of currently running remote download : updated in DownloadRemoteIndexTask
+    private Map<String, RemoteIndexDownloadProgress> runningRemoteDownloads = new ConcurrentHashMap<>();
+
+    /**
+     * number of chunks of a remote index file downloaded in parallel (0 disables chunked downloads)
+     *
+     * @since 2.2.2
+     */
+    private int parallelChunks = Integer.getInteger( "archiva.remoteIndex.download.parallelChunks", 4 );
+
+    /**
+     * @since 2.2.2
+     */
+    private long chunkSize = Long.getLong( "archiva.remoteIndex.download.chunkSize", 8 * 1024 * 1024 );
+
     @PostConstruct
     public void startup()
         throws ArchivaException, RepositoryAdminException, PlexusSisuBridgeException, IOException,
@@ -184,14 +205,17 @@ public void scheduleDownloadRemote( String repositoryId, boolean now, boolean fu
                 new DownloadRemoteIndexTaskRequest().setRemoteRepository( remoteRepository ).setNetworkProxy(
                     networkProxy ).setFullDownload( fullDownload ).setWagonFactory(
                     wagonFactory ).setRemoteRepositoryAdmin( remoteRepositoryAdmin ).setIndexUpdater(
-                    indexUpdater ).setIndexPacker( this.indexPacker );
+                    indexUpdater ).setIndexPacker( this.indexPacker ).setParallelChunks(
+                    this.parallelChunks ).setChunkSize( this.chunkSize ).setCoordinatesIndexManager(
+                    this.coordinatesIndexManager );
 
             if ( now )
             {
                 log.info( "schedule download remote index for repository {}", remoteRepository.getId() );
                 // do it now
                 taskScheduler.schedule(
-                    new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds ),
+                    new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds,
+                                                  this.runningRemoteDownloads ),
                     new Date() );
             }
             else
@@ -202,7 +226,8 @@ public void scheduleDownloadRemote( String repositoryId, boolean now, boolean fu
                 {
                     CronTrigger cronTrigger = new CronTrigger( remoteRepository.getCronExpression() );
                     taskScheduler.schedule(
-                        new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds ),
+                        new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds,
+                                                  this.runningRemoteDownloads ),
                         cronTrigger );
                 }
                 catch ( IllegalArgumentException e )
@@ -216,7 +241,8 @@ public void scheduleDownloadRemote( String repositoryId, boolean now, boolean fu
                         "remote repository {} configured with downloadRemoteIndexOnStartup schedule now a download",
                         remoteRepository.getId() );
                     taskScheduler.schedule(
-                        new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds ),
+                        new DownloadRemoteIndexTask( downloadRemoteIndexTaskRequest, this.runningRemoteDownloadIds,
+                                                  this.runningRemoteDownloads ),
                         new Date() );
                 }
             }
@@ -244,4 +270,30 @@ public List<String> getRunningRemoteDownloadIds()
     {
         return runningRemoteDownloadIds;
     }
+
+    @Override
+    public List<RemoteIndexDownloadProgress> getRunningRemoteDownloads()
+    {
+        return new ArrayList<>( runningRemoteDownloads.values() );
+    }
+
+    public int getParallelChunks()
+    {
+        return parallelChunks;
+    }
+
+    public void setParallelChunks( int parallelChunks )
+    {
+        this.parallelChunks = parallelChunks;
+    }
+
+    public long getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public void setChunkSize( long chunkSize )
+    {
+        this.chunkSize = chunkSize;
+    }
 }
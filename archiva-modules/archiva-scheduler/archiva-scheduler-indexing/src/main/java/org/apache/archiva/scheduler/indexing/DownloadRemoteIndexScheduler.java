@@ -30,4 +30,10 @@ void scheduleDownloadRemote( String repositoryId, boolean now, boolean fullDownl
         throws DownloadRemoteIndexException;
 
     List<String> getRunningRemoteDownloadIds();
+
+    /**
+     * @return progress of the remote index downloads currently running
+     * @since 2.2.2
+     */
+    List<RemoteIndexDownloadProgress> getRunningRemoteDownloads();
 }
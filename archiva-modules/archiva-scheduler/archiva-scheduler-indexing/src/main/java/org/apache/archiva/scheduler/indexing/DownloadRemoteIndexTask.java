@@ -18,6 +18,7 @@
  * under the License.
  */
 
+import com.google.common.io.BaseEncoding;
 import org.apache.archiva.admin.model.RepositoryAdminException;
 import org.apache.archiva.admin.model.beans.NetworkProxy;
 import org.apache.archiva.admin.model.beans.RemoteRepository;
@@ -26,6 +27,7 @@
 import org.apache.archiva.proxy.common.WagonFactoryException;
 import org.apache.archiva.proxy.common.WagonFactoryRequest;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.updater.IndexUpdateRequest;
@@ -53,11 +55,17 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.Proxy;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Olivier Lamy
@@ -82,10 +90,33 @@
 
     private IndexUpdater indexUpdater;
 
+    private Map<String, RemoteIndexDownloadProgress> runningRemoteDownloads;
+
+    private int parallelChunks;
+
+    private long chunkSize;
+
+    private CoordinatesIndexManager coordinatesIndexManager;
+
 
     public DownloadRemoteIndexTask( DownloadRemoteIndexTaskRequest downloadRemoteIndexTaskRequest,
                                     List<String> runningRemoteDownloadIds )
     {
+        this( downloadRemoteIndexTaskRequest, runningRemoteDownloadIds,
+              new ConcurrentHashMap<String, RemoteIndexDownloadProgress>() );
+    }
+
+    /**
+     * @since 2.2.2
+     */
+    public DownloadRemoteIndexTask( DownloadRemoteIndexTaskRequest downloadRemoteIndexTaskRequest,
+                                    List<String> runningRemoteDownloadIds,
+                                    Map<String, RemoteIndexDownloadProgress> runningRemoteDownloads )
+    {
+        this.runningRemoteDownloads = runningRemoteDownloads;
+        this.parallelChunks = downloadRemoteIndexTaskRequest.getParallelChunks();
+        this.chunkSize = downloadRemoteIndexTaskRequest.getChunkSize();
+        this.coordinatesIndexManager = downloadRemoteIndexTaskRequest.getCoordinatesIndexManager();
         this.remoteRepository = downloadRemoteIndexTaskRequest.getRemoteRepository();
         this.wagonFactory = downloadRemoteIndexTaskRequest.getWagonFactory();
         this.networkProxy = downloadRemoteIndexTaskRequest.getNetworkProxy();
@@ -111,6 +142,8 @@ public void run()
             }
             this.runningRemoteDownloadIds.add( this.remoteRepository.getId() );
         }
+        RemoteIndexDownloadProgress progress = new RemoteIndexDownloadProgress( this.remoteRepository.getId() );
+        this.runningRemoteDownloads.put( this.remoteRepository.getId(), progress );
         File tempIndexDirectory = null;
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
@@ -123,6 +156,10 @@ public void run()
             tempIndexDirectory = new File( indexingContext.getIndexDirectoryFile().getParent(), ".tmpIndex" );
             File indexCacheDirectory = new File( indexingContext.getIndexDirectoryFile().getParent(), ".indexCache" );
             indexCacheDirectory.mkdirs();
+            // partially downloaded files are kept here between attempts to resume them
+            File indexDownloadDirectory =
+                new File( indexingContext.getIndexDirectoryFile().getParent(), ".indexDownload" );
+            indexDownloadDirectory.mkdirs();
             if ( tempIndexDirectory.exists() )
             {
                 FileUtils.deleteDirectory( tempIndexDirectory );
@@ -151,7 +188,7 @@ public void run()
                 AbstractHttpClientWagon.class.cast( wagon ).setHttpConfiguration( httpConfiguration );
             }
 
-            wagon.addTransferListener( new DownloadListener() );
+            wagon.addTransferListener( new DownloadListener( progress ) );
             ProxyInfo proxyInfo = null;
             if ( this.networkProxy != null )
             {
@@ -180,6 +217,16 @@ public void run()
 
             ResourceFetcher resourceFetcher =
                 new WagonResourceFetcher( log, tempIndexDirectory, wagon, remoteRepository );
+            if ( isChunkedDownloadSupported( new URL( baseIndexUrl ).getProtocol() ) )
+            {
+                ChunkedHttpDownloader downloader =
+                    new ChunkedHttpDownloader( getHttpHeaders(), getProxy(), remoteRepository.getTimeout() * 1000,
+                                               remoteRepository.getRemoteDownloadTimeout() * 1000,
+                                               this.parallelChunks, this.chunkSize, progress );
+                resourceFetcher =
+                    new WagonResourceFetcher( log, tempIndexDirectory, wagon, remoteRepository, baseIndexUrl,
+                                              downloader, indexDownloadDirectory );
+            }
             IndexUpdateRequest request = new IndexUpdateRequest( indexingContext, resourceFetcher );
             request.setForceFullUpdate( this.fullDownload );
             request.setLocalIndexCacheDir( indexCacheDirectory );
@@ -195,6 +242,11 @@ public void run()
             //indexPacker.packIndex( indexPackingRequest );
             indexingContext.updateTimestamp( true );
 
+            if ( this.coordinatesIndexManager != null )
+            {
+                this.coordinatesIndexManager.buildCoordinatesIndex( indexingContext );
+            }
+
         }
         catch ( MalformedURLException e )
         {
@@ -230,10 +282,68 @@ public void run()
         {
             deleteDirectoryQuiet( tempIndexDirectory );
             this.runningRemoteDownloadIds.remove( this.remoteRepository.getId() );
+            this.runningRemoteDownloads.remove( this.remoteRepository.getId() );
         }
         log.info( "end download remote index for remote repository {}", this.remoteRepository.getId() );
     }
 
+    private Map<String, String> getHttpHeaders()
+    {
+        Map<String, String> headers = new HashMap<>( this.remoteRepository.getExtraHeaders() );
+        if ( this.remoteRepository.getUserName() != null )
+        {
+            headers.put( "Authorization",
+                         basic( this.remoteRepository.getUserName(), this.remoteRepository.getPassword() ) );
+        }
+        if ( this.networkProxy != null && this.networkProxy.getUsername() != null )
+        {
+            headers.put( "Proxy-Authorization",
+                         basic( this.networkProxy.getUsername(), this.networkProxy.getPassword() ) );
+        }
+        return headers;
+    }
+
+    private static String basic( String userName, String password )
+    {
+        String credentials = userName + ":" + ( password == null ? "" : password );
+        return "Basic " + BaseEncoding.base64().encode( credentials.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * The chunked download goes through {@link java.net.HttpURLConnection}: it can not authenticate the CONNECT of an
+     * https tunnel, the Proxy-Authorization header being only sent to the proxy on plain http requests, nor speak
+     * NTLM. Those downloads stay on the wagon.
+     */
+    private boolean isChunkedDownloadSupported( String protocol )
+    {
+        if ( this.parallelChunks <= 0 || !protocol.startsWith( "http" ) )
+        {
+            return false;
+        }
+        if ( this.networkProxy == null )
+        {
+            return true;
+        }
+        if ( this.networkProxy.isUseNtlm() )
+        {
+            return false;
+        }
+        return this.networkProxy.getUsername() == null || !"https".equals( protocol );
+    }
+
+    /**
+     * same proxy as the http wagon: network proxies have no excluded hosts so the proxy applies to every host
+     */
+    private Proxy getProxy()
+    {
+        if ( this.networkProxy == null )
+        {
+            return Proxy.NO_PROXY;
+        }
+        return new Proxy( Proxy.Type.HTTP,
+                          new InetSocketAddress( this.networkProxy.getHost(), this.networkProxy.getPort() ) );
+    }
+
     private void deleteDirectoryQuiet( File f )
     {
         try
@@ -252,12 +362,19 @@ private void deleteDirectoryQuiet( File f )
     {
         private Logger log = LoggerFactory.getLogger( getClass() );
 
+        private final RemoteIndexDownloadProgress progress;
+
         private String resourceName;
 
         private long startTime;
 
         private int totalLength = 0;
 
+        private DownloadListener( RemoteIndexDownloadProgress progress )
+        {
+            this.progress = progress;
+        }
+
         @Override
         public void transferInitiated( TransferEvent transferEvent )
         {
@@ -271,6 +388,10 @@ public void transferStarted( TransferEvent transferEvent )
         {
             this.totalLength = 0;
             resourceName = transferEvent.getResource().getName();
+            if ( transferEvent.getResource().getContentLength() > 0 )
+            {
+                progress.addExpectedBytes( transferEvent.getResource().getContentLength() );
+            }
             log.info( "start transfer of {}", transferEvent.getResource().getName() );
         }
 
@@ -279,6 +400,7 @@ public void transferProgress( TransferEvent transferEvent, byte[] buffer, int le
         {
             log.debug( "transfer of {} : {}/{}", transferEvent.getResource().getName(), buffer.length, length );
             this.totalLength += length;
+            progress.addDownloadedBytes( length );
         }
 
         @Override
@@ -316,6 +438,12 @@ public void debug( String message )
 
         RemoteRepository remoteRepository;
 
+        String baseIndexUrl;
+
+        ChunkedHttpDownloader downloader;
+
+        File downloadDirectory;
+
         private WagonResourceFetcher( Logger log, File tempIndexDirectory, Wagon wagon,
                                       RemoteRepository remoteRepository )
         {
@@ -325,6 +453,19 @@ private WagonResourceFetcher( Logger log, File tempIndexDirectory, Wagon wagon,
             this.remoteRepository = remoteRepository;
         }
 
+        /**
+         * index .gz files are fetched in parallel chunks with the downloader, other files with the wagon
+         */
+        private WagonResourceFetcher( Logger log, File tempIndexDirectory, Wagon wagon,
+                                      RemoteRepository remoteRepository, String baseIndexUrl,
+                                      ChunkedHttpDownloader downloader, File downloadDirectory )
+        {
+            this( log, tempIndexDirectory, wagon, remoteRepository );
+            this.baseIndexUrl = baseIndexUrl;
+            this.downloader = downloader;
+            this.downloadDirectory = downloadDirectory;
+        }
+
         @Override
         public void connect( String id, String url )
             throws IOException
@@ -349,6 +490,15 @@ public InputStream retrieve( String name )
                 File file = new File( tempIndexDirectory, name );
                 Files.deleteIfExists( file.toPath() );
                 file.deleteOnExit();
+                if ( downloader != null && name.endsWith( ".gz" ) )
+                {
+                    File downloaded = new File( downloadDirectory, name );
+                    String url = StringUtils.removeEnd( baseIndexUrl, "/" ) + "/" + addParameters( name,
+                                                                                                   this.remoteRepository );
+                    downloader.download( new URL( url ), downloaded );
+                    Files.move( downloaded.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                    return Files.newInputStream( file.toPath() );
+                }
                 wagon.get( addParameters( name, this.remoteRepository ), file );
                 return Files.newInputStream( file.toPath() );
             }
@@ -45,6 +45,23 @@
 
     private IndexPacker indexPacker;
 
+    /**
+     * number of chunks of an index file fetched in parallel, 0 to download with the wagon only
+     *
+     * @since 2.2.2
+     */
+    private int parallelChunks;
+
+    /**
+     * @since 2.2.2
+     */
+    private long chunkSize;
+
+    /**
+     * @since 2.2.2
+     */
+    private CoordinatesIndexManager coordinatesIndexManager;
+
     public DownloadRemoteIndexTaskRequest()
     {
         // no op
@@ -127,4 +144,38 @@ public DownloadRemoteIndexTaskRequest setIndexPacker( IndexPacker indexPacker )
         this.indexPacker = indexPacker;
         return this;
     }
+
+    public int getParallelChunks()
+    {
+        return parallelChunks;
+    }
+
+    public DownloadRemoteIndexTaskRequest setParallelChunks( int parallelChunks )
+    {
+        this.parallelChunks = parallelChunks;
+        return this;
+    }
+
+    public CoordinatesIndexManager getCoordinatesIndexManager()
+    {
+        return coordinatesIndexManager;
+    }
+
+    public DownloadRemoteIndexTaskRequest setCoordinatesIndexManager(
+        CoordinatesIndexManager coordinatesIndexManager )
+    {
+        this.coordinatesIndexManager = coordinatesIndexManager;
+        return this;
+    }
+
+    public long getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public DownloadRemoteIndexTaskRequest setChunkSize( long chunkSize )
+    {
+        this.chunkSize = chunkSize;
+        return this;
+    }
 }
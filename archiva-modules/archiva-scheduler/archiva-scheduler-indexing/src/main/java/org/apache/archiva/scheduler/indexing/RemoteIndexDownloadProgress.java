@@ -0,0 +1,123 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a running remote index download: bytes received, transfer rate and estimated remaining time.
+ *
+ * @since 2.2.2
+ */
+public class RemoteIndexDownloadProgress
+{
+    private final String repositoryId;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong downloadedBytes = new AtomicLong();
+
+    /**
+     * bytes received in previous attempts of a resumed download, not counted in the rate
+     */
+    private final AtomicLong resumedBytes = new AtomicLong();
+
+    private final AtomicLong expectedBytes = new AtomicLong();
+
+    public RemoteIndexDownloadProgress( String repositoryId )
+    {
+        this.repositoryId = repositoryId;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    public long getDownloadedBytes()
+    {
+        return downloadedBytes.get();
+    }
+
+    public long getExpectedBytes()
+    {
+        return expectedBytes.get();
+    }
+
+    public void addDownloadedBytes( long bytes )
+    {
+        downloadedBytes.addAndGet( bytes );
+    }
+
+    public void addResumedBytes( long bytes )
+    {
+        resumedBytes.addAndGet( bytes );
+        downloadedBytes.addAndGet( bytes );
+    }
+
+    public void addExpectedBytes( long bytes )
+    {
+        expectedBytes.addAndGet( bytes );
+    }
+
+    /**
+     * @return transfer rate in bytes per second since the download started
+     */
+    public long getBytesPerSecond()
+    {
+        long elapsed = System.currentTimeMillis() - startTime;
+        if ( elapsed <= 0 )
+        {
+            return 0;
+        }
+        return ( downloadedBytes.get() - resumedBytes.get() ) * 1000 / elapsed;
+    }
+
+    /**
+     * @return estimated remaining time in ms or -1 if it cannot be estimated yet
+     */
+    public long getEstimatedRemainingTime()
+    {
+        long rate = getBytesPerSecond();
+        long remaining = expectedBytes.get() - downloadedBytes.get();
+        if ( rate <= 0 || expectedBytes.get() <= 0 )
+        {
+            return -1;
+        }
+        return Math.max( 0, remaining ) * 1000 / rate;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder( "RemoteIndexDownloadProgress{" );
+        sb.append( "repositoryId='" ).append( repositoryId ).append( '\'' );
+        sb.append( ", downloadedBytes=" ).append( downloadedBytes );
+        sb.append( ", expectedBytes=" ).append( expectedBytes );
+        sb.append( ", bytesPerSecond=" ).append( getBytesPerSecond() );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
@@ -24,7 +24,10 @@
 import org.apache.archiva.admin.model.managed.ManagedRepositoryAdmin;
 import org.apache.archiva.common.plexusbridge.MavenIndexerUtils;
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
+import org.apache.archiva.redback.components.taskqueue.DefaultTaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -41,6 +44,8 @@
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.inject.Inject;
@@ -53,7 +58,15 @@
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -81,6 +94,9 @@
     @Inject
     ManagedRepositoryAdmin managedRepositoryAdmin;
 
+    @Inject
+    ArtifactContextExtractor artifactContextExtractor;
+
     @Before
     @Override
     public void setUp()
@@ -215,6 +231,188 @@ public void testUpdateArtifactInIndex()
         assertEquals( 1, topDocs.totalHits );
     }
 
+    @Test
+    public void testBulkUpdateArtifactInIndex()
+        throws Exception
+    {
+        File artifactFile = new File( repositoryConfig.getLocation(),
+                                      "org/apache/archiva/archiva-index-methods-jar-test/1.0/archiva-index-methods-jar-test-1.0.jar" );
+
+        ArtifactIndexingTask task =
+            new ArtifactIndexingTask( repositoryConfig, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                      getIndexingContext(), false );
+
+        // first add then update through the bulk path
+        indexingExecutor.executeTask( task );
+        indexingExecutor.executeTask( task );
+
+        BooleanQuery q = new BooleanQuery();
+        q.add( indexer.constructQuery( MAVEN.GROUP_ID, new SourcedSearchExpression( "org.apache.archiva" ) ),
+               Occur.MUST );
+        q.add( indexer.constructQuery( MAVEN.ARTIFACT_ID,
+                                       new SourcedSearchExpression( "archiva-index-methods-jar-test" ) ), Occur.MUST );
+
+        IndexingContext ctx = getIndexingContext();
+
+        IndexSearcher searcher = ctx.acquireIndexSearcher();
+        TopDocs topDocs = searcher.search( q, null, 10 );
+        ctx.releaseIndexSearcher( searcher );
+
+        // should only return 1 hit!
+        assertEquals( 1, topDocs.totalHits );
+
+        // index is packed once the batch is flushed
+        assertTrue( new File( repositoryConfig.getLocation(), ".indexer/nexus-maven-repository-index.gz" ).exists() );
+    }
+
+    @Test
+    public void testLoneBulkTaskIsNotDelayed()
+        throws Exception
+    {
+        File artifactFile = new File( repositoryConfig.getLocation(),
+                                      "org/apache/archiva/archiva-index-methods-jar-test/1.0/archiva-index-methods-jar-test-1.0.jar" );
+
+        ArtifactIndexingTask task =
+            new ArtifactIndexingTask( repositoryConfig, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                      getIndexingContext(), false );
+
+        long flushInterval = indexingExecutor.getBulkFlushInterval();
+        indexingExecutor.setBulkFlushInterval( 60000 );
+        try
+        {
+            long start = System.currentTimeMillis();
+            indexingExecutor.executeTask( task );
+
+            // nothing else is queued, the batch is flushed without waiting for the flush interval
+            assertTrue( System.currentTimeMillis() - start < 30000 );
+        }
+        finally
+        {
+            indexingExecutor.setBulkFlushInterval( flushInterval );
+        }
+
+        BooleanQuery q = new BooleanQuery();
+        q.add( indexer.constructQuery( MAVEN.ARTIFACT_ID,
+                                       new SourcedSearchExpression( "archiva-index-methods-jar-test" ) ), Occur.MUST );
+
+        IndexingContext ctx = getIndexingContext();
+        IndexSearcher searcher = ctx.acquireIndexSearcher();
+        TopDocs topDocs = searcher.search( q, null, 10 );
+        ctx.releaseIndexSearcher( searcher );
+
+        assertEquals( 1, topDocs.totalHits );
+    }
+
+    @Test
+    public void testBatchExtractedInParallel()
+        throws Exception
+    {
+        File bulkDirectory = new File( repositoryConfig.getLocation(), "org/apache/archiva/bulk-test" );
+        FileUtils.deleteDirectory( bulkDirectory );
+
+        int artifacts = 6;
+        TaskQueue queue = new DefaultTaskQueue();
+        ArtifactIndexingTask first = null;
+        for ( int i = 0; i < artifacts; i++ )
+        {
+            File artifactFile = createJar( new File( bulkDirectory, "1." + i + "/bulk-test-1." + i + ".jar" ) );
+            ArtifactIndexingTask task =
+                new ArtifactIndexingTask( repositoryConfig, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                          getIndexingContext(), false );
+            if ( first == null )
+            {
+                first = task;
+            }
+            else
+            {
+                queue.put( task );
+            }
+        }
+
+        // not an artifact: no artifact context is extracted and the file is skipped
+        File checksumFile = new File( bulkDirectory, "1.0/bulk-test-1.0.jar.sha1" );
+        FileUtils.writeStringToFile( checksumFile, "da39a3ee5e6b4b0d3255bfef95601890afd80709" );
+        queue.put( new ArtifactIndexingTask( repositoryConfig, checksumFile, ArtifactIndexingTask.Action.ADD,
+                                             getIndexingContext(), false ) );
+
+        // every extraction waits for another one to run at the same time
+        final CountDownLatch running = new CountDownLatch( 2 );
+        final Set<String> threads = Collections.synchronizedSet( new HashSet<String>() );
+        ThreadPoolTaskExecutor extractionPool = new ThreadPoolTaskExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                return super.submit( new Callable<T>()
+                {
+                    @Override
+                    public T call()
+                        throws Exception
+                    {
+                        threads.add( Thread.currentThread().getName() );
+                        running.countDown();
+                        running.await( 10, TimeUnit.SECONDS );
+                        return task.call();
+                    }
+                } );
+            }
+        };
+        extractionPool.setCorePoolSize( 4 );
+        extractionPool.setMaxPoolSize( 4 );
+        extractionPool.setThreadNamePrefix( "test-extraction-" );
+        extractionPool.initialize();
+
+        TaskQueue indexingQueue = indexingExecutor.getIndexingQueue();
+        AsyncTaskExecutor extractionExecutor = artifactContextExtractor.getExtractionExecutor();
+        indexingExecutor.setIndexingQueue( queue );
+        artifactContextExtractor.setExtractionExecutor( extractionPool );
+        try
+        {
+            indexingExecutor.executeTask( first );
+        }
+        finally
+        {
+            indexingExecutor.setIndexingQueue( indexingQueue );
+            artifactContextExtractor.setExtractionExecutor( extractionExecutor );
+            extractionPool.shutdown();
+        }
+
+        // the whole batch was taken in one task
+        assertTrue( queue.getQueueSnapshot().isEmpty() );
+
+        assertEquals( 0, running.getCount() );
+        assertTrue( threads.size() >= 2 );
+        for ( String thread : threads )
+        {
+            assertTrue( thread, thread.startsWith( "test-extraction-" ) );
+        }
+
+        BooleanQuery q = new BooleanQuery();
+        q.add( indexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression( "bulk-test" ) ), Occur.MUST );
+
+        IndexingContext ctx = getIndexingContext();
+        IndexSearcher searcher = ctx.acquireIndexSearcher();
+        TopDocs topDocs = searcher.search( q, null, 20 );
+        ctx.releaseIndexSearcher( searcher );
+
+        assertEquals( artifacts, topDocs.totalHits );
+
+        FileUtils.deleteDirectory( bulkDirectory );
+    }
+
+    private File createJar( File jarFile )
+        throws IOException
+    {
+        jarFile.getParentFile().mkdirs();
+        try (JarOutputStream out = new JarOutputStream( Files.newOutputStream( jarFile.toPath() ) ))
+        {
+            out.putNextEntry( new JarEntry( "org/apache/archiva/bulk/Bulk.class" ) );
+            out.write( new byte[]{ (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE } );
+            out.closeEntry();
+        }
+        return jarFile;
+    }
+
     @Test
     public void testRemoveArtifactFromIndex()
         throws Exception
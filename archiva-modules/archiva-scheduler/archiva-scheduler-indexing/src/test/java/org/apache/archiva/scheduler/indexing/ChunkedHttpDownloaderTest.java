@@ -0,0 +1,227 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.FileUtil;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2.2.2
+ */
+public class ChunkedHttpDownloaderTest
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private Server server;
+
+    private File serverDirectory;
+
+    private File downloadDirectory;
+
+    private byte[] content;
+
+    private URL url;
+
+    @Before
+    public void initialize()
+        throws Exception
+    {
+        File basedir = new File( FileUtil.getBasedir(), "target/chunked-download-" + System.currentTimeMillis() );
+        serverDirectory = new File( basedir, "server" );
+        downloadDirectory = new File( basedir, "download" );
+        serverDirectory.mkdirs();
+        downloadDirectory.mkdirs();
+
+        content = new byte[CHUNK_SIZE * 4 + 123];
+        new Random( 42 ).nextBytes( content );
+        Files.write( new File( serverDirectory, "nexus-maven-repository-index.gz" ).toPath(), content );
+
+        server = new Server( 0 );
+        ServletContextHandler context = new ServletContextHandler();
+        context.setResourceBase( serverDirectory.getAbsolutePath() );
+        context.setContextPath( "/" );
+        context.addServlet( new ServletHolder( DefaultServlet.class ), "/" );
+        server.setHandler( context );
+        server.start();
+
+        url = new URL(
+            "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/nexus-maven-repository-index.gz" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        server.stop();
+        FileUtils.deleteDirectory( serverDirectory.getParentFile() );
+    }
+
+    @Test
+    public void downloadInParallelChunks()
+        throws Exception
+    {
+        RemoteIndexDownloadProgress progress = new RemoteIndexDownloadProgress( "test-repo" );
+        File target = new File( downloadDirectory, "nexus-maven-repository-index.gz" );
+
+        new ChunkedHttpDownloader( Collections.<String, String>emptyMap(), Proxy.NO_PROXY, 5000, 5000, 3,
+                                   CHUNK_SIZE, progress ).download( url, target );
+
+        assertThat( Files.readAllBytes( target.toPath() ) ).isEqualTo( content );
+        assertThat( progress.getDownloadedBytes() ).isEqualTo( content.length );
+        assertThat( progress.getExpectedBytes() ).isEqualTo( content.length );
+        assertThat( new File( target.getPath() + ".part" ) ).doesNotExist();
+    }
+
+    @Test
+    public void resumePartialDownload()
+        throws Exception
+    {
+        File target = new File( downloadDirectory, "nexus-maven-repository-index.gz" );
+
+        // first chunk already received by a previous attempt
+        try (RandomAccessFile part = new RandomAccessFile( target.getPath() + ".part", "rw" ))
+        {
+            part.setLength( content.length );
+            part.write( content, 0, CHUNK_SIZE );
+        }
+        HttpURLConnection head = (HttpURLConnection) url.openConnection();
+        head.setRequestMethod( "HEAD" );
+        String validator = head.getHeaderField( "ETag" ) != null
+            ? head.getHeaderField( "ETag" )
+            : head.getHeaderField( "Last-Modified" );
+        head.disconnect();
+
+        Properties state = new Properties();
+        state.setProperty( "validator", validator );
+        state.setProperty( "length", Integer.toString( content.length ) );
+        state.setProperty( "chunkSize", Integer.toString( CHUNK_SIZE ) );
+        state.setProperty( "chunk.0", Integer.toString( CHUNK_SIZE ) );
+        try (OutputStream os = Files.newOutputStream( new File( target.getPath() + ".part.state" ).toPath() ))
+        {
+            state.store( os, null );
+        }
+
+        RemoteIndexDownloadProgress progress = new RemoteIndexDownloadProgress( "test-repo" );
+        new ChunkedHttpDownloader( Collections.<String, String>emptyMap(), Proxy.NO_PROXY, 5000, 5000, 2,
+                                   CHUNK_SIZE, progress ).download( url, target );
+
+        assertThat( Files.readAllBytes( target.toPath() ) ).isEqualTo( content );
+        assertThat( progress.getDownloadedBytes() ).isEqualTo( content.length );
+        assertThat( new File( target.getPath() + ".part.state" ) ).doesNotExist();
+    }
+
+    @Test
+    public void restartWhenRemoteFileChanges()
+        throws Exception
+    {
+        ChangingFileServlet servlet = new ChangingFileServlet();
+        server.stop();
+        server = new Server( 0 );
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath( "/" );
+        context.addServlet( new ServletHolder( servlet ), "/" );
+        server.setHandler( context );
+        server.start();
+        URL changingUrl = new URL(
+            "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/nexus-maven-repository-index.gz" );
+
+        File target = new File( downloadDirectory, "nexus-maven-repository-index.gz" );
+        RemoteIndexDownloadProgress progress = new RemoteIndexDownloadProgress( "test-repo" );
+        new ChunkedHttpDownloader( Collections.<String, String>emptyMap(), Proxy.NO_PROXY, 5000, 5000, 2,
+                                   CHUNK_SIZE, progress ).download( changingUrl, target );
+
+        assertThat( Files.readAllBytes( target.toPath() ) ).isEqualTo( content );
+        assertThat( servlet.fullResponses.get() ).isGreaterThan( 0 );
+        assertThat( new File( target.getPath() + ".part.state" ) ).doesNotExist();
+    }
+
+    /**
+     * the file changes right after the first HEAD: range requests with the first ETag get the whole file
+     */
+    private class ChangingFileServlet
+        extends HttpServlet
+    {
+        private final AtomicInteger version = new AtomicInteger();
+
+        private final AtomicInteger fullResponses = new AtomicInteger();
+
+        @Override
+        protected void doHead( HttpServletRequest request, HttpServletResponse response )
+        {
+            String etag = getETag();
+            version.compareAndSet( 0, 1 );
+            response.setHeader( "ETag", etag );
+            response.setHeader( "Accept-Ranges", "bytes" );
+            response.setContentLength( content.length );
+        }
+
+        @Override
+        protected void doGet( HttpServletRequest request, HttpServletResponse response )
+            throws IOException
+        {
+            String range = request.getHeader( "Range" );
+            response.setHeader( "ETag", getETag() );
+            if ( range == null || !getETag().equals( request.getHeader( "If-Range" ) ) )
+            {
+                fullResponses.incrementAndGet();
+                response.setContentLength( content.length );
+                response.getOutputStream().write( content );
+                return;
+            }
+            String[] bounds = range.substring( "bytes=".length() ).split( "-" );
+            int start = Integer.parseInt( bounds[0] );
+            int end = Integer.parseInt( bounds[1] );
+            response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+            response.setHeader( "Content-Range", "bytes " + start + "-" + end + "/" + content.length );
+            response.setContentLength( end - start + 1 );
+            response.getOutputStream().write( content, start, end - start + 1 );
+        }
+
+        private String getETag()
+        {
+            return "\"v" + version.get() + "\"";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.apache.archiva.scheduler.indexing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.FileUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 2.2.2
+ */
+public class CoordinatesIndexTest
+{
+    @Test
+    public void completeEachCoordinateLevel()
+        throws Exception
+    {
+        File file = new File( FileUtil.getBasedir(), "target/coordinates-" + System.currentTimeMillis() + ".idx" );
+        file.deleteOnExit();
+
+        CoordinatesIndex.write( file, new TreeSet<>(
+            Arrays.asList( "org.apache:apache:16", "org.apache:apache:17", "org.apache.maven:maven-core:3.0.5",
+                           "org.apache.maven:maven-model:3.0.5", "org.apache.archiva:archiva-common:2.2.1",
+                           "com.google.guava:guava:16.0.1" ) ) );
+
+        CoordinatesIndex coordinatesIndex = CoordinatesIndex.open( file );
+
+        assertThat( coordinatesIndex.size() ).isEqualTo( 6 );
+        assertThat( coordinatesIndex.complete( "org.apache", 10 ) ).containsExactly( "org.apache",
+                                                                                      "org.apache.archiva",
+                                                                                      "org.apache.maven" );
+        assertThat( coordinatesIndex.complete( "org.apache", 2 ) ).hasSize( 2 );
+        assertThat( coordinatesIndex.complete( "org.apache.maven:maven-", 10 ) ).containsExactly(
+            "org.apache.maven:maven-core", "org.apache.maven:maven-model" );
+        assertThat( coordinatesIndex.complete( "org.apache:apache:", 10 ) ).containsExactly( "org.apache:apache:16",
+                                                                                              "org.apache:apache:17" );
+        assertThat( coordinatesIndex.complete( "net.", 10 ) ).isEmpty();
+
+        coordinatesIndex.close();
+        assertThat( coordinatesIndex.complete( "org.apache", 10 ) ).isEmpty();
+    }
+}
@@ -3,6 +3,8 @@
 import org.apache.archiva.redback.components.taskqueue.Task;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
@@ -34,10 +36,24 @@
 
     private File resourceFile;
 
+    /**
+     * all the files of a coalesced task, the first one being the resource file
+     *
+     * @since 2.2.2
+     */
+    private List<File> resourceFiles;
+
     private boolean updateRelatedArtifacts;
 
     private boolean scanAll;
 
+    /**
+     * when the task was queued, not part of the task identity
+     *
+     * @since 2.2.2
+     */
+    private long queuedTime;
+
     public RepositoryTask()
     {
         // no op
@@ -90,6 +106,31 @@ public void setResourceFile( File resourceFile )
         this.resourceFile = resourceFile;
     }
 
+    /**
+     * @return the files to execute the consumers on: those of a coalesced task, the resource file, or none for a
+     *         repository scan
+     * @since 2.2.2
+     */
+    public List<File> getResourceFiles()
+    {
+        if ( resourceFiles != null )
+        {
+            return resourceFiles;
+        }
+        return resourceFile == null ? Collections.<File>emptyList() : Collections.singletonList( resourceFile );
+    }
+
+    /**
+     * Makes this task run the consumers on all the files at once, in a single consumer lifecycle.
+     *
+     * @since 2.2.2
+     */
+    public void setResourceFiles( List<File> resourceFiles )
+    {
+        this.resourceFiles = resourceFiles;
+        this.resourceFile = resourceFiles == null || resourceFiles.isEmpty() ? null : resourceFiles.get( 0 );
+    }
+
     public boolean isUpdateRelatedArtifacts()
     {
         return updateRelatedArtifacts;
@@ -100,11 +141,26 @@ public void setUpdateRelatedArtifacts( boolean updateRelatedArtifacts )
         this.updateRelatedArtifacts = updateRelatedArtifacts;
     }
 
+    /**
+     * @return time in milliseconds when the task was queued, <code>0</code> if it was not
+     * @since 2.2.2
+     */
+    public long getQueuedTime()
+    {
+        return queuedTime;
+    }
+
+    public void setQueuedTime( long queuedTime )
+    {
+        this.queuedTime = queuedTime;
+    }
+
     @Override
     public String toString()
     {
-        return "RepositoryTask [repositoryId=" + repositoryId + ", resourceFile=" + resourceFile + ", scanAll="
-            + scanAll + ", updateRelatedArtifacts=" + updateRelatedArtifacts + "]";
+        String otherFiles = resourceFiles == null ? "" : " and " + ( resourceFiles.size() - 1 ) + " other files";
+        return "RepositoryTask [repositoryId=" + repositoryId + ", resourceFile=" + resourceFile + otherFiles
+            + ", scanAll=" + scanAll + ", updateRelatedArtifacts=" + updateRelatedArtifacts + "]";
     }
 
     @Override
@@ -114,6 +170,7 @@ public int hashCode()
         int result = 1;
         result = prime * result + ( ( repositoryId == null ) ? 0 : repositoryId.hashCode() );
         result = prime * result + ( ( resourceFile == null ) ? 0 : resourceFile.hashCode() );
+        result = prime * result + ( ( resourceFiles == null ) ? 0 : resourceFiles.hashCode() );
         return result;
     }
 
@@ -155,6 +212,17 @@ else if ( !resourceFile.equals( other.resourceFile ) )
         {
             return false;
         }
+        if ( resourceFiles == null )
+        {
+            if ( other.resourceFiles != null )
+            {
+                return false;
+            }
+        }
+        else if ( !resourceFiles.equals( other.resourceFiles ) )
+        {
+            return false;
+        }
         return true;
     }
 }
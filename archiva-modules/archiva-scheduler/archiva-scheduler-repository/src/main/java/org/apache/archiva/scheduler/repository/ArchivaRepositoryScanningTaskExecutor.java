@@ -77,6 +77,9 @@
     @Inject
     private RepositorySessionFactory repositorySessionFactory;
 
+    @Inject
+    private RepositoryTaskQueueStatistics queueStatistics;
+
     @PostConstruct
     public void initialize()
         throws InitializationException
@@ -101,6 +104,11 @@ public void executeTask( RepositoryTask task )
 
             this.task = task;
 
+            if ( queueStatistics != null )
+            {
+                queueStatistics.taskStarted( task );
+            }
+
             String repoId = task.getRepositoryId();
             if ( StringUtils.isBlank( repoId ) )
             {
@@ -109,11 +117,11 @@ public void executeTask( RepositoryTask task )
 
             ManagedRepository arepo = managedRepositoryAdmin.getManagedRepository( repoId );
 
-            // execute consumers on resource file if set
+            // execute consumers on resource files if set, coalesced tasks run them once for all their files
             if ( task.getResourceFile() != null )
             {
                 log.debug( "Executing task from queue with job name: {}", task );
-                consumers.executeConsumers( arepo, task.getResourceFile(), task.isUpdateRelatedArtifacts() );
+                consumers.executeConsumers( arepo, task.getResourceFiles(), task.isUpdateRelatedArtifacts() );
             }
             else
             {
@@ -238,6 +246,16 @@ public void setRepositoryStatisticsManager( RepositoryStatisticsManager reposito
         this.repositoryStatisticsManager = repositoryStatisticsManager;
     }
 
+    public RepositoryTaskQueueStatistics getQueueStatistics()
+    {
+        return queueStatistics;
+    }
+
+    public void setQueueStatistics( RepositoryTaskQueueStatistics queueStatistics )
+    {
+        this.queueStatistics = queueStatistics;
+    }
+
     public ManagedRepositoryAdmin getManagedRepositoryAdmin()
     {
         return managedRepositoryAdmin;
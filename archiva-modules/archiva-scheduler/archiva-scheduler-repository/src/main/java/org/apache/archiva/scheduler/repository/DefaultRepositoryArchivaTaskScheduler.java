@@ -51,10 +51,19 @@
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of a scheduling component for archiva.
@@ -71,10 +80,21 @@
     @Inject
     private CronExpressionValidator cronValidator;
 
+    /**
+     * lane of the repository scans, also guarding the queueing of tasks in both lanes
+     */
     @Inject
-    @Named( value = "taskQueue#repository-scanning" )
+    @Named( value = SCANNING_QUEUE )
     private TaskQueue repositoryScanningQueue;
 
+    /**
+     * lane of the tasks on resource files queued by deploys and proxy downloads, executed by their own worker so they
+     * do not wait for the repository scans
+     */
+    @Inject
+    @Named( value = INTERACTIVE_QUEUE )
+    private TaskQueue interactiveQueue;
+
     @Inject
     private ArchivaConfiguration archivaConfiguration;
 
@@ -100,10 +120,45 @@
 
     public static final String CRON_HOURLY = "0 0 * * * ?";
 
+    /**
+     * @since 2.2.2
+     */
+    public static final String SCANNING_QUEUE = "taskQueue#repository-scanning";
+
+    /**
+     * @since 2.2.2
+     */
+    public static final String INTERACTIVE_QUEUE = "taskQueue#repository-interactive";
+
     private Set<String> jobs = new HashSet<>();
 
     private List<String> queuedRepos = new ArrayList<>();
 
+    /**
+     * Resource file tasks of a repository queued within this many milliseconds are coalesced in one task running a
+     * single consumer lifecycle over all the files, 0 to queue each task on its own.
+     */
+    private long coalesceWindow = Long.getLong( "archiva.repository.task.coalesceWindow", 1000 );
+
+    private int maxBatchSize = Integer.getInteger( "archiva.repository.task.maxBatchSize", 1000 );
+
+    /**
+     * resource file tasks waiting for the end of their coalescing window, guarded by the task queue
+     */
+    private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
+
+    private final ScheduledExecutorService batchExecutor =
+        Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "repository-task-coalescer" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
     @PostConstruct
     public void startup()
         throws ArchivaException
@@ -170,28 +225,31 @@ public void stop()
         jobs.clear();
         queuedRepos.clear();
 
+        synchronized ( repositoryScanningQueue )
+        {
+            for ( PendingBatch batch : new ArrayList<>( pendingBatches.values() ) )
+            {
+                queueBatch( batch );
+            }
+        }
+        batchExecutor.shutdownNow();
     }
 
-    @SuppressWarnings( "unchecked" )
     @Override
     public boolean isProcessingRepositoryTask( String repositoryId )
     {
         synchronized ( repositoryScanningQueue )
         {
-            List<RepositoryTask> queue = null;
-
-            try
+            for ( RepositoryTask queuedTask : getQueuedTasks() )
             {
-                queue = repositoryScanningQueue.getQueueSnapshot();
-            }
-            catch ( TaskQueueException e )
-            {
-                // not possible with plexus-taskqueue implementation, ignore
+                if ( queuedTask.getRepositoryId().equals( repositoryId ) )
+                {
+                    return true;
+                }
             }
-
-            for ( RepositoryTask queuedTask : queue )
+            for ( PendingBatch batch : pendingBatches.values() )
             {
-                if ( queuedTask.getRepositoryId().equals( repositoryId ) )
+                if ( batch.repositoryId.equals( repositoryId ) )
                 {
                     return true;
                 }
@@ -205,20 +263,17 @@ public boolean isProcessingRepositoryTask( RepositoryTask task )
     {
         synchronized ( repositoryScanningQueue )
         {
-            List<RepositoryTask> queue = null;
-
-            try
-            {
-                queue = repositoryScanningQueue.getQueueSnapshot();
-            }
-            catch ( TaskQueueException e )
+            for ( RepositoryTask queuedTask : getQueuedTasks() )
             {
-                // not possible with plexus-taskqueue implementation, ignore
+                if ( task.equals( queuedTask ) || isInBatch( task, queuedTask.getRepositoryId(),
+                                                              queuedTask.getResourceFiles() ) )
+                {
+                    return true;
+                }
             }
-
-            for ( RepositoryTask queuedTask : queue )
+            for ( PendingBatch batch : pendingBatches.values() )
             {
-                if ( task.equals( queuedTask ) )
+                if ( isInBatch( task, batch.repositoryId, batch.files ) )
                 {
                     return true;
                 }
@@ -237,20 +292,173 @@ public void queueTask( RepositoryTask task )
             {
                 log.debug( "Repository task '{}' is already queued. Skipping task.", task );
             }
+            else if ( coalesceWindow > 0 && task.getResourceFile() != null && task.getResourceFiles().size() == 1 )
+            {
+                addToBatch( task );
+            }
             else
             {
                 // add check if the task is already queued if it is a file scan
-                repositoryScanningQueue.put( task );
+                task.setQueuedTime( System.currentTimeMillis() );
+                getQueue( task ).put( task );
             }
         }
     }
 
+    /**
+     * @return the name of the queue, or lane, executing the task: the interactive one for tasks on resource files
+     * @since 2.2.2
+     */
+    public static String getQueueName( RepositoryTask task )
+    {
+        return task.getResourceFile() != null ? INTERACTIVE_QUEUE : SCANNING_QUEUE;
+    }
+
+    private TaskQueue getQueue( RepositoryTask task )
+    {
+        return INTERACTIVE_QUEUE.equals( getQueueName( task ) ) ? interactiveQueue : repositoryScanningQueue;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<RepositoryTask> getQueuedTasks()
+    {
+        List<RepositoryTask> queuedTasks = new ArrayList<>();
+        try
+        {
+            queuedTasks.addAll( repositoryScanningQueue.getQueueSnapshot() );
+            queuedTasks.addAll( interactiveQueue.getQueueSnapshot() );
+        }
+        catch ( TaskQueueException e )
+        {
+            // not possible with plexus-taskqueue implementation, ignore
+        }
+        return queuedTasks;
+    }
+
+    private boolean isInBatch( RepositoryTask task, String repositoryId, Collection<File> files )
+    {
+        return task.getResourceFile() != null && task.getRepositoryId().equals( repositoryId )
+            && files.contains( task.getResourceFile() );
+    }
+
+    /**
+     * Adds a resource file task to the pending batch of its repository, the batch is queued at the end of the
+     * coalescing window or once full.
+     */
+    private void addToBatch( RepositoryTask task )
+    {
+        String key = task.getRepositoryId() + ':' + task.isUpdateRelatedArtifacts();
+        PendingBatch batch = pendingBatches.get( key );
+        if ( batch == null )
+        {
+            batch = new PendingBatch( key, task.getRepositoryId(), task.isUpdateRelatedArtifacts() );
+            pendingBatches.put( key, batch );
+
+            final PendingBatch scheduledBatch = batch;
+            batchExecutor.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized ( repositoryScanningQueue )
+                    {
+                        queueBatch( scheduledBatch );
+                    }
+                }
+            }, coalesceWindow, TimeUnit.MILLISECONDS );
+        }
+
+        batch.files.add( task.getResourceFile() );
+        if ( batch.files.size() >= maxBatchSize )
+        {
+            queueBatch( batch );
+        }
+    }
+
+    /**
+     * Queues the batch if it is still pending. Callers synchronize on the task queue.
+     */
+    private void queueBatch( PendingBatch batch )
+    {
+        if ( pendingBatches.get( batch.key ) != batch )
+        {
+            // already queued once full
+            return;
+        }
+        pendingBatches.remove( batch.key );
+
+        RepositoryTask task = createBatchTask( batch.repositoryId, batch.updateRelatedArtifacts,
+                                               new ArrayList<>( batch.files ), batch.created );
+        try
+        {
+            log.debug( "Queueing {} coalesced resource files of repository {}", batch.files.size(),
+                       batch.repositoryId );
+            interactiveQueue.put( task );
+        }
+        catch ( TaskQueueException e )
+        {
+            log.error( "Unable to queue repository task for {} files of repository {}: {}", batch.files.size(),
+                       batch.repositoryId, e.getMessage() );
+        }
+    }
+
+    private RepositoryTask createBatchTask( String repositoryId, boolean updateRelatedArtifacts, List<File> files,
+                                           long queuedTime )
+    {
+        RepositoryTask task = new RepositoryTask( repositoryId );
+        task.setUpdateRelatedArtifacts( updateRelatedArtifacts );
+        task.setScanAll( false );
+        task.setQueuedTime( queuedTime );
+        if ( files.size() == 1 )
+        {
+            task.setResourceFile( files.get( 0 ) );
+        }
+        else
+        {
+            task.setResourceFiles( files );
+        }
+        return task;
+    }
+
+    /**
+     * Unqueues a task, a resource file task being also removed from the batch coalescing it. A queued batch is
+     * replaced by the batch of its other files, which goes to the end of the queue; a batch already taken by the
+     * worker can't be changed anymore.
+     */
     @Override
     public boolean unQueueTask( RepositoryTask task )
         throws TaskQueueException
     {
         synchronized ( repositoryScanningQueue )
         {
+            for ( PendingBatch batch : pendingBatches.values() )
+            {
+                if ( task.getResourceFile() != null && batch.repositoryId.equals( task.getRepositoryId() )
+                    && batch.files.remove( task.getResourceFile() ) )
+                {
+                    if ( batch.files.isEmpty() )
+                    {
+                        pendingBatches.remove( batch.key );
+                    }
+                    return true;
+                }
+            }
+
+            for ( RepositoryTask queuedTask : getQueuedTasks() )
+            {
+                if ( !task.equals( queuedTask ) && queuedTask.getResourceFiles().size() > 1
+                    && isInBatch( task, queuedTask.getRepositoryId(), queuedTask.getResourceFiles() )
+                    && interactiveQueue.remove( queuedTask ) )
+                {
+                    List<File> files = new ArrayList<>( queuedTask.getResourceFiles() );
+                    files.remove( task.getResourceFile() );
+                    interactiveQueue.put(
+                        createBatchTask( queuedTask.getRepositoryId(), queuedTask.isUpdateRelatedArtifacts(), files,
+                                         queuedTask.getQueuedTime() ) );
+                    return true;
+                }
+            }
+
             if ( !isProcessingRepositoryTask( task ) )
             {
                 log.info( "cannot unqueue Repository task '{}' not already queued.", task );
@@ -258,7 +466,7 @@ public boolean unQueueTask( RepositoryTask task )
             }
             else
             {
-                return repositoryScanningQueue.remove( task );
+                return getQueue( task ).remove( task );
             }
         }
     }
@@ -392,4 +600,57 @@ private synchronized void scheduleRepositoryJobs( ManagedRepositoryConfiguration
         }
 
     }
+
+    public void setRepositoryScanningQueue( TaskQueue repositoryScanningQueue )
+    {
+        this.repositoryScanningQueue = repositoryScanningQueue;
+    }
+
+    public void setInteractiveQueue( TaskQueue interactiveQueue )
+    {
+        this.interactiveQueue = interactiveQueue;
+    }
+
+    public long getCoalesceWindow()
+    {
+        return coalesceWindow;
+    }
+
+    public void setCoalesceWindow( long coalesceWindow )
+    {
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize( int maxBatchSize )
+    {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Resource files of a repository waiting to be queued as one task.
+     */
+    private static class PendingBatch
+    {
+        private final String key;
+
+        private final String repositoryId;
+
+        private final boolean updateRelatedArtifacts;
+
+        private final Set<File> files = new LinkedHashSet<>();
+
+        private final long created = System.currentTimeMillis();
+
+        PendingBatch( String key, String repositoryId, boolean updateRelatedArtifacts )
+        {
+            this.key = key;
+            this.repositoryId = repositoryId;
+            this.updateRelatedArtifacts = updateRelatedArtifacts;
+        }
+    }
 }
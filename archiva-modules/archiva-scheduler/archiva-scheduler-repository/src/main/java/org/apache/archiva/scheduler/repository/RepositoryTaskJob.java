@@ -51,6 +51,7 @@ public void execute( JobExecutionContext context )
         String repositoryId = (String) dataMap.get( DefaultRepositoryArchivaTaskScheduler.TASK_REPOSITORY );
         RepositoryTask task = new RepositoryTask();
         task.setRepositoryId( repositoryId );
+        task.setQueuedTime( System.currentTimeMillis() );
 
         try
         {
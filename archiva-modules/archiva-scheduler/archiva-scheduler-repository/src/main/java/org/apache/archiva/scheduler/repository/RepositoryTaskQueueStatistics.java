@@ -0,0 +1,117 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time the repository tasks waited in their queue before being executed, per queue name as returned by
+ * {@link DefaultRepositoryArchivaTaskScheduler#getQueueName(RepositoryTask)}.
+ *
+ * @since 2.2.2
+ */
+@Service( "repositoryTaskQueueStatistics" )
+public class RepositoryTaskQueueStatistics
+{
+    private final ConcurrentMap<String, LaneStatistics> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Records the wait of a task whose execution starts, tasks without queued time are ignored.
+     */
+    public void taskStarted( RepositoryTask task )
+    {
+        if ( task.getQueuedTime() <= 0 )
+        {
+            return;
+        }
+        long waitTime = Math.max( 0, System.currentTimeMillis() - task.getQueuedTime() );
+
+        String queueName = DefaultRepositoryArchivaTaskScheduler.getQueueName( task );
+        LaneStatistics lane = lanes.get( queueName );
+        if ( lane == null )
+        {
+            LaneStatistics created = new LaneStatistics();
+            lane = lanes.putIfAbsent( queueName, created );
+            if ( lane == null )
+            {
+                lane = created;
+            }
+        }
+        lane.record( waitTime );
+    }
+
+    /**
+     * @return number of tasks of the queue which started
+     */
+    public long getStartedTaskCount( String queueName )
+    {
+        LaneStatistics lane = lanes.get( queueName );
+        return lane == null ? 0 : lane.count.get();
+    }
+
+    /**
+     * @return average time in milliseconds the started tasks of the queue waited
+     */
+    public long getAverageWaitTime( String queueName )
+    {
+        LaneStatistics lane = lanes.get( queueName );
+        if ( lane == null )
+        {
+            return 0;
+        }
+        long count = lane.count.get();
+        return count == 0 ? 0 : lane.totalWaitTime.get() / count;
+    }
+
+    /**
+     * @return longest time in milliseconds a started task of the queue waited
+     */
+    public long getMaxWaitTime( String queueName )
+    {
+        LaneStatistics lane = lanes.get( queueName );
+        return lane == null ? 0 : lane.maxWaitTime.get();
+    }
+
+    private static class LaneStatistics
+    {
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong totalWaitTime = new AtomicLong();
+
+        private final AtomicLong maxWaitTime = new AtomicLong();
+
+        void record( long waitTime )
+        {
+            count.incrementAndGet();
+            totalWaitTime.addAndGet( waitTime );
+
+            long max = maxWaitTime.get();
+            while ( waitTime > max && !maxWaitTime.compareAndSet( max, waitTime ) )
+            {
+                max = maxWaitTime.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.junit.Test;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resource file tasks run by the interactive lane while a scan of the same repository is in progress.
+ */
+@ContextConfiguration( locations = { "classpath*:/META-INF/spring-context.xml", "classpath:/spring-context.xml" } )
+public class ArchivaRepositoryScanningTaskExecutorInteractiveTest
+    extends ArchivaRepositoryScanningTaskExecutorAbstractTest
+{
+    @Test
+    public void testResourceFileTaskDuringScan()
+        throws Exception
+    {
+        testConsumer.setProcessingDelay( 50 );
+
+        final RepositoryTask scanTask = new RepositoryTask();
+        scanTask.setRepositoryId( TEST_REPO_ID );
+        scanTask.setScanAll( true );
+
+        final AtomicReference<Exception> scanFailure = new AtomicReference<>();
+        Thread scan = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    taskExecutor.executeTask( scanTask );
+                }
+                catch ( Exception e )
+                {
+                    scanFailure.set( e );
+                }
+            }
+        }, "test-repository-scan" );
+        scan.start();
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while ( testConsumer.getProcessedFileCount() == 0 && System.currentTimeMillis() < timeout )
+        {
+            Thread.sleep( 10 );
+        }
+        assertTrue( "scan not started", testConsumer.getProcessedFileCount() > 0 );
+
+        RepositoryTask fileTask = new RepositoryTask();
+        fileTask.setRepositoryId( TEST_REPO_ID );
+        fileTask.setResourceFile( new File( repoDir, "javax/sql/jdbc/2.0/jdbc-2.0.jar" ) );
+        fileTask.setUpdateRelatedArtifacts( false );
+
+        taskExecutor.executeTask( fileTask );
+
+        assertTrue( "the file task should run between two files of the scan, not after it", scan.isAlive() );
+
+        scan.join( 60000 );
+        assertFalse( scan.isAlive() );
+        assertNull( scanFailure.get() );
+        assertEquals( "consumers ran concurrently on the repository", 1, testConsumer.getMaxProcessing() );
+    }
+}
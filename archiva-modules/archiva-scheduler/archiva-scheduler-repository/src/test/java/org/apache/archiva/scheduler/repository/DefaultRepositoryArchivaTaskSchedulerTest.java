@@ -0,0 +1,174 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.redback.components.taskqueue.DefaultTaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Coalescing of the resource file tasks by the scheduler, the queues not being consumed.
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultRepositoryArchivaTaskSchedulerTest
+    extends TestCase
+{
+    private DefaultRepositoryArchivaTaskScheduler scheduler;
+
+    private TaskQueue interactiveQueue;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        interactiveQueue = new DefaultTaskQueue();
+        scheduler = new DefaultRepositoryArchivaTaskScheduler();
+        scheduler.setRepositoryScanningQueue( new DefaultTaskQueue() );
+        scheduler.setInteractiveQueue( interactiveQueue );
+        scheduler.setCoalesceWindow( 200 );
+        scheduler.setMaxBatchSize( 3 );
+    }
+
+    @After
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        scheduler.stop();
+        super.tearDown();
+    }
+
+    private RepositoryTask createTask( String repositoryId, String path )
+    {
+        RepositoryTask task = new RepositoryTask( repositoryId );
+        task.setResourceFile( new File( path ) );
+        return task;
+    }
+
+    /**
+     * Takes the first queued task as its worker would, waiting for the end of the coalescing window.
+     */
+    private RepositoryTask takeQueuedTask()
+        throws Exception
+    {
+        long timeout = System.currentTimeMillis() + 5000;
+        while ( interactiveQueue.getQueueSnapshot().isEmpty() && System.currentTimeMillis() < timeout )
+        {
+            Thread.sleep( 10 );
+        }
+        if ( interactiveQueue.getQueueSnapshot().isEmpty() )
+        {
+            return null;
+        }
+        RepositoryTask task = (RepositoryTask) interactiveQueue.getQueueSnapshot().get( 0 );
+        interactiveQueue.remove( task );
+        return task;
+    }
+
+    @Test
+    public void testTasksCoalescedWithinWindow()
+        throws Exception
+    {
+        scheduler.queueTask( createTask( "internal", "foo-1.0.jar" ) );
+        scheduler.queueTask( createTask( "internal", "foo-1.0.pom" ) );
+        scheduler.queueTask( createTask( "snapshots", "bar-1.0.jar" ) );
+
+        // pending batches are visible before they are queued
+        assertTrue( interactiveQueue.getQueueSnapshot().isEmpty() );
+        assertTrue( scheduler.isProcessingRepositoryTask( "internal" ) );
+        assertTrue( scheduler.isProcessingRepositoryTask( createTask( "internal", "foo-1.0.pom" ) ) );
+        assertFalse( scheduler.isProcessingRepositoryTask( createTask( "internal", "bar-1.0.jar" ) ) );
+
+        // an already pending file is not added twice
+        scheduler.queueTask( createTask( "internal", "foo-1.0.jar" ) );
+
+        RepositoryTask first = takeQueuedTask();
+        RepositoryTask second = takeQueuedTask();
+        assertNotNull( first );
+        assertNotNull( second );
+        RepositoryTask internal = "internal".equals( first.getRepositoryId() ) ? first : second;
+        RepositoryTask snapshots = internal == first ? second : first;
+
+        assertEquals( Arrays.asList( new File( "foo-1.0.jar" ), new File( "foo-1.0.pom" ) ),
+                      internal.getResourceFiles() );
+        assertTrue( internal.getQueuedTime() > 0 );
+        assertEquals( new File( "bar-1.0.jar" ), snapshots.getResourceFile() );
+        assertEquals( 1, snapshots.getResourceFiles().size() );
+    }
+
+    @Test
+    public void testFullBatchQueuedBeforeWindow()
+        throws Exception
+    {
+        scheduler.setCoalesceWindow( 60000 );
+
+        scheduler.queueTask( createTask( "internal", "foo-1.0.jar" ) );
+        scheduler.queueTask( createTask( "internal", "foo-1.0.pom" ) );
+        assertTrue( interactiveQueue.getQueueSnapshot().isEmpty() );
+
+        scheduler.queueTask( createTask( "internal", "foo-1.0-sources.jar" ) );
+        assertEquals( 1, interactiveQueue.getQueueSnapshot().size() );
+
+        RepositoryTask task = (RepositoryTask) interactiveQueue.getQueueSnapshot().get( 0 );
+        assertEquals( 3, task.getResourceFiles().size() );
+
+        // the next file starts a new batch
+        scheduler.queueTask( createTask( "internal", "foo-1.1.jar" ) );
+        assertEquals( 1, interactiveQueue.getQueueSnapshot().size() );
+        assertTrue( scheduler.isProcessingRepositoryTask( createTask( "internal", "foo-1.1.jar" ) ) );
+    }
+
+    @Test
+    public void testUnqueueFileOfBatch()
+        throws Exception
+    {
+        scheduler.setCoalesceWindow( 60000 );
+
+        scheduler.queueTask( createTask( "internal", "foo-1.0.jar" ) );
+        scheduler.queueTask( createTask( "internal", "foo-1.0.pom" ) );
+        scheduler.queueTask( createTask( "internal", "foo-1.0-sources.jar" ) );
+        scheduler.queueTask( createTask( "internal", "foo-1.1.jar" ) );
+
+        // from the queued batch
+        assertTrue( scheduler.unQueueTask( createTask( "internal", "foo-1.0.pom" ) ) );
+        assertEquals( 1, interactiveQueue.getQueueSnapshot().size() );
+        RepositoryTask task = (RepositoryTask) interactiveQueue.getQueueSnapshot().get( 0 );
+        assertEquals( Arrays.asList( new File( "foo-1.0.jar" ), new File( "foo-1.0-sources.jar" ) ),
+                      task.getResourceFiles() );
+        assertFalse( scheduler.isProcessingRepositoryTask( createTask( "internal", "foo-1.0.pom" ) ) );
+
+        // from the pending batch
+        assertTrue( scheduler.unQueueTask( createTask( "internal", "foo-1.1.jar" ) ) );
+        assertFalse( scheduler.isProcessingRepositoryTask( createTask( "internal", "foo-1.1.jar" ) ) );
+
+        assertFalse( scheduler.unQueueTask( createTask( "internal", "foo-1.2.jar" ) ) );
+    }
+}
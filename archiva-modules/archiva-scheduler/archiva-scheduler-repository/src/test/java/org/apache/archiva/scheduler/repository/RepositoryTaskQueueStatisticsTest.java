@@ -0,0 +1,76 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class RepositoryTaskQueueStatisticsTest
+    extends TestCase
+{
+    private RepositoryTask createTask( File resourceFile, long waitTime )
+    {
+        RepositoryTask task = new RepositoryTask( "internal" );
+        task.setResourceFile( resourceFile );
+        task.setQueuedTime( System.currentTimeMillis() - waitTime );
+        return task;
+    }
+
+    @Test
+    public void testResourceFileTasksUseTheInteractiveQueue()
+    {
+        assertEquals( DefaultRepositoryArchivaTaskScheduler.INTERACTIVE_QUEUE,
+                      DefaultRepositoryArchivaTaskScheduler.getQueueName(
+                          createTask( new File( "foo-1.0.jar" ), 0 ) ) );
+        assertEquals( DefaultRepositoryArchivaTaskScheduler.SCANNING_QUEUE,
+                      DefaultRepositoryArchivaTaskScheduler.getQueueName( createTask( null, 0 ) ) );
+    }
+
+    @Test
+    public void testWaitTimesPerQueue()
+    {
+        RepositoryTaskQueueStatistics statistics = new RepositoryTaskQueueStatistics();
+
+        statistics.taskStarted( createTask( null, 60000 ) );
+        statistics.taskStarted( createTask( new File( "foo-1.0.jar" ), 1000 ) );
+        statistics.taskStarted( createTask( new File( "foo-1.0.pom" ), 3000 ) );
+
+        // not queued through the scheduler
+        statistics.taskStarted( new RepositoryTask( "internal" ) );
+
+        String interactive = DefaultRepositoryArchivaTaskScheduler.INTERACTIVE_QUEUE;
+        assertEquals( 2, statistics.getStartedTaskCount( interactive ) );
+        assertTrue( statistics.getAverageWaitTime( interactive ) >= 2000 );
+        assertTrue( statistics.getAverageWaitTime( interactive ) < 60000 );
+        assertTrue( statistics.getMaxWaitTime( interactive ) >= 3000 );
+
+        String scanning = DefaultRepositoryArchivaTaskScheduler.SCANNING_QUEUE;
+        assertEquals( 1, statistics.getStartedTaskCount( scanning ) );
+        assertTrue( statistics.getMaxWaitTime( scanning ) >= 60000 );
+
+        assertEquals( 0, statistics.getAverageWaitTime( "taskQueue#indexing" ) );
+    }
+}
@@ -37,6 +37,7 @@
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service( "knownRepositoryContentConsumer#test-consumer" )
 public class TestConsumer
@@ -50,6 +51,14 @@
 
     private ManagedRepositoryContent repository;
 
+    private volatile long processingDelay;
+
+    private final AtomicInteger processing = new AtomicInteger();
+
+    private final AtomicInteger maxProcessing = new AtomicInteger();
+
+    private final AtomicInteger processedFileCount = new AtomicInteger();
+
     @Override
     public String getId()
     {
@@ -101,16 +110,31 @@ public void beginScan( ManagedRepository repository, Date whenGathered, boolean
     public void processFile( String path )
         throws ConsumerException
     {
-        if ( !path.endsWith( ".sha1" ) && !path.endsWith( ".md5" ) )
+        int current = processing.incrementAndGet();
+        try
         {
-            try
+            int max = maxProcessing.get();
+            while ( current > max && !maxProcessing.compareAndSet( max, current ) )
             {
-                consumed.add( repository.toArtifactReference( path ) );
+                max = maxProcessing.get();
             }
-            catch ( LayoutException e )
+            if ( processingDelay > 0 )
             {
-                throw new ConsumerException( e.getMessage(), e );
+                Thread.sleep( processingDelay );
             }
+            if ( !path.endsWith( ".sha1" ) && !path.endsWith( ".md5" ) )
+            {
+                consumed.add( repository.toArtifactReference( path ) );
+            }
+        }
+        catch ( LayoutException | InterruptedException e )
+        {
+            throw new ConsumerException( e.getMessage(), e );
+        }
+        finally
+        {
+            processing.decrementAndGet();
+            processedFileCount.incrementAndGet();
         }
     }
 
@@ -136,4 +160,25 @@ public Collection<ArtifactReference> getConsumed()
     {
         return consumed;
     }
+
+    /**
+     * @param processingDelay time in ms spent on each file, to keep a scan in progress
+     */
+    public void setProcessingDelay( long processingDelay )
+    {
+        this.processingDelay = processingDelay;
+    }
+
+    /**
+     * @return the maximum number of files processed at the same time
+     */
+    public int getMaxProcessing()
+    {
+        return maxProcessing.get();
+    }
+
+    public int getProcessedFileCount()
+    {
+        return processedFileCount.get();
+    }
 }
\ No newline at end of file
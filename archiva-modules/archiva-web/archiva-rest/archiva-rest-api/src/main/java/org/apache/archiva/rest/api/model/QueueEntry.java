@@ -33,6 +33,25 @@
 
     private int entriesNumber;
 
+    /**
+     * age in milliseconds of the oldest task waiting in the queue, when known
+     *
+     * @since 2.2.2
+     */
+    private long currentWaitTime;
+
+    /**
+     * average time in milliseconds the executed tasks waited in the queue, when known
+     *
+     * @since 2.2.2
+     */
+    private long averageWaitTime;
+
+    /**
+     * @since 2.2.2
+     */
+    private long maxWaitTime;
+
     public QueueEntry()
     {
         // no op
@@ -64,6 +83,36 @@ public void setEntriesNumber( int entriesNumber )
         this.entriesNumber = entriesNumber;
     }
 
+    public long getCurrentWaitTime()
+    {
+        return currentWaitTime;
+    }
+
+    public void setCurrentWaitTime( long currentWaitTime )
+    {
+        this.currentWaitTime = currentWaitTime;
+    }
+
+    public long getAverageWaitTime()
+    {
+        return averageWaitTime;
+    }
+
+    public void setAverageWaitTime( long averageWaitTime )
+    {
+        this.averageWaitTime = averageWaitTime;
+    }
+
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime( long maxWaitTime )
+    {
+        this.maxWaitTime = maxWaitTime;
+    }
+
     @Override
     public String toString()
     {
@@ -71,6 +120,9 @@ public String toString()
         sb.append( "QueueEntry" );
         sb.append( "{key='" ).append( key ).append( '\'' );
         sb.append( ", entriesNumber=" ).append( entriesNumber );
+        sb.append( ", currentWaitTime=" ).append( currentWaitTime );
+        sb.append( ", averageWaitTime=" ).append( averageWaitTime );
+        sb.append( ", maxWaitTime=" ).append( maxWaitTime );
         sb.append( '}' );
         return sb.toString();
     }
@@ -0,0 +1,124 @@
+package org.apache.archiva.rest.api.model;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * progress of a running remote index download
+ *
+ * @since 2.2.2
+ */
+@XmlRootElement( name = "remoteIndexDownload" )
+public class RemoteIndexDownload
+    implements Serializable
+{
+    private String repositoryId;
+
+    private long downloadedBytes;
+
+    private long expectedBytes;
+
+    private long bytesPerSecond;
+
+    /**
+     * estimated remaining time in ms, -1 if unknown
+     */
+    private long estimatedRemainingTime;
+
+    public RemoteIndexDownload()
+    {
+        // no op
+    }
+
+    public RemoteIndexDownload( String repositoryId, long downloadedBytes, long expectedBytes, long bytesPerSecond,
+                                long estimatedRemainingTime )
+    {
+        this.repositoryId = repositoryId;
+        this.downloadedBytes = downloadedBytes;
+        this.expectedBytes = expectedBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.estimatedRemainingTime = estimatedRemainingTime;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public void setRepositoryId( String repositoryId )
+    {
+        this.repositoryId = repositoryId;
+    }
+
+    public long getDownloadedBytes()
+    {
+        return downloadedBytes;
+    }
+
+    public void setDownloadedBytes( long downloadedBytes )
+    {
+        this.downloadedBytes = downloadedBytes;
+    }
+
+    public long getExpectedBytes()
+    {
+        return expectedBytes;
+    }
+
+    public void setExpectedBytes( long expectedBytes )
+    {
+        this.expectedBytes = expectedBytes;
+    }
+
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond( long bytesPerSecond )
+    {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getEstimatedRemainingTime()
+    {
+        return estimatedRemainingTime;
+    }
+
+    public void setEstimatedRemainingTime( long estimatedRemainingTime )
+    {
+        this.estimatedRemainingTime = estimatedRemainingTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder( "RemoteIndexDownload{" );
+        sb.append( "repositoryId='" ).append( repositoryId ).append( '\'' );
+        sb.append( ", downloadedBytes=" ).append( downloadedBytes );
+        sb.append( ", expectedBytes=" ).append( expectedBytes );
+        sb.append( ", bytesPerSecond=" ).append( bytesPerSecond );
+        sb.append( ", estimatedRemainingTime=" ).append( estimatedRemainingTime );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
@@ -23,6 +23,7 @@
 import org.apache.archiva.redback.authorization.RedbackAuthorization;
 import org.apache.archiva.repository.scanner.RepositoryScanStatistics;
 import org.apache.archiva.rest.api.model.ArtifactTransferRequest;
+import org.apache.archiva.rest.api.model.RemoteIndexDownload;
 import org.apache.archiva.rest.api.model.StringList;
 import org.apache.archiva.security.common.ArchivaRoleConstants;
 
@@ -177,4 +178,14 @@ Boolean deleteProject( @PathParam ("groupId") String groupId, @PathParam ("proje
     @RedbackAuthorization (noPermission = true)
     StringList getRunningRemoteDownloadIds();
 
+    /**
+     * @return bytes received, transfer rate and estimated remaining time of the running remote index downloads
+     * @since 2.2.2
+     */
+    @Path ("runningRemoteDownloads")
+    @GET
+    @Produces ({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN })
+    @RedbackAuthorization (noPermission = true)
+    List<RemoteIndexDownload> getRunningRemoteDownloads();
+
 }
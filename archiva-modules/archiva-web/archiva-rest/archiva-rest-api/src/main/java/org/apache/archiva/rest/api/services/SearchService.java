@@ -99,6 +99,23 @@ List<Artifact> getArtifactVersions( @QueryParam( "groupId" ) String groupId, //
     GroupIdList getAllGroupIds( @QueryParam( "selectedRepos" ) List<String> selectedRepos )
         throws ArchivaRestServiceException;
 
+    /**
+     * Complete the beginning of <code>groupId:artifactId:version</code> coordinates up to the next level, using the
+     * coordinates index built with the Maven Indexer index.
+     * <b>completion will be apply on all repositories the current user has karma</b>
+     *
+     * @param prefix beginning of the coordinates: groupId prefix, <code>groupId:</code> then artifactId prefix or
+     *               <code>groupId:artifactId:</code> then version prefix
+     * @param limit  maximum number of completions, 20 if not set
+     * @since 2.2.2
+     */
+    @Path( "autocomplete" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( noPermission = true, noRestriction = true )
+    StringList autocomplete( @QueryParam( "prefix" ) String prefix, @QueryParam( "limit" ) int limit )
+        throws ArchivaRestServiceException;
+
     /**
      * @since 1.4-M3
      */
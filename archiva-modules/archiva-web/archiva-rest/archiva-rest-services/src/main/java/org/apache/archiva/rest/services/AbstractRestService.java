@@ -68,6 +68,7 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -316,14 +317,28 @@ protected String getArtifactUrl( Artifact artifact, String repositoryId )
 
     protected List<Artifact> buildArtifacts( Collection<ArtifactMetadata> artifactMetadatas, String repositoryId )
         throws ArchivaRestServiceException
+    {
+        if ( artifactMetadatas != null && !artifactMetadatas.isEmpty() )
+        {
+            return buildArtifacts( artifactMetadatas.iterator(), repositoryId );
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Build the artifacts while iterating, so the metadata doesn't have to be loaded all at once.
+     */
+    protected List<Artifact> buildArtifacts( Iterator<ArtifactMetadata> artifactMetadatas, String repositoryId )
+        throws ArchivaRestServiceException
     {
         try
         {
-            if ( artifactMetadatas != null && !artifactMetadatas.isEmpty() )
+            if ( artifactMetadatas != null && artifactMetadatas.hasNext() )
             {
-                List<Artifact> artifacts = new ArrayList<>( artifactMetadatas.size() );
-                for ( ArtifactMetadata artifact : artifactMetadatas )
+                List<Artifact> artifacts = new ArrayList<>();
+                while ( artifactMetadatas.hasNext() )
                 {
+                    ArtifactMetadata artifact = artifactMetadatas.next();
 
                     String repoId = repositoryId != null ? repositoryId : artifact.getRepositoryId();
                     if ( repoId == null ) {
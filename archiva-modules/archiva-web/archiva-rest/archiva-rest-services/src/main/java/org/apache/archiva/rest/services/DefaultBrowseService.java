@@ -31,6 +31,7 @@
 import org.apache.archiva.metadata.model.MetadataFacet;
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -41,7 +42,6 @@
 import org.apache.archiva.model.ArchivaArtifact;
 import org.apache.archiva.model.ArchivaRepositoryMetadata;
 import org.apache.archiva.proxy.model.RepositoryProxyConnectors;
-import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.archiva.repository.ManagedRepositoryContent;
 import org.apache.archiva.repository.RepositoryContentFactory;
 import org.apache.archiva.repository.RepositoryException;
@@ -104,10 +104,6 @@
     @Named( value = "repositoryProxyConnectors#default" )
     private RepositoryProxyConnectors connectors;
 
-    @Inject
-    @Named( value = "browse#versionMetadata" )
-    private Cache<String, ProjectVersionMetadata> versionMetadataCache;
-
     @Override
     public BrowseResult getRootGroups( String repositoryId )
         throws ArchivaRestServiceException
@@ -348,35 +344,10 @@ public ProjectVersionMetadata getProjectVersionMetadata( String groupId, String
                     {
                         try
                         {
-                            ProjectVersionMetadata projectVersionMetadataResolved = null;
-                            boolean useCache = !StringUtils.endsWith( version, VersionUtil.SNAPSHOT );
-                            String cacheKey = null;
-                            boolean cacheToUpdate = false;
-                            // FIXME a bit maven centric!!!
-                            // not a snapshot so get it from cache
-                            if ( useCache )
-                            {
-                                cacheKey = repoId + groupId + artifactId + version;
-                                projectVersionMetadataResolved = versionMetadataCache.get( cacheKey );
-                            }
-                            if ( useCache && projectVersionMetadataResolved != null )
-                            {
-                                versionMetadata = projectVersionMetadataResolved;
-                            }
-                            else
-                            {
-                                projectVersionMetadataResolved =
-                                    metadataResolver.resolveProjectVersion( repositorySession, repoId, groupId,
-                                                                            artifactId, version );
-                                versionMetadata = projectVersionMetadataResolved;
-                                cacheToUpdate = true;
-                            }
-
-                            if ( useCache && cacheToUpdate )
-                            {
-                                versionMetadataCache.put( cacheKey, projectVersionMetadataResolved );
-                            }
-
+                            // the session caches the project versions read from the metadata repository
+                            versionMetadata =
+                                metadataResolver.resolveProjectVersion( repositorySession, repoId, groupId,
+                                                                        artifactId, version );
                         }
                         catch ( MetadataResolutionException e )
                         {
@@ -939,9 +910,9 @@ public List<Artifact> getArtifacts( String repositoryId )
         throws ArchivaRestServiceException
     {
         RepositorySession repositorySession = repositorySessionFactory.createSession();
-        try
+        try (CloseableIterator<ArtifactMetadata> artifactMetadatas = repositorySession.getRepository().streamArtifacts(
+            repositoryId ))
         {
-            List<ArtifactMetadata> artifactMetadatas = repositorySession.getRepository().getArtifacts( repositoryId );
             return buildArtifacts( artifactMetadatas, repositoryId );
         }
         catch ( MetadataRepositoryException e )
@@ -1263,14 +1234,4 @@ private String collapseNamespaces( RepositorySession repositorySession, Metadata
                                        n + "." + subNamespaces.iterator().next() );
         }
     }
-
-    public Cache getVersionMetadataCache()
-    {
-        return versionMetadataCache;
-    }
-
-    public void setVersionMetadataCache( Cache versionMetadataCache )
-    {
-        this.versionMetadataCache = versionMetadataCache;
-    }
 }
@@ -24,6 +24,7 @@
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.maven2.model.Artifact;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.RepositorySession;
@@ -113,19 +114,37 @@ protected void doMerge( String sourceRepositoryId, String targetRepositoryId )
         {
             ManagedRepository repository = managedRepositoryAdmin.getManagedRepository( targetRepositoryId );
             MetadataRepository metadataRepository = repositorySession.getRepository();
-            List<ArtifactMetadata> sourceArtifacts = metadataRepository.getArtifacts( sourceRepositoryId );
 
             if ( repository.isReleases() && !repository.isSnapshots() )
             {
+                // only keep the release artifacts in memory
+                List<ArtifactMetadata> sourceArtifacts = new ArrayList<>();
+                try (CloseableIterator<ArtifactMetadata> artifacts = metadataRepository.streamArtifacts(
+                    sourceRepositoryId ))
+                {
+                    while ( artifacts.hasNext() )
+                    {
+                        ArtifactMetadata metadata = artifacts.next();
+                        if ( !VersionUtil.isSnapshot( metadata.getProjectVersion() ) )
+                        {
+                            sourceArtifacts.add( metadata );
+                        }
+                    }
+                }
                 mergeWithOutSnapshots( metadataRepository, sourceArtifacts, sourceRepositoryId, targetRepositoryId );
             }
             else
             {
                 repositoryMerger.merge( metadataRepository, sourceRepositoryId, targetRepositoryId );
 
-                for ( ArtifactMetadata metadata : sourceArtifacts )
+                try (CloseableIterator<ArtifactMetadata> sourceArtifacts = metadataRepository.streamArtifacts(
+                    sourceRepositoryId ))
                 {
-                    triggerAuditEvent( targetRepositoryId, metadata.getId(), AuditEvent.MERGING_REPOSITORIES );
+                    while ( sourceArtifacts.hasNext() )
+                    {
+                        triggerAuditEvent( targetRepositoryId, sourceArtifacts.next().getId(),
+                                           AuditEvent.MERGING_REPOSITORIES );
+                    }
                 }
             }
 
@@ -66,6 +66,7 @@
 import org.apache.archiva.repository.scanner.RepositoryScannerException;
 import org.apache.archiva.repository.scanner.RepositoryScannerInstance;
 import org.apache.archiva.rest.api.model.ArtifactTransferRequest;
+import org.apache.archiva.rest.api.model.RemoteIndexDownload;
 import org.apache.archiva.rest.api.model.StringList;
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.RepositoriesService;
@@ -74,6 +75,7 @@
 import org.apache.archiva.scheduler.indexing.ArtifactIndexingTask;
 import org.apache.archiva.scheduler.indexing.DownloadRemoteIndexException;
 import org.apache.archiva.scheduler.indexing.DownloadRemoteIndexScheduler;
+import org.apache.archiva.scheduler.indexing.RemoteIndexDownloadProgress;
 import org.apache.archiva.scheduler.repository.model.RepositoryTask;
 import org.apache.archiva.security.ArchivaSecurityException;
 import org.apache.archiva.security.common.ArchivaRoleConstants;
@@ -902,6 +904,7 @@ public Boolean deleteArtifact( Artifact artifact )
 
                         if ( StringUtils.equals( artifact.getClassifier(), mavenArtifactFacet.getClassifier() ) )
                         {
+                            fireDeleteArtifact( metadataRepository, repository.getId(), artifactMetadata );
                             artifactMetadata.removeFacet( MavenArtifactFacet.FACET_ID );
                             String groupId = artifact.getGroupId(), artifactId = artifact.getArtifactId(), version =
                                 artifact.getVersion();
@@ -915,6 +918,7 @@ public Boolean deleteArtifact( Artifact artifact )
                     }
                     else
                     {
+                        fireDeleteArtifact( metadataRepository, repository.getId(), artifactMetadata );
                         if ( snapshotVersion )
                         {
                             metadataRepository.removeArtifact( artifactMetadata,
@@ -928,15 +932,6 @@ public Boolean deleteArtifact( Artifact artifact )
                                                                artifactMetadata.getId() );
                         }
                     }
-                    // TODO: move into the metadata repository proper - need to differentiate attachment of
-                    //       repository metadata to an artifact
-                    for ( RepositoryListener listener : listeners )
-                    {
-                        listener.deleteArtifact( metadataRepository, repository.getId(),
-                                                 artifactMetadata.getNamespace(), artifactMetadata.getProject(),
-                                                 artifactMetadata.getVersion(), artifactMetadata.getId() );
-                    }
-
                     triggerAuditEvent( repositoryId, path, AuditEvent.REMOVE_FILE );
                 }
             }
@@ -1135,6 +1130,22 @@ public RepositoryScanStatistics scanRepositoryDirectoriesNow( String repositoryI
         }
     }
 
+    /**
+     * Notify the listeners before the metadata of the artifact is removed, so that they can still look it up.
+     */
+    private void fireDeleteArtifact( MetadataRepository metadataRepository, String repositoryId,
+                                     ArtifactMetadata artifactMetadata )
+    {
+        // TODO: move into the metadata repository proper - need to differentiate attachment of
+        //       repository metadata to an artifact
+        for ( RepositoryListener listener : listeners )
+        {
+            listener.deleteArtifact( metadataRepository, repositoryId, artifactMetadata.getNamespace(),
+                                     artifactMetadata.getProject(), artifactMetadata.getVersion(),
+                                     artifactMetadata.getId() );
+        }
+    }
+
     /**
      * Update artifact level metadata. Creates one if metadata does not exist after artifact deletion.
      *
@@ -1202,6 +1213,19 @@ public StringList getRunningRemoteDownloadIds()
         return new StringList( downloadRemoteIndexScheduler.getRunningRemoteDownloadIds() );
     }
 
+    @Override
+    public List<RemoteIndexDownload> getRunningRemoteDownloads()
+    {
+        List<RemoteIndexDownload> downloads = new ArrayList<>();
+        for ( RemoteIndexDownloadProgress progress : downloadRemoteIndexScheduler.getRunningRemoteDownloads() )
+        {
+            downloads.add( new RemoteIndexDownload( progress.getRepositoryId(), progress.getDownloadedBytes(),
+                                                    progress.getExpectedBytes(), progress.getBytesPerSecond(),
+                                                    progress.getEstimatedRemainingTime() ) );
+        }
+        return downloads;
+    }
+
     public ManagedRepositoryAdmin getManagedRepositoryAdmin()
     {
         return managedRepositoryAdmin;
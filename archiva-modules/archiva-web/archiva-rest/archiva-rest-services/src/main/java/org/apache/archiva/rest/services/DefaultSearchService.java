@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.admin.model.RepositoryAdminException;
 import org.apache.archiva.common.utils.VersionComparator;
 import org.apache.archiva.indexer.search.RepositorySearch;
 import org.apache.archiva.indexer.search.RepositorySearchException;
@@ -38,6 +39,7 @@
 import org.apache.archiva.rest.api.model.StringList;
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.SearchService;
+import org.apache.archiva.scheduler.indexing.CoordinatesIndexManager;
 import org.apache.commons.collections.ListUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Service;
@@ -65,12 +67,17 @@
 
     private static final String LATEST_KEYWORD = "LATEST";
 
+    private static final int DEFAULT_AUTOCOMPLETE_LIMIT = 20;
+
     @Inject
     private RepositorySearch repositorySearch;
 
     @Inject
     private RepositorySessionFactory repositorySessionFactory;
 
+    @Inject
+    private CoordinatesIndexManager coordinatesIndexManager;
+
     @Override
     public List<Artifact> quickSearch( String queryString )
         throws ArchivaRestServiceException
@@ -205,6 +212,33 @@ public GroupIdList getAllGroupIds( List<String> selectedRepos )
     }
 
 
+    @Override
+    public StringList autocomplete( String prefix, int limit )
+        throws ArchivaRestServiceException
+    {
+        if ( StringUtils.isBlank( prefix ) )
+        {
+            return new StringList( Collections.<String>emptyList() );
+        }
+
+        Set<String> contextIds = new HashSet<>();
+        for ( String repoId : getObservableRepos() )
+        {
+            contextIds.add( repoId );
+            try
+            {
+                contextIds.addAll( repositorySearch.getRemoteIndexingContextIds( repoId ) );
+            }
+            catch ( RepositoryAdminException e )
+            {
+                log.warn( "skip remote indexes of repository {}: {}", repoId, e.getMessage() );
+            }
+        }
+
+        return new StringList( coordinatesIndexManager.complete( contextIds, prefix,
+                                                                 limit > 0 ? limit : DEFAULT_AUTOCOMPLETE_LIMIT ) );
+    }
+
     public List<Artifact> getArtifactByChecksum( ChecksumSearch checksumSearch )
         throws ArchivaRestServiceException
     {
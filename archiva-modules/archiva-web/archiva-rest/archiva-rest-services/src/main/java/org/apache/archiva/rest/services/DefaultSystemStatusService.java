@@ -31,6 +31,8 @@
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.SystemStatusService;
 import org.apache.archiva.rest.services.utils.ConsumerScanningStatisticsComparator;
+import org.apache.archiva.scheduler.repository.RepositoryTaskQueueStatistics;
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
@@ -63,6 +65,9 @@
 
     private RepositoryScanner scanner;
 
+    @Inject
+    private RepositoryTaskQueueStatistics repositoryTaskQueueStatistics;
+
     // display spring scheduled
     //@Inject @Named (value="springScheduler");
 
@@ -109,9 +114,25 @@ public List<QueueEntry> getQueueEntries()
         try
         {
             List<QueueEntry> queueEntries = new ArrayList<QueueEntry>( queues.size() );
+            long now = System.currentTimeMillis();
             for ( Map.Entry<String, TaskQueue> entry : queues.entrySet() )
             {
-                queueEntries.add( new QueueEntry( entry.getKey(), entry.getValue().getQueueSnapshot().size() ) );
+                List<?> tasks = entry.getValue().getQueueSnapshot();
+                QueueEntry queueEntry = new QueueEntry( entry.getKey(), tasks.size() );
+
+                // wait times are only tracked for the repository task lanes
+                for ( Object task : tasks )
+                {
+                    if ( task instanceof RepositoryTask && ( (RepositoryTask) task ).getQueuedTime() > 0 )
+                    {
+                        queueEntry.setCurrentWaitTime( Math.max( queueEntry.getCurrentWaitTime(),
+                                                                 now - ( (RepositoryTask) task ).getQueuedTime() ) );
+                    }
+                }
+                queueEntry.setAverageWaitTime( repositoryTaskQueueStatistics.getAverageWaitTime( entry.getKey() ) );
+                queueEntry.setMaxWaitTime( repositoryTaskQueueStatistics.getMaxWaitTime( entry.getKey() ) );
+
+                queueEntries.add( queueEntry );
             }
 
             return queueEntries;
@@ -22,6 +22,7 @@
 import com.sun.syndication.feed.synd.SyndFeed;
 import com.sun.syndication.io.FeedException;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.rss.RssFeedEntry;
@@ -90,55 +91,52 @@ private SyndFeed processNewArtifactsInRepo( String repoId, MetadataRepository me
         greaterThanThisDate.add( Calendar.DATE, -( getNumberOfDaysBeforeNow() ) );
         greaterThanThisDate.clear( Calendar.MILLISECOND );
 
-        List<ArtifactMetadata> artifacts;
-        try
-        {
-            artifacts = metadataRepository.getArtifactsByDateRange( repoId, greaterThanThisDate.getTime(), null );
-        }
-        catch ( MetadataRepositoryException e )
-        {
-            throw new FeedException( "Unable to construct feed, metadata could not be retrieved: " + e.getMessage(),
-                                     e );
-        }
-
         long tmp = 0;
         RssFeedEntry entry = null;
         List<RssFeedEntry> entries = new ArrayList<>();
         String description = "";
-        int idx = 0;
-        for ( ArtifactMetadata artifact : artifacts )
+        try (CloseableIterator<ArtifactMetadata> artifacts = metadataRepository.streamArtifactsByDateRange(
+            repoId, greaterThanThisDate.getTime(), null ))
         {
-            long whenGathered = artifact.getWhenGathered().getTime();
-
-            String id = artifact.getNamespace() + "/" + artifact.getProject() + "/" + artifact.getId();
-            if ( tmp != whenGathered )
+            while ( artifacts.hasNext() )
             {
-                if ( entry != null )
+                ArtifactMetadata artifact = artifacts.next();
+                long whenGathered = artifact.getWhenGathered().getTime();
+
+                String id = artifact.getNamespace() + "/" + artifact.getProject() + "/" + artifact.getId();
+                if ( tmp != whenGathered )
                 {
-                    entry.setDescription( description );
-                    entries.add( entry );
-                    entry = null;
+                    if ( entry != null )
+                    {
+                        entry.setDescription( description );
+                        entries.add( entry );
+                        entry = null;
+                    }
+
+                    String repoId1 = artifact.getRepositoryId();
+                    entry = new RssFeedEntry( this.getTitle() + "\'" + repoId1 + "\'" + " as of " + new Date(
+                        whenGathered ) );
+                    entry.setPublishedDate( artifact.getWhenGathered() );
+                    description = this.getDescription() + "\'" + repoId1 + "\'" + ": \n" + id + " | ";
+                }
+                else
+                {
+                    description = description + id + " | ";
                 }
 
-                String repoId1 = artifact.getRepositoryId();
-                entry = new RssFeedEntry( this.getTitle() + "\'" + repoId1 + "\'" + " as of " + new Date(
-                    whenGathered ) );
-                entry.setPublishedDate( artifact.getWhenGathered() );
-                description = this.getDescription() + "\'" + repoId1 + "\'" + ": \n" + id + " | ";
-            }
-            else
-            {
-                description = description + id + " | ";
+                tmp = whenGathered;
             }
 
-            if ( idx == ( artifacts.size() - 1 ) )
+            if ( entry != null )
             {
                 entry.setDescription( description );
                 entries.add( entry );
             }
-
-            tmp = whenGathered;
-            idx++;
+        }
+        catch ( MetadataRepositoryException e )
+        {
+            throw new FeedException( "Unable to construct feed, metadata could not be retrieved: " + e.getMessage(),
+                                     e );
         }
 
         return generator.generateFeed( getTitle() + "\'" + repoId + "\'",
@@ -24,6 +24,11 @@
 import org.apache.archiva.admin.model.managed.ManagedRepositoryAdmin;
 import org.apache.archiva.redback.authentication.AuthenticationResult;
 import org.apache.archiva.redback.authorization.AuthorizationException;
+import org.apache.archiva.redback.rbac.Permission;
+import org.apache.archiva.redback.rbac.RBACManager;
+import org.apache.archiva.redback.rbac.RBACManagerListener;
+import org.apache.archiva.redback.rbac.Role;
+import org.apache.archiva.redback.rbac.UserAssignment;
 import org.apache.archiva.redback.role.RoleManager;
 import org.apache.archiva.redback.role.RoleManagerException;
 import org.apache.archiva.redback.system.DefaultSecuritySession;
@@ -37,9 +42,16 @@
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DefaultUserRepositories
@@ -58,8 +70,42 @@
     @Inject
     private ManagedRepositoryAdmin managedRepositoryAdmin;
 
+    @Inject
+    @Named( value = "rbacManager#cached" )
+    private RBACManager rbacManager;
+
     private Logger log = LoggerFactory.getLogger( getClass() );
 
+    private static final int MAX_PERMISSION_MATRICES = 1000;
+
+    /**
+     * maximum age in milliseconds of a permission matrix, bounds the effect of RBAC changes made outside of the
+     * rbac manager (e.g. LDAP group mappings)
+     *
+     * @since 2.2.2
+     */
+    private long permissionMatrixMaxAge =
+        Long.getLong( "archiva.security.permissionMatrix.maxAge", TimeUnit.MINUTES.toMillis( 10 ) );
+
+    /**
+     * principal -> compiled repository permissions, least recently used principals are dropped first
+     */
+    private final Map<String, RepositoryPermissionMatrix> permissionMatrices = Collections.synchronizedMap(
+        new LinkedHashMap<String, RepositoryPermissionMatrix>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, RepositoryPermissionMatrix> eldest )
+            {
+                return size() > MAX_PERMISSION_MATRICES;
+            }
+        } );
+
+    @PostConstruct
+    public void initialize()
+    {
+        rbacManager.addListener( new PermissionMatrixInvalidator() );
+    }
+
     @Override
     public List<String> getObservableRepositoryIds( String principal )
         throws PrincipalNotFoundException, AccessDeniedException, ArchivaSecurityException
@@ -109,38 +155,81 @@ private List<ManagedRepository> getAccessibleRepositories( String principal, Str
     {
         SecuritySession securitySession = createSession( principal );
 
-        List<ManagedRepository> managedRepositories = new ArrayList<>();
-
         try
         {
             List<ManagedRepository> repos = managedRepositoryAdmin.getManagedRepositories();
 
-            for ( ManagedRepository repo : repos )
+            BitSet granted = getPermissions( principal, securitySession, operation, repos );
+
+            List<ManagedRepository> managedRepositories = new ArrayList<>( granted.cardinality() );
+            for ( int i = granted.nextSetBit( 0 ); i >= 0; i = granted.nextSetBit( i + 1 ) )
             {
+                managedRepositories.add( repos.get( i ) );
+            }
+
+            return managedRepositories;
+        }
+        catch ( RepositoryAdminException e )
+        {
+            throw new ArchivaSecurityException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Returns the repositories of the list the principal is authorized for, as bits over the list indexes. The
+     * answer is kept in the permission matrix of the principal until the RBAC data or the repository list changes.
+     */
+    private BitSet getPermissions( String principal, SecuritySession securitySession, String operation,
+                                   List<ManagedRepository> repos )
+    {
+        List<String> repoIds = new ArrayList<>( repos.size() );
+        for ( ManagedRepository repo : repos )
+        {
+            repoIds.add( repo.getId() );
+        }
+
+        RepositoryPermissionMatrix matrix = permissionMatrices.get( principal );
+        if ( matrix == null || !matrix.isValid( repoIds, permissionMatrixMaxAge ) )
+        {
+            matrix = new RepositoryPermissionMatrix( repoIds );
+            permissionMatrices.put( principal, matrix );
+        }
+
+        BitSet granted = matrix.getPermissions( operation );
+        if ( granted == null )
+        {
+            granted = new BitSet( repoIds.size() );
+            for ( int i = 0; i < repoIds.size(); i++ )
+            {
+                String repoId = repoIds.get( i );
                 try
                 {
-                    String repoId = repo.getId();
                     if ( securitySystem.isAuthorized( securitySession, operation, repoId ) )
                     {
-                        managedRepositories.add( repo );
+                        granted.set( i );
                     }
                 }
                 catch ( AuthorizationException e )
                 {
                     // swallow.
 
-                    log.debug( "Not authorizing '{}' for repository '{}': {}", principal, repo.getId(),
-                               e.getMessage() );
+                    log.debug( "Not authorizing '{}' for repository '{}': {}", principal, repoId, e.getMessage() );
 
                 }
             }
-
-            return managedRepositories;
-        }
-        catch ( RepositoryAdminException e )
-        {
-            throw new ArchivaSecurityException( e.getMessage(), e );
+            matrix.setPermissions( operation, granted );
         }
+        return granted;
+    }
+
+    /**
+     * Drops the permission matrices, they are rebuilt on the next lookup of each principal.
+     *
+     * @since 2.2.2
+     */
+    public void invalidatePermissions()
+    {
+        permissionMatrices.clear();
     }
 
     private SecuritySession createSession( String principal )
@@ -253,4 +342,58 @@ public void setRoleManager( RoleManager roleManager )
     {
         this.roleManager = roleManager;
     }
+
+    public void setPermissionMatrixMaxAge( long permissionMatrixMaxAge )
+    {
+        this.permissionMatrixMaxAge = permissionMatrixMaxAge;
+    }
+
+    /**
+     * Any change of roles, permissions or assignments may change the repositories of any principal.
+     */
+    private class PermissionMatrixInvalidator
+        implements RBACManagerListener
+    {
+        @Override
+        public void rbacInit( boolean freshdb )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacRoleSaved( Role role )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacRoleRemoved( Role role )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacPermissionSaved( Permission permission )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacPermissionRemoved( Permission permission )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacUserAssignmentSaved( UserAssignment userAssignment )
+        {
+            invalidatePermissions();
+        }
+
+        @Override
+        public void rbacUserAssignmentRemoved( UserAssignment userAssignment )
+        {
+            invalidatePermissions();
+        }
+    }
 }
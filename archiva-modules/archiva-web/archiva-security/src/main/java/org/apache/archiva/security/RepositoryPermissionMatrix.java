@@ -0,0 +1,72 @@
+package org.apache.archiva.security;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository permissions of one principal: for each operation a bit set over the managed repository ids the matrix
+ * was built for. Rows are filled on first use of an operation and are never modified afterwards.
+ *
+ * @since 2.2.2
+ */
+class RepositoryPermissionMatrix
+{
+    private final List<String> repositoryIds;
+
+    private final long created = System.currentTimeMillis();
+
+    private final Map<String, BitSet> permissions = new ConcurrentHashMap<>();
+
+    RepositoryPermissionMatrix( List<String> repositoryIds )
+    {
+        this.repositoryIds = repositoryIds;
+    }
+
+    /**
+     * @return <code>true</code> if the matrix was built for these repository ids, in this order, and is not older than
+     *         the given age
+     */
+    boolean isValid( List<String> currentRepositoryIds, long maxAge )
+    {
+        return System.currentTimeMillis() - created <= maxAge && repositoryIds.equals( currentRepositoryIds );
+    }
+
+    List<String> getRepositoryIds()
+    {
+        return repositoryIds;
+    }
+
+    /**
+     * @return the row of the operation, or <code>null</code> if it was not computed yet
+     */
+    BitSet getPermissions( String operation )
+    {
+        return permissions.get( operation );
+    }
+
+    void setPermissions( String operation, BitSet granted )
+    {
+        permissions.put( operation, granted );
+    }
+}
@@ -78,6 +78,30 @@ public void testGetObservableRepositoryIds()
 
     }
 
+    @Test
+    public void testObservableRepositoryIdsFollowRoleChanges()
+        throws Exception
+    {
+        createUser( USER_ALPACA, "Al 'Archiva' Paca" );
+
+        setupRepository( "central" );
+        setupRepository( "corporate" );
+        setupRepository( "internal" );
+
+        assignRepositoryObserverRole( USER_ALPACA, "corporate" );
+        assertRepoIds( new String[]{ "corporate" }, userRepos.getObservableRepositoryIds( USER_ALPACA ) );
+
+        // the compiled permissions of alpaca must not survive the new assignment
+        assignRepositoryObserverRole( USER_ALPACA, "central" );
+        assertRepoIds( new String[]{ "central", "corporate" }, userRepos.getObservableRepositoryIds( USER_ALPACA ) );
+
+        // nor a new repository
+        setupRepository( "snapshots" );
+        assignRepositoryObserverRole( USER_ALPACA, "snapshots" );
+        assertRepoIds( new String[]{ "central", "corporate", "snapshots" },
+                       userRepos.getObservableRepositoryIds( USER_ALPACA ) );
+    }
+
     @After
     @Override
     public void tearDown()
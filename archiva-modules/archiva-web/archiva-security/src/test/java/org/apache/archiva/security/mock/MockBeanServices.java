@@ -128,6 +128,19 @@ public void addArtifact( RepositorySession session, String repoId, String namesp
 
     }
 
+    @Override
+    public void updateArtifact( RepositorySession session, String repoId, String namespace, String projectId,
+                                String projectVersion, ArtifactMetadata artifact )
+    {
+
+    }
+
+    @Override
+    public void completeScan( RepositorySession session, String repoId )
+    {
+
+    }
+
     @Override
     public void addArtifactProblem( RepositorySession session, String repoId, String namespace, String projectId,
                                     String projectVersion, RepositoryStorageMetadataException exception )
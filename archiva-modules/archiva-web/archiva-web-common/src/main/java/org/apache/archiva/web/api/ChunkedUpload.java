@@ -0,0 +1,188 @@
+package org.apache.archiva.web.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.Hex;
+import org.apache.archiva.web.model.FileMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A file uploaded in chunks. Chunks are appended in order with positional writes while the whole file digests are
+ * updated, so completing the upload does not read the file again. A chunk failing its checksum, or interrupted, is
+ * cut off the file and the digests are restored, the client resends it from {@link #getReceived()}.
+ * <p>
+ * Callers hold {@link #getLock()} to append chunks or complete the upload, {@link #getReceived()} and
+ * {@link #getProgress()} can be read at any time.
+ *
+ * @since 2.2.2
+ */
+class ChunkedUpload
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileMetadata fileMetadata;
+
+    private final File file;
+
+    private final Lock lock = new ReentrantLock();
+
+    private volatile long received;
+
+    private MessageDigest sha1;
+
+    private MessageDigest md5;
+
+    ChunkedUpload( FileMetadata fileMetadata, File file )
+        throws NoSuchAlgorithmException
+    {
+        this.fileMetadata = fileMetadata;
+        this.file = file;
+        this.sha1 = MessageDigest.getInstance( ChecksumAlgorithm.SHA1.getAlgorithm() );
+        this.md5 = MessageDigest.getInstance( ChecksumAlgorithm.MD5.getAlgorithm() );
+    }
+
+    FileMetadata getFileMetadata()
+    {
+        return fileMetadata;
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    Lock getLock()
+    {
+        return lock;
+    }
+
+    /**
+     * @return number of bytes received, the offset of the next chunk
+     */
+    long getReceived()
+    {
+        return received;
+    }
+
+    /**
+     * @return a copy of the file metadata with the number of bytes received as size
+     */
+    FileMetadata getProgress()
+    {
+        FileMetadata progress = new FileMetadata( fileMetadata.getName(), received, fileMetadata.getUrl() );
+        progress.setServerFileName( fileMetadata.getServerFileName() );
+        progress.setDeleteUrl( fileMetadata.getDeleteUrl() );
+        progress.setClassifier( fileMetadata.getClassifier() );
+        progress.setPackaging( fileMetadata.getPackaging() );
+        progress.setPomFile( fileMetadata.isPomFile() );
+        progress.setRepositoryId( fileMetadata.getRepositoryId() );
+        return progress;
+    }
+
+    /**
+     * Appends a chunk at {@link #getReceived()}.
+     *
+     * @param expectedSha1 SHA-1 of the chunk, not verified if <code>null</code>
+     * @return <code>false</code> if the chunk does not match its checksum and was discarded
+     */
+    boolean append( InputStream chunk, String expectedSha1 )
+        throws IOException
+    {
+        MessageDigest chunkSha1;
+        MessageDigest previousSha1;
+        MessageDigest previousMd5;
+        try
+        {
+            chunkSha1 = MessageDigest.getInstance( ChecksumAlgorithm.SHA1.getAlgorithm() );
+            previousSha1 = (MessageDigest) sha1.clone();
+            previousMd5 = (MessageDigest) md5.clone();
+        }
+        catch ( NoSuchAlgorithmException | CloneNotSupportedException e )
+        {
+            throw new IOException( "Cannot compute checksums of " + file + ": " + e.getMessage(), e );
+        }
+
+        boolean accepted = false;
+        long position = received;
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.WRITE ))
+        {
+            try
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+                byte[] bytes = buffer.array();
+                int read;
+                while ( ( read = chunk.read( bytes ) ) != -1 )
+                {
+                    chunkSha1.update( bytes, 0, read );
+                    sha1.update( bytes, 0, read );
+                    md5.update( bytes, 0, read );
+
+                    buffer.clear();
+                    buffer.limit( read );
+                    while ( buffer.hasRemaining() )
+                    {
+                        position += channel.write( buffer, position );
+                    }
+                }
+
+                accepted = expectedSha1 == null || expectedSha1.trim().equalsIgnoreCase(
+                    Hex.encode( chunkSha1.digest() ) );
+            }
+            finally
+            {
+                if ( !accepted )
+                {
+                    channel.truncate( received );
+                    sha1 = previousSha1;
+                    md5 = previousMd5;
+                }
+            }
+        }
+
+        if ( accepted )
+        {
+            received = position;
+            fileMetadata.setSize( received );
+        }
+        return accepted;
+    }
+
+    /**
+     * Records the size and checksums of the whole file in the file metadata. No chunk can be appended afterwards.
+     */
+    FileMetadata complete()
+    {
+        fileMetadata.setSize( received );
+        fileMetadata.setSha1( Hex.encode( sha1.digest() ) );
+        fileMetadata.setMd5( Hex.encode( md5.digest() ) );
+        return fileMetadata;
+    }
+}
@@ -20,6 +20,7 @@
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Striped;
 import org.apache.archiva.admin.model.RepositoryAdminException;
 import org.apache.archiva.admin.model.admin.ArchivaAdministration;
 import org.apache.archiva.admin.model.beans.ManagedRepository;
@@ -27,6 +28,8 @@
 import org.apache.archiva.metadata.model.facets.AuditEvent;
 import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.checksum.ChecksummedFile;
+import org.apache.archiva.checksum.Hex;
+import org.apache.archiva.common.FileTypeUtils;
 import org.apache.archiva.common.utils.VersionComparator;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.maven2.metadata.MavenMetadataReader;
@@ -45,8 +48,10 @@
 import org.apache.archiva.rest.services.AbstractRestService;
 import org.apache.archiva.scheduler.ArchivaTaskScheduler;
 import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.apache.archiva.security.ArchivaSecurityException;
 import org.apache.archiva.web.model.FileMetadata;
 import org.apache.archiva.xml.XMLException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.BooleanUtils;
@@ -59,18 +64,24 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.WebUtils;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -79,8 +90,11 @@
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 
 /**
  * @author Olivier Lamy
@@ -90,6 +104,17 @@
     extends AbstractRestService
     implements FileUploadService
 {
+    /**
+     * Directory of a managed repository receiving the uploads of a streaming upload. It is on the same file system as
+     * the artifacts, so saving an upload is a rename, and is excluded from the consumers.
+     *
+     * @since 2.2.2
+     */
+    public static final String STAGING_DIRECTORY = FileTypeUtils.UPLOAD_STAGING_DIRECTORY;
+
+    static final String CHUNKED_UPLOADS_SESSION_KEY =
+        FileUploadService.class.getName() + "chunked_uploads_session_key";
+
     private Logger log = LoggerFactory.getLogger( getClass() );
 
     @Context
@@ -106,6 +131,11 @@
 
     private ChecksumAlgorithm[] algorithms = new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 };
 
+    /**
+     * saves of the same project update the same metadata files, saves of other projects run concurrently
+     */
+    private final Striped<Lock> projectLocks = Striped.lock( 64 );
+
     @Inject
     @Named(value = "archivaTaskScheduler#repository")
     private ArchivaTaskScheduler scheduler;
@@ -130,21 +160,30 @@ public FileMetadata post( MultipartBody multipartBody )
             // skygo: http header form pomFile was once sending 1 for true and void for false
             // leading to permanent false value for pomFile if using toBoolean(); use , "1", ""
             boolean pomFile = BooleanUtils.toBoolean( getStringValue( multipartBody, "pomFile" ) );
+            // optional: when the target repository is known the file is streamed into its staging directory
+            String repositoryId = StringUtils.trim( getStringValue( multipartBody, "repositoryId" ) );
 
             Attachment file = multipartBody.getAttachment( "files[]" );
 
             //Content-Disposition: form-data; name="files[]"; filename="org.apache.karaf.features.command-2.2.2.jar"
             String fileName = file.getContentDisposition().getParameter( "filename" );
 
-            File tmpFile = File.createTempFile( "upload-artifact", ".tmp" );
+            File tmpFile = File.createTempFile( "upload-artifact", ".tmp", getStagingDirectory( repositoryId ) );
             tmpFile.deleteOnExit();
-            IOUtils.copy( file.getDataHandler().getInputStream(), new FileOutputStream( tmpFile ) );
-            FileMetadata fileMetadata = new FileMetadata( fileName, tmpFile.length(), "theurl" );
-            fileMetadata.setServerFileName( tmpFile.getPath() );
-            fileMetadata.setClassifier( classifier );
-            fileMetadata.setDeleteUrl( tmpFile.getName() );
-            fileMetadata.setPomFile( pomFile );
-            fileMetadata.setPackaging( packaging );
+
+            // checksums are computed while the stream is written so save() does not read the file again
+            MessageDigest sha1 = MessageDigest.getInstance( ChecksumAlgorithm.SHA1.getAlgorithm() );
+            MessageDigest md5 = MessageDigest.getInstance( ChecksumAlgorithm.MD5.getAlgorithm() );
+            try (InputStream input = new DigestInputStream(
+                new DigestInputStream( file.getDataHandler().getInputStream(), sha1 ), md5 ))
+            {
+                Files.copy( input, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+
+            FileMetadata fileMetadata =
+                createFileMetadata( fileName, tmpFile, classifier, packaging, pomFile, repositoryId );
+            fileMetadata.setSha1( Hex.encode( sha1.digest() ) );
+            fileMetadata.setMd5( Hex.encode( md5.digest() ) );
 
             log.info( "uploading file: {}", fileMetadata );
 
@@ -154,7 +193,7 @@ public FileMetadata post( MultipartBody multipartBody )
 
             return fileMetadata;
         }
-        catch ( IOException e )
+        catch ( IOException | NoSuchAlgorithmException e )
         {
             throw new ArchivaRestServiceException( e.getMessage(),
                                                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
@@ -162,19 +201,252 @@ public FileMetadata post( MultipartBody multipartBody )
 
     }
 
+    private FileMetadata createFileMetadata( String fileName, File tmpFile, String classifier, String packaging,
+                                             boolean pomFile, String repositoryId )
+    {
+        FileMetadata fileMetadata = new FileMetadata( fileName, tmpFile.length(), "theurl" );
+        fileMetadata.setServerFileName( tmpFile.getPath() );
+        fileMetadata.setClassifier( classifier );
+        fileMetadata.setDeleteUrl( tmpFile.getName() );
+        fileMetadata.setPomFile( pomFile );
+        fileMetadata.setPackaging( packaging );
+        fileMetadata.setRepositoryId( StringUtils.isEmpty( repositoryId ) ? null : repositoryId );
+        return fileMetadata;
+    }
+
+    @Override
+    public FileMetadata initiateChunkedUpload( String fileName, String classifier, String packaging, boolean pomFile,
+                                               String repositoryId )
+        throws ArchivaRestServiceException
+    {
+        if ( StringUtils.isBlank( fileName ) )
+        {
+            throw new ArchivaRestServiceException( "fileName is required",
+                                                   Response.Status.BAD_REQUEST.getStatusCode(), null );
+        }
+
+        try
+        {
+            repositoryId = StringUtils.trim( repositoryId );
+            File tmpFile = File.createTempFile( "upload-artifact", ".tmp", getStagingDirectory( repositoryId ) );
+            tmpFile.deleteOnExit();
+
+            FileMetadata fileMetadata =
+                createFileMetadata( fileName, tmpFile, StringUtils.defaultString( classifier ),
+                                    StringUtils.defaultString( packaging ), pomFile, repositoryId );
+
+            log.info( "start chunked upload of file: {}", fileMetadata );
+
+            getSessionChunkedUploads().put( tmpFile.getName(), new ChunkedUpload( fileMetadata, tmpFile ) );
+
+            return fileMetadata;
+        }
+        catch ( IOException | NoSuchAlgorithmException e )
+        {
+            throw new ArchivaRestServiceException( e.getMessage(),
+                                                   Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
+        }
+    }
+
+    @Override
+    public FileMetadata uploadChunk( String uploadId, long offset, String sha1, InputStream chunk )
+        throws ArchivaRestServiceException
+    {
+        ChunkedUpload upload = getChunkedUploadOrFail( uploadId );
+
+        // chunks of one upload are written one at a time, a concurrent chunk is refused rather than waiting for the
+        // network reads of the one in progress
+        lockOrFail( upload, uploadId );
+        try
+        {
+            if ( offset != upload.getReceived() )
+            {
+                throw new ArchivaRestServiceException(
+                    "Chunk offset " + offset + " does not match the " + upload.getReceived() + " bytes received",
+                    Response.Status.CONFLICT.getStatusCode(), null );
+            }
+
+            try
+            {
+                if ( !upload.append( chunk, StringUtils.trimToNull( sha1 ) ) )
+                {
+                    throw new ArchivaRestServiceException( "Chunk at offset " + offset + " does not match its checksum",
+                                                           Response.Status.BAD_REQUEST.getStatusCode(), null );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new ArchivaRestServiceException( e.getMessage(),
+                                                       Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
+            }
+
+            log.debug( "received {} bytes of {}", upload.getReceived(), upload.getFileMetadata().getName() );
+            return upload.getProgress();
+        }
+        finally
+        {
+            upload.getLock().unlock();
+        }
+    }
+
+    @Override
+    public FileMetadata getChunkedUpload( String uploadId )
+        throws ArchivaRestServiceException
+    {
+        // does not wait for a chunk being received
+        return getChunkedUploadOrFail( uploadId ).getProgress();
+    }
+
+    @Override
+    public FileMetadata finalizeChunkedUpload( String uploadId, long size, String sha1 )
+        throws ArchivaRestServiceException
+    {
+        ChunkedUpload upload = getChunkedUploadOrFail( uploadId );
+        lockOrFail( upload, uploadId );
+        try
+        {
+            if ( size >= 0 && size != upload.getReceived() )
+            {
+                throw new ArchivaRestServiceException(
+                    "Received " + upload.getReceived() + " bytes of " + size + " for " + uploadId,
+                    Response.Status.CONFLICT.getStatusCode(), null );
+            }
+
+            if ( getSessionChunkedUploads().remove( uploadId ) == null )
+            {
+                // completed concurrently
+                throw new ArchivaRestServiceException( "Cannot find upload " + uploadId,
+                                                       Response.Status.NOT_FOUND.getStatusCode(), null );
+            }
+
+            FileMetadata fileMetadata = upload.complete();
+            if ( StringUtils.isNotBlank( sha1 ) && !sha1.trim().equalsIgnoreCase( fileMetadata.getSha1() ) )
+            {
+                upload.getFile().delete();
+                throw new ArchivaRestServiceException(
+                    "Checksum of " + fileMetadata.getName() + " is " + fileMetadata.getSha1() + " not " + sha1,
+                    Response.Status.BAD_REQUEST.getStatusCode(), null );
+            }
+
+            log.info( "uploaded file: {}", fileMetadata );
+
+            getSessionFilesList().add( fileMetadata );
+
+            return fileMetadata;
+        }
+        finally
+        {
+            upload.getLock().unlock();
+        }
+    }
+
+    private void lockOrFail( ChunkedUpload upload, String uploadId )
+        throws ArchivaRestServiceException
+    {
+        if ( !upload.getLock().tryLock() )
+        {
+            throw new ArchivaRestServiceException( "A chunk of upload " + uploadId + " is being received",
+                                                   Response.Status.CONFLICT.getStatusCode(), null );
+        }
+    }
+
+    private ChunkedUpload getChunkedUploadOrFail( String uploadId )
+        throws ArchivaRestServiceException
+    {
+        ChunkedUpload upload = getSessionChunkedUploads().get( uploadId );
+        if ( upload == null )
+        {
+            throw new ArchivaRestServiceException( "Cannot find upload " + uploadId,
+                                                   Response.Status.NOT_FOUND.getStatusCode(), null );
+        }
+        return upload;
+    }
+
+    /**
+     * @return the chunked uploads in progress in the current session, by upload id
+     */
+    private Map<String, ChunkedUpload> getSessionChunkedUploads()
+    {
+        HttpSession session = httpServletRequest.getSession();
+        Map<String, ChunkedUpload> uploads = (Map<String, ChunkedUpload>) session.getAttribute(
+            CHUNKED_UPLOADS_SESSION_KEY );
+        if ( uploads == null )
+        {
+            synchronized ( WebUtils.getSessionMutex( session ) )
+            {
+                uploads = (Map<String, ChunkedUpload>) session.getAttribute( CHUNKED_UPLOADS_SESSION_KEY );
+                if ( uploads == null )
+                {
+                    uploads = new ConcurrentHashMap<>();
+                    session.setAttribute( CHUNKED_UPLOADS_SESSION_KEY, uploads );
+                }
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * @return the staging directory of the repository, or <code>null</code> for the temporary directory if no
+     *         repository is given
+     */
+    private File getStagingDirectory( String repositoryId )
+        throws ArchivaRestServiceException, IOException
+    {
+        if ( StringUtils.isEmpty( repositoryId ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            if ( !userRepositories.isAuthorizedToUploadArtifacts( getPrincipal(), repositoryId ) )
+            {
+                throw new ArchivaRestServiceException( "Not allowed to upload to repository " + repositoryId,
+                                                       Response.Status.FORBIDDEN.getStatusCode(), null );
+            }
+
+            ManagedRepository managedRepository = managedRepositoryAdmin.getManagedRepository( repositoryId );
+            if ( managedRepository == null )
+            {
+                throw new ArchivaRestServiceException( "Cannot find managed repository with id " + repositoryId,
+                                                       Response.Status.BAD_REQUEST.getStatusCode(), null );
+            }
+
+            File stagingDirectory = new File( managedRepository.getLocation(), STAGING_DIRECTORY );
+            if ( !stagingDirectory.exists() && !stagingDirectory.mkdirs() )
+            {
+                throw new IOException( "Cannot create staging directory " + stagingDirectory );
+            }
+            return stagingDirectory;
+        }
+        catch ( RepositoryAdminException | ArchivaSecurityException e )
+        {
+            throw new ArchivaRestServiceException( e.getMessage(),
+                                                   Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
+        }
+    }
+
     /**
-     * FIXME must be per session synchronized not globally
+     * Returns the uploaded files of the current session, creating the list on first use. Only the creation is
+     * synchronized, on the session mutex, so uploads of different sessions never wait for each other.
      *
      * @return
      */
-    protected synchronized List<FileMetadata> getSessionFilesList()
+    protected List<FileMetadata> getSessionFilesList()
     {
-        List<FileMetadata> fileMetadatas =
-            (List<FileMetadata>) httpServletRequest.getSession().getAttribute( FILES_SESSION_KEY );
+        HttpSession session = httpServletRequest.getSession();
+        List<FileMetadata> fileMetadatas = (List<FileMetadata>) session.getAttribute( FILES_SESSION_KEY );
         if ( fileMetadatas == null )
         {
-            fileMetadatas = new CopyOnWriteArrayList<>();
-            httpServletRequest.getSession().setAttribute( FILES_SESSION_KEY, fileMetadatas );
+            synchronized ( WebUtils.getSessionMutex( session ) )
+            {
+                fileMetadatas = (List<FileMetadata>) session.getAttribute( FILES_SESSION_KEY );
+                if ( fileMetadatas == null )
+                {
+                    fileMetadatas = new CopyOnWriteArrayList<>();
+                    session.setAttribute( FILES_SESSION_KEY, fileMetadatas );
+                }
+            }
         }
         return fileMetadatas;
     }
@@ -183,6 +455,26 @@ protected synchronized List<FileMetadata> getSessionFilesList()
     public Boolean deleteFile( String fileName )
         throws ArchivaRestServiceException
     {
+        ChunkedUpload upload = getSessionChunkedUploads().remove( fileName );
+        if ( upload != null )
+        {
+            log.debug( "abort chunked upload:{}", upload.getFile() );
+            return upload.getFile().delete();
+        }
+
+        // the session knows where its files are, staged files are not in the temporary directory
+        for ( FileMetadata fileMetadata : getSessionFileMetadatas() )
+        {
+            if ( fileName.equals( fileMetadata.getDeleteUrl() ) || fileName.equals(
+                fileMetadata.getServerFileName() ) )
+            {
+                getSessionFileMetadatas().remove( fileMetadata );
+                File file = new File( fileMetadata.getServerFileName() );
+                log.debug( "delete session file:{},exists:{}", file.getPath(), file.exists() );
+                return file.exists() ? file.delete() : Boolean.FALSE;
+            }
+        }
+
         File file = new File( SystemUtils.getJavaIoTmpDir(), fileName );
         log.debug( "delete file:{},exists:{}", file.getPath(), file.exists() );
         boolean removed = getSessionFileMetadatas().remove( new FileMetadata( fileName ) );
@@ -208,6 +500,10 @@ public Boolean clearUploadedFiles()
             deleteFile( new File( fileMetadata.getServerFileName() ).getPath() );
         }
         getSessionFileMetadatas().clear();
+        for ( String uploadId : new ArrayList<>( getSessionChunkedUploads().keySet() ) )
+        {
+            deleteFile( uploadId );
+        }
         return Boolean.TRUE;
     }
 
@@ -263,6 +559,24 @@ public Boolean save( String repositoryId, String groupId, String artifactId, Str
                                                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
         }
 
+        Lock projectLock = projectLocks.get( repositoryId + ':' + groupId + ':' + artifactId );
+        projectLock.lock();
+        try
+        {
+            saveFiles( fileMetadatas, repositoryId, groupId, artifactId, version, packaging, generatePom );
+        }
+        finally
+        {
+            projectLock.unlock();
+        }
+
+        return Boolean.TRUE;
+    }
+
+    private void saveFiles( List<FileMetadata> fileMetadatas, String repositoryId, String groupId, String artifactId,
+                            String version, String packaging, boolean generatePom )
+        throws ArchivaRestServiceException
+    {
         // get from the session file with groupId/artifactId
 
         Iterable<FileMetadata> filesToAdd = Iterables.filter( fileMetadatas, new Predicate<FileMetadata>()
@@ -301,8 +615,6 @@ public boolean apply( FileMetadata fileMetadata )
             savePomFile( repositoryId, fileMetadata, groupId, artifactId, version, packaging );
             deleteFile( fileMetadata.getServerFileName() );
         }
-
-        return Boolean.TRUE;
     }
 
     protected void savePomFile( String repositoryId, FileMetadata fileMetadata, String groupId, String artifactId,
@@ -340,7 +652,7 @@ protected void savePomFile( String repositoryId, FileMetadata fileMetadata, Stri
             }
             pomFilename = FilenameUtils.removeExtension( pomFilename ) + ".pom";
 
-            copyFile( new File( fileMetadata.getServerFileName() ), targetPath, pomFilename, fixChecksums );
+            copyFile( fileMetadata, targetPath, pomFilename, fixChecksums );
             triggerAuditEvent( repoConfig.getId(), path + "/" + pomFilename, AuditEvent.UPLOAD_FILE );
             queueRepositoryTask( repoConfig.getId(), new File( targetPath, pomFilename ) );
         }
@@ -437,7 +749,7 @@ protected void saveFile( String repositoryId, FileMetadata fileMetadata, boolean
                 }
                 else
                 {
-                    copyFile( new File( fileMetadata.getServerFileName() ), targetPath, filename, fixChecksums );
+                    copyFile( fileMetadata, targetPath, filename, fixChecksums );
                     triggerAuditEvent( repository.getId(), path + "/" + filename, AuditEvent.UPLOAD_FILE );
                     queueRepositoryTask( repository.getId(), targetFile );
                 }
@@ -574,19 +886,54 @@ private void queueRepositoryTask( String repositoryId, File localFile )
         }
     }
 
-    private void copyFile( File sourceFile, File targetPath, String targetFilename, boolean fixChecksums )
+    /**
+     * Moves the uploaded file to its target. The rename is atomic when the file was staged in the target repository;
+     * checksums computed during the upload are written as is instead of reading the file again.
+     */
+    private void copyFile( FileMetadata fileMetadata, File targetPath, String targetFilename, boolean fixChecksums )
         throws IOException
     {
+        File sourceFile = new File( fileMetadata.getServerFileName() );
+        File targetFile = new File( targetPath, targetFilename );
 
-        Files.copy( sourceFile.toPath(), new File( targetPath, targetFilename ).toPath(), StandardCopyOption.REPLACE_EXISTING,
-                    StandardCopyOption.COPY_ATTRIBUTES );
+        if ( fileMetadata.getSha1() == null || fileMetadata.getMd5() == null )
+        {
+            Files.copy( sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.COPY_ATTRIBUTES );
+
+            if ( fixChecksums )
+            {
+                fixChecksums( targetFile );
+            }
+            return;
+        }
+
+        try
+        {
+            Files.move( sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            // uploaded to the temporary directory, or staged in another repository on another file system
+            log.debug( "cannot rename {} to {}, moving it", sourceFile, targetFile );
+            Files.move( sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
 
         if ( fixChecksums )
         {
-            fixChecksums( new File( targetPath, targetFilename ) );
+            writeChecksum( targetFile, ChecksumAlgorithm.SHA1, fileMetadata.getSha1() );
+            writeChecksum( targetFile, ChecksumAlgorithm.MD5, fileMetadata.getMd5() );
         }
     }
 
+    private void writeChecksum( File file, ChecksumAlgorithm algorithm, String checksum )
+        throws IOException
+    {
+        // same format as ChecksummedFile#fixChecksums
+        File checksumFile = new File( file.getAbsolutePath() + "." + algorithm.getExt() );
+        FileUtils.writeStringToFile( checksumFile, checksum + "  " + file.getName() );
+    }
+
     /**
      * Update artifact level metadata. If it does not exist, create the metadata and fix checksums if necessary.
      */
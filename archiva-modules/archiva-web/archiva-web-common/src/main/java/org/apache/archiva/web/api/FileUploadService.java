@@ -26,13 +26,16 @@
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -84,4 +87,62 @@ Boolean save( @PathParam( "repositoryId" ) String repositoryId, @PathParam( "gro
     Boolean clearUploadedFiles()
         throws ArchivaRestServiceException;
 
+    /**
+     * Starts a chunked upload. The <code>deleteUrl</code> of the returned file metadata identifies the upload in the
+     * following calls. With a repository id the file is written to the staging directory of that repository.
+     *
+     * @since 2.2.2
+     */
+    @Path( "chunked" )
+    @POST
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_REPOSITORY_UPLOAD )
+    FileMetadata initiateChunkedUpload( @QueryParam( "fileName" ) String fileName,
+                                        @QueryParam( "classifier" ) String classifier,
+                                        @QueryParam( "packaging" ) String packaging,
+                                        @QueryParam( "pomFile" ) boolean pomFile,
+                                        @QueryParam( "repositoryId" ) String repositoryId )
+        throws ArchivaRestServiceException;
+
+    /**
+     * Appends a chunk. The offset must be the size received so far (409 otherwise), a chunk not matching the
+     * optional SHA-1 is discarded (400). Either way the returned size is where the client resumes.
+     *
+     * @since 2.2.2
+     */
+    @Path( "chunked/{uploadId}" )
+    @PUT
+    @Consumes( MediaType.APPLICATION_OCTET_STREAM )
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_REPOSITORY_UPLOAD )
+    FileMetadata uploadChunk( @PathParam( "uploadId" ) String uploadId, @QueryParam( "offset" ) long offset,
+                              @QueryParam( "sha1" ) String sha1, InputStream chunk )
+        throws ArchivaRestServiceException;
+
+    /**
+     * @return the chunked upload, its size being the offset of the next chunk
+     * @since 2.2.2
+     */
+    @Path( "chunked/{uploadId}" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_REPOSITORY_UPLOAD )
+    FileMetadata getChunkedUpload( @PathParam( "uploadId" ) String uploadId )
+        throws ArchivaRestServiceException;
+
+    /**
+     * Completes a chunked upload: the file is checked against the expected size and SHA-1, when given, and joins the
+     * uploaded files of the session to be stored by {@link #save}. A file not matching its SHA-1 is discarded.
+     *
+     * @since 2.2.2
+     */
+    @Path( "chunked/{uploadId}/finalize" )
+    @POST
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_REPOSITORY_UPLOAD )
+    FileMetadata finalizeChunkedUpload( @PathParam( "uploadId" ) String uploadId,
+                                        @QueryParam( "size" ) @DefaultValue( "-1" ) long size,
+                                        @QueryParam( "sha1" ) String sha1 )
+        throws ArchivaRestServiceException;
+
 }
@@ -0,0 +1,91 @@
+package org.apache.archiva.web.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.web.model.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * this http session listener deletes at the end of the http session the files uploaded by the user and not saved to
+ * a repository, they would otherwise be left in the staging directory of the repository or the temporary directory
+ *
+ * @since 2.2.2
+ */
+public class UploadedFilesSessionCleaner
+    implements HttpSessionListener
+{
+    private Logger log = LoggerFactory.getLogger( getClass() );
+
+    @Override
+    public void sessionCreated( HttpSessionEvent httpSessionEvent )
+    {
+        // no op
+    }
+
+    @Override
+    public void sessionDestroyed( HttpSessionEvent httpSessionEvent )
+    {
+        HttpSession session = httpSessionEvent.getSession();
+
+        List<FileMetadata> fileMetadatas =
+            (List<FileMetadata>) session.getAttribute( FileUploadService.FILES_SESSION_KEY );
+        if ( fileMetadatas != null )
+        {
+            for ( FileMetadata fileMetadata : fileMetadatas )
+            {
+                // saved files were moved into the repository and are no longer at their server file name
+                if ( fileMetadata.getServerFileName() != null )
+                {
+                    delete( new File( fileMetadata.getServerFileName() ) );
+                }
+            }
+        }
+
+        Map<String, ChunkedUpload> chunkedUploads =
+            (Map<String, ChunkedUpload>) session.getAttribute( DefaultFileUploadService.CHUNKED_UPLOADS_SESSION_KEY );
+        if ( chunkedUploads != null )
+        {
+            for ( ChunkedUpload chunkedUpload : chunkedUploads.values() )
+            {
+                delete( chunkedUpload.getFile() );
+            }
+        }
+    }
+
+    private void delete( File file )
+    {
+        if ( file.exists() )
+        {
+            log.info( "cleanup uploaded file {} not saved in the session", file.getPath() );
+            if ( !file.delete() )
+            {
+                log.warn( "cannot delete uploaded file {}", file.getPath() );
+            }
+        }
+    }
+}
@@ -49,6 +49,23 @@
 
     private boolean pomFile;
 
+    /**
+     * repository the file was staged in, <code>null</code> if it was uploaded to the temporary directory
+     *
+     * @since 2.2.2
+     */
+    private String repositoryId;
+
+    /**
+     * @since 2.2.2
+     */
+    private String sha1;
+
+    /**
+     * @since 2.2.2
+     */
+    private String md5;
+
     public FileMetadata()
     {
         // no op
@@ -169,6 +186,36 @@ public void setPackaging( String packaging )
         this.packaging = packaging;
     }
 
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public void setRepositoryId( String repositoryId )
+    {
+        this.repositoryId = repositoryId;
+    }
+
+    public String getSha1()
+    {
+        return sha1;
+    }
+
+    public void setSha1( String sha1 )
+    {
+        this.sha1 = sha1;
+    }
+
+    public String getMd5()
+    {
+        return md5;
+    }
+
+    public void setMd5( String md5 )
+    {
+        this.md5 = md5;
+    }
+
     @Override
     public boolean equals( Object o )
     {
@@ -211,6 +258,9 @@ public String toString()
         sb.append( ", classifier='" ).append( classifier ).append( '\'' );
         sb.append( ", packaging='" ).append( packaging ).append( '\'' );
         sb.append( ", pomFile=" ).append( pomFile );
+        sb.append( ", repositoryId='" ).append( repositoryId ).append( '\'' );
+        sb.append( ", sha1='" ).append( sha1 ).append( '\'' );
+        sb.append( ", md5='" ).append( md5 ).append( '\'' );
         sb.append( '}' );
         return sb.toString();
     }
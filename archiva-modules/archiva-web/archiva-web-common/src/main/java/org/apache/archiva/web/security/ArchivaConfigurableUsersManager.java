@@ -163,6 +163,15 @@ public void deleteUser( String username )
         Exception lastException = null;
         boolean allFailed = true;
         User user = null;
+        try
+        {
+            // looked up before removal to notify the listeners
+            user = findUser( username, false );
+        }
+        catch ( UserNotFoundException e )
+        {
+            log.debug( "user {} not found before removal", username );
+        }
         for ( UserManager userManager : userManagerPerId.values() )
         {
             try
@@ -182,6 +191,11 @@ public void deleteUser( String username )
         {
             throw new UserManagerException( lastException.getMessage(), lastException );
         }
+
+        if ( user != null )
+        {
+            fireUserManagerUserRemoved( user );
+        }
     }
 
     @Override
@@ -396,6 +410,8 @@ public User updateUser( User user )
             usersCache.put( user.getUsername(), user );
         }
 
+        fireUserManagerUserUpdated( user );
+
         return user;
     }
 
@@ -410,6 +426,8 @@ public User updateUser( User user, boolean passwordChangeRequired )
             usersCache.put( user.getUsername(), user );
         }
 
+        fireUserManagerUserUpdated( user );
+
         return user;
     }
 
@@ -167,6 +167,9 @@ public Role saveRole( Role role )
         {
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
+
+        fireRbacRoleSaved( role );
+
         return role;
     }
 
@@ -289,6 +292,8 @@ public void removeRole( Role role )
         {
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
+
+        fireRbacRoleRemoved( role );
     }
 
     @Override
@@ -332,6 +337,8 @@ public Permission savePermission( Permission permission )
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
 
+        fireRbacPermissionSaved( permission );
+
         return permission;
     }
 
@@ -426,6 +433,8 @@ public void removePermission( Permission permission )
         {
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
+
+        fireRbacPermissionRemoved( permission );
     }
 
     @Override
@@ -719,6 +728,9 @@ public UserAssignment saveUserAssignment( UserAssignment userAssignment )
         {
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
+
+        fireRbacUserAssignmentSaved( userAssignment );
+
         return userAssignment;
     }
 
@@ -910,6 +922,8 @@ public void removeUserAssignment( UserAssignment userAssignment )
         {
             throw new RbacManagerException( lastException.getMessage(), lastException );
         }
+
+        fireRbacUserAssignmentRemoved( userAssignment );
     }
 
     @Override
@@ -49,6 +49,8 @@
 
     private ThreadedTaskQueueExecutor tqeRepoScanning;
 
+    private ThreadedTaskQueueExecutor tqeRepoInteractive;
+
     private ThreadedTaskQueueExecutor tqeIndexing;
 
     private DefaultRepositoryArchivaTaskScheduler repositoryTaskScheduler;
@@ -72,6 +74,9 @@ public void contextInitialized( ServletContextEvent contextEvent )
 
         tqeRepoScanning = wac.getBean( "taskQueueExecutor#repository-scanning", ThreadedTaskQueueExecutor.class );
 
+        tqeRepoInteractive =
+            wac.getBean( "taskQueueExecutor#repository-interactive", ThreadedTaskQueueExecutor.class );
+
         tqeIndexing = wac.getBean( "taskQueueExecutor#indexing", ThreadedTaskQueueExecutor.class );
 
         plexusSisuBridge = wac.getBean( PlexusSisuBridge.class );
@@ -119,6 +124,7 @@ public void contextDestroyed( ServletContextEvent contextEvent )
             // stop task queue executors
             stopTaskQueueExecutor( tqeDbScanning, servletContext );
             stopTaskQueueExecutor( tqeRepoScanning, servletContext );
+            stopTaskQueueExecutor( tqeRepoInteractive, servletContext );
             stopTaskQueueExecutor( tqeIndexing, servletContext );
 
             // stop the DefaultArchivaTaskScheduler and its scheduler
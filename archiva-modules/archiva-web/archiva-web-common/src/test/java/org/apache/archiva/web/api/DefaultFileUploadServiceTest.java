@@ -0,0 +1,470 @@
+package org.apache.archiva.web.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.checksum.Hex;
+import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.archiva.web.model.FileMetadata;
+import org.apache.cxf.jaxrs.ext.multipart.Attachment;
+import org.apache.cxf.jaxrs.ext.multipart.ContentDisposition;
+import org.apache.cxf.jaxrs.ext.multipart.MultipartBody;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent uploads from several sessions against the singleton service.
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultFileUploadServiceTest
+    extends TestCase
+{
+    private static final int FILE_SIZE = 256 * 1024;
+
+    private static final int FILES_PER_SESSION = 20;
+
+    private Logger log = LoggerFactory.getLogger( DefaultFileUploadServiceTest.class );
+
+    private final ThreadLocal<HttpServletRequest> requests = new ThreadLocal<>();
+
+    private DefaultFileUploadService fileUploadService;
+
+    private byte[] content;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        // like the proxy CXF injects for @Context: every thread sees its own request
+        HttpServletRequest request =
+            (HttpServletRequest) Proxy.newProxyInstance( getClass().getClassLoader(), new Class[]{
+                HttpServletRequest.class }, new ThreadLocalRequestHandler() );
+
+        fileUploadService = new DefaultFileUploadService();
+        ReflectionTestUtils.setField( fileUploadService, "httpServletRequest", request );
+
+        content = new byte[FILE_SIZE];
+        new Random( 42 ).nextBytes( content );
+    }
+
+    private MultipartBody createBody( InputStream input, String fileName )
+    {
+        Attachment file = new Attachment( "files[]", input, new ContentDisposition(
+            "form-data; name=\"files[]\"; filename=\"" + fileName + "\"" ) );
+        return new MultipartBody( Collections.singletonList( file ) );
+    }
+
+    private List<MockHttpServletRequest> createSessions( int count )
+    {
+        List<MockHttpServletRequest> sessions = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            sessions.add( new MockHttpServletRequest() );
+        }
+        return sessions;
+    }
+
+    private void clearSessions( List<MockHttpServletRequest> sessions )
+        throws Exception
+    {
+        for ( MockHttpServletRequest session : sessions )
+        {
+            requests.set( session );
+            List<File> files = new ArrayList<>();
+            for ( FileMetadata fileMetadata : fileUploadService.getSessionFileMetadatas() )
+            {
+                files.add( new File( fileMetadata.getServerFileName() ) );
+            }
+
+            fileUploadService.clearUploadedFiles();
+
+            assertTrue( fileUploadService.getSessionFileMetadatas().isEmpty() );
+            for ( File file : files )
+            {
+                assertFalse( file.getPath(), file.exists() );
+            }
+        }
+        requests.remove();
+    }
+
+    /**
+     * Uploads {@link #FILES_PER_SESSION} files in each session, one thread per session, and returns the throughput in
+     * MB/s.
+     */
+    private double upload( final List<MockHttpServletRequest> sessions )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( sessions.size() );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for ( int i = 0; i < sessions.size(); i++ )
+            {
+                final MockHttpServletRequest session = sessions.get( i );
+                final String prefix = "session-" + i;
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        requests.set( session );
+                        try
+                        {
+                            for ( int j = 0; j < FILES_PER_SESSION; j++ )
+                            {
+                                fileUploadService.post(
+                                    createBody( new ByteArrayInputStream( content ), prefix + "-" + j + ".jar" ) );
+                            }
+                        }
+                        finally
+                        {
+                            requests.remove();
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+            long time = System.nanoTime() - start;
+            return (double) sessions.size() * FILES_PER_SESSION * FILE_SIZE / ( 1024 * 1024 ) / ( time / 1e9 );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentSessionsKeepTheirOwnFiles()
+        throws Exception
+    {
+        String sha1 = Hex.encode( MessageDigest.getInstance( "SHA-1" ).digest( content ) );
+        String md5 = Hex.encode( MessageDigest.getInstance( "MD5" ).digest( content ) );
+
+        // warm up
+        List<MockHttpServletRequest> sessions = createSessions( 1 );
+        upload( sessions );
+        clearSessions( sessions );
+
+        double single = 0;
+        for ( int count : new int[]{ 1, 2, 4, 8 } )
+        {
+            sessions = createSessions( count );
+            double throughput = upload( sessions );
+            log.info( "{} concurrent upload sessions: {} MB/s ({}x one session)", count,
+                      String.format( "%.1f", throughput ),
+                      String.format( "%.2f", single == 0 ? 1 : throughput / single ) );
+            if ( count == 1 )
+            {
+                single = throughput;
+            }
+
+            for ( int i = 0; i < count; i++ )
+            {
+                requests.set( sessions.get( i ) );
+                List<FileMetadata> fileMetadatas = fileUploadService.getSessionFileMetadatas();
+                assertEquals( FILES_PER_SESSION, fileMetadatas.size() );
+                for ( FileMetadata fileMetadata : fileMetadatas )
+                {
+                    assertTrue( fileMetadata.getName(), fileMetadata.getName().startsWith( "session-" + i + "-" ) );
+                    assertEquals( FILE_SIZE, fileMetadata.getSize() );
+                    assertEquals( sha1, fileMetadata.getSha1() );
+                    assertEquals( md5, fileMetadata.getMd5() );
+                }
+            }
+            requests.remove();
+
+            clearSessions( sessions );
+        }
+    }
+
+    @Test
+    public void testSlowUploadDoesNotBlockOtherSessions()
+        throws Exception
+    {
+        final CountDownLatch reading = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final InputStream slowInput = new ByteArrayInputStream( content )
+        {
+            @Override
+            public synchronized int read( byte[] b, int off, int len )
+            {
+                reading.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read( b, off, len );
+            }
+        };
+
+        final List<MockHttpServletRequest> sessions = createSessions( 2 );
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            Future<FileMetadata> slow = executor.submit( new Callable<FileMetadata>()
+            {
+                @Override
+                public FileMetadata call()
+                    throws Exception
+                {
+                    requests.set( sessions.get( 0 ) );
+                    return fileUploadService.post( createBody( slowInput, "slow.jar" ) );
+                }
+            } );
+            assertTrue( reading.await( 10, TimeUnit.SECONDS ) );
+
+            Future<FileMetadata> fast = executor.submit( new Callable<FileMetadata>()
+            {
+                @Override
+                public FileMetadata call()
+                    throws Exception
+                {
+                    requests.set( sessions.get( 1 ) );
+                    // the first upload of the session creates its file list
+                    return fileUploadService.post( createBody( new ByteArrayInputStream( content ), "fast.jar" ) );
+                }
+            } );
+            assertEquals( "fast.jar", fast.get( 10, TimeUnit.SECONDS ).getName() );
+            assertFalse( slow.isDone() );
+
+            release.countDown();
+            assertEquals( "slow.jar", slow.get( 10, TimeUnit.SECONDS ).getName() );
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        clearSessions( sessions );
+    }
+
+    private String sha1( byte[] bytes )
+        throws Exception
+    {
+        return Hex.encode( MessageDigest.getInstance( "SHA-1" ).digest( bytes ) );
+    }
+
+    private void assertUploadFails( int status, String uploadId, long offset, String sha1, InputStream chunk )
+    {
+        try
+        {
+            fileUploadService.uploadChunk( uploadId, offset, sha1, chunk );
+            fail( "chunk at offset " + offset + " should be refused" );
+        }
+        catch ( ArchivaRestServiceException e )
+        {
+            assertEquals( status, e.getHttpErrorCode() );
+        }
+    }
+
+    @Test
+    public void testChunkedUploadResumesAfterFailedChunks()
+        throws Exception
+    {
+        requests.set( new MockHttpServletRequest() );
+        try
+        {
+            FileMetadata fileMetadata =
+                fileUploadService.initiateChunkedUpload( "big.zip", null, "zip", false, null );
+            String uploadId = fileMetadata.getDeleteUrl();
+            File file = new File( fileMetadata.getServerFileName() );
+
+            int chunkSize = FILE_SIZE / 4;
+            byte[] first = Arrays.copyOfRange( content, 0, chunkSize );
+            byte[] rest = Arrays.copyOfRange( content, chunkSize, FILE_SIZE );
+
+            assertEquals( chunkSize, fileUploadService.uploadChunk( uploadId, 0, sha1( first ),
+                                                                    new ByteArrayInputStream( first ) ).getSize() );
+
+            // wrong offset, corrupted chunk and connection lost in the middle of a chunk
+            assertUploadFails( 409, uploadId, 0, null, new ByteArrayInputStream( first ) );
+            assertUploadFails( 400, uploadId, chunkSize, sha1( first ), new ByteArrayInputStream( rest ) );
+            assertUploadFails( 500, uploadId, chunkSize, null, new ByteArrayInputStream( rest )
+            {
+                @Override
+                public int read( byte[] b )
+                    throws IOException
+                {
+                    if ( pos > count / 2 )
+                    {
+                        throw new IOException( "connection reset" );
+                    }
+                    return super.read( b, 0, Math.min( b.length, 1024 ) );
+                }
+            } );
+
+            assertEquals( chunkSize, fileUploadService.getChunkedUpload( uploadId ).getSize() );
+            assertEquals( chunkSize, file.length() );
+
+            fileUploadService.uploadChunk( uploadId, chunkSize, sha1( rest ), new ByteArrayInputStream( rest ) );
+
+            assertUploadFailsToFinalize( uploadId, FILE_SIZE + 1, null );
+            fileMetadata = fileUploadService.finalizeChunkedUpload( uploadId, FILE_SIZE, sha1( content ) );
+
+            assertEquals( FILE_SIZE, fileMetadata.getSize() );
+            assertEquals( sha1( content ), fileMetadata.getSha1() );
+            assertEquals( Hex.encode( MessageDigest.getInstance( "MD5" ).digest( content ) ), fileMetadata.getMd5() );
+            assertEquals( Collections.singletonList( fileMetadata ), fileUploadService.getSessionFileMetadatas() );
+            assertTrue( Arrays.equals( content, Files.readAllBytes( file.toPath() ) ) );
+
+            fileUploadService.clearUploadedFiles();
+            assertFalse( file.exists() );
+        }
+        finally
+        {
+            requests.remove();
+        }
+    }
+
+    @Test
+    public void testConcurrentChunkIsRefused()
+        throws Exception
+    {
+        final MockHttpServletRequest session = new MockHttpServletRequest();
+        requests.set( session );
+        final CountDownLatch reading = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final InputStream slowChunk = new ByteArrayInputStream( content )
+        {
+            @Override
+            public synchronized int read( byte[] b, int off, int len )
+            {
+                reading.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read( b, off, len );
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final String uploadId =
+                fileUploadService.initiateChunkedUpload( "big.zip", null, "zip", false, null ).getDeleteUrl();
+
+            Future<FileMetadata> slow = executor.submit( new Callable<FileMetadata>()
+            {
+                @Override
+                public FileMetadata call()
+                    throws Exception
+                {
+                    requests.set( session );
+                    return fileUploadService.uploadChunk( uploadId, 0, null, slowChunk );
+                }
+            } );
+            assertTrue( reading.await( 10, TimeUnit.SECONDS ) );
+
+            // neither waits for the chunk being read
+            assertUploadFails( 409, uploadId, 0, null, new ByteArrayInputStream( content ) );
+            assertEquals( 0, fileUploadService.getChunkedUpload( uploadId ).getSize() );
+
+            release.countDown();
+            assertEquals( FILE_SIZE, slow.get( 10, TimeUnit.SECONDS ).getSize() );
+            assertEquals( FILE_SIZE, fileUploadService.getChunkedUpload( uploadId ).getSize() );
+
+            fileUploadService.clearUploadedFiles();
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+            requests.remove();
+        }
+    }
+
+    private void assertUploadFailsToFinalize( String uploadId, long size, String sha1 )
+    {
+        try
+        {
+            fileUploadService.finalizeChunkedUpload( uploadId, size, sha1 );
+            fail( "upload " + uploadId + " should not be complete" );
+        }
+        catch ( ArchivaRestServiceException e )
+        {
+            assertEquals( 409, e.getHttpErrorCode() );
+        }
+    }
+
+    private class ThreadLocalRequestHandler
+        implements InvocationHandler
+    {
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args )
+            throws Throwable
+        {
+            try
+            {
+                return method.invoke( requests.get(), args );
+            }
+            catch ( InvocationTargetException e )
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -539,16 +539,19 @@ define("archiva/admin/features/generaladmin/main",["jquery","jquery.ui","i18n","
   // System status part
   //---------------------------
 
-  QueueEntry=function(key,entriesNumber){
+  QueueEntry=function(key,entriesNumber,currentWaitTime,averageWaitTime,maxWaitTime){
     this.key=key;
     this.entriesNumber=entriesNumber;
+    this.currentWaitTime=currentWaitTime;
+    this.averageWaitTime=averageWaitTime;
+    this.maxWaitTime=maxWaitTime;
   }
 
 
   mapQueueEntries=function(data){
     if (data!=null){
       return $.map(data,function(item){
-        return new QueueEntry(item.key,item.entriesNumber);
+        return new QueueEntry(item.key,item.entriesNumber,item.currentWaitTime,item.averageWaitTime,item.maxWaitTime);
       })
     }
     return [];
@@ -120,6 +120,8 @@ define("archiva.artifacts-management",["jquery","i18n","utils","jquery.tmpl","kn
                   data.formData.pomFile = pomFile;
                   data.formData.classifier = classifier;
                   data.formData.packaging = packaging;
+                  // stream the file into the selected repository, saving it is then a rename
+                  data.formData.repositoryId = artifactUploadViewModel.repositoryId();
                 });
               }
           });
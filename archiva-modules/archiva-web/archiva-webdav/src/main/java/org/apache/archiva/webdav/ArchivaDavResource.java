@@ -20,8 +20,11 @@
  */
 
 import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.Hex;
 import org.apache.archiva.metadata.model.facets.AuditEvent;
 import org.apache.archiva.repository.events.AuditListener;
+import org.apache.archiva.common.FileTypeUtils;
 import org.apache.archiva.common.filelock.FileLockException;
 import org.apache.archiva.common.filelock.FileLockManager;
 import org.apache.archiva.common.filelock.FileLockTimeoutException;
@@ -34,6 +37,7 @@
 import org.apache.archiva.webdav.util.MimeTypes;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavResource;
@@ -68,7 +72,15 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -79,6 +91,13 @@
 {
     public static final String HIDDEN_PATH_PREFIX = ".";
 
+    /**
+     * suffix of the hidden files the body of a PUT is written to before being renamed into place
+     *
+     * @since 2.2.2
+     */
+    public static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
     private final ArchivaDavResourceLocator locator;
 
     private final DavResourceFactory factory;
@@ -109,6 +128,19 @@
 
     private final FileLockManager fileLockManager;
 
+    /**
+     * Headers some deployment clients send with the checksums of the body, verified before the file is replaced.
+     */
+    public static final String HEADER_CHECKSUM_SHA1 = "X-Checksum-Sha1";
+
+    public static final String HEADER_CHECKSUM_MD5 = "X-Checksum-Md5";
+
+    /**
+     * Whether uploaded files are synced to disk before being renamed into place.
+     */
+    private static final boolean SYNC_UPLOADS =
+        Boolean.parseBoolean( System.getProperty( "archiva.webdav.syncUploads", "true" ) );
+
     private Logger log = LoggerFactory.getLogger( ArchivaDavResource.class );
 
     public ArchivaDavResource( String localResource, String logicalResource, ManagedRepository repository,
@@ -219,11 +251,26 @@ public void spool( OutputContext outputContext )
         {
             if ( !isCollection() && outputContext.hasStream() )
             {
+                // the lock is only held to open the file: uploads replace it with a rename, never in place, so the
+                // open stream keeps reading a complete file while a new one is put
+                InputStream is;
                 Lock lock = fileLockManager.readFileLock( localResource );
-                try (InputStream is = Files.newInputStream( lock.getFile().toPath() ))
+                try
+                {
+                    is = Files.newInputStream( lock.getFile().toPath() );
+                }
+                finally
+                {
+                    fileLockManager.release( lock );
+                }
+                try
                 {
                     IOUtils.copy( is, outputContext.getOutputStream() );
                 }
+                finally
+                {
+                    IOUtils.closeQuietly( is );
+                }
             }
             else if ( outputContext.hasStream() )
             {
@@ -319,26 +366,41 @@ public void addMember( DavResource resource, InputContext inputContext )
 
         if ( isCollection() && inputContext.hasStream() ) // New File
         {
-            try (OutputStream stream = Files.newOutputStream( localFile.toPath() ))
+            // the body is written to a hidden sibling and renamed into place once verified: readers never see a
+            // partial file and a bad deployment does not touch the existing one
+            File tmpFile = null;
+            try
             {
-                IOUtils.copy( inputContext.getInputStream(), stream );
+                tmpFile = File.createTempFile( HIDDEN_PATH_PREFIX + localFile.getName() + ".", TEMPORARY_FILE_SUFFIX,
+                                              localResource );
+
+                MessageDigest sha1 = MessageDigest.getInstance( ChecksumAlgorithm.SHA1.getAlgorithm() );
+                MessageDigest md5 = MessageDigest.getInstance( ChecksumAlgorithm.MD5.getAlgorithm() );
+                long actualContentLength = writeFile( inputContext.getInputStream(), tmpFile, sha1, md5 );
+
+                long expectedContentLength = inputContext.getContentLength();
+                // length of -1 is given for a chunked request or unknown length, in which case we accept what was
+                // uploaded
+                if ( expectedContentLength >= 0 && expectedContentLength != actualContentLength )
+                {
+                    String msg =
+                        "Content Header length was " + expectedContentLength + " but was " + actualContentLength;
+                    log.debug( "Upload failed: {}", msg );
+                    throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+                }
+
+                verifyChecksum( inputContext, HEADER_CHECKSUM_SHA1, sha1 );
+                verifyChecksum( inputContext, HEADER_CHECKSUM_MD5, md5 );
+
+                replaceFile( tmpFile, localFile );
             }
-            catch ( IOException e )
+            catch ( IOException | NoSuchAlgorithmException e )
             {
                 throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
             }
-
-            // TODO: a bad deployment shouldn't delete an existing file - do we need to write to a temporary location first?
-            long expectedContentLength = inputContext.getContentLength();
-            long actualContentLength = localFile.length();
-            // length of -1 is given for a chunked request or unknown length, in which case we accept what was uploaded
-            if ( expectedContentLength >= 0 && expectedContentLength != actualContentLength )
+            finally
             {
-                String msg = "Content Header length was " + expectedContentLength + " but was " + actualContentLength;
-                log.debug( "Upload failed: {}", msg );
-
-                FileUtils.deleteQuietly( localFile );
-                throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+                FileUtils.deleteQuietly( tmpFile );
             }
 
             queueRepositoryTask( localFile );
@@ -365,6 +427,92 @@ else if ( !inputContext.hasStream() && isCollection() ) // New directory
         }
     }
 
+    /**
+     * Streams the body into the file, updating the digests on the way, and syncs it to disk.
+     *
+     * @return the number of bytes written
+     */
+    private long writeFile( InputStream body, File file, MessageDigest sha1, MessageDigest md5 )
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.WRITE ))
+        {
+            OutputStream stream = Channels.newOutputStream( channel );
+            long length = IOUtils.copyLarge( new DigestInputStream( new DigestInputStream( body, sha1 ), md5 ),
+                                             stream );
+            if ( SYNC_UPLOADS )
+            {
+                channel.force( true );
+            }
+            return length;
+        }
+    }
+
+    private void verifyChecksum( InputContext inputContext, String header, MessageDigest digest )
+        throws DavException
+    {
+        String expected = inputContext.getProperty( header );
+        if ( expected == null )
+        {
+            return;
+        }
+
+        String actual = Hex.encode( digest.digest() );
+        if ( !expected.trim().equalsIgnoreCase( actual ) )
+        {
+            String msg = header + " was " + expected + " but content checksum is " + actual;
+            log.debug( "Upload failed: {}", msg );
+            throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+        }
+    }
+
+    /**
+     * Renames the temporary file over the target. Only the rename is done under the write lock of the target.
+     */
+    private void replaceFile( File tmpFile, File localFile )
+        throws DavException
+    {
+        try
+        {
+            Lock lock = fileLockManager.writeFileLock( localFile );
+            try
+            {
+                Files.move( tmpFile.toPath(), lock.getFile().toPath(), StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e )
+            {
+                log.debug( "atomic rename not supported, moving {} to {}", tmpFile, localFile );
+                Files.move( tmpFile.toPath(), lock.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            finally
+            {
+                fileLockManager.release( lock );
+            }
+        }
+        catch ( FileLockException | FileLockTimeoutException | IOException e )
+        {
+            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the path is within the upload staging directory or is a temporary PUT file, which
+     *         are never served
+     * @since 2.2.2
+     */
+    public static boolean isPrivatePath( String resourcePath )
+    {
+        for ( String segment : StringUtils.split( resourcePath, '/' ) )
+        {
+            if ( FileTypeUtils.UPLOAD_STAGING_DIRECTORY.equals( segment ) || ( segment.startsWith(
+                HIDDEN_PATH_PREFIX ) && segment.endsWith( TEMPORARY_FILE_SUFFIX ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public DavResourceIterator getMembers()
     {
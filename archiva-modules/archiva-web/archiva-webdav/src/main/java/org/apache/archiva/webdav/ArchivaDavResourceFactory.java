@@ -153,6 +153,9 @@
     @Named( value = "httpAuthenticator#basic" )
     private HttpAuthenticator httpAuth;
 
+    @Inject
+    private DavAuthenticationCache authenticationCache;
+
     @Inject
     private RemoteRepositoryAdmin remoteRepositoryAdmin;
 
@@ -918,7 +921,8 @@ private ArchivaDavResourceLocator checkLocatorIsInstanceOfRepositoryLocator( Dav
         }
 
         // Hidden paths
-        if ( locator.getResourcePath().startsWith( ArchivaDavResource.HIDDEN_PATH_PREFIX ) )
+        if ( locator.getResourcePath().startsWith( ArchivaDavResource.HIDDEN_PATH_PREFIX )
+            || ArchivaDavResource.isPrivatePath( locator.getResourcePath() ) )
         {
             throw new DavException( HttpServletResponse.SC_NOT_FOUND );
         }
@@ -968,12 +972,13 @@ protected boolean isAuthorized( DavServletRequest request, String repositoryId )
     {
         try
         {
-            AuthenticationResult result = httpAuth.getAuthenticationResult( request, null );
+            AuthenticationResult result = authenticationCache.getAuthenticationResult( httpAuth, request );
             SecuritySession securitySession = httpAuth.getSecuritySession( request.getSession( true ) );
 
             return servletAuth.isAuthenticated( request, result ) //
-                && servletAuth.isAuthorized( request, securitySession, repositoryId, //
-                                             WebdavMethodUtil.getMethodPermission( request.getMethod() ) );
+                && authenticationCache.isAuthorized( servletAuth, request, securitySession, repositoryId, //
+                                                     WebdavMethodUtil.getMethodPermission(
+                                                         request.getMethod() ) );
         }
         catch ( AuthenticationException e )
         {
@@ -1152,9 +1157,9 @@ private DavResource getResourceFromGroup( DavServletRequest request, List<String
                                 // for the current user logged in
                                 try
                                 {
-                                    if ( servletAuth.isAuthorized( activePrincipal, repository,
-                                                                   WebdavMethodUtil.getMethodPermission(
-                                                                       request.getMethod() ) ) )
+                                    if ( authenticationCache.isAuthorized( servletAuth, activePrincipal, repository,
+                                                                           WebdavMethodUtil.getMethodPermission(
+                                                                               request.getMethod() ) ) )
                                     {
                                         mergedRepositoryContents.add( resourceFile );
                                         log.debug( "Repository '{}' accessed by '{}'", repository, activePrincipal );
@@ -1242,8 +1247,9 @@ private boolean isAllowedToContinue( DavServletRequest request, List<String> rep
             {
                 try
                 {
-                    if ( servletAuth.isAuthorized( activePrincipal, repository,
-                                                   WebdavMethodUtil.getMethodPermission( request.getMethod() ) ) )
+                    if ( authenticationCache.isAuthorized( servletAuth, activePrincipal, repository,
+                                                           WebdavMethodUtil.getMethodPermission(
+                                                               request.getMethod() ) ) )
                     {
                         allow = true;
                         break;
@@ -1350,7 +1356,7 @@ protected File buildMergedIndexDirectory( List<String> repositories, String acti
             {
                 try
                 {
-                    if ( servletAuth.isAuthorized( activePrincipal, repository, permission ) )
+                    if ( authenticationCache.isAuthorized( servletAuth, activePrincipal, repository, permission ) )
                     {
                         authzRepos.add( repository );
                         authzRepos.addAll( this.repositorySearch.getRemoteIndexingContextIds( repository ) );
@@ -1418,6 +1424,11 @@ public void setHttpAuth( HttpAuthenticator httpAuth )
         this.httpAuth = httpAuth;
     }
 
+    public void setAuthenticationCache( DavAuthenticationCache authenticationCache )
+    {
+        this.authenticationCache = authenticationCache;
+    }
+
     public void setScheduler( RepositoryArchivaTaskScheduler scheduler )
     {
         this.scheduler = scheduler;
@@ -43,10 +43,22 @@
 
     private HttpAuthenticator httpAuth;
 
+    private DavAuthenticationCache authenticationCache;
+
     public ArchivaDavSessionProvider( ServletAuthenticator servletAuth, HttpAuthenticator httpAuth )
+    {
+        this( servletAuth, httpAuth, null );
+    }
+
+    /**
+     * @since 2.2.2
+     */
+    public ArchivaDavSessionProvider( ServletAuthenticator servletAuth, HttpAuthenticator httpAuth,
+                                      DavAuthenticationCache authenticationCache )
     {
         this.servletAuth = servletAuth;
         this.httpAuth = httpAuth;
+        this.authenticationCache = authenticationCache;
     }
 
     @Override
@@ -57,7 +69,9 @@ public boolean attachSession( WebdavRequest request )
 
         try
         {
-            AuthenticationResult result = httpAuth.getAuthenticationResult( request, null );
+            AuthenticationResult result = authenticationCache == null
+                ? httpAuth.getAuthenticationResult( request, null )
+                : authenticationCache.getAuthenticationResult( httpAuth, request );
 
             //Create a dav session
             request.setDavSession( new ArchivaDavSession() );
@@ -0,0 +1,340 @@
+package org.apache.archiva.webdav;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.Hex;
+import org.apache.archiva.redback.authentication.AuthenticationException;
+import org.apache.archiva.redback.authentication.AuthenticationResult;
+import org.apache.archiva.redback.authorization.AuthorizationException;
+import org.apache.archiva.redback.authorization.UnauthorizedException;
+import org.apache.archiva.redback.components.cache.Cache;
+import org.apache.archiva.redback.integration.filter.authentication.HttpAuthenticator;
+import org.apache.archiva.redback.policy.AccountLockedException;
+import org.apache.archiva.redback.policy.MustChangePasswordException;
+import org.apache.archiva.redback.rbac.Permission;
+import org.apache.archiva.redback.rbac.RBACManager;
+import org.apache.archiva.redback.rbac.RBACManagerListener;
+import org.apache.archiva.redback.rbac.Role;
+import org.apache.archiva.redback.rbac.UserAssignment;
+import org.apache.archiva.redback.system.SecuritySession;
+import org.apache.archiva.redback.users.User;
+import org.apache.archiva.redback.users.UserManager;
+import org.apache.archiva.redback.users.UserManagerListener;
+import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short lived cache of verified HTTP Basic credentials and of granted repository permissions, so a build fetching
+ * thousands of artifacts does not hash the same password for every request. Credentials are only kept as a SHA-256
+ * of the <code>Authorization</code> header. Both caches are cleared whenever a user, role, permission or user
+ * assignment changes. Hit rates are reported with the other caches by the system status service.
+ *
+ * @since 2.2.2
+ */
+@Service( "davAuthenticationCache" )
+public class DavAuthenticationCache
+    implements UserManagerListener, RBACManagerListener
+{
+    private Logger log = LoggerFactory.getLogger( DavAuthenticationCache.class );
+
+    private static final String BASIC_PREFIX = "Basic ";
+
+    @Inject
+    @Named( value = "cache#davAuthentication" )
+    private Cache<String, SecuritySession> authenticationCache;
+
+    @Inject
+    @Named( value = "cache#davAuthorization" )
+    private Cache<String, Boolean> authorizationCache;
+
+    @Inject
+    @Autowired( required = false )
+    @Named( value = "userManager#default" )
+    private UserManager userManager;
+
+    @Inject
+    @Autowired( required = false )
+    @Named( value = "rbacManager#default" )
+    private RBACManager rbacManager;
+
+    private final AtomicLong authentications = new AtomicLong();
+
+    private final AtomicLong authenticationTime = new AtomicLong();
+
+    @PostConstruct
+    public void initialize()
+    {
+        if ( userManager != null )
+        {
+            userManager.addUserManagerListener( this );
+        }
+        if ( rbacManager != null )
+        {
+            rbacManager.addListener( this );
+        }
+    }
+
+    /**
+     * Returns the result of {@link HttpAuthenticator#getAuthenticationResult} for the request, reusing the security
+     * session of an earlier request carrying the same Basic credentials.
+     */
+    public AuthenticationResult getAuthenticationResult( HttpAuthenticator httpAuth, HttpServletRequest request )
+        throws AuthenticationException, AccountLockedException, MustChangePasswordException
+    {
+        String key = getCredentialsKey( request );
+        if ( key == null )
+        {
+            return httpAuth.getAuthenticationResult( request, null );
+        }
+
+        HttpSession httpSession = request.getSession( true );
+        SecuritySession securitySession = authenticationCache.get( key );
+        if ( securitySession != null )
+        {
+            httpAuth.setSecuritySession( securitySession, httpSession );
+            return securitySession.getAuthenticationResult();
+        }
+
+        long start = System.nanoTime();
+        AuthenticationResult result = httpAuth.getAuthenticationResult( request, null );
+        long time = System.nanoTime() - start;
+
+        authentications.incrementAndGet();
+        authenticationTime.addAndGet( time );
+        log.debug( "verified credentials in {} ms", TimeUnit.NANOSECONDS.toMillis( time ) );
+
+        if ( result != null && result.isAuthenticated() )
+        {
+            securitySession = httpAuth.getSecuritySession( httpSession );
+            if ( securitySession != null && securitySession.getUser() != null )
+            {
+                authenticationCache.put( key, securitySession );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cached {@link ServletAuthenticator#isAuthorized(HttpServletRequest, SecuritySession, String, String)}. Only
+     * granted permissions are cached, denials always go to the authorizer.
+     */
+    public boolean isAuthorized( ServletAuthenticator servletAuth, HttpServletRequest request,
+                                 SecuritySession securitySession, String repositoryId, String permission )
+        throws AuthorizationException, UnauthorizedException
+    {
+        User user = securitySession == null ? null : securitySession.getUser();
+        if ( user == null )
+        {
+            return servletAuth.isAuthorized( request, securitySession, repositoryId, permission );
+        }
+
+        String key = getAuthorizationKey( user.getUsername(), repositoryId, permission );
+        if ( authorizationCache.hasKey( key ) )
+        {
+            return true;
+        }
+
+        boolean authorized = servletAuth.isAuthorized( request, securitySession, repositoryId, permission );
+        if ( authorized )
+        {
+            authorizationCache.put( key, Boolean.TRUE );
+        }
+        return authorized;
+    }
+
+    /**
+     * Cached {@link ServletAuthenticator#isAuthorized(String, String, String)}. Guest checks are not cached, they
+     * carry no credentials to verify.
+     */
+    public boolean isAuthorized( ServletAuthenticator servletAuth, String principal, String repositoryId,
+                                 String permission )
+        throws UnauthorizedException
+    {
+        if ( principal == null || UserManager.GUEST_USERNAME.equals( principal ) )
+        {
+            return servletAuth.isAuthorized( principal, repositoryId, permission );
+        }
+
+        String key = getAuthorizationKey( principal, repositoryId, permission );
+        if ( authorizationCache.hasKey( key ) )
+        {
+            return true;
+        }
+
+        boolean authorized = servletAuth.isAuthorized( principal, repositoryId, permission );
+        if ( authorized )
+        {
+            authorizationCache.put( key, Boolean.TRUE );
+        }
+        return authorized;
+    }
+
+    public void invalidate()
+    {
+        authenticationCache.clear();
+        authorizationCache.clear();
+    }
+
+    /**
+     * @return number of credentials verified against the user store
+     */
+    public long getAuthenticationCount()
+    {
+        return authentications.get();
+    }
+
+    /**
+     * @return average time in milliseconds spent verifying credentials against the user store
+     */
+    public double getAverageAuthenticationTime()
+    {
+        long count = authentications.get();
+        return count == 0 ? 0 : authenticationTime.get() / 1000000d / count;
+    }
+
+    public Cache<String, SecuritySession> getAuthenticationCache()
+    {
+        return authenticationCache;
+    }
+
+    public void setAuthenticationCache( Cache<String, SecuritySession> authenticationCache )
+    {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public Cache<String, Boolean> getAuthorizationCache()
+    {
+        return authorizationCache;
+    }
+
+    public void setAuthorizationCache( Cache<String, Boolean> authorizationCache )
+    {
+        this.authorizationCache = authorizationCache;
+    }
+
+    private String getCredentialsKey( HttpServletRequest request )
+    {
+        String header = request.getHeader( "Authorization" );
+        if ( StringUtils.isEmpty( header ) || !header.startsWith( BASIC_PREFIX ) )
+        {
+            return null;
+        }
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            return Hex.encode( digest.digest( header.getBytes( StandardCharsets.UTF_8 ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            log.warn( "cannot cache credentials: {}", e.getMessage() );
+            return null;
+        }
+    }
+
+    private String getAuthorizationKey( String principal, String repositoryId, String permission )
+    {
+        return principal + ':' + repositoryId + ':' + permission;
+    }
+
+    // UserManagerListener
+
+    @Override
+    public void userManagerInit( boolean freshDatabase )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void userManagerUserAdded( User user )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void userManagerUserRemoved( User user )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void userManagerUserUpdated( User user )
+    {
+        invalidate();
+    }
+
+    // RBACManagerListener
+
+    @Override
+    public void rbacInit( boolean freshdb )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacRoleSaved( Role role )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacRoleRemoved( Role role )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacPermissionSaved( Permission permission )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacPermissionRemoved( Permission permission )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacUserAssignmentSaved( UserAssignment userAssignment )
+    {
+        invalidate();
+    }
+
+    @Override
+    public void rbacUserAssignmentRemoved( UserAssignment userAssignment )
+    {
+        invalidate();
+    }
+}
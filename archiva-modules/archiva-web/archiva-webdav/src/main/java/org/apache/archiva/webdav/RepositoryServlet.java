@@ -205,7 +205,9 @@ public synchronized void initServers( ServletConfig servletConfig )
         ServletAuthenticator servletAuth = wac.getBean( ServletAuthenticator.class );
         HttpAuthenticator httpAuth = wac.getBean( "httpAuthenticator#basic", HttpAuthenticator.class );
 
-        sessionProvider = new ArchivaDavSessionProvider( servletAuth, httpAuth );
+        DavAuthenticationCache authenticationCache = wac.getBean( DavAuthenticationCache.class );
+
+        sessionProvider = new ArchivaDavSessionProvider( servletAuth, httpAuth, authenticationCache );
 
         long end = System.currentTimeMillis();
 
@@ -23,6 +23,7 @@
 import org.apache.archiva.admin.model.beans.ManagedRepository;
 import org.apache.archiva.repository.events.AuditListener;
 import org.apache.archiva.common.filelock.FileLockManager;
+import org.apache.archiva.scheduler.repository.model.RepositoryArchivaTaskScheduler;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavResource;
@@ -31,6 +32,7 @@
 import org.apache.jackrabbit.webdav.DavServletRequest;
 import org.apache.jackrabbit.webdav.DavServletResponse;
 import org.apache.jackrabbit.webdav.DavSession;
+import org.apache.jackrabbit.webdav.io.InputContextImpl;
 import org.apache.jackrabbit.webdav.lock.ActiveLock;
 import org.apache.jackrabbit.webdav.lock.LockInfo;
 import org.apache.jackrabbit.webdav.lock.LockManager;
@@ -38,14 +40,18 @@
 import org.apache.jackrabbit.webdav.lock.SimpleLockManager;
 import org.apache.jackrabbit.webdav.lock.Type;
 import org.apache.archiva.webdav.util.MimeTypes;
+import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
 
@@ -314,6 +320,81 @@ public void testUnlockThrowsDavExceptionIfResourceNotLocked()
         assertEquals( 0, resource.getLocks().length );
     }
 
+    private void putMember( String content, String contentLength, String sha1 )
+        throws Exception
+    {
+        DavResource collection =
+            new ArchivaDavResource( baseDir.getAbsolutePath(), "/", repository, session, resourceLocator,
+                                    resourceFactory, mimeTypes, Collections.<AuditListener>emptyList(),
+                                    EasyMock.createNiceMock( RepositoryArchivaTaskScheduler.class ),
+                                    fileLockManager );
+
+        MockHttpServletRequest request = new MockHttpServletRequest( "PUT", "/" + REPOPATH );
+        if ( contentLength != null )
+        {
+            request.addHeader( "Content-Length", contentLength );
+        }
+        if ( sha1 != null )
+        {
+            request.addHeader( ArchivaDavResource.HEADER_CHECKSUM_SHA1, sha1 );
+        }
+        collection.addMember( resource, new InputContextImpl( request, new ByteArrayInputStream(
+            content.getBytes( StandardCharsets.UTF_8 ) ) ) );
+    }
+
+    private void assertPutRejected( String content, String contentLength, String sha1 )
+        throws Exception
+    {
+        try
+        {
+            putMember( content, contentLength, sha1 );
+            fail( "Did not throw DavException" );
+        }
+        catch ( DavException e )
+        {
+            assertEquals( DavServletResponse.SC_BAD_REQUEST, e.getErrorCode() );
+        }
+    }
+
+    @Test
+    public void testPutReplacesFile()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( myResource, "previous" );
+
+        // sha1 of "content"
+        putMember( "content", "7", "040f06fd774092478d450774f5ba30c5da78acc8" );
+
+        assertEquals( "content", FileUtils.readFileToString( myResource ) );
+        assertEquals( 1, baseDir.list().length );
+    }
+
+    @Test
+    public void testBadPutKeepsExistingFile()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( myResource, "previous" );
+
+        assertPutRejected( "trunc", "7", null );
+        assertPutRejected( "content", "7", "0000000000000000000000000000000000000000" );
+
+        assertEquals( "previous", FileUtils.readFileToString( myResource ) );
+        // no temporary file left behind
+        assertEquals( 1, baseDir.list().length );
+    }
+
+    @Test
+    public void testPrivatePaths()
+    {
+        assertTrue( ArchivaDavResource.isPrivatePath( "/internal/.upload" ) );
+        assertTrue( ArchivaDavResource.isPrivatePath( "/internal/.upload/foo-1.0.jar1234.tmp" ) );
+        assertTrue( ArchivaDavResource.isPrivatePath( "/internal/org/foo/1.0/.foo-1.0.jar.1234.tmp" ) );
+
+        assertFalse( ArchivaDavResource.isPrivatePath( "/internal/org/foo/1.0/foo-1.0.jar" ) );
+        assertFalse( ArchivaDavResource.isPrivatePath( "/internal/org/foo/1.0/foo-1.0.tmp" ) );
+        assertFalse( ArchivaDavResource.isPrivatePath( "/internal/.indexer/nexus-maven-repository-index.gz" ) );
+    }
+
     private class RootContextDavResourceFactory
         implements DavResourceFactory
     {
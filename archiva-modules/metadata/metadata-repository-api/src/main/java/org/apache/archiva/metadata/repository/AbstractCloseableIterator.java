@@ -0,0 +1,106 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Base {@link CloseableIterator}, implementations only have to compute the next element, <code>null</code> meaning
+ * the end of the results.
+ *
+ * @since 2.2.2
+ */
+public abstract class AbstractCloseableIterator<T>
+    implements CloseableIterator<T>
+{
+    private T next;
+
+    private boolean computed;
+
+    private boolean closed;
+
+    /**
+     * @return the next element or <code>null</code> if there are no more elements
+     */
+    protected abstract T computeNext();
+
+    @Override
+    public boolean hasNext()
+    {
+        if ( closed )
+        {
+            return false;
+        }
+        if ( !computed )
+        {
+            next = computeNext();
+            computed = true;
+            if ( next == null )
+            {
+                close();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        computed = false;
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "remove" );
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+    }
+
+    /**
+     * Adapt already loaded results to the iterator API.
+     */
+    public static <T> CloseableIterator<T> of( Iterable<T> elements )
+    {
+        final Iterator<T> iterator = elements.iterator();
+        return new AbstractCloseableIterator<T>()
+        {
+            @Override
+            protected T computeNext()
+            {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+}
@@ -19,7 +19,9 @@
 * under the License.
 */
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -77,6 +79,24 @@ public boolean hasMetadataFacet( String repositoryId, String facetId )
         return false;
     }
 
+    @Override
+    public List<String> getLastMetadataFacets( String repositoryId, String facetId, String fromName, String toName,
+                                               int limit )
+        throws MetadataRepositoryException
+    {
+        List<String> names = new ArrayList<>();
+        for ( String name : getMetadataFacets( repositoryId, facetId ) )
+        {
+            if ( ( fromName == null || name.compareTo( fromName ) >= 0 ) && ( toName == null
+                || name.compareTo( toName ) < 0 ) )
+            {
+                names.add( name );
+            }
+        }
+        Collections.sort( names, Collections.reverseOrder() );
+        return names.size() > limit ? names.subList( 0, limit ) : names;
+    }
+
     @Override
     public MetadataFacet getMetadataFacet( String repositoryId, String facetId, String name )
         throws MetadataRepositoryException
@@ -110,6 +130,14 @@ public List<ArtifactMetadata> getArtifactsByDateRange( String repositoryId, Date
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( String repositoryId, Date startTime,
+                                                                           Date endTime )
+        throws MetadataRepositoryException
+    {
+        return AbstractCloseableIterator.of( getArtifactsByDateRange( repositoryId, startTime, endTime ) );
+    }
+
     @Override
     public Collection<String> getRepositories()
         throws MetadataRepositoryException
@@ -188,6 +216,13 @@ public List<ArtifactMetadata> getArtifacts( String repositoryId )
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifacts( String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return AbstractCloseableIterator.of( getArtifacts( repositoryId ) );
+    }
+
     @Override
     public ProjectMetadata getProject( String repoId, String namespace, String projectId )
         throws MetadataResolutionException
@@ -0,0 +1,486 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.MetadataFacet;
+import org.apache.archiva.metadata.model.ProjectMetadata;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.metadata.model.ProjectVersionReference;
+import org.apache.archiva.redback.components.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decorates the {@link MetadataRepository} of a session with a read-through cache of project version metadata,
+ * shared by all sessions. Entries are removed when this session updates or removes the project version or one of its
+ * artifacts, and again when the session is saved or reverted, so other sessions do not keep what they read before the changes were
+ * committed. Callers always get their own copy of the cached metadata.
+ *
+ * @since 2.2.2
+ */
+public class CachingMetadataRepository
+    implements MetadataRepository
+{
+    private final MetadataRepository delegate;
+
+    private final Cache<String, ProjectVersionMetadata> projectVersionCache;
+
+    /**
+     * keys changed by this session since the last save or revert
+     */
+    private final Set<String> changedKeys = new HashSet<>();
+
+    /**
+     * whether this session removed a whole repository or namespace since the last save or revert
+     */
+    private boolean cleared;
+
+    public CachingMetadataRepository( MetadataRepository delegate,
+                                      Cache<String, ProjectVersionMetadata> projectVersionCache )
+    {
+        this.delegate = delegate;
+        this.projectVersionCache = projectVersionCache;
+    }
+
+    public MetadataRepository getDelegate()
+    {
+        return delegate;
+    }
+
+    @Override
+    public ProjectVersionMetadata getProjectVersion( String repoId, String namespace, String projectId,
+                                                     String projectVersion )
+        throws MetadataResolutionException
+    {
+        String key = getKey( repoId, namespace, projectId, projectVersion );
+        ProjectVersionMetadata metadata = projectVersionCache.get( key );
+        if ( metadata != null )
+        {
+            return copy( metadata );
+        }
+
+        metadata = delegate.getProjectVersion( repoId, namespace, projectId, projectVersion );
+        // incomplete metadata is resolved again from the storage by the caller, and uncommitted changes must not be
+        // seen by other sessions
+        if ( metadata != null && !metadata.isIncomplete() && !cleared && !changedKeys.contains( key ) )
+        {
+            projectVersionCache.put( key, copy( metadata ) );
+        }
+        return metadata;
+    }
+
+    @Override
+    public void updateProjectVersion( String repositoryId, String namespace, String projectId,
+                                      ProjectVersionMetadata versionMetadata )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( repositoryId, namespace, projectId, versionMetadata.getId() ) );
+        delegate.updateProjectVersion( repositoryId, namespace, projectId, versionMetadata );
+    }
+
+    @Override
+    public void removeProjectVersion( String repoId, String namespace, String projectId, String projectVersion )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( repoId, namespace, projectId, projectVersion ) );
+        delegate.removeProjectVersion( repoId, namespace, projectId, projectVersion );
+    }
+
+    /**
+     * the artifacts are stored with their project version, which some storages also update
+     */
+    @Override
+    public void updateArtifact( String repositoryId, String namespace, String projectId, String projectVersion,
+                                ArtifactMetadata artifactMeta )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( repositoryId, namespace, projectId, projectVersion ) );
+        delegate.updateArtifact( repositoryId, namespace, projectId, projectVersion, artifactMeta );
+    }
+
+    @Override
+    public void removeArtifact( String repositoryId, String namespace, String project, String version, String id )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( repositoryId, namespace, project, version ) );
+        delegate.removeArtifact( repositoryId, namespace, project, version, id );
+    }
+
+    @Override
+    public void removeArtifact( ArtifactMetadata artifactMetadata, String baseVersion )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( artifactMetadata.getRepositoryId(), artifactMetadata.getNamespace(),
+                            artifactMetadata.getProject(), baseVersion ) );
+        delegate.removeArtifact( artifactMetadata, baseVersion );
+    }
+
+    @Override
+    public void removeArtifact( String repositoryId, String namespace, String project, String version,
+                                MetadataFacet metadataFacet )
+        throws MetadataRepositoryException
+    {
+        invalidate( getKey( repositoryId, namespace, project, version ) );
+        delegate.removeArtifact( repositoryId, namespace, project, version, metadataFacet );
+    }
+
+    @Override
+    public void removeProject( String repositoryId, String namespace, String projectId )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            for ( String projectVersion : delegate.getProjectVersions( repositoryId, namespace, projectId ) )
+            {
+                invalidate( getKey( repositoryId, namespace, projectId, projectVersion ) );
+            }
+        }
+        catch ( MetadataResolutionException e )
+        {
+            invalidateAll();
+        }
+        delegate.removeProject( repositoryId, namespace, projectId );
+    }
+
+    @Override
+    public void removeNamespace( String repositoryId, String namespace )
+        throws MetadataRepositoryException
+    {
+        invalidateAll();
+        delegate.removeNamespace( repositoryId, namespace );
+    }
+
+    @Override
+    public void removeRepository( String repositoryId )
+        throws MetadataRepositoryException
+    {
+        invalidateAll();
+        delegate.removeRepository( repositoryId );
+    }
+
+    @Override
+    public void save()
+    {
+        delegate.save();
+        invalidateChanges();
+    }
+
+    @Override
+    public void revert()
+    {
+        delegate.revert();
+        invalidateChanges();
+    }
+
+    private void invalidate( String key )
+    {
+        changedKeys.add( key );
+        projectVersionCache.remove( key );
+    }
+
+    private void invalidateAll()
+    {
+        cleared = true;
+        projectVersionCache.clear();
+    }
+
+    private void invalidateChanges()
+    {
+        if ( cleared )
+        {
+            projectVersionCache.clear();
+        }
+        else
+        {
+            for ( String key : changedKeys )
+            {
+                projectVersionCache.remove( key );
+            }
+        }
+        changedKeys.clear();
+        cleared = false;
+    }
+
+    private static String getKey( String repoId, String namespace, String projectId, String projectVersion )
+    {
+        return repoId + "/" + namespace + "/" + projectId + "/" + projectVersion;
+    }
+
+    private static ProjectVersionMetadata copy( ProjectVersionMetadata metadata )
+    {
+        ProjectVersionMetadata copy = new ProjectVersionMetadata();
+        copy.setId( metadata.getId() );
+        copy.setUrl( metadata.getUrl() );
+        copy.setName( metadata.getName() );
+        copy.setDescription( metadata.getDescription() );
+        copy.setOrganization( metadata.getOrganization() );
+        copy.setIssueManagement( metadata.getIssueManagement() );
+        copy.setScm( metadata.getScm() );
+        copy.setCiManagement( metadata.getCiManagement() );
+        copy.setLicenses( copy( metadata.getLicenses() ) );
+        copy.setMailingLists( copy( metadata.getMailingLists() ) );
+        copy.setDependencies( copy( metadata.getDependencies() ) );
+        if ( metadata.getProperties() != null )
+        {
+            copy.setProperties( new HashMap<String, String>( metadata.getProperties() ) );
+        }
+        copy.setIncomplete( metadata.isIncomplete() );
+        for ( MetadataFacet facet : metadata.getFacetList() )
+        {
+            copy.addFacet( facet );
+        }
+        return copy;
+    }
+
+    private static <T> List<T> copy( List<T> list )
+    {
+        return list == null ? null : new ArrayList<>( list );
+    }
+
+    // delegated as is
+
+    @Override
+    public void updateProject( String repositoryId, ProjectMetadata project )
+        throws MetadataRepositoryException
+    {
+        delegate.updateProject( repositoryId, project );
+    }
+
+    @Override
+    public void updateNamespace( String repositoryId, String namespace )
+        throws MetadataRepositoryException
+    {
+        delegate.updateNamespace( repositoryId, namespace );
+    }
+
+    @Override
+    public List<String> getMetadataFacets( String repositoryId, String facetId )
+        throws MetadataRepositoryException
+    {
+        return delegate.getMetadataFacets( repositoryId, facetId );
+    }
+
+    @Override
+    public boolean hasMetadataFacet( String repositoryId, String facetId )
+        throws MetadataRepositoryException
+    {
+        return delegate.hasMetadataFacet( repositoryId, facetId );
+    }
+
+    @Override
+    public List<String> getLastMetadataFacets( String repositoryId, String facetId, String fromName, String toName,
+                                               int limit )
+        throws MetadataRepositoryException
+    {
+        return delegate.getLastMetadataFacets( repositoryId, facetId, fromName, toName, limit );
+    }
+
+    @Override
+    public MetadataFacet getMetadataFacet( String repositoryId, String facetId, String name )
+        throws MetadataRepositoryException
+    {
+        return delegate.getMetadataFacet( repositoryId, facetId, name );
+    }
+
+    @Override
+    public void addMetadataFacet( String repositoryId, MetadataFacet metadataFacet )
+        throws MetadataRepositoryException
+    {
+        delegate.addMetadataFacet( repositoryId, metadataFacet );
+    }
+
+    @Override
+    public void removeMetadataFacets( String repositoryId, String facetId )
+        throws MetadataRepositoryException
+    {
+        delegate.removeMetadataFacets( repositoryId, facetId );
+    }
+
+    @Override
+    public void removeMetadataFacet( String repositoryId, String facetId, String name )
+        throws MetadataRepositoryException
+    {
+        delegate.removeMetadataFacet( repositoryId, facetId, name );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifactsByDateRange( String repositoryId, Date startTime, Date endTime )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifactsByDateRange( repositoryId, startTime, endTime );
+    }
+
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( String repositoryId, Date startTime,
+                                                                           Date endTime )
+        throws MetadataRepositoryException
+    {
+        return delegate.streamArtifactsByDateRange( repositoryId, startTime, endTime );
+    }
+
+    @Override
+    public Collection<String> getRepositories()
+        throws MetadataRepositoryException
+    {
+        return delegate.getRepositories();
+    }
+
+    @Override
+    public Collection<ArtifactMetadata> getArtifactsByChecksum( String repositoryId, String checksum )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifactsByChecksum( repositoryId, checksum );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifactsByProjectVersionMetadata( String key, String value, String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifactsByProjectVersionMetadata( key, value, repositoryId );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifactsByMetadata( String key, String value, String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifactsByMetadata( key, value, repositoryId );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifactsByProperty( String key, String value, String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifactsByProperty( key, value, repositoryId );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifacts( String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return delegate.getArtifacts( repositoryId );
+    }
+
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifacts( String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return delegate.streamArtifacts( repositoryId );
+    }
+
+    @Override
+    public ProjectMetadata getProject( String repoId, String namespace, String projectId )
+        throws MetadataResolutionException
+    {
+        return delegate.getProject( repoId, namespace, projectId );
+    }
+
+    @Override
+    public Collection<String> getArtifactVersions( String repoId, String namespace, String projectId,
+                                                   String projectVersion )
+        throws MetadataResolutionException
+    {
+        return delegate.getArtifactVersions( repoId, namespace, projectId, projectVersion );
+    }
+
+    @Override
+    public Collection<ProjectVersionReference> getProjectReferences( String repoId, String namespace, String projectId,
+                                                                     String projectVersion )
+        throws MetadataResolutionException
+    {
+        return delegate.getProjectReferences( repoId, namespace, projectId, projectVersion );
+    }
+
+    @Override
+    public Collection<String> getRootNamespaces( String repoId )
+        throws MetadataResolutionException
+    {
+        return delegate.getRootNamespaces( repoId );
+    }
+
+    @Override
+    public Collection<String> getNamespaces( String repoId, String namespace )
+        throws MetadataResolutionException
+    {
+        return delegate.getNamespaces( repoId, namespace );
+    }
+
+    @Override
+    public Collection<String> getProjects( String repoId, String namespace )
+        throws MetadataResolutionException
+    {
+        return delegate.getProjects( repoId, namespace );
+    }
+
+    @Override
+    public Collection<String> getProjectVersions( String repoId, String namespace, String projectId )
+        throws MetadataResolutionException
+    {
+        return delegate.getProjectVersions( repoId, namespace, projectId );
+    }
+
+    @Override
+    public Collection<ArtifactMetadata> getArtifacts( String repoId, String namespace, String projectId,
+                                                      String projectVersion )
+        throws MetadataResolutionException
+    {
+        return delegate.getArtifacts( repoId, namespace, projectId, projectVersion );
+    }
+
+    @Override
+    public void close()
+        throws MetadataRepositoryException
+    {
+        delegate.close();
+    }
+
+    @Override
+    public boolean canObtainAccess( Class<?> aClass )
+    {
+        return delegate.canObtainAccess( aClass );
+    }
+
+    @Override
+    public <T> T obtainAccess( Class<T> aClass )
+        throws MetadataRepositoryException
+    {
+        return delegate.obtainAccess( aClass );
+    }
+
+    @Override
+    public List<ArtifactMetadata> searchArtifacts( String text, String repositoryId, boolean exact )
+        throws MetadataRepositoryException
+    {
+        return delegate.searchArtifacts( text, repositoryId, exact );
+    }
+
+    @Override
+    public List<ArtifactMetadata> searchArtifacts( String key, String text, String repositoryId, boolean exact )
+        throws MetadataRepositoryException
+    {
+        return delegate.searchArtifacts( key, text, repositoryId, exact );
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Iterator;
+
+/**
+ * An {@link Iterator} over results loaded lazily from the metadata repository, which may hold resources (query
+ * results, open sessions) until it is exhausted or closed. Use it in a try-with-resources block.
+ * <b>implementations throw {@link MetadataRepositoryRuntimeException}</b> while iterating if the storage can't be
+ * read.
+ *
+ * @since 2.2.2
+ */
+public interface CloseableIterator<T>
+    extends Iterator<T>, AutoCloseable
+{
+    /**
+     * Release the resources held by the iterator. Called automatically once the last element has been returned.
+     */
+    @Override
+    void close();
+}
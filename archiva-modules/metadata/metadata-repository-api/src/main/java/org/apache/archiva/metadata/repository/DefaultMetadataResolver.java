@@ -439,6 +439,10 @@ public Collection<ArtifactMetadata> resolveArtifacts( RepositorySession session,
                 {
                     try
                     {
+                        for ( RepositoryListener listener : listeners )
+                        {
+                            listener.updateArtifact( session, repoId, namespace, projectId, projectVersion, artifact );
+                        }
                         metadataRepository.updateArtifact( repoId, namespace, projectId, projectVersion, artifact );
                     }
                     catch ( MetadataRepositoryException e )
@@ -71,6 +71,24 @@ List<String> getMetadataFacets( String repositoryId, String facetId )
     boolean hasMetadataFacet( String repositoryId, String facetId )
         throws MetadataRepositoryException;
 
+    /**
+     * Returns the names of the most recent facets of a type, newest first, without listing all of them. This applies
+     * to facets named after a fixed width timestamp, such as the audit events and the repository statistics, so that
+     * ordering the names also orders the facets in time.
+     *
+     * @param repositoryId
+     * @param facetId
+     * @param fromName     lowest name to return (inclusive), can be <code>null</code>
+     * @param toName       name to stop before (exclusive), can be <code>null</code>
+     * @param limit        maximum number of names to return
+     * @return the facet names in descending order
+     * @throws MetadataRepositoryException
+     * @since 2.2.2
+     */
+    List<String> getLastMetadataFacets( String repositoryId, String facetId, String fromName, String toName,
+                                        int limit )
+        throws MetadataRepositoryException;
+
     MetadataFacet getMetadataFacet( String repositoryId, String facetId, String name )
         throws MetadataRepositoryException;
 
@@ -95,6 +113,21 @@ void removeMetadataFacet( String repositoryId, String facetId, String name )
     List<ArtifactMetadata> getArtifactsByDateRange( String repositoryId, Date startTime, Date endTime )
         throws MetadataRepositoryException;
 
+    /**
+     * Same as {@link #getArtifactsByDateRange(String, Date, Date)} but the artifacts are loaded while iterating, the
+     * iterator must be closed.
+     *
+     * @param repositoryId
+     * @param startTime    can be <code>null</code>
+     * @param endTime      can be <code>null</code>
+     * @return
+     * @throws MetadataRepositoryException
+     * @since 2.2.2
+     */
+    CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( String repositoryId, Date startTime,
+                                                                    Date endTime )
+        throws MetadataRepositoryException;
+
     // TODO: remove from API, just use configuration
     Collection<String> getRepositories()
         throws MetadataRepositoryException;
@@ -189,6 +222,18 @@ void removeNamespace( String repositoryId, String namespace )
     List<ArtifactMetadata> getArtifacts( String repositoryId )
         throws MetadataRepositoryException;
 
+    /**
+     * Same as {@link #getArtifacts(String)} but the artifacts are loaded while iterating, so large repositories are
+     * never fully held in memory. The iterator must be closed.
+     *
+     * @param repositoryId
+     * @return
+     * @throws MetadataRepositoryException
+     * @since 2.2.2
+     */
+    CloseableIterator<ArtifactMetadata> streamArtifacts( String repositoryId )
+        throws MetadataRepositoryException;
+
     /**
      * basically just checking it exists not complete data returned
      *
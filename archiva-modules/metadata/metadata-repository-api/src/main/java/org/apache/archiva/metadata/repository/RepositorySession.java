@@ -19,6 +19,8 @@
  * under the License.
  */
 
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.lang.AutoCloseable;
@@ -56,6 +58,21 @@ public RepositorySession( MetadataRepository metadataRepository, MetadataResolve
         this.resolver = resolver;
     }
 
+    /**
+     * Creates a session whose metadata repository reads project versions through the given cache.
+     *
+     * @param projectVersionCache the cache shared by the sessions, can be <code>null</code> to not cache
+     * @see CachingMetadataRepository
+     * @since 2.2.2
+     */
+    public RepositorySession( MetadataRepository metadataRepository, MetadataResolver resolver,
+                              Cache<String, ProjectVersionMetadata> projectVersionCache )
+    {
+        this( projectVersionCache == null
+                  ? metadataRepository
+                  : new CachingMetadataRepository( metadataRepository, projectVersionCache ), resolver );
+    }
+
     public MetadataRepository getRepository()
     {
         return repository;
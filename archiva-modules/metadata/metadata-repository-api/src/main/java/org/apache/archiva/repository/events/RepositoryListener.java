@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.RepositorySession;
@@ -42,6 +43,23 @@ void deleteArtifact( MetadataRepository metadataRepository, String repositoryId,
     void addArtifact( RepositorySession session, String repoId, String namespace, String projectId,
                       ProjectVersionMetadata metadata );
 
+    /**
+     * Called before the metadata of a single artifact is stored, whether the artifact is new to the metadata repository
+     * or replaces previously stored metadata.
+     *
+     * @since 2.2.2
+     */
+    void updateArtifact( RepositorySession session, String repoId, String namespace, String projectId,
+                         String projectVersion, ArtifactMetadata artifact );
+
+    /**
+     * Called once the consumers completed a scan of the repository, or the processing of resource files, for the
+     * listener to store what it gathered from the artifacts of the scan.
+     *
+     * @since 2.2.2
+     */
+    void completeScan( RepositorySession session, String repoId );
+
     // FIXME: this would be better as a "processException" method, with the event information captured in a single class
     void addArtifactProblem( RepositorySession session, String repoId, String namespace, String projectId,
                              String projectVersion, RepositoryStorageMetadataException exception );
@@ -692,6 +692,30 @@ public void testGetMetadataFacetsWhenEmpty()
         assertTrue( facets.isEmpty() );
     }
 
+    @Test
+    public void testGetLastMetadataFacets()
+        throws Exception
+    {
+        for ( String name : Arrays.asList( "2009/12/01/123456.789", "2010/01/01/000000.000", "2009/11/30/235959.999",
+                                           "2009/12/02/012345.678" ) )
+        {
+            repository.addMetadataFacet( TEST_REPO_ID, new TestMetadataFacet( TEST_FACET_ID, TEST_VALUE, name ) );
+        }
+
+        assertEquals( Arrays.asList( "2010/01/01/000000.000", "2009/12/02/012345.678" ),
+                      repository.getLastMetadataFacets( TEST_REPO_ID, TEST_FACET_ID, null, null, 2 ) );
+        assertEquals( Arrays.asList( "2009/12/02/012345.678", "2009/12/01/123456.789" ),
+                      repository.getLastMetadataFacets( TEST_REPO_ID, TEST_FACET_ID, "2009/12/01", "2010", 10 ) );
+        assertTrue( repository.getLastMetadataFacets( OTHER_REPO_ID, TEST_FACET_ID, null, null, 10 ).isEmpty() );
+
+        repository.removeMetadataFacet( TEST_REPO_ID, TEST_FACET_ID, "2010/01/01/000000.000" );
+        assertEquals( Arrays.asList( "2009/12/02/012345.678" ),
+                      repository.getLastMetadataFacets( TEST_REPO_ID, TEST_FACET_ID, null, null, 1 ) );
+
+        repository.removeMetadataFacets( TEST_REPO_ID, TEST_FACET_ID );
+        assertTrue( repository.getLastMetadataFacets( TEST_REPO_ID, TEST_FACET_ID, null, null, 10 ).isEmpty() );
+    }
+
     @Test
     public void testRemoveFacets()
         throws Exception
@@ -1010,6 +1034,40 @@ public void testGetArtifactsByRepoIdMultipleCopies()
         assertEquals( Collections.singletonList( secondArtifact ), repository.getArtifacts( OTHER_REPO_ID ) );
     }
 
+    @Test
+    public void testStreamArtifacts()
+        throws Exception
+    {
+        ArtifactMetadata artifact = createArtifact();
+        repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+
+        ArtifactMetadata secondArtifact = createArtifact();
+        secondArtifact.setRepositoryId( OTHER_REPO_ID );
+        repository.updateArtifact( OTHER_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, secondArtifact );
+        repository.save();
+
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        try (CloseableIterator<ArtifactMetadata> iterator = repository.streamArtifacts( TEST_REPO_ID ))
+        {
+            while ( iterator.hasNext() )
+            {
+                artifacts.add( iterator.next() );
+            }
+        }
+        assertEquals( Collections.singletonList( artifact ), artifacts );
+
+        artifacts.clear();
+        try (CloseableIterator<ArtifactMetadata> iterator = repository.streamArtifactsByDateRange( OTHER_REPO_ID,
+                                                                                                   null, null ))
+        {
+            while ( iterator.hasNext() )
+            {
+                artifacts.add( iterator.next() );
+            }
+        }
+        assertEquals( Collections.singletonList( secondArtifact ), artifacts );
+    }
+
     @Test
     public void testGetArtifactsByDateRangeMultipleCopies()
         throws Exception
@@ -1743,6 +1801,8 @@ public void fromProperties( Map<String, String> properties )
 
         private String value;
 
+        private String name = TEST_NAME;
+
         private TestMetadataFacet( String value )
         {
             this.value = value;
@@ -1761,6 +1821,12 @@ private TestMetadataFacet( String facetId, String value, Map<String, String> add
             this.additionalProps = additionalProps;
         }
 
+        private TestMetadataFacet( String facetId, String value, String name )
+        {
+            this( facetId, value );
+            this.name = name;
+        }
+
         @Override
         public String getFacetId()
         {
@@ -1770,7 +1836,7 @@ public String getFacetId()
         @Override
         public String getName()
         {
-            return TEST_NAME;
+            return name;
         }
 
         @Override
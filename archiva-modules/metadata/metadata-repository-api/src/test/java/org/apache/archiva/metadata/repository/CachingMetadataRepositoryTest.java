@@ -0,0 +1,273 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.MetadataFacet;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.redback.components.cache.Cache;
+import org.apache.archiva.redback.components.cache.ehcache.EhcacheCache;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingMetadataRepositoryTest
+{
+    private static final String TEST_REPO_ID = "test";
+
+    private static final String TEST_NAMESPACE = "namespace";
+
+    private static final String TEST_PROJECT = "projectId";
+
+    private static final String TEST_PROJECT_VERSION = "1.0";
+
+    private static Cache<String, ProjectVersionMetadata> cache;
+
+    private StoredMetadataRepository storage;
+
+    @BeforeClass
+    public static void createCache()
+    {
+        EhcacheCache<String, ProjectVersionMetadata> ehcache = new EhcacheCache<>();
+        ehcache.setName( "test-projectVersionMetadata" );
+        ehcache.initialize();
+        cache = ehcache;
+    }
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        cache.clear();
+        storage = new StoredMetadataRepository();
+        storage.updateProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                      createProjectVersion( TEST_PROJECT_VERSION, "name" ) );
+    }
+
+    @Test
+    public void testProjectVersionReadThroughAcrossSessions()
+        throws Exception
+    {
+        ProjectVersionMetadata metadata = openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                                                           TEST_PROJECT_VERSION );
+        // callers own what they get, changing it must not change the cached metadata
+        metadata.setId( null );
+
+        metadata = openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        assertThat( metadata.getId() ).isEqualTo( TEST_PROJECT_VERSION );
+        assertThat( metadata.getName() ).isEqualTo( "name" );
+        assertThat( storage.reads ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void testUpdateProjectVersionInvalidates()
+        throws Exception
+    {
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        MetadataRepository session = openSession();
+        session.updateProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                      createProjectVersion( TEST_PROJECT_VERSION, "new name" ) );
+        // not cached before the session is saved
+        session.getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+        session.save();
+
+        ProjectVersionMetadata metadata =
+            openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        assertThat( metadata.getName() ).isEqualTo( "new name" );
+        assertThat( storage.reads ).isEqualTo( 3 );
+    }
+
+    @Test
+    public void testRemoveProjectInvalidates()
+        throws Exception
+    {
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        MetadataRepository session = openSession();
+        session.removeProject( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT );
+        session.save();
+
+        assertThat( openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                                     TEST_PROJECT_VERSION ) ).isNull();
+    }
+
+    @Test
+    public void testArtifactChangesInvalidate()
+        throws Exception
+    {
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setRepositoryId( TEST_REPO_ID );
+        artifact.setNamespace( TEST_NAMESPACE );
+        artifact.setProject( TEST_PROJECT );
+        artifact.setProjectVersion( TEST_PROJECT_VERSION );
+        artifact.setVersion( TEST_PROJECT_VERSION );
+        artifact.setId( TEST_PROJECT + "-" + TEST_PROJECT_VERSION + ".jar" );
+
+        int reads = 1;
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        MetadataRepository session = openSession();
+        session.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+        session.save();
+        reads = assertReadFromStorage( reads );
+
+        session = openSession();
+        session.removeArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact.getId() );
+        session.save();
+        reads = assertReadFromStorage( reads );
+
+        session = openSession();
+        session.removeArtifact( artifact, TEST_PROJECT_VERSION );
+        session.save();
+        reads = assertReadFromStorage( reads );
+
+        session = openSession();
+        session.removeArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION,
+                                (MetadataFacet) null );
+        session.save();
+        assertReadFromStorage( reads );
+    }
+
+    /**
+     * @return the reads of the storage once the project version is cached again
+     */
+    private int assertReadFromStorage( int reads )
+        throws Exception
+    {
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+        assertThat( storage.reads ).isEqualTo( reads + 1 );
+        return storage.reads;
+    }
+
+    @Test
+    public void testIncompleteProjectVersionNotCached()
+        throws Exception
+    {
+        ProjectVersionMetadata incomplete = createProjectVersion( TEST_PROJECT_VERSION, "name" );
+        incomplete.setIncomplete( true );
+        storage.updateProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, incomplete );
+
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+        openSession().getProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION );
+
+        assertThat( storage.reads ).isEqualTo( 2 );
+    }
+
+    private MetadataRepository openSession()
+    {
+        return new RepositorySession( storage, null, cache ).getRepository();
+    }
+
+    private static ProjectVersionMetadata createProjectVersion( String version, String name )
+    {
+        ProjectVersionMetadata metadata = new ProjectVersionMetadata();
+        metadata.setId( version );
+        metadata.setName( name );
+        return metadata;
+    }
+
+    /**
+     * Keeps the project versions in memory, shared by all the sessions and counting the reads.
+     */
+    private static class StoredMetadataRepository
+        extends AbstractMetadataRepository
+    {
+        private final Map<String, ProjectVersionMetadata> projectVersions = new HashMap<>();
+
+        private int reads;
+
+        @Override
+        public void updateProjectVersion( String repositoryId, String namespace, String projectId,
+                                          ProjectVersionMetadata versionMetadata )
+        {
+            projectVersions.put( repositoryId + ":" + namespace + ":" + projectId + ":" + versionMetadata.getId(),
+                                 versionMetadata );
+        }
+
+        @Override
+        public ProjectVersionMetadata getProjectVersion( String repoId, String namespace, String projectId,
+                                                         String projectVersion )
+        {
+            reads++;
+            return projectVersions.get( repoId + ":" + namespace + ":" + projectId + ":" + projectVersion );
+        }
+
+        @Override
+        public Collection<String> getProjectVersions( String repoId, String namespace, String projectId )
+        {
+            List<String> versions = new ArrayList<>();
+            String prefix = repoId + ":" + namespace + ":" + projectId + ":";
+            for ( String key : projectVersions.keySet() )
+            {
+                if ( key.startsWith( prefix ) )
+                {
+                    versions.add( key.substring( prefix.length() ) );
+                }
+            }
+            return versions;
+        }
+
+        @Override
+        public void updateArtifact( String repositoryId, String namespace, String projectId, String projectVersion,
+                                    ArtifactMetadata artifactMeta )
+        {
+            // only the project version is stored
+        }
+
+        @Override
+        public void removeArtifact( String repositoryId, String namespace, String project, String version, String id )
+        {
+            // only the project version is stored
+        }
+
+        @Override
+        public void removeArtifact( ArtifactMetadata artifactMetadata, String baseVersion )
+        {
+            // only the project version is stored
+        }
+
+        @Override
+        public void removeArtifact( String repositoryId, String namespace, String project, String version,
+                                    MetadataFacet metadataFacet )
+        {
+            // only the project version is stored
+        }
+
+        @Override
+        public void removeProject( String repositoryId, String namespace, String projectId )
+        {
+            for ( String version : getProjectVersions( repositoryId, namespace, projectId ) )
+            {
+                projectVersions.remove( repositoryId + ":" + namespace + ":" + projectId + ":" + version );
+            }
+        }
+    }
+}
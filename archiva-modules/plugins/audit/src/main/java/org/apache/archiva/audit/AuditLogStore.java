@@ -0,0 +1,73 @@
+package org.apache.archiva.audit;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Append-only storage for audit events, kept apart from the metadata repository so that recording and querying
+ * events does not grow with the total number of events ever recorded.
+ *
+ * @since 2.2.2
+ */
+public interface AuditLogStore
+{
+    /**
+     * Append an event to the log of its repository.
+     *
+     * @param event the event, which must have a repository ID and a timestamp
+     */
+    void append( AuditEvent event )
+        throws IOException;
+
+    /**
+     * Get the most recent events of a repository.
+     *
+     * @param repositoryId the repository to retrieve events for
+     * @param limit        the maximum number of events to return
+     * @return the events found, newest first
+     */
+    List<AuditEvent> getMostRecentEvents( String repositoryId, int limit )
+        throws IOException;
+
+    /**
+     * Get the events of a repository that match a certain range and resource pattern.
+     *
+     * @param repositoryId    the repository to retrieve events for
+     * @param resourcePattern find only events whose resources start with this string, or <code>null</code> for all
+     * @param startTime       find events only after this time, or <code>null</code> for no lower bound
+     * @param endTime         find events only before this time, or <code>null</code> for no upper bound
+     * @return the events found, newest first
+     */
+    List<AuditEvent> getEventsInRange( String repositoryId, String resourcePattern, Date startTime, Date endTime )
+        throws IOException;
+
+    /**
+     * Remove all events of a repository.
+     *
+     * @param repositoryId the repository to remove events for
+     */
+    void delete( String repositoryId )
+        throws IOException;
+}
@@ -26,6 +26,8 @@
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.inject.Inject;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -49,16 +51,64 @@
 
     private static final TimeZone UTC_TIME_ZONE = TimeZone.getTimeZone( "UTC" );
 
+    static final Comparator<AuditEvent> NEWEST_FIRST = new Comparator<AuditEvent>()
+    {
+        @Override
+        public int compare( AuditEvent o1, AuditEvent o2 )
+        {
+            return o2.getTimestamp().compareTo( o1.getTimestamp() );
+        }
+    };
+
+    /**
+     * when no audit log store is available, events are kept as metadata facets
+     */
+    @Inject
+    private AuditLogStore auditLogStore;
+
     @Override
     public List<AuditEvent> getMostRecentAuditEvents( MetadataRepository metadataRepository,
                                                       List<String> repositoryIds )
         throws MetadataRepositoryException
     {
-        // TODO: consider a more efficient implementation that directly gets the last ten from the content repository
+        if ( auditLogStore == null )
+        {
+            return getMostRecentFacetEvents( metadataRepository, repositoryIds );
+        }
+
+        List<AuditEvent> events = new ArrayList<>();
+        for ( String repositoryId : repositoryIds )
+        {
+            try
+            {
+                events.addAll( auditLogStore.getMostRecentEvents( repositoryId, NUM_RECENT_EVENTS ) );
+            }
+            catch ( IOException e )
+            {
+                throw new MetadataRepositoryException( "Unable to read audit log: " + e.getMessage(), e );
+            }
+            // events recorded before the audit log store was introduced
+            if ( metadataRepository.hasMetadataFacet( repositoryId, AuditEvent.FACET_ID ) )
+            {
+                events.addAll(
+                    getMostRecentFacetEvents( metadataRepository, Collections.singletonList( repositoryId ) ) );
+            }
+        }
+        Collections.sort( events, NEWEST_FIRST );
+        return events.size() > NUM_RECENT_EVENTS ? new ArrayList<>( events.subList( 0, NUM_RECENT_EVENTS ) ) : events;
+    }
+
+    private List<AuditEvent> getMostRecentFacetEvents( MetadataRepository metadataRepository,
+                                                       List<String> repositoryIds )
+        throws MetadataRepositoryException
+    {
+        // the most recent events overall are among the most recent ones of each repository
         List<AuditRecord> records = new ArrayList<>();
         for ( String repositoryId : repositoryIds )
         {
-            List<String> names = metadataRepository.getMetadataFacets( repositoryId, AuditEvent.FACET_ID );
+            List<String> names =
+                metadataRepository.getLastMetadataFacets( repositoryId, AuditEvent.FACET_ID, null, null,
+                                                          NUM_RECENT_EVENTS );
             for ( String name : names )
             {
                 records.add( new AuditRecord( repositoryId, name ) );
@@ -83,9 +133,24 @@ public void addAuditEvent( MetadataRepository repository, AuditEvent event )
         throws MetadataRepositoryException
     {
         // ignore those with no repository - they will still be logged to the textual audit log
-        if ( event.getRepositoryId() != null )
+        if ( event.getRepositoryId() == null )
+        {
+            return;
+        }
+
+        if ( auditLogStore == null )
         {
             repository.addMetadataFacet( event.getRepositoryId(), event );
+            return;
+        }
+
+        try
+        {
+            auditLogStore.append( event );
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( "Unable to write audit log: " + e.getMessage(), e );
         }
     }
 
@@ -94,6 +159,18 @@ public void deleteAuditEvents( MetadataRepository metadataRepository, String rep
         throws MetadataRepositoryException
     {
         metadataRepository.removeMetadataFacets( repositoryId, AuditEvent.FACET_ID );
+
+        if ( auditLogStore != null )
+        {
+            try
+            {
+                auditLogStore.delete( repositoryId );
+            }
+            catch ( IOException e )
+            {
+                throw new MetadataRepositoryException( "Unable to delete audit log: " + e.getMessage(), e );
+            }
+        }
     }
 
     @Override
@@ -113,6 +190,24 @@ public List<AuditEvent> getAuditEventsInRange( MetadataRepository metadataReposi
         List<AuditEvent> results = new ArrayList<>();
         for ( String repositoryId : repositoryIds )
         {
+            if ( auditLogStore != null )
+            {
+                try
+                {
+                    results.addAll( auditLogStore.getEventsInRange( repositoryId, resource, startTime, endTime ) );
+                }
+                catch ( IOException e )
+                {
+                    throw new MetadataRepositoryException( "Unable to read audit log: " + e.getMessage(), e );
+                }
+
+                // events recorded before the audit log store was introduced
+                if ( !metadataRepository.hasMetadataFacet( repositoryId, AuditEvent.FACET_ID ) )
+                {
+                    continue;
+                }
+            }
+
             List<String> list = metadataRepository.getMetadataFacets( repositoryId, AuditEvent.FACET_ID );
             for ( String name : list )
             {
@@ -139,17 +234,20 @@ public List<AuditEvent> getAuditEventsInRange( MetadataRepository metadataReposi
                 }
             }
         }
-        Collections.sort( results, new Comparator<AuditEvent>()
-        {
-            @Override
-            public int compare( AuditEvent o1, AuditEvent o2 )
-            {
-                return o2.getTimestamp().compareTo( o1.getTimestamp() );
-            }
-        } );
+        Collections.sort( results, NEWEST_FIRST );
         return results;
     }
 
+    public AuditLogStore getAuditLogStore()
+    {
+        return auditLogStore;
+    }
+
+    public void setAuditLogStore( AuditLogStore auditLogStore )
+    {
+        this.auditLogStore = auditLogStore;
+    }
+
     private static SimpleDateFormat createNameFormat()
     {
         SimpleDateFormat fmt = new SimpleDateFormat( AuditEvent.TIMESTAMP_FORMAT );
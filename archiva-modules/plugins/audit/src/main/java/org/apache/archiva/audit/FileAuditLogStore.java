@@ -0,0 +1,620 @@
+package org.apache.archiva.audit;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.redback.components.registry.Registry;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit log store keeping one directory per repository and one line-delimited file per day (UTC), so that range
+ * and most recent queries only read the partitions they need. Partitions of previous days are compressed, and
+ * partitions older than the retention period are removed, in the background once an event is appended on a new day.
+ * <p>
+ * Each line holds the timestamp in milliseconds, the action, the user, the remote IP and the resource, separated
+ * by tabs.
+ *
+ * @since 2.2.2
+ */
+@Service( "auditLogStore#file" )
+public class FileAuditLogStore
+    implements AuditLogStore
+{
+    private static final Logger log = LoggerFactory.getLogger( FileAuditLogStore.class );
+
+    private static final TimeZone UTC_TIME_ZONE = TimeZone.getTimeZone( "UTC" );
+
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+
+    private static final String LOG_EXTENSION = ".log";
+
+    private static final String COMPACTED_EXTENSION = ".log.gz";
+
+    /**
+     * a log file taken away from the appends while it is being compressed
+     */
+    private static final String PENDING_EXTENSION = ".log.pending";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final String NULL_VALUE = "\\N";
+
+    private static final int FIELD_COUNT = 5;
+
+    /**
+     * resolved from the Archiva base directory on initialization when not configured
+     */
+    private File directory =
+        System.getProperty( "archiva.audit.directory" ) != null ? new File( System.getProperty(
+            "archiva.audit.directory" ) ) : null;
+
+    @Inject
+    @Named( value = "commons-configuration" )
+    private Registry registry;
+
+    /**
+     * number of days for which events are kept, 0 to keep them forever
+     */
+    private int retentionDays = Integer.getInteger( "archiva.audit.retentionDays", 0 );
+
+    private boolean compaction = Boolean.parseBoolean( System.getProperty( "archiva.audit.compaction", "true" ) );
+
+    private final Object writeLock = new Object();
+
+    /**
+     * held for writing while a partition file is moved by the maintenance, so that readers never miss its events
+     */
+    private final ReadWriteLock partitionLock = new ReentrantReadWriteLock();
+
+    /**
+     * the day for which partitions were last maintained, guarded by writeLock
+     */
+    private String maintainedDay;
+
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+    {
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "audit-log-maintenance" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    private volatile Future<?> maintenance;
+
+    @PostConstruct
+    public void initialize()
+    {
+        if ( directory == null )
+        {
+            String base = registry.getString( "appserver.base", System.getProperty( "appserver.base" ) );
+            if ( StringUtils.isEmpty( base ) || base.contains( "${" ) )
+            {
+                // same fallback as the Archiva configuration itself
+                base = new File( System.getProperty( "user.home" ), ".m2/archiva" ).getPath();
+            }
+            directory = new File( base, "data/audit" );
+        }
+        log.info( "Audit log stored in {}", directory );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    @Override
+    public void append( AuditEvent event )
+        throws IOException
+    {
+        String day = formatDay( event.getTimestamp() );
+        File repositoryDirectory = getRepositoryDirectory( event.getRepositoryId() );
+        String line = toLine( event );
+        final String today = formatDay( new Date() );
+
+        synchronized ( writeLock )
+        {
+            if ( !today.equals( maintainedDay ) )
+            {
+                maintainedDay = today;
+                maintenance = maintenanceExecutor.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        maintain( today );
+                    }
+                } );
+            }
+
+            if ( !repositoryDirectory.exists() && !repositoryDirectory.mkdirs() )
+            {
+                throw new IOException( "Unable to create audit log directory " + repositoryDirectory );
+            }
+            try ( Writer writer = new OutputStreamWriter(
+                new FileOutputStream( new File( repositoryDirectory, day + LOG_EXTENSION ), true ),
+                StandardCharsets.UTF_8 ) )
+            {
+                writer.write( line );
+            }
+        }
+    }
+
+    @Override
+    public List<AuditEvent> getMostRecentEvents( String repositoryId, int limit )
+        throws IOException
+    {
+        File repositoryDirectory = getRepositoryDirectory( repositoryId );
+        List<AuditEvent> events = new ArrayList<>();
+        // all events of a partition are newer than those of the partitions before it
+        for ( String day : listDays( repositoryDirectory ).descendingSet() )
+        {
+            readDay( repositoryId, repositoryDirectory, day, null, null, null, events );
+            if ( events.size() >= limit )
+            {
+                break;
+            }
+        }
+        Collections.sort( events, DefaultAuditManager.NEWEST_FIRST );
+        return events.size() > limit ? new ArrayList<>( events.subList( 0, limit ) ) : events;
+    }
+
+    @Override
+    public List<AuditEvent> getEventsInRange( String repositoryId, String resourcePattern, Date startTime,
+                                              Date endTime )
+        throws IOException
+    {
+        File repositoryDirectory = getRepositoryDirectory( repositoryId );
+        String startDay = startTime != null ? formatDay( startTime ) : null;
+        String endDay = endTime != null ? formatDay( endTime ) : null;
+
+        List<AuditEvent> events = new ArrayList<>();
+        for ( String day : listDays( repositoryDirectory ) )
+        {
+            if ( ( startDay == null || day.compareTo( startDay ) >= 0 ) && ( endDay == null
+                || day.compareTo( endDay ) <= 0 ) )
+            {
+                readDay( repositoryId, repositoryDirectory, day, resourcePattern, startTime, endTime, events );
+            }
+        }
+        Collections.sort( events, DefaultAuditManager.NEWEST_FIRST );
+        return events;
+    }
+
+    @Override
+    public void delete( String repositoryId )
+        throws IOException
+    {
+        File repositoryDirectory = getRepositoryDirectory( repositoryId );
+        synchronized ( writeLock )
+        {
+            File[] files = repositoryDirectory.listFiles();
+            if ( files != null )
+            {
+                for ( File file : files )
+                {
+                    Files.delete( file.toPath() );
+                }
+            }
+            Files.deleteIfExists( repositoryDirectory.toPath() );
+        }
+    }
+
+    /**
+     * Wait for the maintenance started by the last append, if any.
+     */
+    void waitForMaintenance()
+        throws InterruptedException, ExecutionException
+    {
+        Future<?> current = maintenance;
+        if ( current != null )
+        {
+            current.get();
+        }
+    }
+
+    /**
+     * Compress the partitions before the given day and remove those older than the retention period. Failures are
+     * only logged, so that they never prevent events from being recorded.
+     */
+    private void maintain( String today )
+    {
+        File[] repositoryDirectories = directory.listFiles();
+        if ( repositoryDirectories == null )
+        {
+            return;
+        }
+
+        String oldestDay = null;
+        if ( retentionDays > 0 )
+        {
+            Calendar calendar = Calendar.getInstance( UTC_TIME_ZONE );
+            calendar.add( Calendar.DAY_OF_MONTH, -retentionDays );
+            oldestDay = formatDay( calendar.getTime() );
+        }
+
+        for ( File repositoryDirectory : repositoryDirectories )
+        {
+            if ( !repositoryDirectory.isDirectory() )
+            {
+                continue;
+            }
+            for ( String day : listDays( repositoryDirectory ) )
+            {
+                try
+                {
+                    if ( oldestDay != null && day.compareTo( oldestDay ) < 0 )
+                    {
+                        Files.deleteIfExists( new File( repositoryDirectory, day + LOG_EXTENSION ).toPath() );
+                        Files.deleteIfExists( new File( repositoryDirectory, day + PENDING_EXTENSION ).toPath() );
+                        Files.deleteIfExists( new File( repositoryDirectory, day + COMPACTED_EXTENSION ).toPath() );
+                    }
+                    else if ( compaction && day.compareTo( today ) < 0 )
+                    {
+                        compact( repositoryDirectory, day );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Unable to maintain audit log partition {} of {}: {}", day, repositoryDirectory,
+                              e.getMessage() );
+                }
+            }
+        }
+    }
+
+    private void compact( File repositoryDirectory, String day )
+        throws IOException
+    {
+        File logFile = new File( repositoryDirectory, day + LOG_EXTENSION );
+        File pendingFile = new File( repositoryDirectory, day + PENDING_EXTENSION );
+        File compactedFile = new File( repositoryDirectory, day + COMPACTED_EXTENSION );
+        File tmpFile = new File( repositoryDirectory, day + COMPACTED_EXTENSION + ".tmp" );
+
+        // appends write whole lines under the write lock, so the log file is complete once moved away from them,
+        // a pending file left by an interrupted maintenance is compressed first
+        synchronized ( writeLock )
+        {
+            if ( !pendingFile.exists() && logFile.exists() )
+            {
+                partitionLock.writeLock().lock();
+                try
+                {
+                    Files.move( logFile.toPath(), pendingFile.toPath() );
+                }
+                finally
+                {
+                    partitionLock.writeLock().unlock();
+                }
+            }
+        }
+        if ( !pendingFile.exists() )
+        {
+            return;
+        }
+
+        try ( OutputStream out = new GZIPOutputStream( new FileOutputStream( tmpFile ) ) )
+        {
+            // late events may have been appended to a day that was already compacted
+            if ( compactedFile.exists() )
+            {
+                try ( InputStream in = new GZIPInputStream( new FileInputStream( compactedFile ) ) )
+                {
+                    copy( in, out );
+                }
+            }
+            Files.copy( pendingFile.toPath(), out );
+        }
+        partitionLock.writeLock().lock();
+        try
+        {
+            Files.move( tmpFile.toPath(), compactedFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            Files.delete( pendingFile.toPath() );
+        }
+        finally
+        {
+            partitionLock.writeLock().unlock();
+        }
+    }
+
+    private void readDay( String repositoryId, File repositoryDirectory, String day, String resourcePattern,
+                          Date startTime, Date endTime, List<AuditEvent> events )
+        throws IOException
+    {
+        partitionLock.readLock().lock();
+        try
+        {
+            File compactedFile = new File( repositoryDirectory, day + COMPACTED_EXTENSION );
+            if ( compactedFile.exists() )
+            {
+                try ( InputStream in = new GZIPInputStream( new FileInputStream( compactedFile ) ) )
+                {
+                    readEvents( repositoryId, in, resourcePattern, startTime, endTime, events );
+                }
+            }
+            for ( String extension : new String[]{ PENDING_EXTENSION, LOG_EXTENSION } )
+            {
+                File logFile = new File( repositoryDirectory, day + extension );
+                if ( logFile.exists() )
+                {
+                    try ( InputStream in = new FileInputStream( logFile ) )
+                    {
+                        readEvents( repositoryId, in, resourcePattern, startTime, endTime, events );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            partitionLock.readLock().unlock();
+        }
+    }
+
+    private void readEvents( String repositoryId, InputStream in, String resourcePattern, Date startTime,
+                             Date endTime, List<AuditEvent> events )
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+        String line;
+        while ( ( line = reader.readLine() ) != null )
+        {
+            AuditEvent event = fromLine( repositoryId, line );
+            if ( event == null )
+            {
+                continue;
+            }
+            Date timestamp = event.getTimestamp();
+            if ( ( startTime == null || !timestamp.before( startTime ) ) && ( endTime == null || !timestamp.after(
+                endTime ) ) && ( resourcePattern == null || ( event.getResource() != null
+                && event.getResource().startsWith( resourcePattern ) ) ) )
+            {
+                events.add( event );
+            }
+        }
+    }
+
+    private static TreeSet<String> listDays( File repositoryDirectory )
+    {
+        TreeSet<String> days = new TreeSet<>();
+        String[] names = repositoryDirectory.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                if ( name.endsWith( COMPACTED_EXTENSION ) )
+                {
+                    days.add( name.substring( 0, name.length() - COMPACTED_EXTENSION.length() ) );
+                }
+                else if ( name.endsWith( LOG_EXTENSION ) )
+                {
+                    days.add( name.substring( 0, name.length() - LOG_EXTENSION.length() ) );
+                }
+                else if ( name.endsWith( PENDING_EXTENSION ) )
+                {
+                    days.add( name.substring( 0, name.length() - PENDING_EXTENSION.length() ) );
+                }
+            }
+        }
+        return days;
+    }
+
+    private File getRepositoryDirectory( String repositoryId )
+    {
+        return new File( directory, repositoryId );
+    }
+
+    private static String formatDay( Date date )
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat( DAY_FORMAT );
+        fmt.setTimeZone( UTC_TIME_ZONE );
+        return fmt.format( date );
+    }
+
+    private static String toLine( AuditEvent event )
+    {
+        StringBuilder line = new StringBuilder();
+        line.append( event.getTimestamp().getTime() ).append( SEPARATOR );
+        escape( event.getAction(), line ).append( SEPARATOR );
+        escape( event.getUserId(), line ).append( SEPARATOR );
+        escape( event.getRemoteIP(), line ).append( SEPARATOR );
+        escape( event.getResource(), line ).append( '\n' );
+        return line.toString();
+    }
+
+    private static AuditEvent fromLine( String repositoryId, String line )
+    {
+        String[] fields = line.split( String.valueOf( SEPARATOR ), -1 );
+        if ( fields.length != FIELD_COUNT )
+        {
+            // most likely an event being appended while reading
+            log.debug( "Ignoring incomplete audit log entry in repository {}: {}", repositoryId, line );
+            return null;
+        }
+
+        AuditEvent event = new AuditEvent();
+        try
+        {
+            event.setTimestamp( new Date( Long.parseLong( fields[0] ) ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            log.error( "Invalid audit event found in the audit log of repository {}: {}", repositoryId, line );
+            return null;
+        }
+        event.setRepositoryId( repositoryId );
+        event.setAction( unescape( fields[1] ) );
+        event.setUserId( unescape( fields[2] ) );
+        event.setRemoteIP( unescape( fields[3] ) );
+        event.setResource( unescape( fields[4] ) );
+        return event;
+    }
+
+    private static StringBuilder escape( String value, StringBuilder out )
+    {
+        if ( value == null )
+        {
+            return out.append( NULL_VALUE );
+        }
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '\\':
+                    out.append( "\\\\" );
+                    break;
+                case '\t':
+                    out.append( "\\t" );
+                    break;
+                case '\n':
+                    out.append( "\\n" );
+                    break;
+                case '\r':
+                    out.append( "\\r" );
+                    break;
+                default:
+                    out.append( c );
+            }
+        }
+        return out;
+    }
+
+    private static String unescape( String value )
+    {
+        if ( NULL_VALUE.equals( value ) )
+        {
+            return null;
+        }
+        if ( value.indexOf( '\\' ) < 0 )
+        {
+            return value;
+        }
+        StringBuilder out = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '\\' && i + 1 < value.length() )
+            {
+                char next = value.charAt( ++i );
+                switch ( next )
+                {
+                    case 't':
+                        out.append( '\t' );
+                        break;
+                    case 'n':
+                        out.append( '\n' );
+                        break;
+                    case 'r':
+                        out.append( '\r' );
+                        break;
+                    default:
+                        out.append( next );
+                }
+            }
+            else
+            {
+                out.append( c );
+            }
+        }
+        return out.toString();
+    }
+
+    private static void copy( InputStream in, OutputStream out )
+        throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ( ( read = in.read( buffer ) ) != -1 )
+        {
+            out.write( buffer, 0, read );
+        }
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public void setDirectory( File directory )
+    {
+        this.directory = directory;
+    }
+
+    public int getRetentionDays()
+    {
+        return retentionDays;
+    }
+
+    public void setRetentionDays( int retentionDays )
+    {
+        this.retentionDays = retentionDays;
+    }
+
+    public boolean isCompaction()
+    {
+        return compaction;
+    }
+
+    public void setCompaction( boolean compaction )
+    {
+        this.compaction = compaction;
+    }
+}
@@ -30,6 +30,7 @@
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -104,8 +105,9 @@ public void testGetMostRecentEvents()
             expectedEvents.add( event );
         }
 
-        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn(
-            getEventNames( expectedEvents ) );
+        EasyMock.expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID, null, null,
+                                                                   10 ) ).andReturn(
+            getLastEventNames( getEventNames( expectedEvents ) ) );
 
         for ( AuditEvent event : expectedEvents.subList( 1, expectedEvents.size() ) )
         {
@@ -141,8 +143,9 @@ public void testGetMostRecentEventsLessThan10()
             expectedEvents.add( createEvent( AUDIT_EVENT_BASE + MILLIS_FORMAT.format( i ) ) );
         }
 
-        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn(
-            getEventNames( expectedEvents ) );
+        EasyMock.expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID, null, null,
+                                                                   10 ) ).andReturn(
+            getLastEventNames( getEventNames( expectedEvents ) ) );
         for ( AuditEvent event : expectedEvents )
         {
             EasyMock.expect(
@@ -184,10 +187,12 @@ public void testGetMostRecentEventsInterleavedRepositories()
             eventNames.get( repositoryId ).add( event.getName() );
         }
 
-        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn(
-            eventNames.get( TEST_REPO_ID ) );
-        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID_2, AuditEvent.FACET_ID ) ).andReturn(
-            eventNames.get( TEST_REPO_ID_2 ) );
+        EasyMock.expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID, null, null,
+                                                                   10 ) ).andReturn(
+            getLastEventNames( eventNames.get( TEST_REPO_ID ) ) );
+        EasyMock.expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID_2, AuditEvent.FACET_ID, null, null,
+                                                                   10 ) ).andReturn(
+            getLastEventNames( eventNames.get( TEST_REPO_ID_2 ) ) );
 
         for ( AuditEvent event : events.subList( 1, events.size() ) )
         {
@@ -218,7 +223,8 @@ public void testGetMostRecentEventsWhenEmpty()
 
     {
 
-        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn(
+        EasyMock.expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID, null, null,
+                                                                   10 ) ).andReturn(
             Collections.<String>emptyList() );
         metadataRepositoryControl.replay();
 
@@ -260,6 +266,39 @@ public void testAddAuditEventNoRepositoryId()
         metadataRepositoryControl.verify();
     }
 
+    @Test
+    public void testAuditLogStoreWithLegacyEvents()
+        throws Exception
+    {
+        FileAuditLogStore auditLogStore = new FileAuditLogStore();
+        auditLogStore.setDirectory( new File( "target/test-audit-manager-log" ) );
+        auditLogStore.delete( TEST_REPO_ID );
+        auditManager.setAuditLogStore( auditLogStore );
+
+        Date current = new Date();
+        AuditEvent legacyEvent = createEvent( new Date( current.getTime() - 3000 ) );
+        AuditEvent event = createEvent( new Date( current.getTime() - 1000 ) );
+
+        EasyMock.expect( metadataRepository.hasMetadataFacet( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn( true );
+        EasyMock.expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, AuditEvent.FACET_ID ) ).andReturn(
+            Collections.singletonList( legacyEvent.getName() ) );
+        EasyMock.expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, AuditEvent.FACET_ID,
+                                                              legacyEvent.getName() ) ).andReturn( legacyEvent );
+        metadataRepositoryControl.replay();
+
+        auditManager.addAuditEvent( metadataRepository, event );
+
+        List<AuditEvent> events =
+            auditManager.getAuditEventsInRange( metadataRepository, Collections.singletonList( TEST_REPO_ID ),
+                                                new Date( current.getTime() - 20000 ), current );
+
+        assertEquals( 2, events.size() );
+        assertEquals( event, events.get( 0 ) );
+        assertEquals( legacyEvent, events.get( 1 ) );
+
+        metadataRepositoryControl.verify();
+    }
+
     @Test
     public void testDeleteStats()
         throws Exception
@@ -612,4 +651,11 @@ private List<String> getEventNames( List<AuditEvent> events )
         }
         return names;
     }
+
+    private List<String> getLastEventNames( List<String> names )
+    {
+        List<String> lastNames = new ArrayList<>( names );
+        Collections.sort( lastNames, Collections.reverseOrder() );
+        return lastNames.size() > 10 ? lastNames.subList( 0, 10 ) : lastNames;
+    }
 }
@@ -0,0 +1,170 @@
+package org.apache.archiva.audit;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+
+@RunWith(ArchivaBlockJUnit4ClassRunner.class)
+public class FileAuditLogStoreTest
+    extends TestCase
+{
+    private static final String TEST_REPO_ID = "test-repo";
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private FileAuditLogStore store;
+
+    private File directory;
+
+    @Override
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( "target/test-audit-log" );
+        deleteRecursively( directory );
+
+        store = new FileAuditLogStore();
+        store.setDirectory( directory );
+    }
+
+    @Test
+    public void testAppendAndRead()
+        throws Exception
+    {
+        AuditEvent event = createEvent( new Date(), "test/resource\twith\\special\ncharacters" );
+        event.setRemoteIP( null );
+        store.append( event );
+
+        List<AuditEvent> events = store.getMostRecentEvents( TEST_REPO_ID, 10 );
+        assertEquals( 1, events.size() );
+        assertEquals( event, events.get( 0 ) );
+    }
+
+    @Test
+    public void testGetMostRecentEvents()
+        throws Exception
+    {
+        long now = System.currentTimeMillis();
+        for ( int i = 0; i < 15; i++ )
+        {
+            store.append( createEvent( new Date( now - i * DAY / 4 ), "test/resource/" + i ) );
+        }
+
+        List<AuditEvent> events = store.getMostRecentEvents( TEST_REPO_ID, 10 );
+        assertEquals( 10, events.size() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( "test/resource/" + i, events.get( i ).getResource() );
+        }
+    }
+
+    @Test
+    public void testGetEventsInRange()
+        throws Exception
+    {
+        long now = System.currentTimeMillis();
+        store.append( createEvent( new Date( now - 3 * DAY ), "test/resource/old" ) );
+        store.append( createEvent( new Date( now - DAY ), "test/resource/expected" ) );
+        store.append( createEvent( new Date( now - DAY + 1000 ), "other/resource" ) );
+        store.append( createEvent( new Date( now ), "test/resource/new" ) );
+
+        List<AuditEvent> events =
+            store.getEventsInRange( TEST_REPO_ID, "test/", new Date( now - 2 * DAY ), new Date( now - 1000 ) );
+        assertEquals( 1, events.size() );
+        assertEquals( "test/resource/expected", events.get( 0 ).getResource() );
+
+        assertEquals( 4, store.getEventsInRange( TEST_REPO_ID, null, null, null ).size() );
+    }
+
+    @Test
+    public void testCompactionAndRetention()
+        throws Exception
+    {
+        long now = System.currentTimeMillis();
+        // leave the partitions to the maintenance of the new store
+        store.setCompaction( false );
+        store.append( createEvent( new Date( now - 10 * DAY ), "test/resource/expired" ) );
+        store.append( createEvent( new Date( now - 2 * DAY ), "test/resource/compacted" ) );
+
+        // a new store maintains the partitions in the background on its first append
+        FileAuditLogStore newStore = new FileAuditLogStore();
+        newStore.setDirectory( directory );
+        newStore.setRetentionDays( 5 );
+        newStore.append( createEvent( new Date( now ), "test/resource/current" ) );
+        newStore.waitForMaintenance();
+
+        String[] files = new File( directory, TEST_REPO_ID ).list();
+        assertEquals( 2, files.length );
+
+        List<AuditEvent> events = newStore.getEventsInRange( TEST_REPO_ID, null, null, null );
+        assertEquals( 2, events.size() );
+        assertEquals( "test/resource/current", events.get( 0 ).getResource() );
+        assertEquals( "test/resource/compacted", events.get( 1 ).getResource() );
+    }
+
+    @Test
+    public void testDelete()
+        throws Exception
+    {
+        store.append( createEvent( new Date(), "test/resource" ) );
+
+        store.delete( TEST_REPO_ID );
+
+        assertFalse( new File( directory, TEST_REPO_ID ).exists() );
+        assertTrue( store.getMostRecentEvents( TEST_REPO_ID, 10 ).isEmpty() );
+    }
+
+    private static AuditEvent createEvent( Date timestamp, String resource )
+    {
+        AuditEvent event = new AuditEvent();
+        event.setTimestamp( timestamp );
+        event.setAction( AuditEvent.UPLOAD_FILE );
+        event.setRemoteIP( "127.0.0.1" );
+        event.setRepositoryId( TEST_REPO_ID );
+        event.setUserId( "test_user" );
+        event.setResource( resource );
+        return event;
+    }
+
+    private static void deleteRecursively( File file )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                deleteRecursively( child );
+            }
+        }
+        file.delete();
+    }
+}
@@ -216,6 +216,71 @@ public Set<ArtifactReference> getRelatedArtifacts( ArtifactReference reference )
         return foundArtifacts;
     }
 
+    @Override
+    public Set<ArtifactReference> getRelatedArtifacts( VersionedReference reference )
+        throws ContentNotFoundException
+    {
+        String path = toMetadataPath( reference );
+
+        int idx = path.lastIndexOf( '/' );
+        if ( idx > 0 )
+        {
+            path = path.substring( 0, idx );
+        }
+
+        File repoDir = new File( repository.getLocation(), path );
+
+        if ( !repoDir.exists() )
+        {
+            throw new ContentNotFoundException(
+                "Unable to get related artifacts using a non-existant directory: " + repoDir.getAbsolutePath() );
+        }
+
+        if ( !repoDir.isDirectory() )
+        {
+            throw new ContentNotFoundException(
+                "Unable to get related artifacts using a non-directory: " + repoDir.getAbsolutePath() );
+        }
+
+        Set<ArtifactReference> foundArtifacts = new HashSet<>();
+
+        File repoFiles[] = repoDir.listFiles();
+        for ( File repoFile : repoFiles )
+        {
+            if ( repoFile.isDirectory() )
+            {
+                // Skip it. it's a directory.
+                continue;
+            }
+            String relativePath = PathUtil.getRelative( repository.getLocation(), repoFile );
+            if ( filetypes.matchesDefaultExclusions( relativePath ) )
+            {
+                // Skip it, it's metadata or similar
+                continue;
+            }
+            if ( filetypes.matchesArtifactPattern( relativePath ) )
+            {
+                try
+                {
+                    ArtifactReference artifact = toArtifactReference( relativePath );
+
+                    // Test for related, groupId / artifactId must match.
+                    if ( artifact.getGroupId().equals( reference.getGroupId() ) && artifact.getArtifactId().equals(
+                        reference.getArtifactId() ) )
+                    {
+                        foundArtifacts.add( artifact );
+                    }
+                }
+                catch ( LayoutException e )
+                {
+                    log.debug( "Not processing file that is not an artifact: {}", e.getMessage() );
+                }
+            }
+        }
+
+        return foundArtifacts;
+    }
+
     @Override
     public String getRepoRoot()
     {
@@ -0,0 +1,210 @@
+package org.apache.archiva.metadata.repository.cassandra;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.beans.ColumnSlice;
+import me.prettyprint.hector.api.mutation.Mutator;
+import org.apache.commons.lang.StringUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.apache.archiva.metadata.repository.cassandra.CassandraUtils.*;
+import static org.apache.archiva.metadata.repository.cassandra.model.ColumnNames.*;
+
+/**
+ * Maintains the lookup column families of artifact metadata, so that checksum and date range queries read single
+ * rows instead of scanning secondary indexes:
+ * <ul>
+ * <li>the checksum family has one row per repository and checksum (md5 or sha1), with one column named after the key
+ * of each matching artifact</li>
+ * <li>the artifact by date family has one row per repository and UTC day, with one column per artifact gathered
+ * that day, named after the zero padded gathering time followed by the artifact key so that columns are sorted by
+ * time, and valued with the artifact key</li>
+ * </ul>
+ *
+ * @since 2.2.2
+ */
+public class ArtifactLookups
+{
+    /**
+     * columns of the artifact metadata family needed to maintain the lookups
+     */
+    public static final String[] COLUMNS =
+        new String[]{ REPOSITORY_NAME.toString(), MD5.toString(), SHA1.toString(), WHEN_GATHERED.toString() };
+
+    private static final TimeZone UTC_TIME_ZONE = TimeZone.getTimeZone( "UTC" );
+
+    private static final String DAY_FORMAT = "yyyyMMdd";
+
+    private static final int TIME_LENGTH = 13;
+
+    private static final String TIME_SEPARATOR = ":";
+
+    private ArtifactLookups()
+    {
+        // no op
+    }
+
+    public static void addInsertions( CassandraArchivaManager manager, Mutator<String> mutator, String artifactKey,
+                                      String repositoryId, String md5, String sha1, Long whenGathered )
+    {
+        if ( StringUtils.isNotEmpty( md5 ) )
+        {
+            mutator.addInsertion( getChecksumKey( repositoryId, md5 ), manager.getChecksumFamilyName(),
+                                  column( artifactKey, "" ) );
+        }
+        if ( StringUtils.isNotEmpty( sha1 ) )
+        {
+            mutator.addInsertion( getChecksumKey( repositoryId, sha1 ), manager.getChecksumFamilyName(),
+                                  column( artifactKey, "" ) );
+        }
+        if ( whenGathered != null )
+        {
+            mutator.addInsertion( getDayKey( repositoryId, whenGathered ), manager.getArtifactByDateFamilyName(),
+                                  column( getTimeColumnName( whenGathered, artifactKey ), artifactKey ) );
+        }
+    }
+
+    public static void addDeletions( CassandraArchivaManager manager, Mutator<String> mutator, String artifactKey,
+                                     String repositoryId, String md5, String sha1, Long whenGathered )
+    {
+        if ( StringUtils.isNotEmpty( md5 ) )
+        {
+            mutator.addDeletion( getChecksumKey( repositoryId, md5 ), manager.getChecksumFamilyName(), artifactKey,
+                                 StringSerializer.get() );
+        }
+        if ( StringUtils.isNotEmpty( sha1 ) )
+        {
+            mutator.addDeletion( getChecksumKey( repositoryId, sha1 ), manager.getChecksumFamilyName(), artifactKey,
+                                 StringSerializer.get() );
+        }
+        if ( whenGathered != null )
+        {
+            mutator.addDeletion( getDayKey( repositoryId, whenGathered ), manager.getArtifactByDateFamilyName(),
+                                 getTimeColumnName( whenGathered, artifactKey ), StringSerializer.get() );
+        }
+    }
+
+    /**
+     * Add the deletions of the lookups of an artifact, from its row read with {@link #COLUMNS}.
+     */
+    public static void addDeletions( CassandraArchivaManager manager, Mutator<String> mutator, String artifactKey,
+                                     ColumnSlice<String, String> columns )
+    {
+        addDeletions( manager, mutator, artifactKey, getStringValue( columns, REPOSITORY_NAME.toString() ),
+                      getStringValue( columns, MD5.toString() ), getStringValue( columns, SHA1.toString() ),
+                      getAsLongValue( columns, WHEN_GATHERED.toString() ) );
+    }
+
+    /**
+     * Add the insertions of the lookups of an artifact, from its row read with {@link #COLUMNS}.
+     */
+    public static void addInsertions( CassandraArchivaManager manager, Mutator<String> mutator, String artifactKey,
+                                      ColumnSlice<String, String> columns )
+    {
+        addInsertions( manager, mutator, artifactKey, getStringValue( columns, REPOSITORY_NAME.toString() ),
+                       getStringValue( columns, MD5.toString() ), getStringValue( columns, SHA1.toString() ),
+                       getAsLongValue( columns, WHEN_GATHERED.toString() ) );
+    }
+
+    /**
+     * Add the mutations moving the lookups of an artifact from its previous values, read with {@link #COLUMNS}, to
+     * the new ones. Unchanged lookups are not deleted, as a deletion would win over an insertion in the same batch.
+     */
+    public static void addUpdates( CassandraArchivaManager manager, Mutator<String> mutator, String artifactKey,
+                                   ColumnSlice<String, String> previous, String repositoryId, String md5,
+                                   String sha1, Long whenGathered )
+    {
+        String previousRepositoryId = getStringValue( previous, REPOSITORY_NAME.toString() );
+        if ( StringUtils.equals( previousRepositoryId, repositoryId ) )
+        {
+            String previousMd5 = getStringValue( previous, MD5.toString() );
+            String previousSha1 = getStringValue( previous, SHA1.toString() );
+            Long previousWhenGathered = getAsLongValue( previous, WHEN_GATHERED.toString() );
+            addDeletions( manager, mutator, artifactKey, repositoryId, //
+                          isChanged( previousMd5, md5, sha1 ) ? previousMd5 : null, //
+                          isChanged( previousSha1, md5, sha1 ) ? previousSha1 : null, //
+                          previousWhenGathered != null && !previousWhenGathered.equals( whenGathered )
+                              ? previousWhenGathered
+                              : null );
+        }
+        else
+        {
+            addDeletions( manager, mutator, artifactKey, previous );
+        }
+        addInsertions( manager, mutator, artifactKey, repositoryId, md5, sha1, whenGathered );
+    }
+
+    private static boolean isChanged( String previousChecksum, String md5, String sha1 )
+    {
+        return !StringUtils.equals( previousChecksum, md5 ) && !StringUtils.equals( previousChecksum, sha1 );
+    }
+
+    public static String getChecksumKey( String repositoryId, String checksum )
+    {
+        return generateKey( repositoryId, checksum );
+    }
+
+    public static String getDayKey( String repositoryId, long time )
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat( DAY_FORMAT );
+        fmt.setTimeZone( UTC_TIME_ZONE );
+        return generateKey( repositoryId, fmt.format( new Date( time ) ) );
+    }
+
+    /**
+     * @return the UTC start of the day of the given time
+     */
+    public static Calendar getDayStart( Date time )
+    {
+        Calendar day = Calendar.getInstance( UTC_TIME_ZONE );
+        day.setTime( time );
+        day.set( Calendar.HOUR_OF_DAY, 0 );
+        day.set( Calendar.MINUTE, 0 );
+        day.set( Calendar.SECOND, 0 );
+        day.set( Calendar.MILLISECOND, 0 );
+        return day;
+    }
+
+    /**
+     * @return the first column name of the artifact by date family at or after the given time
+     */
+    public static String getTimeColumnStart( long time )
+    {
+        return StringUtils.leftPad( Long.toString( time ), TIME_LENGTH, '0' );
+    }
+
+    /**
+     * @return the last column name of the artifact by date family at or before the given time
+     */
+    public static String getTimeColumnFinish( long time )
+    {
+        return getTimeColumnStart( time ) + TIME_SEPARATOR + Character.MAX_VALUE;
+    }
+
+    private static String getTimeColumnName( long time, String artifactKey )
+    {
+        return getTimeColumnStart( time ) + TIME_SEPARATOR + artifactKey;
+    }
+}
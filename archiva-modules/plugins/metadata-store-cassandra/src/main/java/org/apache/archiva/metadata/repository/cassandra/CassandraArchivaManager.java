@@ -56,4 +56,19 @@
 
     String getDependencyFamilyName();
 
+    /**
+     * @since 2.2.2
+     */
+    String getChecksumFamilyName();
+
+    /**
+     * @since 2.2.2
+     */
+    String getArtifactByDateFamilyName();
+
+    /**
+     * @since 2.2.2
+     */
+    String getMetadataFacetNameFamilyName();
+
 }
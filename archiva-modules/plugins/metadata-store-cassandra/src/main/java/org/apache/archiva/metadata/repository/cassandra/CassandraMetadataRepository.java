@@ -24,20 +24,24 @@
 
 import me.prettyprint.cassandra.serializers.LongSerializer;
 import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.cassandra.service.ColumnSliceIterator;
 import me.prettyprint.cassandra.service.template.ColumnFamilyResult;
 import me.prettyprint.cassandra.service.template.ColumnFamilyTemplate;
 import me.prettyprint.cassandra.service.template.ColumnFamilyUpdater;
 import me.prettyprint.cassandra.service.template.ThriftColumnFamilyTemplate;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.ColumnSlice;
+import me.prettyprint.hector.api.beans.HColumn;
 import me.prettyprint.hector.api.beans.OrderedRows;
 import me.prettyprint.hector.api.beans.Row;
+import me.prettyprint.hector.api.beans.Rows;
 import me.prettyprint.hector.api.exceptions.HInvalidRequestException;
 import me.prettyprint.hector.api.factory.HFactory;
 import me.prettyprint.hector.api.mutation.MutationResult;
 import me.prettyprint.hector.api.mutation.Mutator;
 import me.prettyprint.hector.api.query.QueryResult;
 import me.prettyprint.hector.api.query.RangeSlicesQuery;
+import me.prettyprint.hector.api.query.SliceQuery;
 
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
@@ -54,6 +58,8 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
+import org.apache.archiva.metadata.repository.AbstractCloseableIterator;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -71,6 +77,8 @@
 import javax.persistence.PersistenceException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -82,6 +90,11 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.apache.archiva.metadata.repository.cassandra.CassandraUtils.*;
 import static org.apache.archiva.metadata.repository.cassandra.model.ColumnNames.*;
@@ -120,6 +133,16 @@
 
     private final StringSerializer ss = StringSerializer.get();
 
+    /**
+     * number of rows fetched per query by the streaming methods
+     */
+    private int pageSize = Integer.getInteger( "archiva.metadata.cassandra.pageSize", 1000 );
+
+    /**
+     * number of row deletions sent per mutation by the bulk removals
+     */
+    private int mutationBatchSize = Integer.getInteger( "archiva.metadata.cassandra.mutationBatchSize", 500 );
+
     public CassandraMetadataRepository( Map<String, MetadataFacetFactory> metadataFacetFactories,
                                         ArchivaConfiguration configuration,
                                         CassandraArchivaManager cassandraArchivaManager )
@@ -307,59 +330,7 @@ public void removeNamespace( String repositoryId, String namespaceId )
                 .addDeletion( key, cassandraArchivaManager.getNamespaceFamilyName() ) //
                 .execute();
 
-            QueryResult<OrderedRows<String, String, String>> result = HFactory //
-                .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-                .setColumnFamily( cassandraArchivaManager.getProjectFamilyName() ) //
-                .setColumnNames( REPOSITORY_NAME.toString() ) //
-                .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-                .addEqualsExpression( NAMESPACE_ID.toString(), namespaceId ) //
-                .execute();
-
-            for ( Row<String, String, String> row : result.get() )
-            {
-                this.projectTemplate.deleteRow( row.getKey() );
-            }
-
-            result = HFactory //
-                .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-                .setColumnFamily( cassandraArchivaManager.getProjectVersionMetadataFamilyName() ) //
-                .setColumnNames( REPOSITORY_NAME.toString() ) //
-                .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-                .addEqualsExpression( NAMESPACE_ID.toString(), namespaceId ) //
-                .execute();
-
-            for ( Row<String, String, String> row : result.get() )
-            {
-                this.projectVersionMetadataTemplate.deleteRow( row.getKey() );
-                removeMailingList( row.getKey() );
-            }
-
-            result = HFactory //
-                .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-                .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-                .setColumnNames( REPOSITORY_NAME.toString() ) //
-                .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-                .addEqualsExpression( NAMESPACE_ID.toString(), namespaceId ) //
-                .execute();
-
-            for ( Row<String, String, String> row : result.get() )
-            {
-                this.artifactMetadataTemplate.deleteRow( row.getKey() );
-            }
-
-            result = HFactory //
-                .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-                .setColumnFamily( cassandraArchivaManager.getMetadataFacetFamilyName() ) //
-                .setColumnNames( REPOSITORY_NAME.toString() ) //
-                .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-                .addEqualsExpression( NAMESPACE_ID.toString(), namespaceId ) //
-                .execute();
-
-            for ( Row<String, String, String> row : result.get() )
-            {
-                this.metadataFacetTemplate.deleteRow( row.getKey() );
-            }
-
+            removeRows( repositoryId, namespaceId, getContentFamilyNames() );
         }
         catch ( HInvalidRequestException e )
         {
@@ -373,81 +344,183 @@ public void removeNamespace( String repositoryId, String namespaceId )
     public void removeRepository( final String repositoryId )
         throws MetadataRepositoryException
     {
+        List<String> columnFamilies = new ArrayList<>( getContentFamilyNames() );
+        columnFamilies.add( cassandraArchivaManager.getNamespaceFamilyName() );
 
-        // TODO use cql queries to delete all
-        List<String> namespacesKey = new ArrayList<>();
-
-        QueryResult<OrderedRows<String, String, String>> result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getNamespaceFamilyName() ) //
-            .setColumnNames( REPOSITORY_NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-            .execute();
-
-        for ( Row<String, String, String> row : result.get().getList() )
+        try
         {
-            namespacesKey.add( row.getKey() );
+            removeRows( repositoryId, null, columnFamilies );
+        }
+        catch ( HInvalidRequestException e )
+        {
+            logger.error( e.getMessage(), e );
+            throw new MetadataRepositoryException( e.getMessage(), e );
         }
-
-        HFactory.createMutator( cassandraArchivaManager.getKeyspace(), ss ) //
-            .addDeletion( namespacesKey, cassandraArchivaManager.getNamespaceFamilyName() ) //
-            .execute();
 
         //delete repositoryId
         HFactory.createMutator( cassandraArchivaManager.getKeyspace(), ss ) //
             .addDeletion( repositoryId, cassandraArchivaManager.getRepositoryFamilyName() ) //
+            .addDeletion( repositoryId, cassandraArchivaManager.getMetadataFacetNameFamilyName() ) //
             .execute();
+    }
 
-        result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getProjectFamilyName() ) //
-            .setColumnNames( REPOSITORY_NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-            .execute();
+    /**
+     * @return the column families holding rows of a namespace, which are cleaned up when removing it
+     */
+    private List<String> getContentFamilyNames()
+    {
+        return Arrays.asList( cassandraArchivaManager.getProjectFamilyName(), //
+                              cassandraArchivaManager.getProjectVersionMetadataFamilyName(), //
+                              cassandraArchivaManager.getArtifactMetadataFamilyName(), //
+                              cassandraArchivaManager.getMetadataFacetFamilyName() );
+    }
 
-        for ( Row<String, String, String> row : result.get() )
+    /**
+     * Remove the rows of a repository, or of one of its namespaces, from the given column families. The column
+     * families are scanned concurrently, one page at a time, and the rows are deleted in batches.
+     */
+    private void removeRows( final String repositoryId, final String namespaceId, List<String> columnFamilies )
+        throws MetadataRepositoryException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( columnFamilies.size() );
+        try
         {
-            this.projectTemplate.deleteRow( row.getKey() );
+            List<Future<Integer>> results = new ArrayList<>( columnFamilies.size() );
+            for ( final String columnFamily : columnFamilies )
+            {
+                results.add( executor.submit( new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call()
+                    {
+                        try (CloseableIterator<Row<String, String, String>> rows = getRows( columnFamily,
+                                                                                           repositoryId,
+                                                                                           namespaceId ))
+                        {
+                            return deleteRows( columnFamily, rows );
+                        }
+                    }
+                } ) );
+            }
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                logger.debug( "removed {} rows of {} from {}", results.get( i ).get(), repositoryId,
+                              columnFamilies.get( i ) );
+            }
         }
-
-        result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getProjectVersionMetadataFamilyName() ) //
-            .setColumnNames( REPOSITORY_NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-            .execute();
-
-        for ( Row<String, String, String> row : result.get() )
+        catch ( ExecutionException e )
         {
-            this.projectVersionMetadataTemplate.deleteRow( row.getKey() );
-            removeMailingList( row.getKey() );
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new MetadataRepositoryException( e.getCause().getMessage(), e.getCause() );
         }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MetadataRepositoryException( "Interrupted while removing " + repositoryId, e );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 
-        result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( REPOSITORY_NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-            .execute();
-
-        for ( Row<String, String, String> row : result.get() )
+    /**
+     * Delete the given rows, executing the mutation every {@link #mutationBatchSize} rows.
+     *
+     * @return the number of rows deleted
+     */
+    private int deleteRows( String columnFamily, Iterator<Row<String, String, String>> rows )
+    {
+        boolean projectVersionMetadata =
+            cassandraArchivaManager.getProjectVersionMetadataFamilyName().equals( columnFamily );
+        boolean artifactMetadata = cassandraArchivaManager.getArtifactMetadataFamilyName().equals( columnFamily );
+
+        Mutator<String> mutator = HFactory.createMutator( keyspace, ss );
+        int count = 0;
+        int pending = 0;
+        while ( rows.hasNext() )
+        {
+            Row<String, String, String> row = rows.next();
+            String key = row.getKey();
+            if ( projectVersionMetadata )
+            {
+                removeMailingList( key );
+            }
+            if ( artifactMetadata )
+            {
+                ArtifactLookups.addDeletions( cassandraArchivaManager, mutator, key, row.getColumnSlice() );
+            }
+            mutator.addDeletion( key, columnFamily );
+            count++;
+            if ( ++pending >= mutationBatchSize )
+            {
+                mutator.execute();
+                pending = 0;
+            }
+        }
+        if ( pending > 0 )
         {
-            this.artifactMetadataTemplate.deleteRow( row.getKey() );
+            mutator.execute();
         }
+        return count;
+    }
 
-        result = HFactory //
+    /**
+     * Iterate over the rows of a column family belonging to a repository and, if not <code>null</code>, to one of its
+     * namespaces, one page at a time. Artifact metadata rows come with the columns needed to remove their lookups.
+     */
+    private CloseableIterator<Row<String, String, String>> getRows( String columnFamily, String repositoryId,
+                                                                   String namespaceId )
+    {
+        RangeSlicesQuery<String, String, String> query = HFactory //
             .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getMetadataFacetFamilyName() ) //
-            .setColumnNames( REPOSITORY_NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
-            .execute();
-
-        for ( Row<String, String, String> row : result.get() )
+            .setColumnFamily( columnFamily ) //
+            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId );
+        if ( cassandraArchivaManager.getArtifactMetadataFamilyName().equals( columnFamily ) )
         {
-            this.metadataFacetTemplate.deleteRow( row.getKey() );
+            query.setColumnNames( ArtifactLookups.COLUMNS );
+        }
+        else
+        {
+            query.setColumnNames( REPOSITORY_NAME.toString() );
+        }
+        if ( namespaceId != null )
+        {
+            query.addEqualsExpression( NAMESPACE_ID.toString(), namespaceId );
         }
 
+        return new PagedRangeSlicesIterator<String, Row<String, String, String>>( query, pageSize )
+        {
+            @Override
+            protected Row<String, String, String> map( Row<String, String, String> row )
+            {
+                return row;
+            }
+        };
+    }
 
+    /**
+     * Iterate over the names of the namespaces of a repository, one page at a time.
+     */
+    private CloseableIterator<String> getNamespaceNames( String repoId )
+    {
+        RangeSlicesQuery<String, String, String> query = HFactory //
+            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getNamespaceFamilyName() ) //
+            .setColumnNames( NAME.toString() ) //
+            .addEqualsExpression( REPOSITORY_NAME.toString(), repoId );
+
+        return new PagedRangeSlicesIterator<String, String>( query, pageSize )
+        {
+            @Override
+            protected String map( Row<String, String, String> row )
+            {
+                return getStringValue( row.getColumnSlice(), NAME.toString() );
+            }
+        };
     }
 
     @Override
@@ -458,19 +531,26 @@ public Collection<String> getRepositories()
         {
             logger.debug( "getRepositories" );
 
-            final QueryResult<OrderedRows<String, String, String>> cResult = //
-                HFactory.createRangeSlicesQuery( cassandraArchivaManager.getKeyspace(), //
-                                                 ss, ss, ss ) //
-                    .setColumnFamily( cassandraArchivaManager.getRepositoryFamilyName() ) //
-                    .setColumnNames( REPOSITORY_NAME.toString() ) //
-                    .setRange( null, null, false, Integer.MAX_VALUE ) //
-                    .execute();
+            RangeSlicesQuery<String, String, String> query = HFactory //
+                .createRangeSlicesQuery( cassandraArchivaManager.getKeyspace(), ss, ss, ss ) //
+                .setColumnFamily( cassandraArchivaManager.getRepositoryFamilyName() ) //
+                .setColumnNames( REPOSITORY_NAME.toString() );
 
-            List<String> repoIds = new ArrayList<>( cResult.get().getCount() );
+            List<String> repoIds = new ArrayList<>();
 
-            for ( Row<String, String, String> row : cResult.get() )
+            try (CloseableIterator<String> rows = new PagedRangeSlicesIterator<String, String>( query, pageSize )
             {
-                repoIds.add( getStringValue( row.getColumnSlice(), REPOSITORY_NAME.toString() ) );
+                @Override
+                protected String map( Row<String, String, String> row )
+                {
+                    return getStringValue( row.getColumnSlice(), REPOSITORY_NAME.toString() );
+                }
+            })
+            {
+                while ( rows.hasNext() )
+                {
+                    repoIds.add( rows.next() );
+                }
             }
 
             return repoIds;
@@ -482,59 +562,48 @@ public Collection<String> getRepositories()
 
     }
 
-    // FIXME this one need peformance improvement maybe a cache?
     @Override
     public Collection<String> getRootNamespaces( final String repoId )
         throws MetadataResolutionException
     {
+        Set<String> namespaces = new HashSet<>();
 
-        QueryResult<OrderedRows<String, String, String>> result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getNamespaceFamilyName() ) //
-            .setColumnNames( NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repoId ) //
-            .execute();
-
-        Set<String> namespaces = new HashSet<String>( result.get().getCount() );
-
-        for ( Row<String, String, String> row : result.get() )
+        try (CloseableIterator<String> names = getNamespaceNames( repoId ))
         {
-            namespaces.add( StringUtils.substringBefore( getStringValue( row.getColumnSlice(), NAME.toString() ), "." ) );
+            while ( names.hasNext() )
+            {
+                namespaces.add( StringUtils.substringBefore( names.next(), "." ) );
+            }
         }
 
         return namespaces;
     }
 
-    // FIXME this one need peformance improvement maybe a cache?
     @Override
     public Collection<String> getNamespaces( final String repoId, final String namespaceId )
         throws MetadataResolutionException
     {
+        List<String> namespaces = new ArrayList<>();
 
-        QueryResult<OrderedRows<String, String, String>> result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getNamespaceFamilyName() ) //
-            .setColumnNames( NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repoId ) //
-            .execute();
-
-        List<String> namespaces = new ArrayList<>( result.get().getCount() );
-
-        for ( Row<String, String, String> row : result.get() )
+        try (CloseableIterator<String> names = getNamespaceNames( repoId ))
         {
-            String currentNamespace = getStringValue( row.getColumnSlice(), NAME.toString() );
-            if ( StringUtils.startsWith( currentNamespace, namespaceId ) //
-                && ( StringUtils.length( currentNamespace ) > StringUtils.length( namespaceId ) ) )
+            while ( names.hasNext() )
             {
-                // store after namespaceId '.' but before next '.'
-                // call org namespace org.apache.maven.shared -> stored apache
+                String currentNamespace = names.next();
+                if ( StringUtils.startsWith( currentNamespace, namespaceId ) //
+                    && ( StringUtils.length( currentNamespace ) > StringUtils.length( namespaceId ) ) )
+                {
+                    // store after namespaceId '.' but before next '.'
+                    // call org namespace org.apache.maven.shared -> stored apache
 
-                String calledNamespace = StringUtils.endsWith( namespaceId, "." ) ? namespaceId : namespaceId + ".";
-                String storedNamespace = StringUtils.substringAfter( currentNamespace, calledNamespace );
+                    String calledNamespace =
+                        StringUtils.endsWith( namespaceId, "." ) ? namespaceId : namespaceId + ".";
+                    String storedNamespace = StringUtils.substringAfter( currentNamespace, calledNamespace );
 
-                storedNamespace = StringUtils.substringBefore( storedNamespace, "." );
+                    storedNamespace = StringUtils.substringBefore( storedNamespace, "." );
 
-                namespaces.add( storedNamespace );
+                    namespaces.add( storedNamespace );
+                }
             }
         }
 
@@ -546,19 +615,14 @@ public Collection<String> getNamespaces( final String repoId, final String names
     protected List<String> getNamespaces( final String repoId )
         throws MetadataResolutionException
     {
+        List<String> namespaces = new ArrayList<>();
 
-        QueryResult<OrderedRows<String, String, String>> result = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getNamespaceFamilyName() ) //
-            .setColumnNames( NAME.toString() ) //
-            .addEqualsExpression( REPOSITORY_NAME.toString(), repoId ) //
-            .execute();
-
-        List<String> namespaces = new ArrayList<>( result.get().getCount() );
-
-        for ( Row<String, String, String> row : result.get() )
+        try (CloseableIterator<String> names = getNamespaceNames( repoId ))
         {
-            namespaces.add( getStringValue( row.getColumnSlice(), NAME.toString() ) );
+            while ( names.hasNext() )
+            {
+                namespaces.add( names.next() );
+            }
         }
 
         return namespaces;
@@ -654,7 +718,7 @@ public void removeProject( final String repositoryId, final String namespaceId,
         result = HFactory //
             .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
             .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( PROJECT_ID.toString() ) //
+            .setColumnNames( ArtifactLookups.COLUMNS ) //
             .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
             .addEqualsExpression( NAMESPACE_ID.toString(), namespaceId ) //
             .addEqualsExpression( PROJECT_ID.toString(), projectId ) //
@@ -662,7 +726,7 @@ public void removeProject( final String repositoryId, final String namespaceId,
 
         for ( Row<String, String, String> row : result.get() )
         {
-            this.artifactMetadataTemplate.deleteRow( row.getKey() );
+            removeArtifactRow( row.getKey(), row.getColumnSlice() );
         }
     }
 
@@ -1108,6 +1172,37 @@ protected void recordMailingList( String projectVersionMetadataKey, List<Mailing
         mailingMutator.execute();
     }
 
+    /**
+     * @return the columns of an artifact metadata row needed to maintain its lookups
+     */
+    private ColumnSlice<String, String> getArtifactLookupColumns( String key )
+    {
+        return HFactory.createSliceQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+            .setKey( key ) //
+            .setColumnNames( ArtifactLookups.COLUMNS ) //
+            .execute() //
+            .get();
+    }
+
+    private void removeArtifactRow( String key )
+    {
+        removeArtifactRow( key, getArtifactLookupColumns( key ) );
+    }
+
+    /**
+     * Delete an artifact metadata row along with its lookups.
+     *
+     * @param columns the row columns read with {@link ArtifactLookups#COLUMNS}
+     */
+    private void removeArtifactRow( String key, ColumnSlice<String, String> columns )
+    {
+        Mutator<String> mutator = HFactory.createMutator( keyspace, ss );
+        ArtifactLookups.addDeletions( cassandraArchivaManager, mutator, key, columns );
+        mutator.addDeletion( key, cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+            .execute();
+    }
+
     protected void removeMailingList( String projectVersionMetadataKey )
     {
 
@@ -1361,6 +1456,13 @@ public void updateArtifact( String repositoryId, String namespaceId, String proj
 
         if ( exists )
         {
+            // the lookups follow the checksums and gathering time of the artifact
+            Mutator<String> lookupMutator = HFactory.createMutator( keyspace, ss );
+            ArtifactLookups.addUpdates( cassandraArchivaManager, lookupMutator, key, getArtifactLookupColumns( key ),
+                                        repositoryId, artifactMeta.getMd5(), artifactMeta.getSha1(),
+                                        artifactMeta.getWhenGathered().getTime() );
+            lookupMutator.execute();
+
             // updater
             ColumnFamilyUpdater<String, String> updater = this.artifactMetadataTemplate.createUpdater( key );
             updater.setLong( FILE_LAST_MODIFIED.toString(), artifactMeta.getFileLastModified().getTime() );
@@ -1375,7 +1477,10 @@ public void updateArtifact( String repositoryId, String namespaceId, String proj
         {
             String cf = this.cassandraArchivaManager.getArtifactMetadataFamilyName();
             // create
-            this.artifactMetadataTemplate.createMutator() //
+            Mutator<String> mutator = this.artifactMetadataTemplate.createMutator();
+            ArtifactLookups.addInsertions( cassandraArchivaManager, mutator, key, repositoryId, artifactMeta.getMd5(),
+                                           artifactMeta.getSha1(), artifactMeta.getWhenGathered().getTime() );
+            mutator //
                 .addInsertion( key, cf, column( ID.toString(), artifactMeta.getId() ) )//
                 .addInsertion( key, cf, column( REPOSITORY_NAME.toString(), repositoryId ) ) //
                 .addInsertion( key, cf, column( NAMESPACE_ID.toString(), namespaceId ) ) //
@@ -1553,6 +1658,36 @@ public List<String> getMetadataFacets( final String repositoryId, final String f
         return facets;
     }
 
+    @Override
+    public List<String> getLastMetadataFacets( final String repositoryId, final String facetId, String fromName,
+                                               String toName, int limit )
+        throws MetadataRepositoryException
+    {
+        // the facet name row of the repository is sorted by name, it is read backwards from the end of the range
+        String start = toName != null
+            ? MetadataFacetNames.getColumnName( facetId, toName )
+            : MetadataFacetNames.getColumnsEnd( facetId );
+        String finish = MetadataFacetNames.getColumnName( facetId, fromName != null ? fromName : "" );
+        SliceQuery<String, String, String> query = HFactory //
+            .createSliceQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getMetadataFacetNameFamilyName() ) //
+            .setKey( repositoryId );
+
+        // one more column for the excluded end of the range
+        ColumnSliceIterator<String, String, String> columns =
+            new ColumnSliceIterator<>( query, start, finish, true, limit + 1 );
+        List<String> names = new ArrayList<>( limit );
+        while ( names.size() < limit && columns.hasNext() )
+        {
+            String columnName = columns.next().getName();
+            if ( !columnName.equals( start ) )
+            {
+                names.add( MetadataFacetNames.getName( facetId, columnName ) );
+            }
+        }
+        return names;
+    }
+
     @Override
     public boolean hasMetadataFacet( String repositoryId, String facetId )
         throws MetadataRepositoryException
@@ -1658,6 +1793,14 @@ public void addMetadataFacet( String repositoryId, MetadataFacet metadataFacet )
                 }
             }
         }
+
+        if ( metadataFacet.getName() != null )
+        {
+            Mutator<String> mutator = HFactory.createMutator( keyspace, ss );
+            MetadataFacetNames.addInsertion( cassandraArchivaManager, mutator, repositoryId,
+                                             metadataFacet.getFacetId(), metadataFacet.getName() );
+            mutator.execute();
+        }
     }
 
     @Override
@@ -1668,15 +1811,22 @@ public void removeMetadataFacets( final String repositoryId, final String facetI
         QueryResult<OrderedRows<String, String, String>> result = HFactory //
             .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
             .setColumnFamily( cassandraArchivaManager.getMetadataFacetFamilyName() ) //
-            .setColumnNames( KEY.toString(), VALUE.toString() ) //
+            .setColumnNames( KEY.toString(), VALUE.toString(), NAME.toString() ) //
             .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
             .addEqualsExpression( FACET_ID.toString(), facetId ) //
             .execute();
 
+        Mutator<String> mutator = HFactory.createMutator( keyspace, ss );
         for ( Row<String, String, String> row : result.get() )
         {
             this.metadataFacetTemplate.deleteRow( row.getKey() );
+            String name = getStringValue( row.getColumnSlice(), NAME.toString() );
+            if ( name != null )
+            {
+                MetadataFacetNames.addDeletion( cassandraArchivaManager, mutator, repositoryId, facetId, name );
+            }
         }
+        mutator.execute();
 
     }
 
@@ -1698,6 +1848,10 @@ public void removeMetadataFacet( final String repositoryId, final String facetId
         {
             this.metadataFacetTemplate.deleteRow( row.getKey() );
         }
+
+        Mutator<String> mutator = HFactory.createMutator( keyspace, ss );
+        MetadataFacetNames.addDeletion( cassandraArchivaManager, mutator, repositoryId, facetId, name );
+        mutator.execute();
     }
 
     @Override
@@ -1705,6 +1859,22 @@ public List<ArtifactMetadata> getArtifactsByDateRange( final String repositoryId
                                                            final Date endTime )
         throws MetadataRepositoryException
     {
+        if ( startTime != null )
+        {
+            // nothing is gathered in the future, an open end reads the day lookups up to now
+            List<ArtifactMetadata> artifactMetadatas = new ArrayList<>();
+            try (CloseableIterator<ArtifactMetadata> artifacts = streamArtifactsByDay( repositoryId, startTime,
+                                                                                       endTime != null
+                                                                                           ? endTime
+                                                                                           : new Date() ))
+            {
+                while ( artifacts.hasNext() )
+                {
+                    artifactMetadatas.add( artifacts.next() );
+                }
+            }
+            return artifactMetadatas;
+        }
 
         LongSerializer ls = LongSerializer.get();
         RangeSlicesQuery<String, String, Long> query = HFactory //
@@ -1712,10 +1882,6 @@ public List<ArtifactMetadata> getArtifactsByDateRange( final String repositoryId
             .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
             .setColumnNames( ArtifactMetadataModel.COLUMNS ); //
 
-        if ( startTime != null )
-        {
-            query = query.addGteExpression( WHEN_GATHERED.toString(), startTime.getTime() );
-        }
         if ( endTime != null )
         {
             query = query.addLteExpression( WHEN_GATHERED.toString(), endTime.getTime() );
@@ -1738,6 +1904,154 @@ public List<ArtifactMetadata> getArtifactsByDateRange( final String repositoryId
         return artifactMetadatas;
     }
 
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( final String repositoryId,
+                                                                           final Date startTime, final Date endTime )
+        throws MetadataRepositoryException
+    {
+        if ( startTime != null )
+        {
+            // nothing is gathered in the future, an open end reads the day lookups up to now
+            return streamArtifactsByDay( repositoryId, startTime, endTime != null ? endTime : new Date() );
+        }
+
+        RangeSlicesQuery<String, String, Long> query = HFactory //
+            .createRangeSlicesQuery( keyspace, ss, ss, LongSerializer.get() ) //
+            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+            .setColumnNames( ArtifactMetadataModel.COLUMNS ); //
+
+        if ( endTime != null )
+        {
+            query = query.addLteExpression( WHEN_GATHERED.toString(), endTime.getTime() );
+        }
+
+        return new PagedRangeSlicesIterator<Long, ArtifactMetadata>( query, pageSize )
+        {
+            @Override
+            protected ArtifactMetadata map( Row<String, String, Long> row )
+            {
+                ColumnSlice<String, Long> columnSlice = row.getColumnSlice();
+                String repositoryName = getAsStringValue( columnSlice, REPOSITORY_NAME.toString() );
+                return StringUtils.equals( repositoryName, repositoryId )
+                    ? mapArtifactMetadataLongColumnSlice( columnSlice )
+                    : null;
+            }
+        };
+    }
+
+
+    /**
+     * Iterate over the artifacts of a repository gathered within a bounded range, reading the artifact by date lookup
+     * one day at a time and the artifacts themselves one page at a time.
+     */
+    private CloseableIterator<ArtifactMetadata> streamArtifactsByDay( final String repositoryId, final Date startTime,
+                                                                      final Date endTime )
+    {
+        final String start = ArtifactLookups.getTimeColumnStart( startTime.getTime() );
+        final String finish = ArtifactLookups.getTimeColumnFinish( endTime.getTime() );
+        final Calendar day = ArtifactLookups.getDayStart( startTime );
+
+        Iterator<String> keys = new AbstractCloseableIterator<String>()
+        {
+            private Iterator<HColumn<String, String>> columns = Collections.emptyIterator();
+
+            @Override
+            protected String computeNext()
+            {
+                while ( !columns.hasNext() )
+                {
+                    if ( day.getTime().after( endTime ) )
+                    {
+                        return null;
+                    }
+                    SliceQuery<String, String, String> query = HFactory //
+                        .createSliceQuery( keyspace, ss, ss, ss ) //
+                        .setColumnFamily( cassandraArchivaManager.getArtifactByDateFamilyName() ) //
+                        .setKey( ArtifactLookups.getDayKey( repositoryId, day.getTimeInMillis() ) );
+                    columns = new ColumnSliceIterator<>( query, start, finish, false, pageSize );
+                    day.add( Calendar.DAY_OF_MONTH, 1 );
+                }
+                return columns.next().getValue();
+            }
+        };
+
+        return new ArtifactsByKeyIterator( keys )
+        {
+            @Override
+            protected boolean accept( ArtifactMetadata artifact )
+            {
+                // guard against lookups not yet updated by a concurrent change
+                Date whenGathered = artifact.getWhenGathered();
+                return whenGathered != null && !whenGathered.before( startTime ) && !whenGathered.after( endTime );
+            }
+        };
+    }
+
+    /**
+     * Read artifact metadata rows by key, one page at a time, skipping those removed since their keys were read.
+     */
+    private class ArtifactsByKeyIterator
+        extends AbstractCloseableIterator<ArtifactMetadata>
+    {
+        private final Iterator<String> keys;
+
+        private Iterator<ArtifactMetadata> page = Collections.emptyIterator();
+
+        ArtifactsByKeyIterator( Iterator<String> keys )
+        {
+            this.keys = keys;
+        }
+
+        protected boolean accept( ArtifactMetadata artifact )
+        {
+            return true;
+        }
+
+        @Override
+        protected ArtifactMetadata computeNext()
+        {
+            while ( true )
+            {
+                while ( page.hasNext() )
+                {
+                    ArtifactMetadata artifact = page.next();
+                    if ( accept( artifact ) )
+                    {
+                        return artifact;
+                    }
+                }
+                if ( !keys.hasNext() )
+                {
+                    return null;
+                }
+
+                List<String> pageKeys = new ArrayList<>( pageSize );
+                while ( keys.hasNext() && pageKeys.size() < pageSize )
+                {
+                    pageKeys.add( keys.next() );
+                }
+
+                Rows<String, String, String> rows = HFactory //
+                    .createMultigetSliceQuery( keyspace, ss, ss, ss ) //
+                    .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+                    .setColumnNames( ArtifactMetadataModel.COLUMNS ) //
+                    .setKeys( pageKeys ) //
+                    .execute() //
+                    .get();
+
+                List<ArtifactMetadata> artifacts = new ArrayList<>( pageKeys.size() );
+                for ( String key : pageKeys )
+                {
+                    Row<String, String, String> row = rows.getByKey( key );
+                    if ( row != null && !row.getColumnSlice().getColumns().isEmpty() )
+                    {
+                        artifacts.add( mapArtifactMetadataStringColumnSlice( row.getColumnSlice() ) );
+                    }
+                }
+                page = artifacts.iterator();
+            }
+        }
+    }
 
     protected ArtifactMetadata mapArtifactMetadataLongColumnSlice( ColumnSlice<String, Long> columnSlice )
     {
@@ -1785,46 +2099,40 @@ protected ArtifactMetadata mapArtifactMetadataStringColumnSlice( ColumnSlice<Str
     public Collection<ArtifactMetadata> getArtifactsByChecksum( final String repositoryId, final String checksum )
         throws MetadataRepositoryException
     {
+        SliceQuery<String, String, String> query = HFactory //
+            .createSliceQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getChecksumFamilyName() ) //
+            .setKey( ArtifactLookups.getChecksumKey( repositoryId, checksum ) );
 
-        // cql cannot run or in queries so running twice the query
-        Map<String, ArtifactMetadata> artifactMetadataMap = new HashMap<>();
-
-        RangeSlicesQuery<String, String, String> query = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( ArtifactMetadataModel.COLUMNS ); //
-
-        query = query.addEqualsExpression( SHA1.toString(), checksum ).addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId );
-
-        QueryResult<OrderedRows<String, String, String>> result = query.execute();
-
-        for ( Row<String, String, String> row : result.get() )
+        final ColumnSliceIterator<String, String, String> columns =
+            new ColumnSliceIterator<>( query, "", "", false, pageSize );
+        Iterator<String> keys = new AbstractCloseableIterator<String>()
         {
-            ColumnSlice<String, String> columnSlice = row.getColumnSlice();
-
-            artifactMetadataMap.put( row.getKey(), mapArtifactMetadataStringColumnSlice( columnSlice ) );
-
-        }
-
-        query = HFactory //
-            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
-            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( NAMESPACE_ID.toString(), SIZE.toString(), ID.toString(), FILE_LAST_MODIFIED.toString(), MD5.toString(), PROJECT.toString(), PROJECT_VERSION.toString(),
-                             REPOSITORY_NAME.toString(), VERSION.toString(), WHEN_GATHERED.toString(), SHA1.toString() ); //
-
-        query = query.addEqualsExpression( MD5.toString(), checksum ).addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId );
-
-        result = query.execute();
+            @Override
+            protected String computeNext()
+            {
+                return columns.hasNext() ? columns.next().getName() : null;
+            }
+        };
 
-        for ( Row<String, String, String> row : result.get() )
+        List<ArtifactMetadata> artifactMetadatas = new ArrayList<>();
+        try (CloseableIterator<ArtifactMetadata> artifacts = new ArtifactsByKeyIterator( keys )
         {
-            ColumnSlice<String, String> columnSlice = row.getColumnSlice();
-
-            artifactMetadataMap.put( row.getKey(), mapArtifactMetadataStringColumnSlice( columnSlice ) );
-
+            @Override
+            protected boolean accept( ArtifactMetadata artifact )
+            {
+                // guard against lookups not yet updated by a concurrent change
+                return StringUtils.equals( checksum, artifact.getSha1() ) || StringUtils.equals( checksum,
+                                                                                                artifact.getMd5() );
+            }
+        })
+        {
+            while ( artifacts.hasNext() )
+            {
+                artifactMetadatas.add( artifacts.next() );
+            }
         }
-
-        return artifactMetadataMap.values();
+        return artifactMetadatas;
     }
 
     /**
@@ -1948,7 +2256,7 @@ public void removeArtifact( final String repositoryId, final String namespace, f
             new ArtifactMetadataModel.KeyBuilder().withRepositoryId( repositoryId ).withNamespace( namespace ).withId(
                 id ).withProjectVersion( version ).withProject( project ).build();
 
-        this.artifactMetadataTemplate.deleteRow( key );
+        removeArtifactRow( key );
 
         key = new ProjectVersionMetadataModel.KeyBuilder() //
             .withRepository( repositoryId ) //
@@ -1973,7 +2281,7 @@ public void removeArtifact( ArtifactMetadata artifactMetadata, String baseVersio
                 artifactMetadata.getNamespace() ).withId( artifactMetadata.getId() ).withProjectVersion(
                 baseVersion ).withProject( artifactMetadata.getProject() ).build();
 
-        this.artifactMetadataTemplate.deleteRow( key );
+        removeArtifactRow( key );
 
     }
 
@@ -1986,7 +2294,7 @@ public void removeArtifact( final String repositoryId, final String namespace, f
         RangeSlicesQuery<String, String, String> query = HFactory //
             .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
             .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( NAMESPACE_ID.toString() ); //
+            .setColumnNames( ArtifactLookups.COLUMNS ); //
 
         query = query.addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId ) //
             .addEqualsExpression( NAMESPACE_ID.toString(), namespace ) //
@@ -1997,7 +2305,7 @@ public void removeArtifact( final String repositoryId, final String namespace, f
 
         for ( Row<String, String, String> row : result.get() )
         {
-            this.artifactMetadataTemplate.deleteRow( row.getKey() );
+            removeArtifactRow( row.getKey(), row.getColumnSlice() );
         }
     }
 
@@ -2029,6 +2337,46 @@ public List<ArtifactMetadata> getArtifacts( final String repositoryId )
         return artifactMetadatas;
     }
 
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifacts( final String repositoryId )
+        throws MetadataRepositoryException
+    {
+        RangeSlicesQuery<String, String, String> query = HFactory //
+            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+            .setColumnNames( ArtifactMetadataModel.COLUMNS ) //
+            .addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId );
+
+        return new PagedRangeSlicesIterator<String, ArtifactMetadata>( query, pageSize )
+        {
+            @Override
+            protected ArtifactMetadata map( Row<String, String, String> row )
+            {
+                return mapArtifactMetadataStringColumnSlice( row.getColumnSlice() );
+            }
+        };
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public void setPageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+    }
+
+    public int getMutationBatchSize()
+    {
+        return mutationBatchSize;
+    }
+
+    public void setMutationBatchSize( int mutationBatchSize )
+    {
+        this.mutationBatchSize = Math.max( 1, mutationBatchSize );
+    }
+
 
     @Override
     public Collection<ProjectVersionReference> getProjectReferences( String repoId, String namespace, String projectId,
@@ -2094,7 +2442,7 @@ public void removeProjectVersion( final String repoId, final String namespace, f
         RangeSlicesQuery<String, String, String> query = HFactory //
             .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
             .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
-            .setColumnNames( NAMESPACE_ID.toString() ); //
+            .setColumnNames( ArtifactLookups.COLUMNS ); //
 
         query = query.addEqualsExpression( REPOSITORY_NAME.toString(), repoId ) //
             .addEqualsExpression( NAMESPACE_ID.toString(), namespace ) //
@@ -2105,8 +2453,7 @@ public void removeProjectVersion( final String repoId, final String namespace, f
 
         for ( Row<String, String, String> row : result.get() )
         {
-            this.artifactMetadataTemplate.deleteRow( row.getKey() );
-
+            removeArtifactRow( row.getKey(), row.getColumnSlice() );
         }
     }
 
@@ -21,9 +21,11 @@
 
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.repository.MetadataResolver;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
@@ -52,6 +54,10 @@
     @Inject
     private MetadataResolver metadataResolver;
 
+    @Inject
+    @Named(value = "cache#projectVersionMetadata")
+    private Cache<String, ProjectVersionMetadata> projectVersionMetadataCache;
+
     @Inject
     private ApplicationContext applicationContext;
 
@@ -79,7 +85,7 @@ public RepositorySession createSession()
     {
         CassandraMetadataRepository metadataRepository =
             new CassandraMetadataRepository( metadataFacetFactories, configuration, cassandraArchivaManager );
-        return new RepositorySession( metadataRepository, metadataResolver );
+        return new RepositorySession( metadataRepository, metadataResolver, projectVersionMetadataCache );
     }
 
 }
@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import static org.apache.archiva.metadata.repository.cassandra.CassandraUtils.getStringValue;
 import static org.apache.archiva.metadata.repository.cassandra.model.ColumnNames.*;
 
 import me.prettyprint.cassandra.model.BasicColumnDefinition;
@@ -29,10 +30,16 @@
 import me.prettyprint.hector.api.Cluster;
 import me.prettyprint.hector.api.HConsistencyLevel;
 import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.beans.ColumnSlice;
+import me.prettyprint.hector.api.beans.Row;
 import me.prettyprint.hector.api.ddl.ColumnFamilyDefinition;
 import me.prettyprint.hector.api.ddl.ColumnIndexType;
 import me.prettyprint.hector.api.ddl.ComparatorType;
+import me.prettyprint.hector.api.ddl.KeyspaceDefinition;
 import me.prettyprint.hector.api.factory.HFactory;
+import me.prettyprint.hector.api.mutation.Mutator;
+import me.prettyprint.hector.api.query.RangeSlicesQuery;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.RepositorySessionFactoryBean;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -45,7 +52,9 @@
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * FIXME make all configuration not hardcoded :-)
@@ -67,6 +76,8 @@
 
     private static final String KEYSPACE_NAME = "ArchivaKeySpace";
 
+    private static final int LOOKUP_POPULATION_BATCH_SIZE = 500;
+
     private boolean started;
 
     private Cluster cluster;
@@ -92,6 +103,12 @@
 
     private String dependencyFamilyName = "dependency";
 
+    private String checksumFamilyName = "checksum";
+
+    private String artifactByDateFamilyName = "artifactbydate";
+
+    private String metadataFacetNameFamilyName = "metadatafacetname";
+
     @Value("${cassandra.host}")
     private String cassandraHost;
 
@@ -454,9 +471,28 @@ public void initialize()
 
         }
 
-        // TODO take care of update new table!!
+        // artifact lookup tables, no indexes as they are only read by row key
+        List<ColumnFamilyDefinition> lookupCfds = new ArrayList<>();
+        {
+            lookupCfds.add( HFactory.createColumnFamilyDefinition( keyspace.getKeyspaceName(), //
+                                                                   getChecksumFamilyName(), //
+                                                                   ComparatorType.UTF8TYPE ) );
+            lookupCfds.add( HFactory.createColumnFamilyDefinition( keyspace.getKeyspaceName(), //
+                                                                   getArtifactByDateFamilyName(), //
+                                                                   ComparatorType.UTF8TYPE ) );
+            cfds.addAll( lookupCfds );
+        }
+
+        // metadata facet name lookup table, read by row key as well
+        final ColumnFamilyDefinition metadataFacetNameCf =
+            HFactory.createColumnFamilyDefinition( keyspace.getKeyspaceName(), //
+                                                   getMetadataFacetNameFamilyName(), //
+                                                   ComparatorType.UTF8TYPE );
+        cfds.add( metadataFacetNameCf );
+
         { // ensure keyspace exists, here if the keyspace doesn't exist we suppose nothing exist
-            if ( cluster.describeKeyspace( keyspaceName ) == null )
+            KeyspaceDefinition keyspaceDefinition = cluster.describeKeyspace( keyspaceName );
+            if ( keyspaceDefinition == null )
             {
                 logger.info( "Creating Archiva Cassandra '" + keyspaceName + "' keyspace." );
                 cluster.addKeyspace( HFactory.createKeyspaceDefinition( keyspaceName, //
@@ -465,8 +501,143 @@ public void initialize()
                                                                         cfds )
                 );
             }
+            else
+            {
+                // tables added after the keyspace was created
+                Set<String> existingCfs = new HashSet<>();
+                for ( ColumnFamilyDefinition cfd : keyspaceDefinition.getCfDefs() )
+                {
+                    existingCfs.add( cfd.getName() );
+                }
+                boolean lookupsAdded = false;
+                for ( ColumnFamilyDefinition cfd : lookupCfds )
+                {
+                    if ( !existingCfs.contains( cfd.getName() ) )
+                    {
+                        logger.info( "Creating Archiva Cassandra '{}' table.", cfd.getName() );
+                        cluster.addColumnFamily( cfd, true );
+                        lookupsAdded = true;
+                    }
+                }
+                if ( lookupsAdded )
+                {
+                    populateArtifactLookups();
+                }
+                if ( !existingCfs.contains( metadataFacetNameCf.getName() ) )
+                {
+                    logger.info( "Creating Archiva Cassandra '{}' table.", metadataFacetNameCf.getName() );
+                    cluster.addColumnFamily( metadataFacetNameCf, true );
+                    populateMetadataFacetNames();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Fill the artifact lookup tables from the existing artifact metadata, when they are added to a keyspace created
+     * by a previous version.
+     */
+    private void populateArtifactLookups()
+    {
+        logger.info( "Populating Archiva Cassandra artifact lookup tables." );
+        RangeSlicesQuery<String, String, String> query = HFactory //
+            .createRangeSlicesQuery( keyspace, StringSerializer.get(), StringSerializer.get(),
+                                     StringSerializer.get() ) //
+            .setColumnFamily( getArtifactMetadataFamilyName() ) //
+            .setColumnNames( ArtifactLookups.COLUMNS );
+
+        CloseableIterator<Row<String, String, String>> rows =
+            new PagedRangeSlicesIterator<String, Row<String, String, String>>( query, LOOKUP_POPULATION_BATCH_SIZE )
+            {
+                @Override
+                protected Row<String, String, String> map( Row<String, String, String> row )
+                {
+                    return row;
+                }
+            };
+
+        Mutator<String> mutator = HFactory.createMutator( keyspace, StringSerializer.get() );
+        int count = 0;
+        try
+        {
+            while ( rows.hasNext() )
+            {
+                Row<String, String, String> row = rows.next();
+                ArtifactLookups.addInsertions( this, mutator, row.getKey(), row.getColumnSlice() );
+                if ( ++count % LOOKUP_POPULATION_BATCH_SIZE == 0 )
+                {
+                    mutator.execute();
+                }
+            }
+        }
+        finally
+        {
+            rows.close();
+        }
+        if ( count % LOOKUP_POPULATION_BATCH_SIZE != 0 )
+        {
+            mutator.execute();
         }
+        logger.info( "Populated Archiva Cassandra artifact lookup tables with {} artifacts.", count );
+    }
 
+    /**
+     * Fill the metadata facet name table from the existing repository facets, when it is added to a keyspace created
+     * by a previous version.
+     */
+    private void populateMetadataFacetNames()
+    {
+        logger.info( "Populating Archiva Cassandra metadata facet name table." );
+        RangeSlicesQuery<String, String, String> query = HFactory //
+            .createRangeSlicesQuery( keyspace, StringSerializer.get(), StringSerializer.get(),
+                                     StringSerializer.get() ) //
+            .setColumnFamily( getMetadataFacetFamilyName() ) //
+            .setColumnNames( REPOSITORY_NAME.toString(), FACET_ID.toString(), NAME.toString(),
+                             NAMESPACE_ID.toString() );
+
+        CloseableIterator<Row<String, String, String>> rows =
+            new PagedRangeSlicesIterator<String, Row<String, String, String>>( query, LOOKUP_POPULATION_BATCH_SIZE )
+            {
+                @Override
+                protected Row<String, String, String> map( Row<String, String, String> row )
+                {
+                    return row;
+                }
+            };
+
+        Mutator<String> mutator = HFactory.createMutator( keyspace, StringSerializer.get() );
+        int count = 0;
+        try
+        {
+            while ( rows.hasNext() )
+            {
+                ColumnSlice<String, String> columns = rows.next().getColumnSlice();
+                String repositoryId = getStringValue( columns, REPOSITORY_NAME.toString() );
+                String name = getStringValue( columns, NAME.toString() );
+                // facets of artifacts have a namespace
+                if ( repositoryId == null || name == null
+                    || getStringValue( columns, NAMESPACE_ID.toString() ) != null )
+                {
+                    continue;
+                }
+                MetadataFacetNames.addInsertion( this, mutator, repositoryId,
+                                                 getStringValue( columns, FACET_ID.toString() ), name );
+                if ( ++count % LOOKUP_POPULATION_BATCH_SIZE == 0 )
+                {
+                    mutator.execute();
+                }
+            }
+        }
+        finally
+        {
+            rows.close();
+        }
+        if ( count % LOOKUP_POPULATION_BATCH_SIZE != 0 )
+        {
+            mutator.execute();
+        }
+        logger.info( "Populated Archiva Cassandra metadata facet name table with {} facet rows.", count );
     }
 
     @Override
@@ -553,4 +724,22 @@ public String getDependencyFamilyName()
     {
         return dependencyFamilyName;
     }
+
+    @Override
+    public String getChecksumFamilyName()
+    {
+        return checksumFamilyName;
+    }
+
+    @Override
+    public String getArtifactByDateFamilyName()
+    {
+        return artifactByDateFamilyName;
+    }
+
+    @Override
+    public String getMetadataFacetNameFamilyName()
+    {
+        return metadataFacetNameFamilyName;
+    }
 }
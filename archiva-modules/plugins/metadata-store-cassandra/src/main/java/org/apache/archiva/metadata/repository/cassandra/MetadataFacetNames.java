@@ -0,0 +1,83 @@
+package org.apache.archiva.metadata.repository.cassandra;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static org.apache.archiva.metadata.repository.cassandra.CassandraUtils.*;
+
+/**
+ * Maintains the metadata facet name family, which has one row per repository with one column per facet added to the
+ * repository, named after the facet id followed by the facet name. Columns are sorted by name, so the most recent
+ * facets named after a timestamp (audit events, statistics) are read with a reversed slice of the row instead of
+ * paging through every facet row of the repository.
+ * <p>
+ * Facets of artifacts are not listed.
+ *
+ * @since 2.2.2
+ */
+public class MetadataFacetNames
+{
+    /**
+     * separates the facet id from the facet name in a column name, the next character ends the columns of a facet id
+     */
+    private static final char SEPARATOR = '/';
+
+    private MetadataFacetNames()
+    {
+        // no op
+    }
+
+    public static void addInsertion( CassandraArchivaManager manager, Mutator<String> mutator, String repositoryId,
+                                     String facetId, String name )
+    {
+        mutator.addInsertion( repositoryId, manager.getMetadataFacetNameFamilyName(),
+                              column( getColumnName( facetId, name ), "" ) );
+    }
+
+    public static void addDeletion( CassandraArchivaManager manager, Mutator<String> mutator, String repositoryId,
+                                    String facetId, String name )
+    {
+        mutator.addDeletion( repositoryId, manager.getMetadataFacetNameFamilyName(), getColumnName( facetId, name ),
+                             StringSerializer.get() );
+    }
+
+    public static String getColumnName( String facetId, String name )
+    {
+        return facetId + SEPARATOR + name;
+    }
+
+    /**
+     * @return the column name after all the names of the facet id
+     */
+    public static String getColumnsEnd( String facetId )
+    {
+        return facetId + (char) ( SEPARATOR + 1 );
+    }
+
+    /**
+     * @return the facet name of a column name of the facet id
+     */
+    public static String getName( String facetId, String columnName )
+    {
+        return columnName.substring( facetId.length() + 1 );
+    }
+}
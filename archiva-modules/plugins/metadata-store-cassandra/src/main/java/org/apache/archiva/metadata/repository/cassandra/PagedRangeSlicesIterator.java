@@ -0,0 +1,104 @@
+package org.apache.archiva.metadata.repository.cassandra;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import me.prettyprint.hector.api.beans.OrderedRows;
+import me.prettyprint.hector.api.beans.Row;
+import me.prettyprint.hector.api.query.RangeSlicesQuery;
+import org.apache.archiva.metadata.repository.AbstractCloseableIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Iterates over the rows of a range slices query one page at a time, so large column families are never loaded at
+ * once. Each following page starts at the last key of the previous one, which is skipped.
+ *
+ * @since 2.2.2
+ */
+public abstract class PagedRangeSlicesIterator<V, T>
+    extends AbstractCloseableIterator<T>
+{
+    private final RangeSlicesQuery<String, String, V> query;
+
+    private final int pageSize;
+
+    private Iterator<Row<String, String, V>> rows = Collections.emptyIterator();
+
+    private String startKey;
+
+    private String lastKey;
+
+    private boolean lastPage;
+
+    public PagedRangeSlicesIterator( RangeSlicesQuery<String, String, V> query, int pageSize )
+    {
+        this.query = query;
+        this.pageSize = Math.max( 1, pageSize );
+    }
+
+    /**
+     * @return the element mapped from the row, or <code>null</code> to skip it
+     */
+    protected abstract T map( Row<String, String, V> row );
+
+    @Override
+    protected T computeNext()
+    {
+        while ( true )
+        {
+            while ( rows.hasNext() )
+            {
+                Row<String, String, V> row = rows.next();
+                if ( startKey != null && startKey.equals( row.getKey() ) )
+                {
+                    continue;
+                }
+                lastKey = row.getKey();
+                // deleted rows are still returned by range slices, without columns
+                if ( row.getColumnSlice().getColumns().isEmpty() )
+                {
+                    continue;
+                }
+                T element = map( row );
+                if ( element != null )
+                {
+                    return element;
+                }
+            }
+            if ( lastPage )
+            {
+                return null;
+            }
+            fetch();
+        }
+    }
+
+    private void fetch()
+    {
+        startKey = lastKey;
+        int count = startKey == null ? pageSize : pageSize + 1;
+        query.setKeys( startKey == null ? "" : startKey, "" );
+        query.setRowCount( count );
+        OrderedRows<String, String, V> result = query.execute().get();
+        lastPage = result.getCount() < count;
+        rows = result.getList().iterator();
+    }
+}
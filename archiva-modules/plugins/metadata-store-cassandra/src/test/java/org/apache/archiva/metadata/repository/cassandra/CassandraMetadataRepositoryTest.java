@@ -19,8 +19,12 @@
  * under the License.
  */
 
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.factory.HFactory;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
 import org.apache.archiva.metadata.repository.AbstractMetadataRepositoryTest;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.cassandra.model.ProjectVersionMetadataModel;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -31,6 +35,9 @@
 import javax.inject.Named;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -100,6 +107,93 @@ public void clean_dependant_tables()
     }
 
 
+    @Test
+    public void artifact_lookups_follow_updates()
+        throws Exception
+    {
+        long day = 24L * 60 * 60 * 1000;
+        Date whenGathered = new Date( System.currentTimeMillis() - 2 * day );
+
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setId( TEST_PROJECT + "-" + TEST_PROJECT_VERSION + ".jar" );
+        artifact.setNamespace( TEST_NAMESPACE );
+        artifact.setProject( TEST_PROJECT );
+        artifact.setRepositoryId( TEST_REPO_ID );
+        artifact.setVersion( TEST_PROJECT_VERSION );
+        artifact.setProjectVersion( TEST_PROJECT_VERSION );
+        artifact.setFileLastModified( System.currentTimeMillis() );
+        artifact.setWhenGathered( whenGathered );
+        artifact.setMd5( "md5-1" );
+        artifact.setSha1( "sha1-1" );
+        cmr.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+
+        assertThat( cmr.getArtifactsByChecksum( TEST_REPO_ID, "sha1-1" ) ).hasSize( 1 );
+        assertThat( cmr.getArtifactsByChecksum( "other-repo", "sha1-1" ) ).isEmpty();
+        assertThat( cmr.getArtifactsByDateRange( TEST_REPO_ID, new Date( whenGathered.getTime() - 3 * day ),
+                                                 new Date() ) ).hasSize( 1 );
+
+        // keep the md5, change the sha1 and move the artifact to another day
+        Date newWhenGathered = new Date( whenGathered.getTime() + day );
+        artifact.setSha1( "sha1-2" );
+        artifact.setWhenGathered( newWhenGathered );
+        cmr.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+
+        assertThat( cmr.getArtifactsByChecksum( TEST_REPO_ID, "sha1-1" ) ).isEmpty();
+        assertThat( cmr.getArtifactsByChecksum( TEST_REPO_ID, "sha1-2" ) ).hasSize( 1 );
+        assertThat( cmr.getArtifactsByChecksum( TEST_REPO_ID, "md5-1" ) ).hasSize( 1 );
+        assertThat( cmr.getArtifactsByDateRange( TEST_REPO_ID, whenGathered, whenGathered ) ).isEmpty();
+        assertThat( cmr.getArtifactsByDateRange( TEST_REPO_ID, whenGathered, newWhenGathered ) ).hasSize( 1 );
+
+        cmr.removeArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact.getId() );
+
+        assertThat( cmr.getArtifactsByChecksum( TEST_REPO_ID, "sha1-2" ) ).isEmpty();
+        assertThat( HFactory.createSliceQuery( cassandraArchivaManager.getKeyspace(), StringSerializer.get(),
+                                               StringSerializer.get(), StringSerializer.get() ) //
+                        .setColumnFamily( cassandraArchivaManager.getChecksumFamilyName() ) //
+                        .setKey( ArtifactLookups.getChecksumKey( TEST_REPO_ID, "md5-1" ) ) //
+                        .setRange( "", "", false, 10 ) //
+                        .execute().get().getColumns() ).isEmpty();
+    }
+
+    @Test
+    public void open_ended_date_range_reads_artifact_lookups()
+        throws Exception
+    {
+        long day = 24L * 60 * 60 * 1000;
+        Date whenGathered = new Date( System.currentTimeMillis() - 2 * day );
+
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setId( TEST_PROJECT + "-" + TEST_PROJECT_VERSION + ".jar" );
+        artifact.setNamespace( TEST_NAMESPACE );
+        artifact.setProject( TEST_PROJECT );
+        artifact.setRepositoryId( TEST_REPO_ID );
+        artifact.setVersion( TEST_PROJECT_VERSION );
+        artifact.setProjectVersion( TEST_PROJECT_VERSION );
+        artifact.setFileLastModified( System.currentTimeMillis() );
+        artifact.setWhenGathered( whenGathered );
+        cmr.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+
+        Date start = new Date( whenGathered.getTime() - day );
+        assertThat( cmr.getArtifactsByDateRange( TEST_REPO_ID, start, null ) ).hasSize( 1 );
+        List<ArtifactMetadata> streamed = new ArrayList<>();
+        try (CloseableIterator<ArtifactMetadata> artifacts = cmr.streamArtifactsByDateRange( TEST_REPO_ID, start,
+                                                                                             null ))
+        {
+            while ( artifacts.hasNext() )
+            {
+                streamed.add( artifacts.next() );
+            }
+        }
+        assertThat( streamed ).hasSize( 1 );
+
+        // without its day lookup the artifact is no longer found, the secondary index is not scanned
+        HFactory.createMutator( cassandraArchivaManager.getKeyspace(), StringSerializer.get() ) //
+            .addDeletion( ArtifactLookups.getDayKey( TEST_REPO_ID, whenGathered.getTime() ),
+                          cassandraArchivaManager.getArtifactByDateFamilyName() ) //
+            .execute();
+        assertThat( cmr.getArtifactsByDateRange( TEST_REPO_ID, start, null ) ).isEmpty();
+    }
+
     @After
     public void shutdown()
         throws Exception
@@ -138,6 +232,15 @@ static void clearReposAndNamespace( CassandraArchivaManager cassandraArchivaMana
         cassandraArchivaManager.getCluster().truncate( cassandraArchivaManager.getKeyspace().getKeyspaceName(),
                                                        cassandraArchivaManager.getDependencyFamilyName() );
 
+        cassandraArchivaManager.getCluster().truncate( cassandraArchivaManager.getKeyspace().getKeyspaceName(),
+                                                       cassandraArchivaManager.getChecksumFamilyName() );
+
+        cassandraArchivaManager.getCluster().truncate( cassandraArchivaManager.getKeyspace().getKeyspaceName(),
+                                                       cassandraArchivaManager.getArtifactByDateFamilyName() );
+
+        cassandraArchivaManager.getCluster().truncate( cassandraArchivaManager.getKeyspace().getKeyspaceName(),
+                                                       cassandraArchivaManager.getMetadataFacetNameFamilyName() );
+
     }
 
 }
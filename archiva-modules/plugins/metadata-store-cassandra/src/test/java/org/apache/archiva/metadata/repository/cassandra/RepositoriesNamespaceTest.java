@@ -139,4 +139,46 @@ public void testMetadataRepo()
             CassandraMetadataRepositoryTest.clearReposAndNamespace( cassandraArchivaManager );
         }
     }
+
+    @Test
+    public void testPagedNamespacesAndRemoval()
+        throws Exception
+    {
+        cmr.setPageSize( 3 );
+        cmr.setMutationBatchSize( 2 );
+
+        try
+        {
+            for ( int i = 0; i < 10; i++ )
+            {
+                cmr.updateNamespace( "release", "org.test" + i );
+
+                ProjectMetadata projectMetadata = new ProjectMetadata();
+                projectMetadata.setId( "theproject" );
+                projectMetadata.setNamespace( "org.test" + i );
+                cmr.updateProject( "release", projectMetadata );
+            }
+            cmr.updateNamespace( "snapshot", "com" );
+
+            assertThat( cmr.getRepositories() ).hasSize( 2 );
+            assertThat( cmr.getNamespaces( "release" ) ).hasSize( 10 );
+            assertThat( cmr.getNamespaces( "release", "org" ) ).hasSize( 10 ).contains( "test0", "test9" );
+            assertThat( cmr.getRootNamespaces( "release" ) ).containsExactly( "org" );
+
+            cmr.removeNamespace( "release", "org.test0" );
+            assertThat( cmr.getNamespaces( "release" ) ).hasSize( 9 ).doesNotContain( "org.test0" );
+            assertThat( cmr.getProjects( "release", "org.test0" ) ).isEmpty();
+            assertThat( cmr.getProjects( "release", "org.test1" ) ).containsExactly( "theproject" );
+
+            cmr.removeRepository( "release" );
+            assertThat( cmr.getRepository( "release" ) ).isNull();
+            assertThat( cmr.getNamespaces( "release" ) ).isEmpty();
+            assertThat( cmr.getProjects( "release", "org.test1" ) ).isEmpty();
+            assertThat( cmr.getNamespaces( "snapshot" ) ).containsExactly( "com" );
+        }
+        finally
+        {
+            CassandraMetadataRepositoryTest.clearReposAndNamespace( cassandraArchivaManager );
+        }
+    }
 }
@@ -0,0 +1,505 @@
+package org.apache.archiva.metadata.repository.file;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Secondary indexes of the file based metadata repository, so that lookups by checksum, by gathered date, by
+ * property and full text searches do not need to walk the whole content tree.
+ * <p>
+ * Every entry is derived from a project version properties file and is stored as a key
+ * <code>term + '\t' + reference</code> in a bucket properties file of its index directory. Checksum and property
+ * terms are bucketed by hash, gathered dates by day so a range only reads the days it covers. References are
+ * <code>namespace/project/version</code> for project version entries, with <code>/artifactId</code> appended for
+ * artifact entries.
+ * </p>
+ */
+class FileMetadataIndex
+{
+    static final String CHECKSUMS = "checksums";
+
+    static final String WHEN_GATHERED = "when-gathered";
+
+    static final String PROPERTIES = "properties";
+
+    static final String PROJECT_VERSION_METADATA = "project-version-metadata";
+
+    static final String ARTIFACT_METADATA = "artifact-metadata";
+
+    static final String TERMS = "terms";
+
+    /**
+     * Property name of the terms matching any property.
+     */
+    static final String ANY_PROPERTY = "*";
+
+    private static final String INDEX_KEY = "index";
+
+    private static final int INDEX_VERSION = 2;
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static final char SEPARATOR = '\t';
+
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final File directory;
+
+    private final Object lock;
+
+    FileMetadataIndex( File directory )
+    {
+        this.directory = directory;
+        Object newLock = new Object();
+        Object existing = LOCKS.putIfAbsent( directory.getAbsolutePath(), newLock );
+        this.lock = existing != null ? existing : newLock;
+    }
+
+    Object getLock()
+    {
+        return lock;
+    }
+
+    /**
+     * @return <code>true</code> if the index has been built with the current format, otherwise it needs to be
+     *         rebuilt from the content tree
+     */
+    boolean exists()
+        throws IOException
+    {
+        Properties properties = read( new File( directory, INDEX_KEY + ".properties" ) );
+        return Integer.toString( INDEX_VERSION ).equals( properties.getProperty( "version" ) );
+    }
+
+    void markBuilt()
+        throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "version", Integer.toString( INDEX_VERSION ) );
+        properties.setProperty( "built", Long.toString( System.currentTimeMillis() ) );
+        write( properties, new File( directory, INDEX_KEY + ".properties" ) );
+    }
+
+    void delete()
+        throws IOException
+    {
+        synchronized ( lock )
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    /**
+     * Replace the entries derived from the previous content of a project version properties file by the ones of its
+     * new content. Only the difference is written.
+     */
+    void update( String versionRef, Properties oldProperties, Properties newProperties )
+        throws IOException
+    {
+        Set<Entry> removed = getEntries( versionRef, oldProperties );
+        Set<Entry> added = getEntries( versionRef, newProperties );
+
+        Set<Entry> unchanged = new HashSet<>( removed );
+        unchanged.retainAll( added );
+        removed.removeAll( unchanged );
+        added.removeAll( unchanged );
+
+        if ( removed.isEmpty() && added.isEmpty() )
+        {
+            return;
+        }
+
+        Map<File, Properties> buckets = new LinkedHashMap<>();
+        synchronized ( lock )
+        {
+            for ( Entry entry : removed )
+            {
+                getBucket( buckets, entry ).remove( entry.getKey() );
+            }
+            for ( Entry entry : added )
+            {
+                getBucket( buckets, entry ).setProperty( entry.getKey(), "" );
+            }
+            for ( Map.Entry<File, Properties> bucket : buckets.entrySet() )
+            {
+                if ( bucket.getValue().isEmpty() )
+                {
+                    Files.deleteIfExists( bucket.getKey().toPath() );
+                }
+                else
+                {
+                    write( bucket.getValue(), bucket.getKey() );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the references indexed under the given term
+     */
+    Set<String> get( String index, String term )
+        throws IOException
+    {
+        Set<String> refs = new LinkedHashSet<>();
+        Properties bucket;
+        synchronized ( lock )
+        {
+            bucket = read( getBucketFile( index, term ) );
+        }
+        String prefix = term + SEPARATOR;
+        for ( String key : bucket.stringPropertyNames() )
+        {
+            if ( key.startsWith( prefix ) && key.lastIndexOf( SEPARATOR ) == term.length() )
+            {
+                refs.add( key.substring( prefix.length() ) );
+            }
+        }
+        return refs;
+    }
+
+    Set<String> get( String index, String name, String value )
+        throws IOException
+    {
+        return get( index, toTerm( name, value ) );
+    }
+
+    /**
+     * Full text search of project version properties and facets: every word of the text has to be found in the same
+     * project version, in the given property or in any property if it is <code>null</code>.
+     *
+     * @return the matching project version references
+     */
+    Set<String> search( String name, String text )
+        throws IOException
+    {
+        Set<String> refs = null;
+        for ( String token : tokenize( text ) )
+        {
+            Set<String> tokenRefs = get( TERMS, name != null ? name : ANY_PROPERTY, token );
+            if ( refs == null )
+            {
+                refs = tokenRefs;
+            }
+            else
+            {
+                refs.retainAll( tokenRefs );
+            }
+            if ( refs.isEmpty() )
+            {
+                break;
+            }
+        }
+        return refs != null ? refs : new LinkedHashSet<String>();
+    }
+
+    /**
+     * @return the artifact references gathered strictly between the two dates, either of which may be
+     *         <code>null</code> for an open range, ordered by gathered date
+     */
+    Set<String> getByDateRange( Date startTime, Date endTime )
+        throws IOException
+    {
+        long start = startTime != null ? startTime.getTime() : Long.MIN_VALUE;
+        long end = endTime != null ? endTime.getTime() : Long.MAX_VALUE;
+
+        Set<String> refs = new LinkedHashSet<>();
+        File[] files = new File( directory, WHEN_GATHERED ).listFiles();
+        if ( files == null )
+        {
+            return refs;
+        }
+        SortedMap<Long, List<String>> refsByTime = new TreeMap<>();
+        for ( File file : files )
+        {
+            long day;
+            try
+            {
+                day = Long.parseLong( file.getName().substring( 0, file.getName().length() - ".properties".length() ) );
+            }
+            catch ( NumberFormatException | StringIndexOutOfBoundsException e )
+            {
+                continue;
+            }
+            if ( ( startTime != null && day < start / DAY ) || ( endTime != null && day > end / DAY ) )
+            {
+                continue;
+            }
+
+            Properties bucket;
+            synchronized ( lock )
+            {
+                bucket = read( file );
+            }
+            for ( String key : bucket.stringPropertyNames() )
+            {
+                int i = key.indexOf( SEPARATOR );
+                long time = Long.parseLong( key.substring( 0, i ) );
+                if ( time > start && time < end )
+                {
+                    List<String> timeRefs = refsByTime.get( time );
+                    if ( timeRefs == null )
+                    {
+                        timeRefs = new ArrayList<>( 1 );
+                        refsByTime.put( time, timeRefs );
+                    }
+                    timeRefs.add( key.substring( i + 1 ) );
+                }
+            }
+        }
+        for ( List<String> timeRefs : refsByTime.values() )
+        {
+            refs.addAll( timeRefs );
+        }
+        return refs;
+    }
+
+    private Properties getBucket( Map<File, Properties> buckets, Entry entry )
+        throws IOException
+    {
+        File file = getBucketFile( entry.index, entry.term );
+        Properties bucket = buckets.get( file );
+        if ( bucket == null )
+        {
+            bucket = read( file );
+            buckets.put( file, bucket );
+        }
+        return bucket;
+    }
+
+    private File getBucketFile( String index, String term )
+    {
+        String bucket;
+        if ( WHEN_GATHERED.equals( index ) )
+        {
+            bucket = Long.toString( Long.parseLong( term ) / DAY );
+        }
+        else
+        {
+            bucket = String.format( "%02x", term.hashCode() & 0xff );
+        }
+        return new File( new File( directory, index ), bucket + ".properties" );
+    }
+
+    /**
+     * Derive the index entries of a project version from the content of its properties file.
+     */
+    static Set<Entry> getEntries( String versionRef, Properties properties )
+    {
+        Set<Entry> entries = new HashSet<>();
+        if ( properties == null )
+        {
+            return entries;
+        }
+
+        Set<String> facetIds = new HashSet<>( Arrays.asList( properties.getProperty( "facetIds", "" ).split( "," ) ) );
+        Map<String, String> artifactFacetPrefixes = new HashMap<>();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            if ( key.startsWith( "artifact:version:" ) )
+            {
+                String id = key.substring( "artifact:version:".length() );
+                artifactFacetPrefixes.put( "artifact:facet:" + id + ":", id );
+            }
+        }
+
+        for ( String key : properties.stringPropertyNames() )
+        {
+            String value = properties.getProperty( key );
+            int i = key.indexOf( ':' );
+            if ( i < 0 )
+            {
+                if ( !"facetIds".equals( key ) )
+                {
+                    entries.add( new Entry( PROPERTIES, toTerm( key, value ), versionRef ) );
+                    addTerms( entries, key, value, versionRef );
+                }
+            }
+            else if ( key.startsWith( "artifact:md5:" ) )
+            {
+                entries.add( new Entry( CHECKSUMS, value, versionRef + "/" + key.substring( "artifact:md5:".length() ) ) );
+            }
+            else if ( key.startsWith( "artifact:sha1:" ) )
+            {
+                entries.add(
+                    new Entry( CHECKSUMS, value, versionRef + "/" + key.substring( "artifact:sha1:".length() ) ) );
+            }
+            else if ( key.startsWith( "artifact:whenGathered:" ) )
+            {
+                entries.add( new Entry( WHEN_GATHERED, value,
+                                        versionRef + "/" + key.substring( "artifact:whenGathered:".length() ) ) );
+            }
+            else if ( key.startsWith( "artifact:facet:" ) )
+            {
+                for ( Map.Entry<String, String> prefix : artifactFacetPrefixes.entrySet() )
+                {
+                    if ( key.startsWith( prefix.getKey() ) )
+                    {
+                        // strip the facet id, lookups are made on the facet property name only
+                        String facetKey = key.substring( prefix.getKey().length() );
+                        entries.add( new Entry( ARTIFACT_METADATA,
+                                                toTerm( facetKey.substring( facetKey.indexOf( ':' ) + 1 ), value ),
+                                                versionRef + "/" + prefix.getValue() ) );
+                    }
+                }
+            }
+            else if ( facetIds.contains( key.substring( 0, i ) ) )
+            {
+                entries.add(
+                    new Entry( PROJECT_VERSION_METADATA, toTerm( key.substring( i + 1 ), value ), versionRef ) );
+                addTerms( entries, key.substring( i + 1 ), value, versionRef );
+            }
+        }
+        return entries;
+    }
+
+    private static void addTerms( Set<Entry> entries, String name, String value, String versionRef )
+    {
+        for ( String token : tokenize( value ) )
+        {
+            entries.add( new Entry( TERMS, toTerm( name, token ), versionRef ) );
+            entries.add( new Entry( TERMS, toTerm( ANY_PROPERTY, token ), versionRef ) );
+        }
+    }
+
+    /**
+     * Split a value in lower case words, the way a full text index would.
+     */
+    static Set<String> tokenize( String value )
+    {
+        Set<String> tokens = new LinkedHashSet<>();
+        if ( value != null )
+        {
+            for ( String token : value.toLowerCase( Locale.ENGLISH ).split( "[^\\p{L}\\p{N}]+" ) )
+            {
+                if ( !token.isEmpty() )
+                {
+                    tokens.add( token );
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static String toTerm( String name, String value )
+    {
+        return name + "=" + value;
+    }
+
+    private static Properties read( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        try ( InputStream in = Files.newInputStream( file.toPath() ) )
+        {
+            properties.load( in );
+        }
+        catch ( NoSuchFileException e )
+        {
+            // empty bucket
+        }
+        return properties;
+    }
+
+    /**
+     * write a sibling temporary file and move it in place so that an interrupted write never leaves a truncated bucket
+     */
+    private static void write( Properties properties, File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        File tmp = new File( file.getParentFile(), file.getName() + ".tmp" );
+        try ( OutputStream os = Files.newOutputStream( tmp.toPath() ) )
+        {
+            properties.store( os, null );
+        }
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    static final class Entry
+    {
+        private final String index;
+
+        private final String term;
+
+        private final String ref;
+
+        Entry( String index, String term, String ref )
+        {
+            this.index = index;
+            this.term = term;
+            this.ref = ref;
+        }
+
+        String getKey()
+        {
+            return term + SEPARATOR + ref;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            Entry entry = (Entry) o;
+            return index.equals( entry.index ) && term.equals( entry.term ) && ref.equals( entry.ref );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = index.hashCode();
+            result = 31 * result + term.hashCode();
+            result = 31 * result + ref.hashCode();
+            return result;
+        }
+    }
+}
@@ -34,8 +34,11 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
+import org.apache.archiva.metadata.repository.AbstractCloseableIterator;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.MetadataRepositoryRuntimeException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -56,6 +59,8 @@
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -80,6 +85,8 @@
 
     private static final String METADATA_KEY = "metadata";
 
+    private static final String INDEXES_DIRECTORY = "indexes";
+
     public FileMetadataRepository( Map<String, MetadataFacetFactory> metadataFacetFactories,
                                    ArchivaConfiguration configuration )
     {
@@ -107,6 +114,222 @@ private File getDirectory( String repoId )
         return new File( getBaseDirectory( repoId ), "content" );
     }
 
+    private FileMetadataIndex getIndex( String repoId )
+        throws IOException
+    {
+        FileMetadataIndex index = new FileMetadataIndex( new File( getBaseDirectory( repoId ), INDEXES_DIRECTORY ) );
+        if ( !index.exists() )
+        {
+            // repositories written before the indexes were introduced, or with a deleted index
+            rebuildIndex( repoId, index );
+        }
+        return index;
+    }
+
+    /**
+     * Rebuild the checksum, gathered date and property indexes of a repository from its content tree.
+     *
+     * @param repoId the repository to index
+     * @throws MetadataRepositoryException if the index can't be written
+     */
+    public void rebuildIndex( String repoId )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            rebuildIndex( repoId, new FileMetadataIndex( new File( getBaseDirectory( repoId ), INDEXES_DIRECTORY ) ) );
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    private void rebuildIndex( String repoId, FileMetadataIndex index )
+        throws IOException
+    {
+        synchronized ( index.getLock() )
+        {
+            log.info( "Building metadata index of repository {}", repoId );
+            index.delete();
+            File[] namespaces = getDirectory( repoId ).listFiles();
+            if ( namespaces != null )
+            {
+                for ( File namespace : namespaces )
+                {
+                    File[] projects = namespace.listFiles();
+                    if ( projects == null )
+                    {
+                        continue;
+                    }
+                    for ( File project : projects )
+                    {
+                        File[] versions = project.listFiles();
+                        if ( versions == null )
+                        {
+                            continue;
+                        }
+                        for ( File version : versions )
+                        {
+                            if ( new File( version, PROJECT_VERSION_METADATA_KEY + ".properties" ).exists() )
+                            {
+                                index.update( getVersionReference( namespace.getName(), project.getName(),
+                                                                   version.getName() ), null,
+                                              readProperties( version, PROJECT_VERSION_METADATA_KEY ) );
+                            }
+                        }
+                    }
+                }
+            }
+            index.markBuilt();
+        }
+    }
+
+    private static String getVersionReference( String namespace, String projectId, String projectVersion )
+    {
+        return namespace + "/" + projectId + "/" + projectVersion;
+    }
+
+    /**
+     * Write a project version properties file and apply the difference with its previous content to the indexes.
+     * Callers computing the new content from the current one must hold the index lock since that read, see
+     * {@link #lockProjectVersion(String)}.
+     */
+    private void writeProjectVersionProperties( String repoId, String namespace, String projectId,
+                                                String projectVersion, Properties properties )
+        throws IOException
+    {
+        FileMetadataIndex index = getIndex( repoId );
+        File directory = new File( getDirectory( repoId ), namespace + "/" + projectId + "/" + projectVersion );
+        synchronized ( index.getLock() )
+        {
+            Properties previous = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
+            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+            index.update( getVersionReference( namespace, projectId, projectVersion ), previous, properties );
+        }
+    }
+
+    /**
+     * @return the lock to hold from reading a project version properties file until it is written back with
+     *         {@link #writeProjectVersionProperties(String, String, String, String, Properties)}
+     */
+    private Object lockProjectVersion( String repoId )
+        throws IOException
+    {
+        return getIndex( repoId ).getLock();
+    }
+
+    /**
+     * Remove the index entries of the project versions about to be deleted. <code>null</code> project id or version
+     * selects all of them.
+     */
+    private void removeFromIndex( String repoId, String namespace, String projectId, String projectVersion )
+        throws IOException
+    {
+        FileMetadataIndex index = getIndex( repoId );
+        File namespaceDirectory = new File( getDirectory( repoId ), namespace );
+        File[] projects = projectId != null ? new File[]{ new File( namespaceDirectory, projectId ) }
+            : namespaceDirectory.listFiles();
+        if ( projects == null )
+        {
+            return;
+        }
+        for ( File project : projects )
+        {
+            File[] versions = projectVersion != null ? new File[]{ new File( project, projectVersion ) }
+                : project.listFiles();
+            if ( versions == null )
+            {
+                continue;
+            }
+            for ( File version : versions )
+            {
+                if ( new File( version, PROJECT_VERSION_METADATA_KEY + ".properties" ).exists() )
+                {
+                    index.update( getVersionReference( namespace, project.getName(), version.getName() ),
+                                  readProperties( version, PROJECT_VERSION_METADATA_KEY ), null );
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the artifacts of index references, reading each project version only once. Project version references
+     * select all of its artifacts.
+     */
+    private List<ArtifactMetadata> getArtifactsByReferences( String repoId, Collection<String> refs )
+        throws MetadataRepositoryException
+    {
+        Map<String, Set<String>> versions = new LinkedHashMap<>();
+        for ( String ref : refs )
+        {
+            String[] parts = ref.split( "/", 4 );
+            if ( parts.length < 3 )
+            {
+                continue;
+            }
+            String versionRef = getVersionReference( parts[0], parts[1], parts[2] );
+            Set<String> ids = versions.get( versionRef );
+            if ( parts.length == 3 )
+            {
+                versions.put( versionRef, null );
+            }
+            else if ( ids != null || !versions.containsKey( versionRef ) )
+            {
+                if ( ids == null )
+                {
+                    ids = new HashSet<>();
+                    versions.put( versionRef, ids );
+                }
+                ids.add( parts[3] );
+            }
+        }
+
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        try
+        {
+            for ( Map.Entry<String, Set<String>> entry : versions.entrySet() )
+            {
+                String[] parts = entry.getKey().split( "/", 3 );
+                for ( ArtifactMetadata artifact : getArtifacts( repoId, parts[0], parts[1], parts[2] ) )
+                {
+                    if ( entry.getValue() == null || entry.getValue().contains( artifact.getId() ) )
+                    {
+                        artifacts.add( artifact );
+                    }
+                }
+            }
+        }
+        catch ( MetadataResolutionException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+        return artifacts;
+    }
+
+    private Collection<String> getRepositoryIds( String repositoryId )
+    {
+        return repositoryId != null ? Collections.singletonList( repositoryId ) : getRepositories();
+    }
+
+    private List<ArtifactMetadata> getArtifactsByIndex( String repositoryId, String index, String key, String value )
+        throws MetadataRepositoryException
+    {
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        try
+        {
+            for ( String repoId : getRepositoryIds( repositoryId ) )
+            {
+                artifacts.addAll( getArtifactsByReferences( repoId, getIndex( repoId ).get( index, key, value ) ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+        return artifacts;
+    }
+
     @Override
     public void updateProject( String repoId, ProjectMetadata project )
     {
@@ -145,93 +368,98 @@ public void updateProjectVersion( String repoId, String namespace, String projec
             File directory =
                 new File( getDirectory( repoId ), namespace + "/" + projectId + "/" + versionMetadata.getId() );
 
-            Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
-            // remove properties that are not references or artifacts
-            for ( Object key : new ArrayList( properties.keySet() ) )
+            synchronized ( lockProjectVersion( repoId ) )
             {
-                String name = (String) key;
-                if ( !name.contains( ":" ) && !name.equals( "facetIds" ) )
+                Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
+                // remove properties that are not references or artifacts
+                for ( Object key : new ArrayList( properties.keySet() ) )
+                {
+                    String name = (String) key;
+                    if ( !name.contains( ":" ) && !name.equals( "facetIds" ) )
+                    {
+                        properties.remove( name );
+                    }
+
+                    // clear the facet contents so old properties are no longer written
+                    clearMetadataFacetProperties( versionMetadata.getFacetList(), properties, "" );
+                }
+                properties.setProperty( "id", versionMetadata.getId() );
+                setProperty( properties, "name", versionMetadata.getName() );
+                setProperty( properties, "description", versionMetadata.getDescription() );
+                setProperty( properties, "url", versionMetadata.getUrl() );
+                setProperty( properties, "incomplete", String.valueOf( versionMetadata.isIncomplete() ) );
+                if ( versionMetadata.getScm() != null )
+                {
+                    setProperty( properties, "scm.connection", versionMetadata.getScm().getConnection() );
+                    setProperty( properties, "scm.developerConnection",
+                                 versionMetadata.getScm().getDeveloperConnection() );
+                    setProperty( properties, "scm.url", versionMetadata.getScm().getUrl() );
+                }
+                if ( versionMetadata.getCiManagement() != null )
+                {
+                    setProperty( properties, "ci.system", versionMetadata.getCiManagement().getSystem() );
+                    setProperty( properties, "ci.url", versionMetadata.getCiManagement().getUrl() );
+                }
+                if ( versionMetadata.getIssueManagement() != null )
                 {
-                    properties.remove( name );
+                    setProperty( properties, "issue.system", versionMetadata.getIssueManagement().getSystem() );
+                    setProperty( properties, "issue.url", versionMetadata.getIssueManagement().getUrl() );
                 }
+                if ( versionMetadata.getOrganization() != null )
+                {
+                    setProperty( properties, "org.name", versionMetadata.getOrganization().getName() );
+                    setProperty( properties, "org.url", versionMetadata.getOrganization().getUrl() );
+                }
+                int i = 0;
+                for ( License license : versionMetadata.getLicenses() )
+                {
+                    setProperty( properties, "license." + i + ".name", license.getName() );
+                    setProperty( properties, "license." + i + ".url", license.getUrl() );
+                    i++;
+                }
+                i = 0;
+                for ( MailingList mailingList : versionMetadata.getMailingLists() )
+                {
+                    setProperty( properties, "mailingList." + i + ".archive", mailingList.getMainArchiveUrl() );
+                    setProperty( properties, "mailingList." + i + ".name", mailingList.getName() );
+                    setProperty( properties, "mailingList." + i + ".post", mailingList.getPostAddress() );
+                    setProperty( properties, "mailingList." + i + ".unsubscribe", mailingList.getUnsubscribeAddress() );
+                    setProperty( properties, "mailingList." + i + ".subscribe", mailingList.getSubscribeAddress() );
+                    setProperty( properties, "mailingList." + i + ".otherArchives",
+                                 join( mailingList.getOtherArchives() ) );
+                    i++;
+                }
+                i = 0;
+                ProjectVersionReference reference = new ProjectVersionReference();
+                reference.setNamespace( namespace );
+                reference.setProjectId( projectId );
+                reference.setProjectVersion( versionMetadata.getId() );
+                reference.setReferenceType( ProjectVersionReference.ReferenceType.DEPENDENCY );
+                for ( Dependency dependency : versionMetadata.getDependencies() )
+                {
+                    setProperty( properties, "dependency." + i + ".classifier", dependency.getClassifier() );
+                    setProperty( properties, "dependency." + i + ".scope", dependency.getScope() );
+                    setProperty( properties, "dependency." + i + ".systemPath", dependency.getSystemPath() );
+                    setProperty( properties, "dependency." + i + ".artifactId", dependency.getArtifactId() );
+                    setProperty( properties, "dependency." + i + ".groupId", dependency.getGroupId() );
+                    setProperty( properties, "dependency." + i + ".version", dependency.getVersion() );
+                    setProperty( properties, "dependency." + i + ".type", dependency.getType() );
+                    setProperty( properties, "dependency." + i + ".optional",
+                                 String.valueOf( dependency.isOptional() ) );
+
+                    updateProjectReference( repoId, dependency.getGroupId(), dependency.getArtifactId(),
+                                            dependency.getVersion(), reference );
 
-                // clear the facet contents so old properties are no longer written
-                clearMetadataFacetProperties( versionMetadata.getFacetList(), properties, "" );
-            }
-            properties.setProperty( "id", versionMetadata.getId() );
-            setProperty( properties, "name", versionMetadata.getName() );
-            setProperty( properties, "description", versionMetadata.getDescription() );
-            setProperty( properties, "url", versionMetadata.getUrl() );
-            setProperty( properties, "incomplete", String.valueOf( versionMetadata.isIncomplete() ) );
-            if ( versionMetadata.getScm() != null )
-            {
-                setProperty( properties, "scm.connection", versionMetadata.getScm().getConnection() );
-                setProperty( properties, "scm.developerConnection", versionMetadata.getScm().getDeveloperConnection() );
-                setProperty( properties, "scm.url", versionMetadata.getScm().getUrl() );
-            }
-            if ( versionMetadata.getCiManagement() != null )
-            {
-                setProperty( properties, "ci.system", versionMetadata.getCiManagement().getSystem() );
-                setProperty( properties, "ci.url", versionMetadata.getCiManagement().getUrl() );
-            }
-            if ( versionMetadata.getIssueManagement() != null )
-            {
-                setProperty( properties, "issue.system", versionMetadata.getIssueManagement().getSystem() );
-                setProperty( properties, "issue.url", versionMetadata.getIssueManagement().getUrl() );
-            }
-            if ( versionMetadata.getOrganization() != null )
-            {
-                setProperty( properties, "org.name", versionMetadata.getOrganization().getName() );
-                setProperty( properties, "org.url", versionMetadata.getOrganization().getUrl() );
-            }
-            int i = 0;
-            for ( License license : versionMetadata.getLicenses() )
-            {
-                setProperty( properties, "license." + i + ".name", license.getName() );
-                setProperty( properties, "license." + i + ".url", license.getUrl() );
-                i++;
-            }
-            i = 0;
-            for ( MailingList mailingList : versionMetadata.getMailingLists() )
-            {
-                setProperty( properties, "mailingList." + i + ".archive", mailingList.getMainArchiveUrl() );
-                setProperty( properties, "mailingList." + i + ".name", mailingList.getName() );
-                setProperty( properties, "mailingList." + i + ".post", mailingList.getPostAddress() );
-                setProperty( properties, "mailingList." + i + ".unsubscribe", mailingList.getUnsubscribeAddress() );
-                setProperty( properties, "mailingList." + i + ".subscribe", mailingList.getSubscribeAddress() );
-                setProperty( properties, "mailingList." + i + ".otherArchives",
-                             join( mailingList.getOtherArchives() ) );
-                i++;
-            }
-            i = 0;
-            ProjectVersionReference reference = new ProjectVersionReference();
-            reference.setNamespace( namespace );
-            reference.setProjectId( projectId );
-            reference.setProjectVersion( versionMetadata.getId() );
-            reference.setReferenceType( ProjectVersionReference.ReferenceType.DEPENDENCY );
-            for ( Dependency dependency : versionMetadata.getDependencies() )
-            {
-                setProperty( properties, "dependency." + i + ".classifier", dependency.getClassifier() );
-                setProperty( properties, "dependency." + i + ".scope", dependency.getScope() );
-                setProperty( properties, "dependency." + i + ".systemPath", dependency.getSystemPath() );
-                setProperty( properties, "dependency." + i + ".artifactId", dependency.getArtifactId() );
-                setProperty( properties, "dependency." + i + ".groupId", dependency.getGroupId() );
-                setProperty( properties, "dependency." + i + ".version", dependency.getVersion() );
-                setProperty( properties, "dependency." + i + ".type", dependency.getType() );
-                setProperty( properties, "dependency." + i + ".optional", String.valueOf( dependency.isOptional() ) );
-
-                updateProjectReference( repoId, dependency.getGroupId(), dependency.getArtifactId(),
-                                        dependency.getVersion(), reference );
-
-                i++;
-            }
-            Set<String> facetIds = new LinkedHashSet<String>( versionMetadata.getFacetIds() );
-            facetIds.addAll( Arrays.asList( properties.getProperty( "facetIds", "" ).split( "," ) ) );
-            properties.setProperty( "facetIds", join( facetIds ) );
+                    i++;
+                }
+                Set<String> facetIds = new LinkedHashSet<String>( versionMetadata.getFacetIds() );
+                facetIds.addAll( Arrays.asList( properties.getProperty( "facetIds", "" ).split( "," ) ) );
+                properties.setProperty( "facetIds", join( facetIds ) );
 
-            updateProjectVersionFacets( versionMetadata, properties );
+                updateProjectVersionFacets( versionMetadata, properties );
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+                writeProjectVersionProperties( repoId, namespace, projectId, versionMetadata.getId(), properties );
+            }
         }
         catch ( IOException e )
         {
@@ -359,6 +587,63 @@ else if ( dir.getName().equals( METADATA_KEY + ".properties" ) )
         }
     }
 
+    @Override
+    public List<String> getLastMetadataFacets( String repositoryId, String facetId, String fromName, String toName,
+                                               int limit )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            File directory = getMetadataDirectory( repositoryId, facetId );
+            List<String> facets = new ArrayList<>();
+            recurseLast( facets, "", directory, fromName, toName, limit );
+            return facets;
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Same as {@link #recurse(List, String, File)} but newest first, skipping the directories outside of the range
+     * and stopping as soon as enough names are found.
+     */
+    private void recurseLast( List<String> facets, String prefix, File directory, String fromName, String toName,
+                              int limit )
+    {
+        String[] list = directory.list();
+        if ( list == null )
+        {
+            return;
+        }
+        Arrays.sort( list, Collections.reverseOrder() );
+        for ( String child : list )
+        {
+            File dir = new File( directory, child );
+            String name = prefix.isEmpty() ? child : prefix + "/" + child;
+            if ( facets.size() >= limit )
+            {
+                return;
+            }
+            if ( !dir.isDirectory() || ( toName != null && name.compareTo( toName ) >= 0 ) )
+            {
+                continue;
+            }
+            if ( fromName != null && name.compareTo( fromName ) < 0 && !fromName.startsWith( name ) )
+            {
+                // this directory and the following ones only contain older names
+                return;
+            }
+            recurseLast( facets, name, dir, fromName, toName, limit );
+            if ( facets.size() < limit && new File( dir, METADATA_KEY + ".properties" ).exists() && (
+                fromName == null || name.compareTo( fromName ) >= 0 ) )
+            {
+                facets.add( name );
+            }
+        }
+    }
+
     @Override
     public MetadataFacet getMetadataFacet( String repositoryId, String facetId, String name )
     {
@@ -449,54 +734,81 @@ public List<ArtifactMetadata> getArtifactsByDateRange( String repoId, Date start
     {
         try
         {
-            // TODO: this is quite slow - if we are to persist with this repository implementation we should build an index
-            //  of this information (eg. in Lucene, as before)
-
-            List<ArtifactMetadata> artifacts = new ArrayList<>();
-            for ( String ns : getRootNamespaces( repoId ) )
-            {
-                getArtifactsByDateRange( artifacts, repoId, ns, startTime, endTime );
-            }
+            List<ArtifactMetadata> artifacts = getArtifactsByReferences( repoId,
+                                                                         getIndex( repoId ).getByDateRange( startTime,
+                                                                                                            endTime ) );
             Collections.sort( artifacts, new ArtifactComparator() );
             return artifacts;
         }
-        catch ( MetadataResolutionException e )
+        catch ( IOException e )
         {
             throw new MetadataRepositoryException( e.getMessage(), e );
         }
     }
 
-    private void getArtifactsByDateRange( List<ArtifactMetadata> artifacts, String repoId, String ns, Date startTime,
-                                          Date endTime )
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( final String repoId, Date startTime,
+                                                                           Date endTime )
         throws MetadataRepositoryException
     {
+        final Iterator<String> refs;
         try
         {
-            for ( String namespace : getNamespaces( repoId, ns ) )
-            {
-                getArtifactsByDateRange( artifacts, repoId, ns + "." + namespace, startTime, endTime );
-            }
+            refs = getIndex( repoId ).getByDateRange( startTime, endTime ).iterator();
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+
+        return new AbstractCloseableIterator<ArtifactMetadata>()
+        {
+            // artifacts of the same project version usually follow each other
+            private String versionRef;
+
+            private Map<String, ArtifactMetadata> versionArtifacts = Collections.emptyMap();
 
-            for ( String project : getProjects( repoId, ns ) )
+            @Override
+            protected ArtifactMetadata computeNext()
             {
-                for ( String version : getProjectVersions( repoId, ns, project ) )
+                while ( refs.hasNext() )
                 {
-                    for ( ArtifactMetadata artifact : getArtifacts( repoId, ns, project, version ) )
+                    String[] parts = refs.next().split( "/", 4 );
+                    if ( parts.length < 4 )
                     {
-                        if ( startTime == null || startTime.before( artifact.getWhenGathered() ) )
+                        continue;
+                    }
+                    String ref = getVersionReference( parts[0], parts[1], parts[2] );
+                    if ( !ref.equals( versionRef ) )
+                    {
+                        versionRef = ref;
+                        versionArtifacts = new HashMap<>();
+                        for ( ArtifactMetadata artifact : getArtifactsOrFail( repoId, parts[0], parts[1], parts[2] ) )
                         {
-                            if ( endTime == null || endTime.after( artifact.getWhenGathered() ) )
-                            {
-                                artifacts.add( artifact );
-                            }
+                            versionArtifacts.put( artifact.getId(), artifact );
                         }
                     }
+                    ArtifactMetadata artifact = versionArtifacts.get( parts[3] );
+                    if ( artifact != null )
+                    {
+                        return artifact;
+                    }
                 }
+                return null;
             }
+        };
+    }
+
+    private Collection<ArtifactMetadata> getArtifactsOrFail( String repoId, String namespace, String projectId,
+                                                             String projectVersion )
+    {
+        try
+        {
+            return getArtifacts( repoId, namespace, projectId, projectVersion );
         }
         catch ( MetadataResolutionException e )
         {
-            throw new MetadataRepositoryException( e.getMessage(), e );
+            throw new MetadataRepositoryRuntimeException( e.getMessage(), e );
         }
     }
 
@@ -665,19 +977,10 @@ public List<ArtifactMetadata> getArtifactsByChecksum( String repositoryId, Strin
     {
         try
         {
-            // TODO: this is quite slow - if we are to persist with this repository implementation we should build an index
-            //  of this information (eg. in Lucene, as before)
-            // alternatively, we could build a referential tree in the content repository, however it would need some levels
-            // of depth to avoid being too broad to be useful (eg. /repository/checksums/a/ab/abcdef1234567)
-
-            List<ArtifactMetadata> artifacts = new ArrayList<>();
-            for ( String ns : getRootNamespaces( repositoryId ) )
-            {
-                getArtifactsByChecksum( artifacts, repositoryId, ns, checksum );
-            }
-            return artifacts;
+            return getArtifactsByReferences( repositoryId,
+                                             getIndex( repositoryId ).get( FileMetadataIndex.CHECKSUMS, checksum ) );
         }
-        catch ( MetadataResolutionException e )
+        catch ( IOException e )
         {
             throw new MetadataRepositoryException( e.getMessage(), e );
         }
@@ -689,6 +992,7 @@ public void removeNamespace( String repositoryId, String project )
     {
         try
         {
+            removeFromIndex( repositoryId, project, null, null );
             File namespaceDirectory = new File( getDirectory( repositoryId ), project );
             FileUtils.deleteDirectory( namespaceDirectory );
             //Properties properties = new Properties();
@@ -713,29 +1017,33 @@ public void removeArtifact( ArtifactMetadata artifactMetadata, String baseVersio
                                        artifactMetadata.getNamespace() + "/" + artifactMetadata.getProject() + "/"
                                            + baseVersion );
 
-            Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
+            synchronized ( lockProjectVersion( artifactMetadata.getRepositoryId() ) )
+            {
+                Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
 
-            String id = artifactMetadata.getId();
+                String id = artifactMetadata.getId();
 
-            properties.remove( "artifact:updated:" + id );
-            properties.remove( "artifact:whenGathered:" + id );
-            properties.remove( "artifact:size:" + id );
-            properties.remove( "artifact:md5:" + id );
-            properties.remove( "artifact:sha1:" + id );
-            properties.remove( "artifact:version:" + id );
-            properties.remove( "artifact:facetIds:" + id );
+                properties.remove( "artifact:updated:" + id );
+                properties.remove( "artifact:whenGathered:" + id );
+                properties.remove( "artifact:size:" + id );
+                properties.remove( "artifact:md5:" + id );
+                properties.remove( "artifact:sha1:" + id );
+                properties.remove( "artifact:version:" + id );
+                properties.remove( "artifact:facetIds:" + id );
 
-            String prefix = "artifact:facet:" + id + ":";
-            for ( Object key : new ArrayList( properties.keySet() ) )
-            {
-                String property = (String) key;
-                if ( property.startsWith( prefix ) )
+                String prefix = "artifact:facet:" + id + ":";
+                for ( Object key : new ArrayList( properties.keySet() ) )
                 {
-                    properties.remove( property );
+                    String property = (String) key;
+                    if ( property.startsWith( prefix ) )
+                    {
+                        properties.remove( property );
+                    }
                 }
-            }
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+                writeProjectVersionProperties( artifactMetadata.getRepositoryId(), artifactMetadata.getNamespace(),
+                                               artifactMetadata.getProject(), baseVersion, properties );
+            }
         }
         catch ( IOException e )
         {
@@ -772,6 +1080,7 @@ public void removeArtifact( String repoId, String namespace, String project, Str
                 }
             }
 
+            removeFromIndex( repoId, namespace, project, version );
             FileUtils.deleteDirectory( directory );
             //writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
         }
@@ -807,6 +1116,7 @@ public void removeRepository( String repoId )
         {
             File dir = getDirectory( repoId );
             FileUtils.deleteDirectory( dir );
+            new FileMetadataIndex( new File( getBaseDirectory( repoId ), INDEXES_DIRECTORY ) ).delete();
         }
         catch ( IOException e )
         {
@@ -814,56 +1124,25 @@ public void removeRepository( String repoId )
         }
     }
 
-    private void getArtifactsByChecksum( List<ArtifactMetadata> artifacts, String repositoryId, String ns,
-                                         String checksum )
-        throws MetadataRepositoryException
-    {
-        try
-        {
-            for ( String namespace : getNamespaces( repositoryId, ns ) )
-            {
-                getArtifactsByChecksum( artifacts, repositoryId, ns + "." + namespace, checksum );
-            }
-
-            for ( String project : getProjects( repositoryId, ns ) )
-            {
-                for ( String version : getProjectVersions( repositoryId, ns, project ) )
-                {
-                    for ( ArtifactMetadata artifact : getArtifacts( repositoryId, ns, project, version ) )
-                    {
-                        if ( checksum.equals( artifact.getMd5() ) || checksum.equals( artifact.getSha1() ) )
-                        {
-                            artifacts.add( artifact );
-                        }
-                    }
-                }
-            }
-        }
-        catch ( MetadataResolutionException e )
-        {
-            throw new MetadataRepositoryException( e.getMessage(), e );
-        }
-    }
-
     @Override
     public List<ArtifactMetadata> getArtifactsByProjectVersionMetadata( String key, String value, String repositoryId )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "not yet implemented in File backend" );
+        return getArtifactsByIndex( repositoryId, FileMetadataIndex.PROJECT_VERSION_METADATA, key, value );
     }
 
     @Override
     public List<ArtifactMetadata> getArtifactsByMetadata( String key, String value, String repositoryId )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "not yet implemented in File backend" );
+        return getArtifactsByIndex( repositoryId, FileMetadataIndex.ARTIFACT_METADATA, key, value );
     }
 
     @Override
     public List<ArtifactMetadata> getArtifactsByProperty( String key, String value, String repositoryId )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "getArtifactsByProperty not yet implemented in File backend" );
+        return getArtifactsByIndex( repositoryId, FileMetadataIndex.PROPERTIES, key, value );
     }
 
     private File getMetadataDirectory( String repoId, String facetId )
@@ -907,35 +1186,38 @@ public void updateArtifact( String repoId, String namespace, String projectId, S
 
             File directory = new File( getDirectory( repoId ), namespace + "/" + projectId + "/" + projectVersion );
 
-            Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
-
-            clearMetadataFacetProperties( artifact.getFacetList(), properties,
-                                          "artifact:facet:" + artifact.getId() + ":" );
-
-            String id = artifact.getId();
-            properties.setProperty( "artifact:updated:" + id,
-                                    Long.toString( artifact.getFileLastModified().getTime() ) );
-            properties.setProperty( "artifact:whenGathered:" + id,
-                                    Long.toString( artifact.getWhenGathered().getTime() ) );
-            properties.setProperty( "artifact:size:" + id, Long.toString( artifact.getSize() ) );
-            if ( artifact.getMd5() != null )
+            synchronized ( lockProjectVersion( repoId ) )
             {
-                properties.setProperty( "artifact:md5:" + id, artifact.getMd5() );
-            }
-            if ( artifact.getSha1() != null )
-            {
-                properties.setProperty( "artifact:sha1:" + id, artifact.getSha1() );
-            }
-            properties.setProperty( "artifact:version:" + id, artifact.getVersion() );
+                Properties properties = readOrCreateProperties( directory, PROJECT_VERSION_METADATA_KEY );
+
+                clearMetadataFacetProperties( artifact.getFacetList(), properties,
+                                              "artifact:facet:" + artifact.getId() + ":" );
+
+                String id = artifact.getId();
+                properties.setProperty( "artifact:updated:" + id,
+                                        Long.toString( artifact.getFileLastModified().getTime() ) );
+                properties.setProperty( "artifact:whenGathered:" + id,
+                                        Long.toString( artifact.getWhenGathered().getTime() ) );
+                properties.setProperty( "artifact:size:" + id, Long.toString( artifact.getSize() ) );
+                if ( artifact.getMd5() != null )
+                {
+                    properties.setProperty( "artifact:md5:" + id, artifact.getMd5() );
+                }
+                if ( artifact.getSha1() != null )
+                {
+                    properties.setProperty( "artifact:sha1:" + id, artifact.getSha1() );
+                }
+                properties.setProperty( "artifact:version:" + id, artifact.getVersion() );
 
-            Set<String> facetIds = new LinkedHashSet<String>( artifact.getFacetIds() );
-            String property = "artifact:facetIds:" + id;
-            facetIds.addAll( Arrays.asList( properties.getProperty( property, "" ).split( "," ) ) );
-            properties.setProperty( property, join( facetIds ) );
+                Set<String> facetIds = new LinkedHashSet<String>( artifact.getFacetIds() );
+                String property = "artifact:facetIds:" + id;
+                facetIds.addAll( Arrays.asList( properties.getProperty( property, "" ).split( "," ) ) );
+                properties.setProperty( property, join( facetIds ) );
 
-            updateArtifactFacets( artifact, properties );
+                updateArtifactFacets( artifact, properties );
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+                writeProjectVersionProperties( repoId, namespace, projectId, projectVersion, properties );
+            }
         }
         catch ( IOException e )
         {
@@ -1355,6 +1637,7 @@ public void removeProject( String repositoryId, String namespace, String project
     {
         try
         {
+            removeFromIndex( repositoryId, namespace, projectId, null );
             File directory = new File( getDirectory( repositoryId ), namespace + "/" + projectId );
             FileUtils.deleteDirectory( directory );
         }
@@ -1370,6 +1653,7 @@ public void removeProjectVersion( String repoId, String namespace, String projec
     {
         try
         {
+            removeFromIndex( repoId, namespace, projectId, projectVersion );
             File directory = new File( getDirectory( repoId ), namespace + "/" + projectId + "/" + projectVersion );
             FileUtils.deleteDirectory( directory );
         }
@@ -1451,17 +1735,121 @@ private void getArtifacts( List<ArtifactMetadata> artifacts, String repoId, Stri
         }
     }
 
+    /**
+     * Walks the content tree lazily, holding the artifacts of a single project version at a time.
+     */
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifacts( final String repoId )
+        throws MetadataRepositoryException
+    {
+        final Iterator<String> namespaces;
+        try
+        {
+            List<String> allNamespaces = new ArrayList<>();
+            File[] files = getDirectory( repoId ).listFiles();
+            if ( files != null )
+            {
+                for ( File namespace : files )
+                {
+                    if ( new File( namespace, NAMESPACE_METADATA_KEY + ".properties" ).exists() )
+                    {
+                        allNamespaces.add( namespace.getName() );
+                    }
+                }
+            }
+            namespaces = allNamespaces.iterator();
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+
+        return new AbstractCloseableIterator<ArtifactMetadata>()
+        {
+            private String namespace;
+
+            private String project;
+
+            private Iterator<String> projects = Collections.emptyIterator();
+
+            private Iterator<String> versions = Collections.emptyIterator();
+
+            private Iterator<ArtifactMetadata> artifacts = Collections.emptyIterator();
+
+            @Override
+            protected ArtifactMetadata computeNext()
+            {
+                try
+                {
+                    while ( !artifacts.hasNext() )
+                    {
+                        if ( versions.hasNext() )
+                        {
+                            artifacts = getArtifacts( repoId, namespace, project, versions.next() ).iterator();
+                        }
+                        else if ( projects.hasNext() )
+                        {
+                            project = projects.next();
+                            versions = getProjectVersions( repoId, namespace, project ).iterator();
+                        }
+                        else if ( namespaces.hasNext() )
+                        {
+                            namespace = namespaces.next();
+                            projects = getProjects( repoId, namespace ).iterator();
+                        }
+                        else
+                        {
+                            return null;
+                        }
+                    }
+                    return artifacts.next();
+                }
+                catch ( MetadataResolutionException e )
+                {
+                    throw new MetadataRepositoryRuntimeException( e.getMessage(), e );
+                }
+            }
+        };
+    }
+
+    /**
+     * Exact is ignored as we can't do exact search in any property, we need a key
+     */
     @Override
     public List<ArtifactMetadata> searchArtifacts( String text, String repositoryId, boolean exact )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "searchArtifacts not yet implemented in File backend" );
+        return searchArtifacts( null, text, repositoryId, exact );
     }
 
     @Override
     public List<ArtifactMetadata> searchArtifacts( String key, String text, String repositoryId, boolean exact )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "searchArtifacts not yet implemented in File backend" );
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        try
+        {
+            for ( String repoId : getRepositoryIds( repositoryId ) )
+            {
+                FileMetadataIndex index = getIndex( repoId );
+                Set<String> refs;
+                // we can't do exact search in any property, we need a key
+                if ( exact && key != null )
+                {
+                    refs = index.get( FileMetadataIndex.PROPERTIES, key, text );
+                    refs.addAll( index.get( FileMetadataIndex.PROJECT_VERSION_METADATA, key, text ) );
+                }
+                else
+                {
+                    refs = index.search( key, text );
+                }
+                artifacts.addAll( getArtifactsByReferences( repoId, refs ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+        return artifacts;
     }
 }
@@ -20,10 +20,12 @@
  */
 
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataResolver;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.commons.lang.StringUtils;
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.springframework.context.ApplicationContext;
@@ -60,6 +62,10 @@
     @Inject
     private MetadataResolver metadataResolver;
 
+    @Inject
+    @Named( value = "cache#projectVersionMetadata" )
+    private Cache<String, ProjectVersionMetadata> projectVersionMetadataCache;
+
     @Inject
     private ApplicationContext applicationContext;
 
@@ -85,6 +91,6 @@ public RepositorySession createSession()
     {
         MetadataRepository metadataRepository = new FileMetadataRepository( metadataFacetFactories, configuration );
 
-        return new RepositorySession( metadataRepository, metadataResolver );
+        return new RepositorySession( metadataRepository, metadataResolver, projectVersionMetadataCache );
     }
 }
@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
 import org.apache.archiva.metadata.repository.AbstractMetadataRepositoryTest;
 import org.apache.commons.io.FileUtils;
@@ -26,17 +27,20 @@
 import org.apache.archiva.configuration.Configuration;
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.junit.Before;
-import org.junit.Ignore;
+import org.junit.Test;
 
 import java.io.File;
+import java.util.Date;
 import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class FileMetadataRepositoryTest
     extends AbstractMetadataRepositoryTest
 {
+    private File directory;
 
     @Before
     @Override
@@ -45,7 +49,7 @@ public void setUp()
     {
         super.setUp();
 
-        File directory = new File( "target/test-repositories" );
+        directory = new File( "target/test-repositories" );
         if (directory.exists())
         {
             FileUtils.deleteDirectory( directory );
@@ -56,100 +60,34 @@ public void setUp()
         this.repository = new FileMetadataRepository( factories, config );
     }
 
-    @Override
-    @Ignore
-    public void testGetArtifactsByProjectVersionMetadata()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testGetArtifactsByProjectVersionMetadataNoRepository()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testGetArtifactsByProjectVersionMetadataAllRepositories()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testGetArtifactsByMetadataAllRepositories()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testGetArtifactsByPropertySingleResult()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsByKey()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsByKeyExact()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsFullText()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsFullTextExact()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsByFacetKeyAllRepos()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsByFacetKey()
-        throws Exception
-    {
-        // TODO not implemented
-    }
-
-    @Override
-    @Ignore
-    public void testSearchArtifactsFullTextByFacet()
+    @Test
+    public void testIndexRebuiltFromContent()
         throws Exception
     {
-        // TODO not implemented
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setId( TEST_PROJECT + "-" + TEST_PROJECT_VERSION + ".jar" );
+        artifact.setWhenGathered( new Date() );
+        artifact.setNamespace( TEST_NAMESPACE );
+        artifact.setProject( TEST_PROJECT );
+        artifact.setRepositoryId( TEST_REPO_ID );
+        artifact.setFileLastModified( System.currentTimeMillis() );
+        artifact.setVersion( TEST_PROJECT_VERSION );
+        artifact.setProjectVersion( TEST_PROJECT_VERSION );
+        artifact.setSha1( "0123456789abcdef0123456789abcdef01234567" );
+        repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, artifact );
+
+        File indexes = new File( directory, TEST_REPO_ID + "/.archiva/indexes" );
+        assertTrue( indexes.exists() );
+        FileUtils.deleteDirectory( indexes );
+
+        assertThat( repository.getArtifactsByChecksum( TEST_REPO_ID, artifact.getSha1() ) ).containsExactly(
+            artifact );
+        assertThat( repository.getArtifactsByDateRange( TEST_REPO_ID, null, null ) ).containsExactly( artifact );
+
+        repository.removeArtifact( artifact, TEST_PROJECT_VERSION );
+
+        assertThat( repository.getArtifactsByChecksum( TEST_REPO_ID, artifact.getSha1() ) ).isEmpty();
+        assertThat( repository.getArtifactsByDateRange( TEST_REPO_ID, null, null ) ).isEmpty();
     }
 
     protected static ArchivaConfiguration createTestConfiguration( File directory )
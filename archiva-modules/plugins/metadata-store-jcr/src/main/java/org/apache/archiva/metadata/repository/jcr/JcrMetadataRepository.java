@@ -32,8 +32,11 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
+import org.apache.archiva.metadata.repository.AbstractCloseableIterator;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.MetadataRepositoryRuntimeException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.commons.JcrUtils;
@@ -69,11 +72,13 @@
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * TODO below: revise storage format for project version metadata
@@ -97,6 +102,8 @@
 
     private static final String DEPENDENCY_NODE_TYPE = "archiva:dependency";
 
+    private static final int QUERY_CACHE_SIZE = 100;
+
     private final Map<String, MetadataFacetFactory> metadataFacetFactories;
 
     private Logger log = LoggerFactory.getLogger( JcrMetadataRepository.class );
@@ -105,6 +112,19 @@
 
     private Session jcrSession;
 
+    /**
+     * Parsed queries of the current session, keyed by their JCR-SQL2 statement. Values are given through bind
+     * variables so that each query shape is only parsed once per session.
+     */
+    private final Map<String, Query> queryCache = new LinkedHashMap<String, Query>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, Query> eldest )
+        {
+            return size() > QUERY_CACHE_SIZE;
+        }
+    };
+
     public JcrMetadataRepository( Map<String, MetadataFacetFactory> metadataFacetFactories, Repository repository )
         throws RepositoryException
     {
@@ -477,6 +497,72 @@ private void recurse( List<String> facets, String prefix, Node node )
         }
     }
 
+    @Override
+    public List<String> getLastMetadataFacets( String repositoryId, String facetId, String fromName, String toName,
+                                               int limit )
+        throws MetadataRepositoryException
+    {
+        List<String> facets = new ArrayList<>();
+
+        try
+        {
+            Node node = getJcrSession().getRootNode().getNode( getFacetPath( repositoryId, facetId ) );
+            recurseLast( facets, "", node, fromName, toName, limit );
+        }
+        catch ( PathNotFoundException e )
+        {
+            // ignored - the facet doesn't exist, so return the empty list
+        }
+        catch ( RepositoryException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+        return facets;
+    }
+
+    /**
+     * Same as {@link #recurse(List, String, Node)} but newest first, skipping the nodes outside of the range and
+     * stopping as soon as enough names are found.
+     */
+    private void recurseLast( List<String> facets, String prefix, Node node, String fromName, String toName,
+                              int limit )
+        throws RepositoryException
+    {
+        // child nodes come in insertion order
+        Map<String, Node> children = new TreeMap<>( Collections.reverseOrder() );
+        for ( Node n : JcrUtils.getChildNodes( node ) )
+        {
+            children.put( n.getName(), n );
+        }
+
+        for ( Map.Entry<String, Node> entry : children.entrySet() )
+        {
+            String name = prefix.isEmpty() ? entry.getKey() : prefix + "/" + entry.getKey();
+            if ( facets.size() >= limit )
+            {
+                return;
+            }
+            if ( toName != null && name.compareTo( toName ) >= 0 )
+            {
+                continue;
+            }
+            if ( fromName != null && name.compareTo( fromName ) < 0 && !fromName.startsWith( name ) )
+            {
+                // this node and the following ones only contain older names
+                return;
+            }
+            Node n = entry.getValue();
+            if ( n.hasNodes() )
+            {
+                recurseLast( facets, name, n, fromName, toName, limit );
+            }
+            else if ( fromName == null || name.compareTo( fromName ) >= 0 )
+            {
+                facets.add( name );
+            }
+        }
+    }
+
     @Override
     public MetadataFacet getMetadataFacet( String repositoryId, String facetId, String name )
         throws MetadataRepositoryException
@@ -619,6 +705,42 @@ public List<ArtifactMetadata> getArtifactsByDateRange( String repoId, Date start
     {
         List<ArtifactMetadata> artifacts;
 
+        try
+        {
+            QueryResult result = createArtifactsByDateRangeQuery( repoId, startTime, endTime ).execute();
+
+            artifacts = new ArrayList<>();
+            for ( Node n : JcrUtils.getNodes( result ) )
+            {
+                artifacts.add( getArtifactFromNode( repoId, n ) );
+            }
+        }
+        catch ( RepositoryException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+        return artifacts;
+    }
+
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifactsByDateRange( String repoId, Date startTime,
+                                                                           Date endTime )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            QueryResult result = createArtifactsByDateRangeQuery( repoId, startTime, endTime ).execute();
+            return new ArtifactNodeIterator( repoId, result.getNodes() );
+        }
+        catch ( RepositoryException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    private Query createArtifactsByDateRangeQuery( String repoId, Date startTime, Date endTime )
+        throws RepositoryException
+    {
         String q = getArtifactQuery( repoId );
 
         if ( startTime != null )
@@ -630,31 +752,17 @@ public List<ArtifactMetadata> getArtifactsByDateRange( String repoId, Date start
             q += " AND [whenGathered] <= $end";
         }
 
-        try
+        Query query = getQuery( q );
+        ValueFactory valueFactory = getJcrSession().getValueFactory();
+        if ( startTime != null )
         {
-            Query query = getJcrSession().getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
-            ValueFactory valueFactory = getJcrSession().getValueFactory();
-            if ( startTime != null )
-            {
-                query.bindValue( "start", valueFactory.createValue( createCalendar( startTime ) ) );
-            }
-            if ( endTime != null )
-            {
-                query.bindValue( "end", valueFactory.createValue( createCalendar( endTime ) ) );
-            }
-            QueryResult result = query.execute();
-
-            artifacts = new ArrayList<>();
-            for ( Node n : JcrUtils.getNodes( result ) )
-            {
-                artifacts.add( getArtifactFromNode( repoId, n ) );
-            }
+            query.bindValue( "start", valueFactory.createValue( createCalendar( startTime ) ) );
         }
-        catch ( RepositoryException e )
+        if ( endTime != null )
         {
-            throw new MetadataRepositoryException( e.getMessage(), e );
+            query.bindValue( "end", valueFactory.createValue( createCalendar( endTime ) ) );
         }
-        return artifacts;
+        return query;
     }
 
     @Override
@@ -700,7 +808,7 @@ public List<ArtifactMetadata> getArtifactsByChecksum( String repositoryId, Strin
 
         try
         {
-            Query query = getJcrSession().getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
+            Query query = getQuery( q );
             ValueFactory valueFactory = getJcrSession().getValueFactory();
             query.bindValue( "checksum", valueFactory.createValue( checksum ) );
             QueryResult result = query.execute();
@@ -731,7 +839,7 @@ private List<ArtifactMetadata> runJcrQuery( String repositoryId, String q, Map<S
 
         try
         {
-            Query query = getJcrSession().getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
+            Query query = getQuery( q );
             ValueFactory valueFactory = getJcrSession().getValueFactory();
             for ( Entry<String, String> entry : bindings.entrySet() )
             {
@@ -825,7 +933,7 @@ public List<ArtifactMetadata> getArtifacts( String repositoryId )
 
         try
         {
-            Query query = getJcrSession().getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
+            Query query = getQuery( q );
             QueryResult result = query.execute();
 
             artifacts = new ArrayList<>();
@@ -844,6 +952,59 @@ public List<ArtifactMetadata> getArtifacts( String repositoryId )
         return artifacts;
     }
 
+    @Override
+    public CloseableIterator<ArtifactMetadata> streamArtifacts( String repositoryId )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            Query query = getQuery( getArtifactQuery( repositoryId ) );
+            return new ArtifactNodeIterator( repositoryId, query.execute().getNodes() );
+        }
+        catch ( RepositoryException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Maps the nodes of a query result to artifacts while iterating, rather than loading the whole result.
+     */
+    private class ArtifactNodeIterator
+        extends AbstractCloseableIterator<ArtifactMetadata>
+    {
+        private final String repositoryId;
+
+        private final NodeIterator nodes;
+
+        ArtifactNodeIterator( String repositoryId, NodeIterator nodes )
+        {
+            this.repositoryId = repositoryId;
+            this.nodes = nodes;
+        }
+
+        @Override
+        protected ArtifactMetadata computeNext()
+        {
+            try
+            {
+                while ( nodes.hasNext() )
+                {
+                    Node node = nodes.nextNode();
+                    if ( node.isNodeType( ARTIFACT_NODE_TYPE ) )
+                    {
+                        return getArtifactFromNode( repositoryId, node );
+                    }
+                }
+                return null;
+            }
+            catch ( RepositoryException e )
+            {
+                throw new MetadataRepositoryRuntimeException( e.getMessage(), e );
+            }
+        }
+    }
+
     private static String getArtifactQuery( String repositoryId )
     {
         return "SELECT * FROM [" + ARTIFACT_NODE_TYPE + "] AS artifact WHERE ISDESCENDANTNODE(artifact,'/" +
@@ -1094,16 +1255,22 @@ public Collection<ProjectVersionReference> getProjectReferences( String reposito
 
         List<ProjectVersionReference> references = new ArrayList<>();
 
-        // TODO: bind variables instead
         String q = "SELECT * FROM [archiva:dependency] WHERE ISDESCENDANTNODE([/repositories/" + repositoryId +
-            "/content]) AND [groupId]='" + namespace + "' AND [artifactId]='" + projectId + "'";
+            "/content]) AND [groupId] = $groupId AND [artifactId] = $artifactId";
         if ( projectVersion != null )
         {
-            q += " AND [version]='" + projectVersion + "'";
+            q += " AND [version] = $version";
         }
         try
         {
-            Query query = getJcrSession().getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
+            Query query = getQuery( q );
+            ValueFactory valueFactory = getJcrSession().getValueFactory();
+            query.bindValue( "groupId", valueFactory.createValue( namespace ) );
+            query.bindValue( "artifactId", valueFactory.createValue( projectId ) );
+            if ( projectVersion != null )
+            {
+                query.bindValue( "version", valueFactory.createValue( projectVersion ) );
+            }
             QueryResult result = query.execute();
 
             for ( Node n : JcrUtils.getNodes( result ) )
@@ -1400,6 +1567,7 @@ public <T>T obtainAccess( Class<T> aClass )
     public void close()
         throws MetadataRepositoryException
     {
+        queryCache.clear();
         if ( jcrSession != null && jcrSession.isLive() )
         {
             jcrSession.logout();
@@ -1690,8 +1858,27 @@ public Session getJcrSession()
     {
         if ( this.jcrSession == null || !this.jcrSession.isLive() )
         {
+            // queries are bound to the session that created them
+            queryCache.clear();
             jcrSession = repository.login( new SimpleCredentials( "admin", "admin".toCharArray() ) );
         }
         return this.jcrSession;
     }
+
+    /**
+     * Returns the parsed query for the given JCR-SQL2 statement, reusing the one of a previous call in this session.
+     * Callers must bind every variable of the statement before executing it.
+     */
+    private Query getQuery( String q )
+        throws RepositoryException
+    {
+        Session session = getJcrSession();
+        Query query = queryCache.get( q );
+        if ( query == null )
+        {
+            query = session.getWorkspace().getQueryManager().createQuery( q, Query.JCR_SQL2 );
+            queryCache.put( q, query );
+        }
+        return query;
+    }
 }
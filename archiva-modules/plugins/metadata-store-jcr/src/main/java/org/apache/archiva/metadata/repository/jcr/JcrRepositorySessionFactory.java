@@ -20,11 +20,13 @@
  */
 
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataResolver;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
 import org.apache.archiva.metadata.repository.RepositorySessionFactoryBean;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.StopWatch;
 import org.slf4j.Logger;
@@ -34,6 +36,7 @@
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import java.util.HashMap;
@@ -60,6 +63,10 @@
     @Inject
     private MetadataResolver metadataResolver;
 
+    @Inject
+    @Named(value = "cache#projectVersionMetadata")
+    private Cache<String, ProjectVersionMetadata> projectVersionMetadataCache;
+
     @Inject
     private RepositorySessionFactoryBean repositorySessionFactoryBean;
 
@@ -75,7 +82,7 @@ public RepositorySession createSession()
             //  API.
             MetadataRepository metadataRepository = new JcrMetadataRepository( metadataFacetFactories, repository );
 
-            return new RepositorySession( metadataRepository, metadataResolver );
+            return new RepositorySession( metadataRepository, metadataResolver, projectVersionMetadataCache );
         }
         catch ( RepositoryException e )
         {
@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.facets.RepositoryProblemFacet;
 import org.apache.archiva.metadata.repository.MetadataRepository;
@@ -77,6 +78,19 @@ public void addArtifact( RepositorySession session, String repoId, String namesp
         }
     }
 
+    @Override
+    public void updateArtifact( RepositorySession session, String repoId, String namespace, String projectId,
+                                String projectVersion, ArtifactMetadata artifact )
+    {
+        // problems are tracked per project version, see addArtifact
+    }
+
+    @Override
+    public void completeScan( RepositorySession session, String repoId )
+    {
+        // no op
+    }
+
     @Override
     public void addArtifactProblem( RepositorySession session, String repoId, String namespace, String projectId,
                                     String projectVersion, RepositoryStorageMetadataException exception )
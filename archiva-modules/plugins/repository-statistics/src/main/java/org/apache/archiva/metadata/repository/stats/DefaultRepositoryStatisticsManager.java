@@ -40,6 +40,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -59,6 +60,11 @@
 
     private static final TimeZone UTC_TIME_ZONE = TimeZone.getTimeZone( "UTC" );
 
+    /**
+     * how often, in hours, the running totals are rebuilt from the repository content after a scan
+     */
+    private int reconciliationInterval = Integer.getInteger( "archiva.repository.statistics.reconciliationInterval", 24 );
+
     @Override
     public boolean hasStatistics( MetadataRepository metadataRepository, String repositoryId )
         throws MetadataRepositoryException
@@ -72,16 +78,15 @@ public RepositoryStatistics getLastStatistics( MetadataRepository metadataReposi
     {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
-        // TODO: consider a more efficient implementation that directly gets the last one from the content repository
-        List<String> scans = metadataRepository.getMetadataFacets( repositoryId, RepositoryStatistics.FACET_ID );
+        List<String> scans =
+            metadataRepository.getLastMetadataFacets( repositoryId, RepositoryStatistics.FACET_ID, null, null, 1 );
         if ( scans == null )
         {
             return null;
         }
-        Collections.sort( scans );
         if ( !scans.isEmpty() )
         {
-            String name = scans.get( scans.size() - 1 );
+            String name = scans.get( 0 );
             RepositoryStatistics repositoryStatistics =
                 RepositoryStatistics.class.cast( metadataRepository.getMetadataFacet( repositoryId, RepositoryStatistics.FACET_ID,
                                                                             name ));
@@ -145,13 +150,40 @@ public void addStatisticsAfterScan( MetadataRepository metadataRepository, Strin
         repositoryStatistics.setTotalFileCount( totalFiles );
         repositoryStatistics.setNewFileCount( newFiles );
 
-        // TODO
-        // In the future, instead of being tied to a scan we might want to record information in the fly based on
-        // events that are occurring. Even without these totals we could query much of the information on demand based
-        // on information from the metadata content repository. In the mean time, we lock information in at scan time.
-        // Note that if new types are later discoverable due to a code change or new plugin, historical stats will not
-        // be updated and the repository will need to be rescanned.
+        // The totals are maintained by RepositoryStatisticsEventListener as artifacts are stored and deleted, the
+        // repository content is only gathered again when they are missing or due for reconciliation, which also
+        // corrects changes made without events (eg. removing a whole project). Note that if new types are later
+        // discoverable due to a code change or new plugin, they will only be counted from the next reconciliation.
+        RepositoryStatisticsTotals totals =
+            (RepositoryStatisticsTotals) metadataRepository.getMetadataFacet( repositoryId,
+                                                                              RepositoryStatisticsTotals.FACET_ID,
+                                                                              RepositoryStatisticsTotals.NAME );
+        if ( totals == null || isReconciliationDue( totals ) )
+        {
+            reconcileStatistics( metadataRepository, repositoryId, repositoryStatistics );
+        }
+        else
+        {
+            totals.copyTo( repositoryStatistics );
+        }
+
+        metadataRepository.addMetadataFacet( repositoryId, repositoryStatistics );
+    }
+
+    private boolean isReconciliationDue( RepositoryStatisticsTotals totals )
+    {
+        return totals.getLastReconciled() == null
+            || System.currentTimeMillis() - totals.getLastReconciled().getTime() >= TimeUnit.HOURS.toMillis(
+            reconciliationInterval );
+    }
 
+    /**
+     * Gather the totals from the repository content and store them as the new running totals.
+     */
+    private void reconcileStatistics( MetadataRepository metadataRepository, String repositoryId,
+                                      RepositoryStatistics repositoryStatistics )
+        throws MetadataRepositoryException
+    {
         long startGather = System.currentTimeMillis();
 
         // FIXME what about other implementations ?
@@ -165,25 +197,21 @@ public void addStatisticsAfterScan( MetadataRepository metadataRepository, Strin
         }
         else
         {
-            // TODO:
-            //   if the file repository is used more permanently, we may seek a more efficient mechanism - e.g. we could
-            //   build an index, or store the aggregate information and update it on the fly. We can perhaps even walk
-            //   but retrieve less information to speed it up. In the mean time, we walk the repository using the
-            //   standard APIs
+            // TODO: we can perhaps walk but retrieve less information to speed it up. In the mean time, we walk the
+            //   repository using the standard APIs
             populateStatisticsFromRepositoryWalk( metadataRepository, repositoryId, repositoryStatistics );
         }
 
         log.info( "Gathering statistics executed in {} ms",  ( System.currentTimeMillis() - startGather ) );
 
-        metadataRepository.addMetadataFacet( repositoryId, repositoryStatistics );
+        metadataRepository.addMetadataFacet( repositoryId,
+                                             new RepositoryStatisticsTotals( repositoryStatistics, new Date() ) );
     }
 
     private void populateStatisticsFromJcr( Session session, String repositoryId,
                                             RepositoryStatistics repositoryStatistics )
         throws MetadataRepositoryException
     {
-        // TODO: these may be best as running totals, maintained by observations on the properties in JCR
-
         try
         {
             QueryManager queryManager = session.getWorkspace().getQueryManager();
@@ -270,6 +298,7 @@ public void deleteStatistics( MetadataRepository metadataRepository, String repo
         throws MetadataRepositoryException
     {
         metadataRepository.removeMetadataFacets( repositoryId, RepositoryStatistics.FACET_ID );
+        metadataRepository.removeMetadataFacets( repositoryId, RepositoryStatisticsTotals.FACET_ID );
     }
 
     @Override
@@ -304,6 +333,16 @@ public List<RepositoryStatistics> getStatisticsInRange( MetadataRepository metad
         return results;
     }
 
+    public int getReconciliationInterval()
+    {
+        return reconciliationInterval;
+    }
+
+    public void setReconciliationInterval( int reconciliationInterval )
+    {
+        this.reconciliationInterval = reconciliationInterval;
+    }
+
     private static SimpleDateFormat createNameFormat()
     {
         SimpleDateFormat fmt = new SimpleDateFormat( RepositoryStatistics.SCAN_TIMESTAMP_FORMAT );
@@ -0,0 +1,321 @@
+package org.apache.archiva.metadata.repository.stats;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.VersionUtil;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.metadata.repository.MetadataRepository;
+import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.MetadataResolutionException;
+import org.apache.archiva.metadata.repository.RepositorySession;
+import org.apache.archiva.metadata.repository.storage.RepositoryStorageMetadataException;
+import org.apache.archiva.repository.events.RepositoryListener;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maintain the {@link RepositoryStatisticsTotals} of a repository as artifacts are stored and deleted. The changes
+ * of the artifacts stored during a scan are counted in memory and added to the totals once the scan completes, a
+ * deleted artifact is counted out right away. Nothing is recorded until the totals have been gathered once from the
+ * repository content, after the first scan.
+ *
+ * @since 2.2.2
+ */
+@Service( "repositoryListener#repository-statistics" )
+public class RepositoryStatisticsEventListener
+    implements RepositoryListener
+{
+    private static final Logger log = LoggerFactory.getLogger( RepositoryStatisticsEventListener.class );
+
+    /**
+     * changes not yet added to the totals per repository id, each one also being the lock of its repository totals
+     */
+    private final ConcurrentMap<String, PendingTotals> pendingTotals = new ConcurrentHashMap<>();
+
+    @Override
+    public void deleteArtifact( MetadataRepository metadataRepository, String repositoryId, String namespace,
+                                String project, String version, String id )
+    {
+        PendingTotals pending = getPendingTotals( repositoryId );
+        synchronized ( pending )
+        {
+            try
+            {
+                if ( !pending.hasTotals( metadataRepository, repositoryId ) )
+                {
+                    return;
+                }
+
+                String projectVersion = VersionUtil.getBaseVersion( version );
+                Collection<ArtifactMetadata> artifacts =
+                    metadataRepository.getArtifacts( repositoryId, namespace, project, projectVersion );
+                ArtifactMetadata artifact = findArtifact( artifacts, id );
+                if ( artifact == null )
+                {
+                    return;
+                }
+
+                pending.delta.addArtifact( artifact, -1 );
+                if ( artifacts.size() == 1
+                    && metadataRepository.getProjectVersions( repositoryId, namespace, project ).size() <= 1 )
+                {
+                    // the last artifact of the project is going away
+                    pending.delta.setTotalProjectCount( pending.delta.getTotalProjectCount() - 1 );
+                    if ( metadataRepository.getProjects( repositoryId, namespace ).size() <= 1 )
+                    {
+                        pending.delta.setTotalGroupCount( pending.delta.getTotalGroupCount() - 1 );
+                    }
+                }
+                pending.changed = true;
+
+                // deletes don't come with a scan completing after them
+                applyPendingTotals( metadataRepository, repositoryId, pending );
+            }
+            catch ( MetadataRepositoryException | MetadataResolutionException e )
+            {
+                log.warn( "Unable to update the statistics of repository {} for a deleted artifact: {}",
+                          repositoryId, e.getMessage(), e );
+            }
+        }
+    }
+
+    @Override
+    public void addArtifact( RepositorySession session, String repoId, String namespace, String projectId,
+                             ProjectVersionMetadata metadata )
+    {
+        // totals are counted per artifact, see updateArtifact
+    }
+
+    @Override
+    public void updateArtifact( RepositorySession session, String repoId, String namespace, String projectId,
+                                String projectVersion, ArtifactMetadata artifact )
+    {
+        MetadataRepository metadataRepository = session.getRepository();
+        PendingTotals pending = getPendingTotals( repoId );
+        synchronized ( pending )
+        {
+            try
+            {
+                if ( !pending.hasTotals( metadataRepository, repoId ) )
+                {
+                    return;
+                }
+
+                Map<String, ArtifactMetadata> artifacts =
+                    pending.getArtifacts( metadataRepository, repoId, namespace, projectId, projectVersion );
+                ArtifactMetadata previous = artifacts.get( artifact.getId() );
+                if ( previous != null )
+                {
+                    if ( previous.getSize() == artifact.getSize() && StringUtils.equals(
+                        RepositoryStatisticsTotals.getType( previous ),
+                        RepositoryStatisticsTotals.getType( artifact ) ) )
+                    {
+                        // the usual case when rescanning, nothing to count
+                        return;
+                    }
+                    pending.delta.addArtifact( previous, -1 );
+                }
+                else if ( artifacts.isEmpty() )
+                {
+                    Collection<String> projects = metadataRepository.getProjects( repoId, namespace );
+                    if ( !projects.contains( projectId ) )
+                    {
+                        pending.delta.setTotalProjectCount( pending.delta.getTotalProjectCount() + 1 );
+                        if ( projects.isEmpty() )
+                        {
+                            pending.delta.setTotalGroupCount( pending.delta.getTotalGroupCount() + 1 );
+                        }
+                    }
+                }
+                pending.delta.addArtifact( artifact, 1 );
+                pending.changed = true;
+                artifacts.put( artifact.getId(), artifact );
+            }
+            catch ( MetadataRepositoryException | MetadataResolutionException e )
+            {
+                log.warn( "Unable to update the statistics of repository {} for artifact {}: {}", repoId,
+                          artifact.getId(), e.getMessage(), e );
+            }
+        }
+    }
+
+    @Override
+    public void completeScan( RepositorySession session, String repoId )
+    {
+        PendingTotals pending = getPendingTotals( repoId );
+        synchronized ( pending )
+        {
+            try
+            {
+                if ( applyPendingTotals( session.getRepository(), repoId, pending ) )
+                {
+                    session.markDirty();
+                }
+            }
+            catch ( MetadataRepositoryException e )
+            {
+                log.warn( "Unable to update the statistics of repository {} after a scan: {}", repoId,
+                          e.getMessage(), e );
+            }
+        }
+    }
+
+    @Override
+    public void addArtifactProblem( RepositorySession session, String repoId, String namespace, String projectId,
+                                    String projectVersion, RepositoryStorageMetadataException exception )
+    {
+        // no op
+    }
+
+    private PendingTotals getPendingTotals( String repositoryId )
+    {
+        PendingTotals pending = pendingTotals.get( repositoryId );
+        if ( pending == null )
+        {
+            pending = new PendingTotals();
+            PendingTotals previous = pendingTotals.putIfAbsent( repositoryId, pending );
+            if ( previous != null )
+            {
+                pending = previous;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Add the pending changes to the stored totals, the changes are dropped even if it fails as the next
+     * reconciliation corrects the totals. Callers synchronize on <code>pending</code>.
+     *
+     * @return <code>true</code> if the totals were written
+     */
+    private static boolean applyPendingTotals( MetadataRepository metadataRepository, String repositoryId,
+                                               PendingTotals pending )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            if ( !pending.changed )
+            {
+                return false;
+            }
+            RepositoryStatisticsTotals totals = getTotals( metadataRepository, repositoryId );
+            if ( totals == null )
+            {
+                return false;
+            }
+            totals.add( pending.delta );
+            metadataRepository.addMetadataFacet( repositoryId, totals );
+            return true;
+        }
+        finally
+        {
+            pending.reset();
+        }
+    }
+
+    private static RepositoryStatisticsTotals getTotals( MetadataRepository metadataRepository, String repositoryId )
+        throws MetadataRepositoryException
+    {
+        return (RepositoryStatisticsTotals) metadataRepository.getMetadataFacet( repositoryId,
+                                                                                 RepositoryStatisticsTotals.FACET_ID,
+                                                                                 RepositoryStatisticsTotals.NAME );
+    }
+
+    private static ArtifactMetadata findArtifact( Collection<ArtifactMetadata> artifacts, String id )
+    {
+        for ( ArtifactMetadata artifact : artifacts )
+        {
+            if ( artifact.getId().equals( id ) )
+            {
+                return artifact;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Changes of the totals of a repository since they were last written, with what is read once per scan rather
+     * than once per artifact.
+     */
+    private static class PendingTotals
+    {
+        private RepositoryStatisticsTotals delta = new RepositoryStatisticsTotals();
+
+        private boolean changed;
+
+        /**
+         * whether the totals exist, <code>null</code> until read
+         */
+        private Boolean totalsExist;
+
+        private String projectVersionKey;
+
+        /**
+         * artifacts of the project version last updated, the scan processing the files of a version one after another
+         */
+        private Map<String, ArtifactMetadata> projectVersionArtifacts;
+
+        boolean hasTotals( MetadataRepository metadataRepository, String repositoryId )
+            throws MetadataRepositoryException
+        {
+            if ( totalsExist == null )
+            {
+                totalsExist = getTotals( metadataRepository, repositoryId ) != null;
+            }
+            return totalsExist;
+        }
+
+        Map<String, ArtifactMetadata> getArtifacts( MetadataRepository metadataRepository, String repositoryId,
+                                                    String namespace, String projectId, String projectVersion )
+            throws MetadataResolutionException
+        {
+            String key = namespace + ':' + projectId + ':' + projectVersion;
+            if ( !key.equals( projectVersionKey ) )
+            {
+                projectVersionArtifacts = new HashMap<>();
+                for ( ArtifactMetadata artifact : metadataRepository.getArtifacts( repositoryId, namespace, projectId,
+                                                                                   projectVersion ) )
+                {
+                    projectVersionArtifacts.put( artifact.getId(), artifact );
+                }
+                projectVersionKey = key;
+            }
+            return projectVersionArtifacts;
+        }
+
+        void reset()
+        {
+            delta = new RepositoryStatisticsTotals();
+            changed = false;
+            totalsExist = null;
+            projectVersionKey = null;
+            projectVersionArtifacts = null;
+        }
+    }
+}
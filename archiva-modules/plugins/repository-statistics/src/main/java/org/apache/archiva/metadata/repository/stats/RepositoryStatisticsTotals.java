@@ -0,0 +1,250 @@
+package org.apache.archiva.metadata.repository.stats;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.MetadataFacet;
+import org.apache.archiva.metadata.model.maven2.MavenArtifactFacet;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running totals of a repository content, kept up to date from the repository events between scans so that the
+ * statistics recorded after a scan don't require walking the whole repository. The totals are rebuilt from the
+ * content of the repository from time to time, which also corrects any drift caused by changes made without events.
+ *
+ * @since 2.2.2
+ */
+public class RepositoryStatisticsTotals
+    implements MetadataFacet
+{
+    public static final String FACET_ID = "org.apache.archiva.metadata.repository.stats.totals";
+
+    static final String NAME = "totals";
+
+    private String repositoryId;
+
+    private Date lastReconciled;
+
+    private long totalArtifactCount;
+
+    private long totalArtifactFileSize;
+
+    private long totalGroupCount;
+
+    private long totalProjectCount;
+
+    private Map<String, Long> totalCountForType = new HashMap<>();
+
+    public RepositoryStatisticsTotals()
+    {
+        // no op
+    }
+
+    public RepositoryStatisticsTotals( RepositoryStatistics statistics, Date lastReconciled )
+    {
+        this.repositoryId = statistics.getRepositoryId();
+        this.lastReconciled = lastReconciled;
+        this.totalArtifactCount = statistics.getTotalArtifactCount();
+        this.totalArtifactFileSize = statistics.getTotalArtifactFileSize();
+        this.totalGroupCount = statistics.getTotalGroupCount();
+        this.totalProjectCount = statistics.getTotalProjectCount();
+        this.totalCountForType.putAll( statistics.getTotalCountForType() );
+    }
+
+    /**
+     * Copy the totals to the statistics of a scan.
+     */
+    public void copyTo( RepositoryStatistics statistics )
+    {
+        statistics.setTotalArtifactCount( totalArtifactCount );
+        statistics.setTotalArtifactFileSize( totalArtifactFileSize );
+        statistics.setTotalGroupCount( totalGroupCount );
+        statistics.setTotalProjectCount( totalProjectCount );
+        for ( Map.Entry<String, Long> entry : totalCountForType.entrySet() )
+        {
+            statistics.setTotalCountForType( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    /**
+     * Count an artifact in (<code>delta</code> = 1) or out (<code>delta</code> = -1) of the totals.
+     */
+    public void addArtifact( ArtifactMetadata artifact, int delta )
+    {
+        totalArtifactCount += delta;
+        totalArtifactFileSize += delta * artifact.getSize();
+
+        String type = getType( artifact );
+        if ( type != null )
+        {
+            // same key as RepositoryStatistics.setTotalCountForType
+            type = type.replaceAll( "-", "_" ).replaceAll( "\\.", "_" );
+            Long count = totalCountForType.get( type );
+            totalCountForType.put( type, ( count != null ? count : 0L ) + delta );
+        }
+    }
+
+    /**
+     * Add the changes counted in another instance, whose counts are deltas, to the totals.
+     */
+    public void add( RepositoryStatisticsTotals delta )
+    {
+        totalArtifactCount += delta.totalArtifactCount;
+        totalArtifactFileSize += delta.totalArtifactFileSize;
+        totalGroupCount += delta.totalGroupCount;
+        totalProjectCount += delta.totalProjectCount;
+        for ( Map.Entry<String, Long> entry : delta.totalCountForType.entrySet() )
+        {
+            Long count = totalCountForType.get( entry.getKey() );
+            totalCountForType.put( entry.getKey(), ( count != null ? count : 0L ) + entry.getValue() );
+        }
+    }
+
+    static String getType( ArtifactMetadata artifact )
+    {
+        MavenArtifactFacet facet = (MavenArtifactFacet) artifact.getFacet( MavenArtifactFacet.FACET_ID );
+        return facet != null ? facet.getType() : null;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public void setRepositoryId( String repositoryId )
+    {
+        this.repositoryId = repositoryId;
+    }
+
+    public Date getLastReconciled()
+    {
+        return lastReconciled;
+    }
+
+    public void setLastReconciled( Date lastReconciled )
+    {
+        this.lastReconciled = lastReconciled;
+    }
+
+    public long getTotalArtifactCount()
+    {
+        return totalArtifactCount;
+    }
+
+    public void setTotalArtifactCount( long totalArtifactCount )
+    {
+        this.totalArtifactCount = totalArtifactCount;
+    }
+
+    public long getTotalArtifactFileSize()
+    {
+        return totalArtifactFileSize;
+    }
+
+    public void setTotalArtifactFileSize( long totalArtifactFileSize )
+    {
+        this.totalArtifactFileSize = totalArtifactFileSize;
+    }
+
+    public long getTotalGroupCount()
+    {
+        return totalGroupCount;
+    }
+
+    public void setTotalGroupCount( long totalGroupCount )
+    {
+        this.totalGroupCount = totalGroupCount;
+    }
+
+    public long getTotalProjectCount()
+    {
+        return totalProjectCount;
+    }
+
+    public void setTotalProjectCount( long totalProjectCount )
+    {
+        this.totalProjectCount = totalProjectCount;
+    }
+
+    public Map<String, Long> getTotalCountForType()
+    {
+        return totalCountForType;
+    }
+
+    @Override
+    public String getFacetId()
+    {
+        return FACET_ID;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, String> toProperties()
+    {
+        Map<String, String> properties = new HashMap<>();
+        properties.put( "lastReconciled", String.valueOf( lastReconciled.getTime() ) );
+        properties.put( "totalArtifactCount", String.valueOf( totalArtifactCount ) );
+        properties.put( "totalArtifactFileSize", String.valueOf( totalArtifactFileSize ) );
+        properties.put( "totalGroupCount", String.valueOf( totalGroupCount ) );
+        properties.put( "totalProjectCount", String.valueOf( totalProjectCount ) );
+        properties.put( "repositoryId", repositoryId );
+        for ( Map.Entry<String, Long> entry : totalCountForType.entrySet() )
+        {
+            properties.put( "count-" + entry.getKey(), String.valueOf( entry.getValue() ) );
+        }
+        return properties;
+    }
+
+    @Override
+    public void fromProperties( Map<String, String> properties )
+    {
+        lastReconciled = new Date( Long.parseLong( properties.get( "lastReconciled" ) ) );
+        totalArtifactCount = Long.parseLong( properties.get( "totalArtifactCount" ) );
+        totalArtifactFileSize = Long.parseLong( properties.get( "totalArtifactFileSize" ) );
+        totalGroupCount = Long.parseLong( properties.get( "totalGroupCount" ) );
+        totalProjectCount = Long.parseLong( properties.get( "totalProjectCount" ) );
+        repositoryId = properties.get( "repositoryId" );
+        totalCountForType.clear();
+        for ( Map.Entry<String, String> entry : properties.entrySet() )
+        {
+            if ( entry.getKey().startsWith( "count-" ) )
+            {
+                totalCountForType.put( entry.getKey().substring( 6 ), Long.valueOf( entry.getValue() ) );
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RepositoryStatisticsTotals{" + "repositoryId=" + repositoryId + ", lastReconciled=" + lastReconciled +
+            ", totalArtifactCount=" + totalArtifactCount + ", totalArtifactFileSize=" + totalArtifactFileSize +
+            ", totalGroupCount=" + totalGroupCount + ", totalProjectCount=" + totalProjectCount +
+            ", totalCountForType=" + totalCountForType + '}';
+    }
+}
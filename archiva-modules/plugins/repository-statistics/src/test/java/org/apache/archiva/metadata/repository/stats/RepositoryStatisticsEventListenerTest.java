@@ -0,0 +1,215 @@
+package org.apache.archiva.metadata.repository.stats;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.maven2.MavenArtifactFacet;
+import org.apache.archiva.metadata.repository.MetadataRepository;
+import org.apache.archiva.metadata.repository.RepositorySession;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class RepositoryStatisticsEventListenerTest
+    extends TestCase
+{
+    private static final String TEST_REPO_ID = "test-repo";
+
+    private static final String TEST_NAMESPACE = "org.apache.archiva";
+
+    private static final String TEST_PROJECT = "metadata-model";
+
+    private RepositoryStatisticsEventListener listener;
+
+    private MetadataRepository metadataRepository;
+
+    private RepositorySession session;
+
+    private RepositoryStatisticsTotals totals;
+
+    @Override
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        listener = new RepositoryStatisticsEventListener();
+
+        metadataRepository = mock( MetadataRepository.class );
+        session = mock( RepositorySession.class );
+        when( session.getRepository() ).thenReturn( metadataRepository );
+
+        RepositoryStatistics stats = new RepositoryStatistics();
+        stats.setRepositoryId( TEST_REPO_ID );
+        stats.setTotalArtifactCount( 10 );
+        stats.setTotalArtifactFileSize( 10 * 12345L );
+        stats.setTotalProjectCount( 3 );
+        stats.setTotalGroupCount( 2 );
+        stats.setTotalCountForType( "jar", 5 );
+        stats.setTotalCountForType( "pom", 5 );
+        totals = new RepositoryStatisticsTotals( stats, new Date() );
+    }
+
+    @Test
+    public void testUpdateArtifactInNewProject()
+        throws Exception
+    {
+        when( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                   RepositoryStatisticsTotals.NAME ) ).thenReturn( totals );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3" ) ).thenReturn(
+            Collections.<ArtifactMetadata>emptyList() );
+        when( metadataRepository.getProjects( TEST_REPO_ID, TEST_NAMESPACE ) ).thenReturn(
+            Arrays.asList( "metadata-repository-api" ) );
+
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3",
+                                 createArtifact( "1.3", "jar" ) );
+
+        // only written once the scan completes
+        verify( metadataRepository, never() ).addMetadataFacet( anyString(), any( RepositoryStatisticsTotals.class ) );
+        assertEquals( 10, totals.getTotalArtifactCount() );
+
+        listener.completeScan( session, TEST_REPO_ID );
+
+        verify( metadataRepository ).addMetadataFacet( TEST_REPO_ID, totals );
+        verify( session ).markDirty();
+        assertEquals( 11, totals.getTotalArtifactCount() );
+        assertEquals( 11 * 12345L, totals.getTotalArtifactFileSize() );
+        assertEquals( 4, totals.getTotalProjectCount() );
+        assertEquals( 2, totals.getTotalGroupCount() );
+        assertEquals( Long.valueOf( 6 ), totals.getTotalCountForType().get( "jar" ) );
+    }
+
+    @Test
+    public void testUpdateExistingArtifactUnchanged()
+        throws Exception
+    {
+        ArtifactMetadata artifact = createArtifact( "1.3", "jar" );
+        when( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                   RepositoryStatisticsTotals.NAME ) ).thenReturn( totals );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3" ) ).thenReturn(
+            Arrays.asList( createArtifact( "1.3", "jar" ) ) );
+
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3", artifact );
+        listener.completeScan( session, TEST_REPO_ID );
+
+        verify( metadataRepository, never() ).addMetadataFacet( anyString(), any( RepositoryStatisticsTotals.class ) );
+        assertEquals( 10, totals.getTotalArtifactCount() );
+    }
+
+    @Test
+    public void testScanReadsOncePerProjectVersion()
+        throws Exception
+    {
+        when( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                   RepositoryStatisticsTotals.NAME ) ).thenReturn( totals );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3" ) ).thenReturn(
+            Arrays.asList( createArtifact( "1.3", "pom" ) ) );
+
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3",
+                                 createArtifact( "1.3", "pom" ) );
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3",
+                                 createArtifact( "1.3", "jar" ) );
+        ArtifactMetadata sources = createArtifact( "1.3", "jar" );
+        sources.setId( TEST_PROJECT + "-1.3-sources.jar" );
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3", sources );
+        listener.completeScan( session, TEST_REPO_ID );
+
+        // once to know if there are totals, once to add the changes to them
+        verify( metadataRepository, times( 2 ) ).getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                                    RepositoryStatisticsTotals.NAME );
+        verify( metadataRepository, times( 1 ) ).getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3" );
+        verify( metadataRepository, times( 1 ) ).addMetadataFacet( TEST_REPO_ID, totals );
+        assertEquals( 12, totals.getTotalArtifactCount() );
+        assertEquals( 3, totals.getTotalProjectCount() );
+        assertEquals( Long.valueOf( 7 ), totals.getTotalCountForType().get( "jar" ) );
+        assertEquals( Long.valueOf( 5 ), totals.getTotalCountForType().get( "pom" ) );
+
+        // nothing left to write
+        listener.completeScan( session, TEST_REPO_ID );
+        verify( metadataRepository, times( 1 ) ).addMetadataFacet( TEST_REPO_ID, totals );
+    }
+
+    @Test
+    public void testUpdateArtifactWithoutTotals()
+        throws Exception
+    {
+        listener.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3",
+                                 createArtifact( "1.3", "jar" ) );
+        listener.completeScan( session, TEST_REPO_ID );
+
+        verify( metadataRepository, never() ).getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, "1.3" );
+        verify( metadataRepository, never() ).addMetadataFacet( anyString(), any( RepositoryStatisticsTotals.class ) );
+    }
+
+    @Test
+    public void testDeleteLastArtifactOfProject()
+        throws Exception
+    {
+        ArtifactMetadata artifact = createArtifact( "1.3-SNAPSHOT", "pom" );
+        artifact.setVersion( "1.3-20100310.014828-2" );
+        artifact.setId( TEST_PROJECT + "-1.3-20100310.014828-2.pom" );
+        when( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                   RepositoryStatisticsTotals.NAME ) ).thenReturn( totals );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                               "1.3-SNAPSHOT" ) ).thenReturn( Arrays.asList( artifact ) );
+        when( metadataRepository.getProjectVersions( TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT ) ).thenReturn(
+            Arrays.asList( "1.3-SNAPSHOT" ) );
+        when( metadataRepository.getProjects( TEST_REPO_ID, TEST_NAMESPACE ) ).thenReturn(
+            Arrays.asList( TEST_PROJECT, "metadata-repository-api" ) );
+
+        listener.deleteArtifact( metadataRepository, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                 "1.3-20100310.014828-2", artifact.getId() );
+
+        verify( metadataRepository ).addMetadataFacet( TEST_REPO_ID, totals );
+        assertEquals( 9, totals.getTotalArtifactCount() );
+        assertEquals( 9 * 12345L, totals.getTotalArtifactFileSize() );
+        assertEquals( 2, totals.getTotalProjectCount() );
+        assertEquals( 2, totals.getTotalGroupCount() );
+        assertEquals( Long.valueOf( 4 ), totals.getTotalCountForType().get( "pom" ) );
+    }
+
+    private ArtifactMetadata createArtifact( String projectVersion, String type )
+    {
+        ArtifactMetadata metadata = new ArtifactMetadata();
+        metadata.setRepositoryId( TEST_REPO_ID );
+        metadata.setId( TEST_PROJECT + "-" + projectVersion + "." + type );
+        metadata.setProject( TEST_PROJECT );
+        metadata.setSize( 12345L );
+        metadata.setProjectVersion( projectVersion );
+        metadata.setVersion( projectVersion );
+        metadata.setNamespace( TEST_NAMESPACE );
+
+        MavenArtifactFacet facet = new MavenArtifactFacet();
+        facet.setType( type );
+        metadata.addFacet( facet );
+
+        return metadata;
+    }
+}
@@ -55,8 +55,6 @@
 
     private MetadataRepository metadataRepository;
 
-    private static final String FIRST_TEST_SCAN = "2009/12/01/123456.789";
-
     private static final String SECOND_TEST_SCAN = "2009/12/02/012345.678";
 
     private Map<String, RepositoryStatistics> statsCreated = new LinkedHashMap<String, RepositoryStatistics>();
@@ -101,8 +99,8 @@ public void testGetLatestStats()
         stats.setTotalFileCount( 56229 );
 
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Arrays.asList( FIRST_TEST_SCAN, SECOND_TEST_SCAN ) );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Arrays.asList( SECOND_TEST_SCAN ) );
 
         expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatistics.FACET_ID,
                                                      SECOND_TEST_SCAN ) ).andReturn( stats );
@@ -129,8 +127,8 @@ public void testGetLatestStatsWhenEmpty()
         throws Exception
     {
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Collections.<String>emptyList() );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Collections.<String>emptyList() );
         metadataRepositoryControl.replay();
 
         RepositoryStatistics stats = repositoryStatisticsManager.getLastStatistics( metadataRepository, TEST_REPO_ID );
@@ -152,13 +150,14 @@ public void testAddNewStats()
 
         metadataRepository.addMetadataFacet( TEST_REPO_ID, stats );
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Arrays.asList( stats.getName() ) );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Arrays.asList( stats.getName() ) );
 
         expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatistics.FACET_ID,
                                                      stats.getName() ) ).andReturn( stats );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false );
+        expectTotalsReconciled( 1 );
 
         metadataRepositoryControl.replay();
 
@@ -179,6 +178,30 @@ public void testAddNewStats()
         metadataRepositoryControl.verify();
     }
 
+    @Test
+    public void testAddNewStatsFromRunningTotals()
+        throws Exception
+    {
+        Date current = new Date();
+        Date startTime = new Date( current.getTime() - 12345 );
+
+        RepositoryStatistics stats = createTestStats( startTime, current );
+
+        // recently reconciled, so the repository is not walked
+        expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                     RepositoryStatisticsTotals.NAME ) ).andReturn(
+            new RepositoryStatisticsTotals( stats, new Date( current.getTime() - 60000 ) ) );
+
+        metadataRepository.addMetadataFacet( TEST_REPO_ID, stats );
+
+        metadataRepositoryControl.replay();
+
+        repositoryStatisticsManager.addStatisticsAfterScan( metadataRepository, TEST_REPO_ID, startTime, current, 56345,
+                                                            45 );
+
+        metadataRepositoryControl.verify();
+    }
+
     @Test
     public void testDeleteStats()
         throws Exception
@@ -196,17 +219,19 @@ public void testDeleteStats()
         metadataRepository.addMetadataFacet( TEST_REPO_ID, stats2 );
 
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Arrays.asList( stats1.getName(), stats2.getName() ) );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Arrays.asList( stats2.getName() ) );
 
         expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatistics.FACET_ID,
                                                      stats2.getName() ) ).andReturn( stats2 );
         metadataRepository.removeMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID );
+        metadataRepository.removeMetadataFacets( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID );
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Collections.<String>emptyList() );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Collections.<String>emptyList() );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 2 );
+        expectTotalsReconciled( 2 );
         metadataRepositoryControl.replay();
 
         repositoryStatisticsManager.addStatisticsAfterScan( metadataRepository, TEST_REPO_ID, startTime1,
@@ -228,9 +253,11 @@ public void testDeleteStatsWhenEmpty()
         throws Exception
     {
 
-        expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn(
-            Collections.<String>emptyList() ).times( 2 );
+        expect( metadataRepository.getLastMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID, null, null,
+                                                          1 ) ).andReturn( Collections.<String>emptyList() ).times(
+            2 );
         metadataRepository.removeMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID );
+        metadataRepository.removeMetadataFacets( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID );
 
         metadataRepositoryControl.replay();
 
@@ -266,6 +293,7 @@ public void testGetStatsRangeInside()
             statsCreated.get( key ) );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 3 );
+        expectTotalsReconciled( 3 );
 
         metadataRepositoryControl.replay();
 
@@ -314,6 +342,7 @@ public void testGetStatsRangeUpperOutside()
             statsCreated.get( key ) );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 3 );
+        expectTotalsReconciled( 3 );
 
         metadataRepositoryControl.replay();
 
@@ -361,6 +390,7 @@ public void testGetStatsRangeLowerOutside()
             statsCreated.get( key ) );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 3 );
+        expectTotalsReconciled( 3 );
 
         metadataRepositoryControl.replay();
 
@@ -413,6 +443,7 @@ public void testGetStatsRangeLowerAndUpperOutside()
             statsCreated.get( key ) );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 3 );
+        expectTotalsReconciled( 3 );
 
         metadataRepositoryControl.replay();
 
@@ -452,6 +483,7 @@ public void testGetStatsRangeNotInside()
         expect( metadataRepository.getMetadataFacets( TEST_REPO_ID, RepositoryStatistics.FACET_ID ) ).andReturn( keys );
 
         expect( metadataRepository.canObtainAccess( Session.class ) ).andReturn( false ).times( 3 );
+        expectTotalsReconciled( 3 );
 
         metadataRepositoryControl.replay();
 
@@ -472,6 +504,16 @@ public void testGetStatsRangeNotInside()
         metadataRepositoryControl.verify();
     }
 
+    private void expectTotalsReconciled( int count )
+        throws Exception
+    {
+        expect( metadataRepository.getMetadataFacet( TEST_REPO_ID, RepositoryStatisticsTotals.FACET_ID,
+                                                     RepositoryStatisticsTotals.NAME ) ).andReturn( null ).times(
+            count );
+        metadataRepository.addMetadataFacet( eq( TEST_REPO_ID ), isA( RepositoryStatisticsTotals.class ) );
+        expectLastCall().times( count );
+    }
+
     private void addStats( Date startTime, Date endTime )
         throws Exception
     {
@@ -26,6 +26,7 @@
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.maven2.metadata.MavenMetadataReader;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.CloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.filter.Filter;
@@ -44,15 +45,31 @@
 import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -76,6 +93,21 @@
 
     private static final String METADATA_FILENAME = "maven-metadata.xml";
 
+    /**
+     * number of artifact files copied concurrently by a merge
+     *
+     * @since 2.2.2
+     */
+    private int copyThreads = Integer.getInteger( "archiva.merge.copyThreads", 4 );
+
+    /**
+     * hard link artifact files into the target repository when both repositories share a file system, off by default
+     * as a linked file is shared by both repositories and changing it in place changes it in both
+     *
+     * @since 2.2.2
+     */
+    private boolean hardLinks = Boolean.getBoolean( "archiva.merge.hardLinks" );
+
     @Inject
     public Maven2RepositoryMerger(
         @Named (value = "archivaConfiguration#default") ArchivaConfiguration archivaConfiguration,
@@ -90,18 +122,96 @@ public void setConfiguration( ArchivaConfiguration configuration )
         this.configuration = configuration;
     }
 
+    public void setCopyThreads( int copyThreads )
+    {
+        this.copyThreads = copyThreads;
+    }
+
+    public void setHardLinks( boolean hardLinks )
+    {
+        this.hardLinks = hardLinks;
+    }
+
     @Override
     public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId )
         throws RepositoryMergerException
     {
+        merge( metadataRepository, sourceRepoId, targetRepoId, null );
+    }
 
-        try
+    // TODO when UI needs a subset to merge
+    @Override
+    public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId,
+                       Filter<ArtifactMetadata> filter )
+        throws RepositoryMergerException
+    {
+        Configuration config = configuration.getConfiguration();
+
+        File sourceRepoDir = new File( config.findManagedRepositoryById( sourceRepoId ).getLocation() );
+
+        File targetRepoDir = new File( config.findManagedRepositoryById( targetRepoId ).getLocation() );
+
+        // metadata files are rewritten once per merged project after all files are copied
+        Map<String, MergedProject> mergedProjects = new LinkedHashMap<>();
+
+        // a pom is both an artifact and the pom of its jar, only one task may write a target file
+        Set<File> claimedFiles = Collections.newSetFromMap( new ConcurrentHashMap<File, Boolean>() );
+
+        // bounded queue so the source repository is streamed rather than loaded up front
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( copyThreads, copyThreads, 0L, TimeUnit.MILLISECONDS,
+                                    new ArrayBlockingQueue<Runnable>( copyThreads * 16 ),
+                                    new ThreadPoolExecutor.CallerRunsPolicy() );
+        try (CloseableIterator<ArtifactMetadata> sourceArtifacts = metadataRepository.streamArtifacts( sourceRepoId ))
         {
-            List<ArtifactMetadata> artifactsInSourceRepo = metadataRepository.getArtifacts( sourceRepoId );
-            for ( ArtifactMetadata artifactMetadata : artifactsInSourceRepo )
+            // completed copies are collected while submitting, so that only the running ones are tracked
+            CompletionService<Void> copies = new ExecutorCompletionService<>( executor );
+            int pendingCopies = 0;
+            IOException failure = null;
+            while ( sourceArtifacts.hasNext() )
             {
+                ArtifactMetadata artifactMetadata = sourceArtifacts.next();
+                if ( filter != null && !filter.accept( artifactMetadata ) )
+                {
+                    continue;
+                }
                 artifactMetadata.setRepositoryId( targetRepoId );
-                createFolderStructure( sourceRepoId, targetRepoId, artifactMetadata );
+
+                String projectKey = artifactMetadata.getNamespace() + ":" + artifactMetadata.getProject();
+                MergedProject mergedProject = mergedProjects.get( projectKey );
+                if ( mergedProject == null )
+                {
+                    mergedProject = new MergedProject( artifactMetadata.getNamespace(), artifactMetadata.getProject() );
+                    mergedProjects.put( projectKey, mergedProject );
+                }
+                mergedProject.versions.add( artifactMetadata.getProjectVersion() );
+
+                copies.submit( new ArtifactCopy( sourceRepoDir, targetRepoDir, artifactMetadata, claimedFiles ) );
+                pendingCopies++;
+                for ( Future<Void> copy = copies.poll(); copy != null; copy = copies.poll() )
+                {
+                    pendingCopies--;
+                    failure = getFailure( copy, failure );
+                }
+            }
+
+            for ( ; pendingCopies > 0; pendingCopies-- )
+            {
+                failure = getFailure( takeCopy( copies ), failure );
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+
+            // explicitly update only if metadata-updater consumer is not enabled!
+            if ( !config.getRepositoryScanning().getKnownContentConsumers().contains( "metadata-updater" ) )
+            {
+                Date lastUpdatedTimestamp = Calendar.getInstance().getTime();
+                for ( MergedProject mergedProject : mergedProjects.values() )
+                {
+                    updateMetadata( sourceRepoDir, targetRepoDir, mergedProject, lastUpdatedTimestamp );
+                }
             }
         }
         catch ( MetadataRepositoryException e )
@@ -116,160 +226,158 @@ public void merge( MetadataRepository metadataRepository, String sourceRepoId, S
         {
             throw new RepositoryMergerException( e.getMessage(), e );
         }
+        finally
+        {
+            executor.shutdownNow();
+        }
     }
 
-    // TODO when UI needs a subset to merge
-    @Override
-    public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId,
-                       Filter<ArtifactMetadata> filter )
-        throws RepositoryMergerException
+    private Future<Void> takeCopy( CompletionService<Void> copies )
+        throws IOException
     {
         try
         {
-            List<ArtifactMetadata> sourceArtifacts = metadataRepository.getArtifacts( sourceRepoId );
-            for ( ArtifactMetadata metadata : sourceArtifacts )
-            {
-                if ( filter.accept( metadata ) )
-                {
-                    createFolderStructure( sourceRepoId, targetRepoId, metadata );
-                }
-            }
+            return copies.take();
         }
-        catch ( MetadataRepositoryException e )
+        catch ( InterruptedException e )
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            Thread.currentThread().interrupt();
+            throw new IOException( "merge interrupted", e );
         }
-        catch ( IOException e )
+    }
+
+    /**
+     * @return the failure of the completed copy, or the previous failure if it succeeded
+     */
+    private IOException getFailure( Future<Void> copy, IOException failure )
+        throws IOException
+    {
+        try
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            copy.get();
+            return failure;
         }
-        catch ( RepositoryException e )
+        catch ( InterruptedException e )
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            Thread.currentThread().interrupt();
+            throw new IOException( "merge interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            return e.getCause() instanceof IOException
+                ? (IOException) e.getCause()
+                : new IOException( e.getCause().getMessage(), e.getCause() );
         }
     }
 
-    private void createFolderStructure( String sourceRepoId, String targetRepoId, ArtifactMetadata artifactMetadata )
-        throws IOException, RepositoryException
+    private void copyArtifact( File sourceRepoDir, File targetRepoDir, ArtifactMetadata artifactMetadata,
+                               Set<File> claimedFiles )
+        throws IOException
     {
-        Configuration config = configuration.getConfiguration();
-
-        ManagedRepositoryConfiguration targetRepoConfig = config.findManagedRepositoryById( targetRepoId );
-
-        ManagedRepositoryConfiguration sourceRepoConfig = config.findManagedRepositoryById( sourceRepoId );
-
-        Date lastUpdatedTimestamp = Calendar.getInstance().getTime();
-
-        TimeZone timezone = TimeZone.getTimeZone( "UTC" );
-
-        DateFormat fmt = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
-
-        fmt.setTimeZone( timezone );
-
-        String timestamp = fmt.format( lastUpdatedTimestamp );
-
-        String targetRepoPath = targetRepoConfig.getLocation();
-
-        String sourceRepoPath = sourceRepoConfig.getLocation();
-
         String artifactPath = pathTranslator.toPath( artifactMetadata.getNamespace(), artifactMetadata.getProject(),
                                                      artifactMetadata.getProjectVersion(), artifactMetadata.getId() );
 
-        File sourceArtifactFile = new File( sourceRepoPath, artifactPath );
-
-        File targetArtifactFile = new File( targetRepoPath, artifactPath );
-
         log.debug( "artifactPath {}", artifactPath );
 
-        int lastIndex = artifactPath.lastIndexOf( RepositoryPathTranslator.PATH_SEPARATOR );
-
-        File targetFile = new File( targetRepoPath, artifactPath.substring( 0, lastIndex ) );
+        File targetArtifactFile = new File( targetRepoDir, artifactPath );
 
-        if ( !targetFile.exists() )
+        // artifact copying
+        if ( claimedFiles.add( targetArtifactFile ) )
         {
-            // create the folder structure when it does not exist
-            targetFile.mkdirs();
+            linkOrCopyFile( new File( sourceRepoDir, artifactPath ), targetArtifactFile );
         }
-        // artifact copying
-        copyFile( sourceArtifactFile, targetArtifactFile );
-
-        // pom file copying
-        // TODO need to use path translator to get the pom file path
-//        String fileName = artifactMetadata.getProject() + "-" + artifactMetadata.getVersion() + ".pom";
-//
-//        File sourcePomFile =
-//            pathTranslator.toFile( new File( sourceRepoPath ), artifactMetadata.getId(), artifactMetadata.getProject(),
-//                                   artifactMetadata.getVersion(), fileName );
-//
-//        String relativePathToPomFile = sourcePomFile.getAbsolutePath().split( sourceRepoPath )[1];
-//        File targetPomFile = new File( targetRepoPath, relativePathToPomFile );
 
         //pom file copying  (file path is taken with out using path translator)
+        int lastIndex = artifactPath.lastIndexOf( RepositoryPathTranslator.PATH_SEPARATOR );
+        String fileName = artifactPath.substring( lastIndex + 1 );
+        int last = fileName.lastIndexOf( '.' );
+        String pomPath = artifactPath.substring( 0, lastIndex ) + "/" + fileName.substring( 0, last ) + ".pom";
 
-        String index = artifactPath.substring( lastIndex + 1 );
-        int last = index.lastIndexOf( '.' );
-        File sourcePomFile = new File( sourceRepoPath,
-                                       artifactPath.substring( 0, lastIndex ) + "/" + artifactPath.substring(
-                                           lastIndex + 1 ).substring( 0, last ) + ".pom" );
-        File targetPomFile = new File( targetRepoPath,
-                                       artifactPath.substring( 0, lastIndex ) + "/" + artifactPath.substring(
-                                           lastIndex + 1 ).substring( 0, last ) + ".pom" );
+        File sourcePomFile = new File( sourceRepoDir, pomPath );
+        File targetPomFile = new File( targetRepoDir, pomPath );
 
-        if ( !targetPomFile.exists() && sourcePomFile.exists() )
+        if ( !targetPomFile.exists() && sourcePomFile.exists() && claimedFiles.add( targetPomFile ) )
         {
-            copyFile( sourcePomFile, targetPomFile );
+            linkOrCopyFile( sourcePomFile, targetPomFile );
         }
+    }
 
-        // explicitly update only if metadata-updater consumer is not enabled!
-        if ( !config.getRepositoryScanning().getKnownContentConsumers().contains( "metadata-updater" ) )
+    private void updateMetadata( File sourceRepoDir, File targetRepoDir, MergedProject mergedProject,
+                                 Date lastUpdatedTimestamp )
+        throws IOException, RepositoryException
+    {
+        // updating version metadata files
+        for ( String version : mergedProject.versions )
         {
-
-            // updating version metadata files
-            File versionMetaDataFileInSourceRepo =
-                pathTranslator.toFile( new File( sourceRepoPath ), artifactMetadata.getNamespace(),
-                                       artifactMetadata.getProject(), artifactMetadata.getVersion(),
+            File versionMetadataFileInSourceRepo =
+                pathTranslator.toFile( sourceRepoDir, mergedProject.namespace, mergedProject.project, version,
                                        METADATA_FILENAME );
 
-            if ( versionMetaDataFileInSourceRepo.exists() )
-            {//Pattern quote for windows path
-                String relativePathToVersionMetadataFile =
-                    versionMetaDataFileInSourceRepo.getAbsolutePath().split( Pattern.quote( sourceRepoPath ) )[1];
-                File versionMetaDataFileInTargetRepo = new File( targetRepoPath, relativePathToVersionMetadataFile );
+            if ( versionMetadataFileInSourceRepo.exists() )
+            {
+                File versionMetadataFileInTargetRepo =
+                    pathTranslator.toFile( targetRepoDir, mergedProject.namespace, mergedProject.project, version,
+                                           METADATA_FILENAME );
 
-                if ( !versionMetaDataFileInTargetRepo.exists() )
+                if ( !versionMetadataFileInTargetRepo.exists() )
                 {
-                    copyFile( versionMetaDataFileInSourceRepo, versionMetaDataFileInTargetRepo );
+                    copyFile( versionMetadataFileInSourceRepo, versionMetadataFileInTargetRepo );
                 }
                 else
                 {
-                    updateVersionMetadata( versionMetaDataFileInTargetRepo, artifactMetadata, lastUpdatedTimestamp );
-
+                    updateVersionMetadata( versionMetadataFileInTargetRepo, mergedProject, version,
+                                           lastUpdatedTimestamp );
                 }
             }
+        }
 
-            // updating project meta data file
-            String projectDirectoryInSourceRepo = new File( versionMetaDataFileInSourceRepo.getParent() ).getParent();
-            File projectMetadataFileInSourceRepo = new File( projectDirectoryInSourceRepo, METADATA_FILENAME );
-
-            if ( projectMetadataFileInSourceRepo.exists() )
-            {
-                String relativePathToProjectMetadataFile =
-                    projectMetadataFileInSourceRepo.getAbsolutePath().split( Pattern.quote( sourceRepoPath ) )[1];
-                File projectMetadataFileInTargetRepo = new File( targetRepoPath, relativePathToProjectMetadataFile );
+        // updating project meta data file
+        File projectMetadataFileInSourceRepo =
+            new File( pathTranslator.toFile( sourceRepoDir, mergedProject.namespace, mergedProject.project ),
+                      METADATA_FILENAME );
 
-                if ( !projectMetadataFileInTargetRepo.exists() )
-                {
+        if ( projectMetadataFileInSourceRepo.exists() )
+        {
+            File projectMetadataFileInTargetRepo =
+                new File( pathTranslator.toFile( targetRepoDir, mergedProject.namespace, mergedProject.project ),
+                          METADATA_FILENAME );
 
-                    copyFile( projectMetadataFileInSourceRepo, projectMetadataFileInTargetRepo );
-                }
-                else
-                {
-                    updateProjectMetadata( projectMetadataFileInTargetRepo, artifactMetadata, lastUpdatedTimestamp,
-                                           timestamp );
-                }
+            if ( !projectMetadataFileInTargetRepo.exists() )
+            {
+                copyFile( projectMetadataFileInSourceRepo, projectMetadataFileInTargetRepo );
+            }
+            else
+            {
+                updateProjectMetadata( projectMetadataFileInTargetRepo, mergedProject, lastUpdatedTimestamp );
             }
         }
+    }
 
+    /**
+     * Hard links the artifact into the target repository, falling back to a copy when the file system does not
+     * support links or the repositories are on different file systems. Metadata files are rewritten in place and are
+     * always copied with {@link #copyFile(File, File)}.
+     */
+    private void linkOrCopyFile( File sourceFile, File targetFile )
+        throws IOException
+    {
+        Path target = targetFile.toPath();
+        Files.createDirectories( target.getParent() );
+        if ( hardLinks )
+        {
+            try
+            {
+                Files.deleteIfExists( target );
+                Files.createLink( target, sourceFile.toPath() );
+                return;
+            }
+            catch ( IOException | UnsupportedOperationException e )
+            {
+                log.debug( "cannot link {} to {}, copying instead: {}", target, sourceFile, e.getMessage() );
+            }
+        }
+        Files.copy( sourceFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES );
     }
 
     private void copyFile( File sourceFile, File targetFile )
@@ -280,69 +388,67 @@ private void copyFile( File sourceFile, File targetFile )
 
     }
 
-    private void updateProjectMetadata( File projectMetaDataFileIntargetRepo, ArtifactMetadata artifactMetadata,
-                                        Date lastUpdatedTimestamp, String timestamp )
+    private void updateProjectMetadata( File projectMetaDataFileIntargetRepo, MergedProject mergedProject,
+                                        Date lastUpdatedTimestamp )
         throws RepositoryMetadataException
     {
-        ArrayList<String> availableVersions = new ArrayList<>();
-        String latestVersion = artifactMetadata.getProjectVersion();
-
         ArchivaRepositoryMetadata projectMetadata = getMetadata( projectMetaDataFileIntargetRepo );
 
-        if ( projectMetaDataFileIntargetRepo.exists() )
+        List<String> availableVersions = new ArrayList<>( projectMetadata.getAvailableVersions() );
+        for ( String version : mergedProject.versions )
         {
-            availableVersions = (ArrayList<String>) projectMetadata.getAvailableVersions();
-
-            Collections.sort( availableVersions, VersionComparator.getInstance() );
-
-            if ( !availableVersions.contains( artifactMetadata.getVersion() ) )
+            if ( !availableVersions.contains( version ) )
             {
-                availableVersions.add( artifactMetadata.getVersion() );
+                availableVersions.add( version );
             }
-
-            latestVersion = availableVersions.get( availableVersions.size() - 1 );
-        }
-        else
-        {
-            availableVersions.add( artifactMetadata.getProjectVersion() );
-            projectMetadata.setGroupId( artifactMetadata.getNamespace() );
-            projectMetadata.setArtifactId( artifactMetadata.getProject() );
         }
 
+        Collections.sort( availableVersions, VersionComparator.getInstance() );
+
+        String latestVersion = availableVersions.get( availableVersions.size() - 1 );
+
         if ( projectMetadata.getGroupId() == null )
         {
-            projectMetadata.setGroupId( artifactMetadata.getNamespace() );
+            projectMetadata.setGroupId( mergedProject.namespace );
         }
 
         if ( projectMetadata.getArtifactId() == null )
         {
-            projectMetadata.setArtifactId( artifactMetadata.getProject() );
+            projectMetadata.setArtifactId( mergedProject.project );
         }
 
+        DateFormat fmt = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+
+        fmt.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+
         projectMetadata.setLatestVersion( latestVersion );
         projectMetadata.setAvailableVersions( availableVersions );
-        projectMetadata.setLastUpdated( timestamp );
+        projectMetadata.setLastUpdated( fmt.format( lastUpdatedTimestamp ) );
         projectMetadata.setLastUpdatedTimestamp( lastUpdatedTimestamp );
 
-        if ( !VersionUtil.isSnapshot( artifactMetadata.getVersion() ) )
+        for ( String version : mergedProject.versions )
         {
-            projectMetadata.setReleasedVersion( latestVersion );
+            if ( !VersionUtil.isSnapshot( version ) )
+            {
+                projectMetadata.setReleasedVersion( latestVersion );
+                break;
+            }
         }
 
         RepositoryMetadataWriter.write( projectMetadata, projectMetaDataFileIntargetRepo );
 
     }
 
-    private void updateVersionMetadata( File versionMetaDataFileInTargetRepo, ArtifactMetadata artifactMetadata,
-                                        Date lastUpdatedTimestamp )
+    private void updateVersionMetadata( File versionMetaDataFileInTargetRepo, MergedProject mergedProject,
+                                        String version, Date lastUpdatedTimestamp )
         throws RepositoryMetadataException
     {
         ArchivaRepositoryMetadata versionMetadata = getMetadata( versionMetaDataFileInTargetRepo );
         if ( !versionMetaDataFileInTargetRepo.exists() )
         {
-            versionMetadata.setGroupId( artifactMetadata.getNamespace() );
-            versionMetadata.setArtifactId( artifactMetadata.getProject() );
-            versionMetadata.setVersion( artifactMetadata.getProjectVersion() );
+            versionMetadata.setGroupId( mergedProject.namespace );
+            versionMetadata.setArtifactId( mergedProject.project );
+            versionMetadata.setVersion( version );
         }
 
         versionMetadata.setLastUpdatedTimestamp( lastUpdatedTimestamp );
@@ -374,27 +480,23 @@ public List<ArtifactMetadata> getConflictingArtifacts( MetadataRepository metada
     {
         try
         {
-            List<ArtifactMetadata> targetArtifacts = metadataRepository.getArtifacts( targetRepo );
-            List<ArtifactMetadata> sourceArtifacts = metadataRepository.getArtifacts( sourceRepo );
-            List<ArtifactMetadata> conflictsArtifacts = new ArrayList<>();
+            // hash join on the artifact path, which covers groupId, artifactId, version, classifier and type
+            Set<String> targetArtifacts = new HashSet<>();
+            for ( ArtifactMetadata targetArtifact : metadataRepository.getArtifacts( targetRepo ) )
+            {
+                targetArtifacts.add( getArtifactKey( targetArtifact ) );
+            }
 
-            for ( ArtifactMetadata targetArtifact : targetArtifacts )
+            Set<ArtifactMetadata> conflictsArtifacts = new LinkedHashSet<>();
+            for ( ArtifactMetadata sourceArtifact : metadataRepository.getArtifacts( sourceRepo ) )
             {
-                for ( ArtifactMetadata sourceArtifact : sourceArtifacts )
+                if ( targetArtifacts.contains( getArtifactKey( sourceArtifact ) ) )
                 {
-                    if ( isEquals( targetArtifact, sourceArtifact ) )
-                    {
-                        if ( !conflictsArtifacts.contains( sourceArtifact ) )
-                        {
-                            conflictsArtifacts.add( sourceArtifact );
-                        }
-                    }
+                    conflictsArtifacts.add( sourceArtifact );
                 }
             }
 
-            sourceArtifacts.removeAll( conflictsArtifacts );
-
-            return conflictsArtifacts;
+            return new ArrayList<>( conflictsArtifacts );
         }
         catch ( MetadataRepositoryException e )
         {
@@ -402,20 +504,53 @@ public List<ArtifactMetadata> getConflictingArtifacts( MetadataRepository metada
         }
     }
 
-    private boolean isEquals( ArtifactMetadata sourceArtifact, ArtifactMetadata targetArtifact )
+    private String getArtifactKey( ArtifactMetadata artifact )
     {
-        boolean isSame = false;
+        return pathTranslator.toPath( artifact.getNamespace(), artifact.getProject(), artifact.getProjectVersion(),
+                                      artifact.getId() );
+    }
+
+    private static class MergedProject
+    {
+        private final String namespace;
 
-        if ( ( sourceArtifact.getNamespace().equals( targetArtifact.getNamespace() ) )
-            && ( sourceArtifact.getProject().equals( targetArtifact.getProject() ) ) && ( sourceArtifact.getId().equals(
-            targetArtifact.getId() ) ) && ( sourceArtifact.getProjectVersion().equals(
-            targetArtifact.getProjectVersion() ) ) )
+        private final String project;
 
+        private final Set<String> versions = new LinkedHashSet<>();
+
+        private MergedProject( String namespace, String project )
         {
-            isSame = true;
+            this.namespace = namespace;
+            this.project = project;
+        }
+    }
+
+    private class ArtifactCopy
+        implements Callable<Void>
+    {
+        private final File sourceRepoDir;
+
+        private final File targetRepoDir;
+
+        private final ArtifactMetadata artifactMetadata;
 
+        private final Set<File> claimedFiles;
+
+        private ArtifactCopy( File sourceRepoDir, File targetRepoDir, ArtifactMetadata artifactMetadata,
+                              Set<File> claimedFiles )
+        {
+            this.sourceRepoDir = sourceRepoDir;
+            this.targetRepoDir = targetRepoDir;
+            this.artifactMetadata = artifactMetadata;
+            this.claimedFiles = claimedFiles;
         }
 
-        return isSame;
+        @Override
+        public Void call()
+            throws IOException
+        {
+            copyArtifact( sourceRepoDir, targetRepoDir, artifactMetadata, claimedFiles );
+            return null;
+        }
     }
 }
@@ -25,6 +25,7 @@
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.configuration.RepositoryScanningConfiguration;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.AbstractCloseableIterator;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
 import org.junit.Before;
@@ -114,9 +115,10 @@ public void testMerge()
         c.addManagedRepository( targetRepo );
         configuration.save( c );
 
-        when( metadataRepository.getArtifacts( TEST_REPO_ID ) ).thenReturn( getArtifacts() );
+        when( metadataRepository.streamArtifacts( TEST_REPO_ID ) ).thenReturn(
+            AbstractCloseableIterator.of( getArtifacts() ) );
         repositoryMerger.merge( metadataRepository, TEST_REPO_ID, "target-rep" );
-        verify( metadataRepository ).getArtifacts( TEST_REPO_ID );
+        verify( metadataRepository ).streamArtifacts( TEST_REPO_ID );
         assertTrue( mergedArtifact.exists() );
         assertTrue( mavenMetadata.exists() );
         assertTrue( pom.exists() );
@@ -172,4 +174,29 @@ public void testMergeWithOutConflictArtifacts()
         verify( metadataRepository ).getArtifacts( TEST_REPO_ID );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testConflictingArtifactsMatchClassifierAndType()
+        throws Exception
+    {
+        List<ArtifactMetadata> sourceRepoArtifactsList = getArtifacts();
+        ArtifactMetadata sources = new ArtifactMetadata();
+        sources.setNamespace( "com.example.test" );
+        sources.setProject( "test-artifact" );
+        sources.setVersion( "1.0-SNAPSHOT" );
+        sources.setProjectVersion( "1.0-SNAPSHOT" );
+        sources.setId( "test-artifact-1.0-20100308.230825-1-sources.jar" );
+        sourceRepoArtifactsList.add( sources );
+
+        List<ArtifactMetadata> targetRepoArtifactsList = getArtifacts();
+        targetRepoArtifactsList.addAll( getArtifacts() );
+
+        when( metadataRepository.getArtifacts( "source-repo" ) ).thenReturn( sourceRepoArtifactsList );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID ) ).thenReturn( targetRepoArtifactsList );
+
+        List<ArtifactMetadata> conflicts =
+            repositoryMerger.getConflictingArtifacts( metadataRepository, "source-repo", TEST_REPO_ID );
+        assertEquals( 1, conflicts.size() );
+        assertEquals( "test-artifact-1.0-20100308.230825-1.jar", conflicts.get( 0 ).getId() );
+    }
+
+}